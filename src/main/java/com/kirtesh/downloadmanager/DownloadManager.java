@@ -4,9 +4,12 @@ import java.util.Map;
 
 import org.apache.log4j.Logger;
 
+import com.kirtesh.downloadmanager.cache.DMCache;
 import com.kirtesh.downloadmanager.factory.RequestRoutingFactory;
 import com.kirtesh.downloadmanager.metadata.DownloadMetadata;
 import com.kirtesh.downloadmanager.service.DownloadExecutorService;
+import com.kirtesh.downloadmanager.service.expansion.UrlExpansionService;
+import com.kirtesh.downloadmanager.service.preflight.PreflightService;
 import com.kirtesh.downloadmanager.service.startup.StartUpService;
 import com.kirtesh.downloadmanager.utils.DownloadUtils;
 
@@ -23,13 +26,32 @@ import com.kirtesh.downloadmanager.utils.DownloadUtils;
  * 
  * This Application would parallelly download files for provided Url's in optimized space enviournment. This class would act as entry to the application.
  * 
- * The project is an maven project in Java, with compiler compliance set to Java 1.8 or above.
+ * The project is an maven project in Java, with compiler compliance set to Java 11 or above.
  * 
  * 
  * 
  * Applications feature overview:
  * 1. Would download data from multiple sources and protocol (FTP, SFTP, HTTP, HTTPS) to local disk.
- * 2. No partial downloaded data be kept at local disk in any case.
+ * 2. No partial downloaded data be kept in download directory in any case. Partial data is staged as .part file with a journal in {staging.directory.name} sub directory, so a retry or restart resumes the download instead of starting from byte 0.
+ * 3. Large HTTP, HTTPS, SFTP files are downloaded in parallel byte range segments, if server supports Range requests / offset reads ({protocol}.segment.count, {protocol}.segment.min.size.bytes).
+ * 4. Files unchanged since an earlier run are not downloaded again (revalidation.index.filepath). HTTP, HTTPS use conditional requests, SFTP compares size & modification time.
+ * 5. Downloads are dispatched round-robin across hosts with per host limits (download.max.connections.per.host), so a slow or large host never blocks downloads from others.
+ * 6. Bandwidth can be limited globally, per protocol and per host (throttle.config.filepath), limits are reloaded at runtime without restart.
+ * 7. Digest (digest.algorithm) of every file is computed while it is downloaded and verified against a sha256sum style manifest (digest.manifest.filepath) before file is moved to download directory.
+ * 8. Identical content downloaded from different URLs is stored once (content.store.directory.name) and published as hardlinks. Content already in store is linked without downloading again.
+ * 9. URLs are normalized (case of host, default port, whitespace), concurrent downloads of same resource share one transfer and result is linked to every requested location.
+ * 10. Optional preflight stage probes size of every file (download.preflight.enabled), downloads are started LONGEST_FIRST or SHORTEST_FIRST (download.scheduling.policy).
+ * 11. Disk space is checked before a download starts (disk.admission.enabled), space of downloads in progress is reserved so a full volume fails downloads before they start. Files of known size are preallocated (preallocation.mode).
+ * 12. Non blocking HTTP engine (http.engine=ASYNC_HTTP_CLIENT): downloads do not hold a thread while waiting on network, upto async.max.concurrent.downloads transfers are in flight on a few event loop threads.
+ * 13. Optional virtual thread execution (download.execution.mode=VIRTUAL, JDK 21+): every blocking download and segment runs on its own virtual thread, retries are scheduled on a small pool.
+ * 14. Native FTP client: logged in control connections are pooled per user@host:port (ftp.pool.max.connections.per.host), files are fetched over passive binary data connections, probed with SIZE / MDTM and resumed with REST.
+ * 15. Directory and glob URLs for SFTP / FTP (eg. sftp://host/data/**.csv): remote directories are listed in parallel, matching files are mirrored and queued for download while listing is still running, only new or changed files are fetched.
+ * 16. Priority classes and jobs: a URL may be followed by `priority=HIGH|NORMAL|LOW job=<id>` in download file, permits are shared across priority classes by weight and across jobs equally, with permits reserved for HIGH downloads and no starvation of LOW ones.
+ * 17. Per host circuit breaker and retry budget: a host failing circuit.failure.threshold attempts in a row is opened, its downloads are parked instead of retried till a single probe succeeds, and retries across all downloads are capped by retry.budget.ratio.
+ * 18. Adaptive concurrency: global and per host limits are tuned while running (AIMD on errors with latency and throughput gradients), worker pool follows global limit and limits are exported over JMX (com.kirtesh.downloadmanager:type=ConcurrencyLimiter).
+ * 19. Straggler detection: throughput of every transfer is tracked in copy loop, a HTTP / HTTPS transfer far behind median of batch is raced by a speculative attempt (rest of range from last checkpoint if byte ranges are supported, else complete stream into a side file), first to finish is kept and other one is cancelled.
+ * 20. Mirrors: a URL may be followed by `mirrors=<url>,<url>` in download file (any protocol, eg. HTTP mirror of SFTP origin), file is split in chunks of mirror.chunk.size.bytes pulled by every source in proportion to its speed, chunks of a failing source move to healthy ones.
+ * 21. Job journal: every URL queued, started, completed (with path and size) or finally failed is appended to job.journal.filepath with group commit (one fsync per batch of job.journal.group.commit.millis), next run replays it to skip completed URLs and, with job.journal.retry.failed.only, retries only dead-lettered ones.
  * 
  * 
  * 
@@ -97,6 +119,8 @@ public class DownloadManager {
 		StartUpService startUpService = RequestRoutingFactory.getStartUpServiceImpl();
 		DownloadUtils downloadUtils = RequestRoutingFactory.getDownloadUtils();
 		DownloadExecutorService downloadExecutorService = RequestRoutingFactory.getDownloadExecutorService();
+		PreflightService preflightService = RequestRoutingFactory.getPreflightServiceImpl();
+		UrlExpansionService urlExpansionService = RequestRoutingFactory.getUrlExpansionServiceImpl();
 		
 		/**
 		 * Load all properties from application.properties to JVM Cache (DMCache)
@@ -113,6 +137,27 @@ public class DownloadManager {
 		 */
 		initializeDMCacheDownloadUrls(startUpService);
 		
+		/**
+		 * Loads validators (ETag, Last-Modified, size) and local filepath of URLs downloaded in earlier runs from "revalidation.index.filepath". Unchanged files are not downloaded again.
+		 */
+		initializeRevalidationIndex(startUpService);
+		
+		/**
+		 * Replays job journal of earlier runs from "job.journal.filepath". URLs completed in an earlier run which did not finish are not downloaded again, with "job.journal.retry.failed.only" only URLs dead-lettered earlier are downloaded.
+		 * Every URL queued, started, completed or failed in this run is recorded in journal.
+		 */
+		initializeJobJournal(startUpService);
+		
+		/**
+		 * Loads bandwidth limits (global, per protocol, per host) from "throttle.config.filepath". File is re-read on change, so limits can be changed without restart.
+		 */
+		initializeBandwidthThrottle(startUpService);
+		
+		/**
+		 * Loads expected digests of files from "digest.manifest.filepath". Digest computed while downloading must match manifest before file is moved to download directory.
+		 */
+		initializeDigestManifest(startUpService);
+		
 		/**
 		 * Maps all URLs in JVM Cache -> DMCache.downloadUrl to its Metadata required to download file.
 		 * 
@@ -130,12 +175,25 @@ public class DownloadManager {
 		 */
 		Map<String, DownloadMetadata> urlToMetadataMapping = downloadUtils.downloadPreprocessing();
 		
+		/**
+		 * If "download.preflight.enabled" is true, every URL is probed in parallel (HTTP HEAD / SFTP stat) for size, byte range support & last modified time, stored in DownloadMetadata.
+		 * Sizes decide order in which downloads are started ("download.scheduling.policy") and are used for progress reporting.
+		 */
+		preflightService.probe(urlToMetadataMapping.values());
+		
 		/**
 		 * It would set task to Retry Async Scheduler. Where actual download would take place. For better optimization you can specify properties scheduled.threadpool.core.size, retry.max.retries, retry.max.delay.millis, retry.exponential.backoff.multiplier, retry.exponential.backoff.millis & {protocol}.buffer.size.
 		 * 
 		 * Note: {protocol}.buffer.size * scheduled.threadpool.core.size should never be more than memory available. For eg. If memory buffer available to system is 70 MB, & threadpool size is set to 7, than max. buffer size to any protocol should never be >10 MB. As if 7 concurrent download takes place of same protocol, Total buffer used would be 10 (Buffer for one protocol download) * 7(total threads executing) = 70 MB which is equivalent to max available buffer.
 		 */
 		downloadExecutorService.downloadUrls(urlToMetadataMapping);
+		
+		/**
+		 * SFTP / FTP URLs ending with / or containing a glob (eg. sftp://host/data/**.csv) are expanded by listing remote directories in parallel ("listing.parallelism").
+		 * Every matching file whose local copy is missing, or differs in size / is older than remote file, is queued for download as soon as it is listed.
+		 * Files are mirrored at their path relative to directory where glob starts, under "{protocol}.download.directory.path".
+		 */
+		urlExpansionService.expand(DMCache.downloadUrl, downloadExecutorService::download);
 	}
 
 	/**
@@ -158,6 +216,58 @@ public class DownloadManager {
 		}
 	}
 
+	/**
+	 * Loads validators of files downloaded in earlier runs to JVM Cache : RevalidationIndex. Run continues without revalidation if index can not be loaded, all files are downloaded again.
+	 * 
+	 * @param startUpService : StartUpServiceImpl Object.
+	 */
+	private static void initializeRevalidationIndex(StartUpService startUpService) {
+		boolean initializeIndex = startUpService.initializeRevalidationIndex();
+
+		if (!initializeIndex) {
+			logger.error("Unable to Load Revalidation Index!! All files would be downloaded again..");
+		}
+	}
+
+	/**
+	 * Replays job journal to JVM Cache : JobJournal and removes completed URLs from DMCache.downloadUrl. Run continues without journal if it can not be loaded.
+	 * 
+	 * @param startUpService : StartUpServiceImpl Object.
+	 */
+	private static void initializeJobJournal(StartUpService startUpService) {
+		boolean initializeJournal = startUpService.initializeJobJournal();
+
+		if (!initializeJournal) {
+			logger.error("Unable to Load Job Journal!! All URLs would be downloaded and this run would not be recorded..");
+		}
+	}
+
+	/**
+	 * Loads bandwidth limits to JVM Cache : BandwidthThrottle. Run continues without limits if throttle config can not be loaded, it is retried on next change of file.
+	 * 
+	 * @param startUpService : StartUpServiceImpl Object.
+	 */
+	private static void initializeBandwidthThrottle(StartUpService startUpService) {
+		boolean initializeThrottle = startUpService.initializeBandwidthThrottle();
+
+		if (!initializeThrottle) {
+			logger.error("Unable to Load Bandwidth Limits!! Downloads would not be throttled..");
+		}
+	}
+
+	/**
+	 * Loads expected digests to JVM Cache : DigestManifest. Run continues if manifest can not be loaded, digests are still computed and recorded but not verified.
+	 * 
+	 * @param startUpService : StartUpServiceImpl Object.
+	 */
+	private static void initializeDigestManifest(StartUpService startUpService) {
+		boolean initializeManifest = startUpService.initializeDigestManifest();
+
+		if (!initializeManifest) {
+			logger.error("Unable to Load Digest Manifest!! Downloaded files would not be verified..");
+		}
+	}
+
 	/**
 	 * @PreCheckValidation: It expects JVM Cache would have been populated i.e. Startup would have successfully executed initializeDMCache(startUpService).
 	 * 
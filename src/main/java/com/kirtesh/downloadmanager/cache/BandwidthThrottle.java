@@ -0,0 +1,275 @@
+package com.kirtesh.downloadmanager.cache;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import com.kirtesh.downloadmanager.enums.Protocols;
+import com.kirtesh.downloadmanager.utils.CommonUtils;
+import com.kirtesh.downloadmanager.utils.TokenBucket;
+/**
+ *
+ * @author kirteshdudawat
+ *
+ *
+ * This class acts as JVM level Cache of bandwidth limits (TokenBucket) applied on read path of every download. Limits are kept at three levels and a read must pass all of them:
+ * 1. global : Total bandwidth of all downloads.
+ * 2. protocol.{protocol} : Total bandwidth of all downloads of a protocol, eg. protocol.http=1048576
+ * 3. host.{host} : Total bandwidth of all downloads from a host, eg. host.speedtest.tele2.net=524288
+ *
+ * Limits are in bytes per second, read from throttle config file at `throttle.config.filepath`. File is re-read every `throttle.config.reload.millis` if it has changed,
+ * so bandwidth can be throttled during business hours without restarting. Limits removed from file become unlimited. Throttling is disabled if `throttle.config.filepath` is not specified.
+ *
+ * Bytes read are acquired from buckets in batches of BATCH_BYTES, so buckets are touched once per batch and not on every read.
+ *
+ */
+public class BandwidthThrottle {
+
+	final static Logger logger = Logger.getLogger(BandwidthThrottle.class);
+
+	private static final String GLOBAL_KEY = "global";
+	private static final String PROTOCOL_KEY_PREFIX = "protocol.";
+	private static final String HOST_KEY_PREFIX = "host.";
+	private static final int BATCH_BYTES = 64 * 1024;
+	private static final long DEFAULT_RELOAD_MILLIS = 5000;
+
+	private static final TokenBucket globalBucket = new TokenBucket(0);
+
+	private static final Map<Protocols, TokenBucket> protocolBucketMap = new EnumMap<>(Protocols.class);
+
+	private static final Map<String, TokenBucket> hostBucketMap = new ConcurrentHashMap<>();
+
+	private static volatile boolean enabled;
+
+	private static long configLastModifiedMillis = -1;
+
+	private static ScheduledExecutorService configReloader;
+
+	static {
+		for (Protocols protocol : Protocols.values()) {
+			protocolBucketMap.put(protocol, new TokenBucket(0));
+		}
+	}
+
+	/**
+	 * Loads limits from `throttle.config.filepath` and schedules its reload. Does nothing if property is not specified.
+	 *
+	 * @return Boolean value true / false based on if throttle config was loaded successfully or throttling is disabled.
+	 */
+	public static synchronized boolean initialize() {
+		String filePath = DMCache.getThrottleConfigFilePath();
+		if (CommonUtils.isStringNullOrEmpty(filePath)) {
+			return true;
+		}
+		Path configFile = Paths.get(filePath);
+		boolean loaded = reloadIfModified(configFile);
+		if (configReloader == null) {
+			long reloadMillis = DMCache.getThrottleConfigReloadInMillis() > 0 ? DMCache.getThrottleConfigReloadInMillis() : DEFAULT_RELOAD_MILLIS;
+			configReloader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "throttle-config-reloader");
+				thread.setDaemon(true);
+				return thread;
+			});
+			configReloader.scheduleWithFixedDelay(() -> reloadIfModified(configFile), reloadMillis, reloadMillis, TimeUnit.MILLISECONDS);
+		}
+		return loaded;
+	}
+
+	/**
+	 * Re-reads throttle config file if it changed since last load, and applies its limits to buckets. Streams already being read pick up new limits on their next batch.
+	 *
+	 * @param configFile - Throttle config file.
+	 * @return false if file exists but could not be read.
+	 */
+	public static synchronized boolean reloadIfModified(Path configFile) {
+		enabled = true;
+		try {
+			long lastModified = Files.exists(configFile) ? Files.getLastModifiedTime(configFile).toMillis() : 0;
+			if (lastModified == configLastModifiedMillis) {
+				return true;
+			}
+			Properties properties = new Properties();
+			if (lastModified != 0) {
+				try (InputStream inputStream = Files.newInputStream(configFile)) {
+					properties.load(inputStream);
+				}
+			}
+			applyLimits(properties);
+			configLastModifiedMillis = lastModified;
+			logger.info("Loaded bandwidth limits from " + configFile + " " + properties);
+			return true;
+		} catch (IOException | RuntimeException e) {
+			logger.error("Unable to load bandwidth limits from " + configFile + " " + e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Wraps stream of a download, so its reads are limited by global, protocol & host buckets. Stream is returned as is if throttling is disabled.
+	 *
+	 * @param inputStream - Stream of remote file.
+	 * @param downloadUrl - URL of file, used to find protocol & host.
+	 * @return Throttled stream.
+	 */
+	public static InputStream throttle(InputStream inputStream, String downloadUrl) {
+		if (!enabled || inputStream == null) {
+			return inputStream;
+		}
+		return new ThrottledInputStream(inputStream, getBuckets(downloadUrl));
+	}
+
+	/**
+	 * Takes bytes read by a non blocking download from global, protocol & host buckets, without blocking.
+	 *
+	 * @param downloadUrl - URL of file, used to find protocol & host.
+	 * @param bytes - Bytes read.
+	 * @return Nanoseconds download must wait before reading more, 0 if throttling is disabled or no wait is needed.
+	 */
+	public static long reserve(String downloadUrl, long bytes) {
+		if (!enabled) {
+			return 0;
+		}
+		long waitNanos = 0;
+		for (TokenBucket bucket : getBuckets(downloadUrl)) {
+			waitNanos = Math.max(waitNanos, bucket.reserve(bytes));
+		}
+		return waitNanos;
+	}
+
+	private static TokenBucket[] getBuckets(String downloadUrl) {
+		List<TokenBucket> buckets = new ArrayList<>(3);
+		buckets.add(globalBucket);
+		int schemeEnd = downloadUrl.indexOf(':');
+		if (schemeEnd > 0) {
+			try {
+				buckets.add(protocolBucketMap.get(Protocols.valueOf(downloadUrl.substring(0, schemeEnd).toUpperCase())));
+			} catch (IllegalArgumentException e) {
+				// Unknown protocol, only global and host limits apply.
+			}
+		}
+		buckets.add(getHostBucket(CommonUtils.getHost(downloadUrl)));
+		return buckets.toArray(new TokenBucket[0]);
+	}
+
+	/**
+	 * Disables throttling and removes all limits.
+	 */
+	public static synchronized void disable() {
+		applyLimits(new Properties());
+		enabled = false;
+		configLastModifiedMillis = -1;
+	}
+
+	private static TokenBucket getHostBucket(String host) {
+		return hostBucketMap.computeIfAbsent(host, key -> new TokenBucket(0));
+	}
+
+	private static void applyLimits(Properties properties) {
+		globalBucket.setBytesPerSecond(getLimit(properties, GLOBAL_KEY));
+		for (Map.Entry<Protocols, TokenBucket> entry : protocolBucketMap.entrySet()) {
+			entry.getValue().setBytesPerSecond(getLimit(properties, PROTOCOL_KEY_PREFIX + entry.getKey().name().toLowerCase()));
+		}
+		for (Map.Entry<String, TokenBucket> entry : hostBucketMap.entrySet()) {
+			entry.getValue().setBytesPerSecond(getLimit(properties, HOST_KEY_PREFIX + entry.getKey()));
+		}
+		for (String key : properties.stringPropertyNames()) {
+			if (key.startsWith(HOST_KEY_PREFIX)) {
+				getHostBucket(key.substring(HOST_KEY_PREFIX.length()).toLowerCase()).setBytesPerSecond(getLimit(properties, key));
+			}
+		}
+	}
+
+	private static long getLimit(Properties properties, String key) {
+		String value = properties.getProperty(key);
+		if (CommonUtils.isStringNullOrEmpty(value)) {
+			return 0;
+		}
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			logger.error("Ignoring invalid bandwidth limit " + key + "=" + value);
+			return 0;
+		}
+	}
+
+	/**
+	 * Stream which acquires bytes read from all its buckets, once every BATCH_BYTES and when stream is closed.
+	 */
+	private static class ThrottledInputStream extends FilterInputStream {
+
+		private final TokenBucket[] buckets;
+
+		private long unpaidBytes;
+
+		private ThrottledInputStream(InputStream inputStream, TokenBucket[] buckets) {
+			super(inputStream);
+			this.buckets = buckets;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int value = super.read();
+			if (value >= 0) {
+				consumed(1);
+			}
+			return value;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read = super.read(b, off, len);
+			if (read > 0) {
+				consumed(read);
+			} else if (read < 0) {
+				pay();
+			}
+			return read;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			consumed(skipped);
+			return skipped;
+		}
+
+		private void consumed(long bytes) throws IOException {
+			unpaidBytes += bytes;
+			if (unpaidBytes >= BATCH_BYTES) {
+				pay();
+			}
+		}
+
+		private void pay() throws IOException {
+			long bytes = unpaidBytes;
+			unpaidBytes = 0;
+			for (TokenBucket bucket : buckets) {
+				bucket.acquire(bytes);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				super.close();
+			} finally {
+				pay();
+			}
+		}
+	}
+
+}
@@ -1,11 +1,15 @@
 package com.kirtesh.downloadmanager.cache;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import com.kirtesh.downloadmanager.enums.PropertyConstants;
+import com.kirtesh.downloadmanager.metadata.DownloadOptions;
 /**
  * 
  * @author kirteshdudawat
@@ -18,6 +22,8 @@ import com.kirtesh.downloadmanager.enums.PropertyConstants;
  * DMCache has two internal Caches:
  * 1. propertyCacheMap : Its a Map(String, String) whose key is property defined in application.properties and Value is value specified against property in application.properties.
  * 2. downloadUrl : Its a Set(String) containing all urls mentioned in file download.url.filepath properties.
+ * 3. downloadUrlOptions : Its a Map(String, DownloadOptions) of url to options (priority, job) specified after it in file download.url.filepath. Urls listed without options are not present.
+ * 4. downloadUrlVariants : Its a Map(String, Set(String)) of url to distinct URLs, as listed in file download.url.filepath, which normalize to it. Every variant is saved to its own file, while url is downloaded once (see InFlightRegistry).
  * 
  *
  */
@@ -27,13 +33,49 @@ public class DMCache {
 	
 	public static Set<String> downloadUrl = new HashSet<String>();
 	
+	public static Map<String, DownloadOptions> downloadUrlOptions = new HashMap<String, DownloadOptions>();
+	
+	public static Map<String, Set<String>> downloadUrlVariants = new HashMap<String, Set<String>>();
+	
 	/**
 	 * Adds an element to DMCache.downloadUrl set.
 	 * 
 	 * @param element : URL in String to be added to downloadUrl
 	 */
 	public static void addElement(String element) {
-		downloadUrl.add(element);
+		addElement(element, element, null);
+	}
+	
+	/**
+	 * Adds an element to DMCache.downloadUrl set along with its options. If same URL is listed more than once, options of first listing are kept.
+	 * 
+	 * @param element : URL in String to be added to downloadUrl
+	 * @param options : Options specified after URL, null if there are none.
+	 */
+	public static void addElement(String element, DownloadOptions options) {
+		addElement(element, element, options);
+	}
+	
+	/**
+	 * Adds an element to DMCache.downloadUrl set along with its options, and records URL as listed among variants of element. Identical listings are kept once.
+	 * 
+	 * @param element : Normalized URL in String to be added to downloadUrl
+	 * @param listedUrl : URL as listed in file download.url.filepath, which normalizes to element.
+	 * @param options : Options specified after URL, null if there are none.
+	 */
+	public static void addElement(String element, String listedUrl, DownloadOptions options) {
+		downloadUrlVariants.computeIfAbsent(element, url -> new LinkedHashSet<String>()).add(listedUrl.trim());
+		if (downloadUrl.add(element) && options != null) {
+			downloadUrlOptions.put(element, options);
+		}
+	}
+	
+	/**
+	 * @param element : URL in downloadUrl
+	 * @return Distinct URLs, in order listed in file download.url.filepath, which normalize to element. Only element itself if no variant was recorded.
+	 */
+	public static Set<String> getUrlVariants(String element) {
+		return downloadUrlVariants.getOrDefault(element, Collections.singleton(element));
 	}
 	
 	/**
@@ -85,6 +127,265 @@ public class DMCache {
 		return DMCacheUtils.getPropertyAsBoolean(propertyCacheMap, PropertyConstants.OVERRIDE_EXISITING_FILE.getPropertyName());
 	}
 	
+	/**
+	 * @return Returns name of sub directory of {protocol}.download.directory.path where partially downloaded files are staged, i.e. return value of property `staging.directory.name` in `application.properties`
+	 */
+	public static String getStagingDirectoryName() {
+		return DMCacheUtils.getPropertyAsString(propertyCacheMap, PropertyConstants.STAGING_DIRECTORY_NAME.getPropertyName());
+	}
+	
+	/**
+	 * @return returns Integer value of bytes after which a partial download is synced to disk along with its journal, i.e. return value of property `resume.checkpoint.bytes` in `application.properties`
+	 */
+	public static int getResumeCheckpointBytes() {
+		return DMCacheUtils.getPropertyAsInteger(propertyCacheMap, PropertyConstants.RESUME_CHECKPOINT_BYTES.getPropertyName());
+	}
+	
+	/**
+	 * @return Returns policy of syncing downloaded data to disk CHECKPOINT, PUBLISH or NONE (see FsyncPolicy), i.e. return value of property `fsync.policy` in `application.properties`
+	 */
+	public static String getFsyncPolicy() {
+		return DMCacheUtils.getPropertyAsString(propertyCacheMap, PropertyConstants.FSYNC_POLICY.getPropertyName());
+	}
+	
+	/**
+	 * @return Returns way of preallocating .part file of a download of known size SPARSE, FULL or NONE (see PreallocationMode), i.e. return value of property `preallocation.mode` in `application.properties`
+	 */
+	public static String getPreallocationMode() {
+		return DMCacheUtils.getPropertyAsString(propertyCacheMap, PropertyConstants.PREALLOCATION_MODE.getPropertyName());
+	}
+	
+	/**
+	 * @return returns boolean value true or false. If true, a download is started only if its download directory has enough usable space left after space reserved by downloads in progress (see DiskSpaceAdmission), i.e. return value of property `disk.admission.enabled` in `application.properties`
+	 */
+	public static boolean isDiskAdmissionEnabled() {
+		return DMCacheUtils.getPropertyAsBoolean(propertyCacheMap, PropertyConstants.DISK_ADMISSION_ENABLED.getPropertyName());
+	}
+	
+	/**
+	 * @return returns Long value of bytes always kept free on volume of a download directory, 0 if not specified, i.e. return value of property `disk.min.free.bytes` in `application.properties`
+	 */
+	public static long getDiskMinFreeBytes() {
+		Long minFreeBytes = DMCacheUtils.getPropertyAsLong(propertyCacheMap, PropertyConstants.DISK_MIN_FREE_BYTES.getPropertyName());
+		return minFreeBytes == null ? 0 : minFreeBytes;
+	}
+	
+	/**
+	 * @return Returns filepath of index with validators of files downloaded in earlier runs (see RevalidationIndex), null disables revalidation, i.e. return value of property `revalidation.index.filepath` in `application.properties`
+	 */
+	public static String getRevalidationIndexFilePath() {
+		return DMCacheUtils.getPropertyAsString(propertyCacheMap, PropertyConstants.REVALIDATION_INDEX_FILEPATH.getPropertyName());
+	}
+	
+	/**
+	 * @return Returns filepath of bandwidth limits file (see BandwidthThrottle), null disables throttling, i.e. return value of property `throttle.config.filepath` in `application.properties`
+	 */
+	public static String getThrottleConfigFilePath() {
+		return DMCacheUtils.getPropertyAsString(propertyCacheMap, PropertyConstants.THROTTLE_CONFIG_FILEPATH.getPropertyName());
+	}
+	
+	/**
+	 * @return returns Integer value of interval at which bandwidth limits file is checked for changes, i.e. return value of property `throttle.config.reload.millis` in `application.properties`
+	 */
+	public static int getThrottleConfigReloadInMillis() {
+		return DMCacheUtils.getPropertyAsInteger(propertyCacheMap, PropertyConstants.THROTTLE_CONFIG_RELOAD_MILLIS.getPropertyName());
+	}
+	
+	/**
+	 * @return Returns algorithm of digest computed while downloading CRC32C, SHA-256 or MD5 (see DigestAlgorithm), null disables digests, i.e. return value of property `digest.algorithm` in `application.properties`
+	 */
+	public static String getDigestAlgorithm() {
+		return DMCacheUtils.getPropertyAsString(propertyCacheMap, PropertyConstants.DIGEST_ALGORITHM.getPropertyName());
+	}
+	
+	/**
+	 * @return Returns filepath of manifest with expected digests of files (see DigestManifest), i.e. return value of property `digest.manifest.filepath` in `application.properties`
+	 */
+	public static String getDigestManifestFilePath() {
+		return DMCacheUtils.getPropertyAsString(propertyCacheMap, PropertyConstants.DIGEST_MANIFEST_FILEPATH.getPropertyName());
+	}
+	
+	/**
+	 * @return Returns filepath where digests of downloaded files are appended, i.e. return value of property `digest.results.filepath` in `application.properties`
+	 */
+	public static String getDigestResultsFilePath() {
+		return DMCacheUtils.getPropertyAsString(propertyCacheMap, PropertyConstants.DIGEST_RESULTS_FILEPATH.getPropertyName());
+	}
+	
+	/**
+	 * @return Returns name of content addressable store directory created inside download directory (see ContentStoreUtils), null disables store, i.e. return value of property `content.store.directory.name` in `application.properties`
+	 */
+	public static String getContentStoreDirectoryName() {
+		return DMCacheUtils.getPropertyAsString(propertyCacheMap, PropertyConstants.CONTENT_STORE_DIRECTORY_NAME.getPropertyName());
+	}
+	
+	/**
+	 * @return returns boolean value true or false. If true, every URL is probed (HTTP HEAD / SFTP stat) for size & byte range support before downloads are scheduled, i.e. return value of property `download.preflight.enabled` in `application.properties`
+	 */
+	public static boolean isDownloadPreflightEnabled() {
+		return DMCacheUtils.getPropertyAsBoolean(propertyCacheMap, PropertyConstants.DOWNLOAD_PREFLIGHT_ENABLED.getPropertyName());
+	}
+	
+	/**
+	 * @return Returns order in which downloads are started FIFO, LONGEST_FIRST or SHORTEST_FIRST (see SchedulingPolicy), i.e. return value of property `download.scheduling.policy` in `application.properties`
+	 */
+	public static String getDownloadSchedulingPolicy() {
+		return DMCacheUtils.getPropertyAsString(propertyCacheMap, PropertyConstants.DOWNLOAD_SCHEDULING_POLICY.getPropertyName());
+	}
+	
+	/**
+	 * @return returns Integer value for number of remote directories listed in parallel while expanding directory / glob URLs, i.e. return value of property `listing.parallelism` in `application.properties`
+	 */
+	public static int getListingParallelism() {
+		return DMCacheUtils.getPropertyAsInteger(propertyCacheMap, PropertyConstants.LISTING_PARALLELISM.getPropertyName());
+	}
+	
+	/**
+	 * @return returns Map of priority class (HIGH, NORMAL, LOW) to its share of permits, i.e. return value of property `download.priority.weights` in `application.properties`
+	 */
+	public static Map<String, Integer> getDownloadPriorityWeights() {
+		return DMCacheUtils.getPropertyAsIntegerMap(propertyCacheMap, PropertyConstants.DOWNLOAD_PRIORITY_WEIGHTS.getPropertyName());
+	}
+	
+	/**
+	 * @return returns Integer value for number of global permits only HIGH priority downloads may use, i.e. return value of property `download.priority.reserved.permits` in `application.properties`
+	 */
+	public static int getDownloadPriorityReservedPermits() {
+		return DMCacheUtils.getPropertyAsInteger(propertyCacheMap, PropertyConstants.DOWNLOAD_PRIORITY_RESERVED_PERMITS.getPropertyName());
+	}
+	
+	/**
+	 * @return returns boolean value true or false. If true, download concurrency is tuned while running (see AdaptiveConcurrencyLimiter), i.e. return value of property `concurrency.adaptive.enabled` in `application.properties`
+	 */
+	public static boolean isConcurrencyAdaptiveEnabled() {
+		return DMCacheUtils.getPropertyAsBoolean(propertyCacheMap, PropertyConstants.CONCURRENCY_ADAPTIVE_ENABLED.getPropertyName());
+	}
+	
+	/**
+	 * @return returns Integer value for lower bound of adaptive global concurrency limit, i.e. return value of property `concurrency.adaptive.min.limit` in `application.properties`
+	 */
+	public static int getConcurrencyAdaptiveMinLimit() {
+		return DMCacheUtils.getPropertyAsInteger(propertyCacheMap, PropertyConstants.CONCURRENCY_ADAPTIVE_MIN_LIMIT.getPropertyName());
+	}
+	
+	/**
+	 * @return returns Integer value for upper bound of adaptive global concurrency limit, i.e. return value of property `concurrency.adaptive.max.limit` in `application.properties`
+	 */
+	public static int getConcurrencyAdaptiveMaxLimit() {
+		return DMCacheUtils.getPropertyAsInteger(propertyCacheMap, PropertyConstants.CONCURRENCY_ADAPTIVE_MAX_LIMIT.getPropertyName());
+	}
+	
+	/**
+	 * @return returns Long value for millis between adjustments of adaptive concurrency limits, i.e. return value of property `concurrency.adaptive.window.millis` in `application.properties`
+	 */
+	public static long getConcurrencyAdaptiveWindowMillis() {
+		Long windowMillis = DMCacheUtils.getPropertyAsLong(propertyCacheMap, PropertyConstants.CONCURRENCY_ADAPTIVE_WINDOW_MILLIS.getPropertyName());
+		return windowMillis == null ? 0 : windowMillis;
+	}
+	
+	/**
+	 * @return returns Double value for multiple of long term latency above which adaptive concurrency limits are cut, i.e. return value of property `concurrency.adaptive.latency.tolerance` in `application.properties`
+	 */
+	public static double getConcurrencyAdaptiveLatencyTolerance() {
+		Double tolerance = DMCacheUtils.getPropertyAsDouble(propertyCacheMap, PropertyConstants.CONCURRENCY_ADAPTIVE_LATENCY_TOLERANCE.getPropertyName());
+		return tolerance == null ? 0 : tolerance;
+	}
+	
+	/**
+	 * @return returns Long value for millis between checks of running transfers for stragglers, 0 if not specified (detection disabled), i.e. return value of property `straggler.check.interval.millis` in `application.properties`
+	 */
+	public static long getStragglerCheckIntervalMillis() {
+		Long intervalMillis = DMCacheUtils.getPropertyAsLong(propertyCacheMap, PropertyConstants.STRAGGLER_CHECK_INTERVAL_MILLIS.getPropertyName());
+		return intervalMillis == null ? 0 : intervalMillis;
+	}
+	
+	/**
+	 * @return returns Double value for fraction of median throughput below which a transfer is a straggler, i.e. return value of property `straggler.slowness.ratio` in `application.properties`
+	 */
+	public static double getStragglerSlownessRatio() {
+		Double ratio = DMCacheUtils.getPropertyAsDouble(propertyCacheMap, PropertyConstants.STRAGGLER_SLOWNESS_RATIO.getPropertyName());
+		return ratio == null ? 0 : ratio;
+	}
+	
+	/**
+	 * @return returns Long value for millis a transfer must run before it can be a straggler, i.e. return value of property `straggler.min.age.millis` in `application.properties`
+	 */
+	public static long getStragglerMinAgeMillis() {
+		Long minAgeMillis = DMCacheUtils.getPropertyAsLong(propertyCacheMap, PropertyConstants.STRAGGLER_MIN_AGE_MILLIS.getPropertyName());
+		return minAgeMillis == null ? 0 : minAgeMillis;
+	}
+	
+	/**
+	 * @return returns Integer value for minimum throughput samples needed to take median of batch, i.e. return value of property `straggler.min.transfers` in `application.properties`
+	 */
+	public static int getStragglerMinTransfers() {
+		return DMCacheUtils.getPropertyAsInteger(propertyCacheMap, PropertyConstants.STRAGGLER_MIN_TRANSFERS.getPropertyName());
+	}
+	
+	/**
+	 * @return returns Integer value for size of chunks in which a file with mirrors is pulled from its sources, i.e. return value of property `mirror.chunk.size.bytes` in `application.properties`
+	 */
+	public static int getMirrorChunkSizeBytes() {
+		return DMCacheUtils.getPropertyAsInteger(propertyCacheMap, PropertyConstants.MIRROR_CHUNK_SIZE_BYTES.getPropertyName());
+	}
+	
+	/**
+	 * @return returns Integer value for parallel connections to every source of a file with mirrors, i.e. return value of property `mirror.connections.per.source` in `application.properties`
+	 */
+	public static int getMirrorConnectionsPerSource() {
+		return DMCacheUtils.getPropertyAsInteger(propertyCacheMap, PropertyConstants.MIRROR_CONNECTIONS_PER_SOURCE.getPropertyName());
+	}
+	
+	/**
+	 * @return returns Integer value for failures in a row after which a source is no longer used for a file, i.e. return value of property `mirror.max.failures` in `application.properties`
+	 */
+	public static int getMirrorMaxFailures() {
+		return DMCacheUtils.getPropertyAsInteger(propertyCacheMap, PropertyConstants.MIRROR_MAX_FAILURES.getPropertyName());
+	}
+	
+	/**
+	 * @return Returns filepath of write-ahead journal of download states (see JobJournal), null disables journal, i.e. return value of property `job.journal.filepath` in `application.properties`
+	 */
+	public static String getJobJournalFilePath() {
+		return DMCacheUtils.getPropertyAsString(propertyCacheMap, PropertyConstants.JOB_JOURNAL_FILEPATH.getPropertyName());
+	}
+	
+	/**
+	 * @return returns Long value for millis for which job journal records are collected before being written with a single fsync, 0 if not specified, i.e. return value of property `job.journal.group.commit.millis` in `application.properties`
+	 */
+	public static long getJobJournalGroupCommitMillis() {
+		Long groupCommitMillis = DMCacheUtils.getPropertyAsLong(propertyCacheMap, PropertyConstants.JOB_JOURNAL_GROUP_COMMIT_MILLIS.getPropertyName());
+		return groupCommitMillis == null ? 0 : groupCommitMillis;
+	}
+	
+	/**
+	 * @return returns boolean value true or false. If true, only URLs dead-lettered in job journal by an earlier run are downloaded, i.e. return value of property `job.journal.retry.failed.only` in `application.properties`
+	 */
+	public static boolean isJobJournalRetryFailedOnly() {
+		return DMCacheUtils.getPropertyAsBoolean(propertyCacheMap, PropertyConstants.JOB_JOURNAL_RETRY_FAILED_ONLY.getPropertyName());
+	}
+	
+	/**
+	 * @return Returns client implementation used for HTTP, HTTPS file download, i.e. return value of property `http.engine` in `application.properties`
+	 */
+	public static String getHttpEngine() {
+		return DMCacheUtils.getPropertyAsString(propertyCacheMap, PropertyConstants.HTTP_ENGINE.getPropertyName());
+	}
+	
+	/**
+	 * @return returns Integer value of maximum downloads in flight with non blocking http.engine ASYNC_HTTP_CLIENT or download.execution.mode VIRTUAL, i.e. return value of property `async.max.concurrent.downloads` in `application.properties`
+	 */
+	public static int getAsyncMaxConcurrentDownloads() {
+		return DMCacheUtils.getPropertyAsInteger(propertyCacheMap, PropertyConstants.ASYNC_MAX_CONCURRENT_DOWNLOADS.getPropertyName());
+	}
+	
+	/**
+	 * @return returns Integer value of threads running callbacks of non blocking http.engine ASYNC_HTTP_CLIENT, 0 if not specified, i.e. return value of property `async.event.loop.threads` in `application.properties`
+	 */
+	public static int getAsyncEventLoopThreads() {
+		return DMCacheUtils.getPropertyAsInteger(propertyCacheMap, PropertyConstants.ASYNC_EVENT_LOOP_THREADS.getPropertyName());
+	}
+	
 	/**
 	 * @return returns Integer value for setting connection timeout in HTTP file download, i.e. return value of property `http.connection.timeout.millis` in `application.properties`
 	 */
@@ -148,6 +449,76 @@ public class DMCache {
 		return DMCacheUtils.getPropertyAsInteger(propertyCacheMap, PropertyConstants.FTP_BUFFER_SIZE.getPropertyName());
 	}
 	
+	/**
+	 * @return returns Integer value for maximum number of parallel byte range segments in HTTP file download, i.e. return value of property `http.segment.count` in `application.properties`
+	 */
+	public static int getHttpSegmentCount() {
+		return DMCacheUtils.getPropertyAsInteger(propertyCacheMap, PropertyConstants.HTTP_SEGMENT_COUNT.getPropertyName());
+	}
+
+	/**
+	 * @return returns Integer value for maximum number of parallel byte range segments in HTTPS file download, i.e. return value of property `https.segment.count` in `application.properties`
+	 */
+	public static int getHttpsSegmentCount() {
+		return DMCacheUtils.getPropertyAsInteger(propertyCacheMap, PropertyConstants.HTTPS_SEGMENT_COUNT.getPropertyName());
+	}
+
+	/**
+	 * @return returns Integer value for minimum size in bytes of a single byte range segment in HTTP file download, i.e. return value of property `http.segment.min.size.bytes` in `application.properties`
+	 */
+	public static int getHttpSegmentMinSize() {
+		return DMCacheUtils.getPropertyAsInteger(propertyCacheMap, PropertyConstants.HTTP_SEGMENT_MIN_SIZE_BYTES.getPropertyName());
+	}
+
+	/**
+	 * @return returns Integer value for minimum size in bytes of a single byte range segment in HTTPS file download, i.e. return value of property `https.segment.min.size.bytes` in `application.properties`
+	 */
+	public static int getHttpsSegmentMinSize() {
+		return DMCacheUtils.getPropertyAsInteger(propertyCacheMap, PropertyConstants.HTTPS_SEGMENT_MIN_SIZE_BYTES.getPropertyName());
+	}
+
+	/**
+	 * @return returns Integer value for maximum number of parallel channels / offset ranges in SFTP file download, i.e. return value of property `sftp.segment.count` in `application.properties`
+	 */
+	public static int getSftpSegmentCount() {
+		return DMCacheUtils.getPropertyAsInteger(propertyCacheMap, PropertyConstants.SFTP_SEGMENT_COUNT.getPropertyName());
+	}
+
+	/**
+	 * @return returns Integer value for minimum size in bytes of a single offset range in SFTP file download, i.e. return value of property `sftp.segment.min.size.bytes` in `application.properties`
+	 */
+	public static int getSftpSegmentMinSize() {
+		return DMCacheUtils.getPropertyAsInteger(propertyCacheMap, PropertyConstants.SFTP_SEGMENT_MIN_SIZE_BYTES.getPropertyName());
+	}
+	
+	/**
+	 * @return Returns way of copying downloaded bytes to local file in HTTP file download, i.e. return value of property `http.transfer.mode` in `application.properties`
+	 */
+	public static String getHttpTransferMode() {
+		return DMCacheUtils.getPropertyAsString(propertyCacheMap, PropertyConstants.HTTP_TRANSFER_MODE.getPropertyName());
+	}
+	
+	/**
+	 * @return Returns way of copying downloaded bytes to local file in HTTPS file download, i.e. return value of property `https.transfer.mode` in `application.properties`
+	 */
+	public static String getHttpsTransferMode() {
+		return DMCacheUtils.getPropertyAsString(propertyCacheMap, PropertyConstants.HTTPS_TRANSFER_MODE.getPropertyName());
+	}
+	
+	/**
+	 * @return Returns way of copying downloaded bytes to local file in FTP file download, i.e. return value of property `ftp.transfer.mode` in `application.properties`
+	 */
+	public static String getFtpTransferMode() {
+		return DMCacheUtils.getPropertyAsString(propertyCacheMap, PropertyConstants.FTP_TRANSFER_MODE.getPropertyName());
+	}
+	
+	/**
+	 * @return Returns way of copying downloaded bytes to local file in SFTP file download, i.e. return value of property `sftp.transfer.mode` in `application.properties`
+	 */
+	public static String getSftpTransferMode() {
+		return DMCacheUtils.getPropertyAsString(propertyCacheMap, PropertyConstants.SFTP_TRANSFER_MODE.getPropertyName());
+	}
+	
 	/**
 	 * @return returns Integer value for setting retry back off time while file download, i.e. return value of property `retry.exponential.backoff.millis` in `application.properties`
 	 */
@@ -176,12 +547,63 @@ public class DMCache {
 		return DMCacheUtils.getPropertyAsInteger(propertyCacheMap, PropertyConstants.RETRY_MAX_RETRIES.getPropertyName());
 	}
 	
+	/**
+	 * @return returns Double value for retries allowed per first attempt across all downloads, 0 if not specified (no budget), i.e. return value of property `retry.budget.ratio` in `application.properties`
+	 */
+	public static double getRetryBudgetRatio() {
+		Double ratio = DMCacheUtils.getPropertyAsDouble(propertyCacheMap, PropertyConstants.RETRY_BUDGET_RATIO.getPropertyName());
+		return ratio == null ? 0 : ratio;
+	}
+	
+	/**
+	 * @return returns Integer value for retries allowed in a burst before retry.budget.ratio applies, i.e. return value of property `retry.budget.burst` in `application.properties`
+	 */
+	public static int getRetryBudgetBurst() {
+		return DMCacheUtils.getPropertyAsInteger(propertyCacheMap, PropertyConstants.RETRY_BUDGET_BURST.getPropertyName());
+	}
+	
+	/**
+	 * @return returns Integer value for failed attempts in a row after which circuit of a host is opened, 0 if not specified (no circuit breaker), i.e. return value of property `circuit.failure.threshold` in `application.properties`
+	 */
+	public static int getCircuitFailureThreshold() {
+		return DMCacheUtils.getPropertyAsInteger(propertyCacheMap, PropertyConstants.CIRCUIT_FAILURE_THRESHOLD.getPropertyName());
+	}
+	
+	/**
+	 * @return returns Long value for millis circuit of a host stays open before a probe download is attempted, i.e. return value of property `circuit.open.millis` in `application.properties`
+	 */
+	public static long getCircuitOpenMillis() {
+		Long openMillis = DMCacheUtils.getPropertyAsLong(propertyCacheMap, PropertyConstants.CIRCUIT_OPEN_MILLIS.getPropertyName());
+		return openMillis == null ? 0 : openMillis;
+	}
+	
 	/**
 	 * @return returns Integer value for core thread pool size for Executor while file downloading, i.e. return value of property `scheduled.threadpool.core.size` in `application.properties`
 	 */
 	public static int getScheduledThreadpoolCoreSize() {
 		return DMCacheUtils.getPropertyAsInteger(propertyCacheMap, PropertyConstants.SCHEDULED_THREADPOOL_CORE_SIZE.getPropertyName());
 	}
+	
+	/**
+	 * @return Returns thread model PLATFORM or VIRTUAL for running blocking downloads (see ExecutionMode), i.e. return value of property `download.execution.mode` in `application.properties`
+	 */
+	public static String getDownloadExecutionMode() {
+		return DMCacheUtils.getPropertyAsString(propertyCacheMap, PropertyConstants.DOWNLOAD_EXECUTION_MODE.getPropertyName());
+	}
+	
+	/**
+	 * @return returns Integer value for maximum concurrent downloads from a single host, i.e. return value of property `download.max.connections.per.host` in `application.properties`
+	 */
+	public static int getDownloadMaxConnectionsPerHost() {
+		return DMCacheUtils.getPropertyAsInteger(propertyCacheMap, PropertyConstants.DOWNLOAD_MAX_CONNECTIONS_PER_HOST.getPropertyName());
+	}
+	
+	/**
+	 * @return returns Map of host to maximum concurrent downloads from that host, overriding download.max.connections.per.host, i.e. return value of property `download.max.connections.per.host.overrides` in `application.properties`
+	 */
+	public static Map<String, Integer> getDownloadMaxConnectionsPerHostOverrides() {
+		return DMCacheUtils.getPropertyAsIntegerMap(propertyCacheMap, PropertyConstants.DOWNLOAD_MAX_CONNECTIONS_PER_HOST_OVERRIDES.getPropertyName());
+	}
 
 	/**
 	 * @return returns Integer value for Channel timeout SFTP file downloading, i.e. return value of property `sftp.channel.timeout.millis` in `application.properties`
@@ -210,6 +632,41 @@ public class DMCache {
 	public static int getSftpDefultPort() {
 		return DMCacheUtils.getPropertyAsInteger(propertyCacheMap, PropertyConstants.SFTP_DEFAULT_PORT.getPropertyName());
 	}
+	
+	/**
+	 * @return returns Integer value for maximum SFTP sessions pooled per user@host:port, i.e. return value of property `sftp.pool.max.sessions.per.host` in `application.properties`
+	 */
+	public static int getSftpPoolMaxSessionsPerHost() {
+		return DMCacheUtils.getPropertyAsInteger(propertyCacheMap, PropertyConstants.SFTP_POOL_MAX_SESSIONS_PER_HOST.getPropertyName());
+	}
+	
+	/**
+	 * @return returns Integer value for maximum SFTP channels opened concurrently on a pooled session, i.e. return value of property `sftp.pool.max.channels.per.session` in `application.properties`
+	 */
+	public static int getSftpPoolMaxChannelsPerSession() {
+		return DMCacheUtils.getPropertyAsInteger(propertyCacheMap, PropertyConstants.SFTP_POOL_MAX_CHANNELS_PER_SESSION.getPropertyName());
+	}
+	
+	/**
+	 * @return returns Integer value of time after which an unused pooled SFTP session is disconnected, i.e. return value of property `sftp.pool.idle.timeout.millis` in `application.properties`
+	 */
+	public static int getSftpPoolIdleTimeoutInMillis() {
+		return DMCacheUtils.getPropertyAsInteger(propertyCacheMap, PropertyConstants.SFTP_POOL_IDLE_TIMEOUT_MILLIS.getPropertyName());
+	}
+	
+	/**
+	 * @return returns Integer value for maximum FTP control connections pooled per user@host:port, i.e. return value of property `ftp.pool.max.connections.per.host` in `application.properties`
+	 */
+	public static int getFtpPoolMaxConnectionsPerHost() {
+		return DMCacheUtils.getPropertyAsInteger(propertyCacheMap, PropertyConstants.FTP_POOL_MAX_CONNECTIONS_PER_HOST.getPropertyName());
+	}
+	
+	/**
+	 * @return returns Integer value of time after which an unused pooled FTP connection is closed, i.e. return value of property `ftp.pool.idle.timeout.millis` in `application.properties`
+	 */
+	public static int getFtpPoolIdleTimeoutInMillis() {
+		return DMCacheUtils.getPropertyAsInteger(propertyCacheMap, PropertyConstants.FTP_POOL_IDLE_TIMEOUT_MILLIS.getPropertyName());
+	}
 
 	/**
 	 * Adds an element to DMCache.propertyCacheMap map.
@@ -54,6 +54,33 @@ public class DMCacheUtils {
 		return propertyMap;
 	}
 
+	/**
+	 * 
+	 * Return Map(String, Integer) generated from String value of format key1:value1,key2:value2 against required property. Key is split at last ':', so keys may contain ':' themselves.
+	 * 
+	 * @param properties : HashMap containing map of properties and its values from application.properties. (Same as DMCache.propertyCacheMap)
+	 * @param name : Name of property whose value is required
+	 * @return : Value saved against Key @param name in @param properties after converting it into Map from String. Malformed entries are ignored.
+	 */
+	public static Map<String, Integer> getPropertyAsIntegerMap(Map<String, String> properties, String name) {
+		Map<String, Integer> propertyMap = new HashMap<String, Integer>();
+		String propertiesString = properties.get(name.trim());
+		if (CommonUtils.isStringNullOrEmpty(propertiesString)) {
+			return propertyMap;
+		}
+		for (String property : propertiesString.split(",")) {
+			int separator = property.lastIndexOf(':');
+			try {
+				propertyMap.put(property.substring(0, separator).trim(), Integer.valueOf(property.substring(separator + 1).trim()));
+			} catch (Exception e) {
+				StringBuffer sb = new StringBuffer().append("Exception occured in getPropertyAsIntegerMap while converting ").append(property)
+						.append(" of ").append(name).append(" to Integer..");
+				logger.error(sb.toString());
+			}
+		}
+		return propertyMap;
+	}
+
 	/**
 	 * 
 	 * Returns desired value in Boolean format.
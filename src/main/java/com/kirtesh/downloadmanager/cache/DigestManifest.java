@@ -0,0 +1,167 @@
+package com.kirtesh.downloadmanager.cache;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.log4j.Logger;
+
+import com.kirtesh.downloadmanager.enums.DigestAlgorithm;
+import com.kirtesh.downloadmanager.metadata.DownloadMetadata;
+import com.kirtesh.downloadmanager.utils.CommonUtils;
+import com.kirtesh.downloadmanager.utils.StagingUtils;
+import com.kirtesh.downloadmanager.utils.StreamingDigest;
+/**
+ *
+ * @author kirteshdudawat
+ *
+ *
+ * This class acts as JVM level Cache of expected digests of files to be downloaded, loaded at Startup from manifest at `digest.manifest.filepath`.
+ * Manifest has same format as output of sha256sum / md5sum i.e. one `{hex digest}  {name}` per line, where name is either complete URL or file name in URL.
+ *
+ * Digest of every download is computed inline (StreamingDigest) with algorithm `digest.algorithm`, verified against manifest before file is published,
+ * stored in DownloadMetadata and appended to results file `digest.results.filepath` as `{hex digest}  {location}`, which can be checked again with sha256sum -c.
+ *
+ * A mismatch discards staged data and fails download with IOException, so it goes through retry like any other failed download.
+ *
+ */
+public class DigestManifest {
+
+	final static Logger logger = Logger.getLogger(DigestManifest.class);
+
+	private static final String BINARY_MODE_MARKER = "*";
+	private static final String RESULT_SEPARATOR = "  ";
+
+	public static Map<String, String> expectedDigestMap = new ConcurrentHashMap<String, String>();
+
+	private static final ReentrantLock resultsLock = new ReentrantLock();
+
+	/**
+	 * Loads manifest from `digest.manifest.filepath`. Does nothing if property is not specified.
+	 *
+	 * @return Boolean value true / false based on if manifest was loaded successfully or is not configured.
+	 */
+	public static boolean initialize() {
+		String filePath = DMCache.getDigestManifestFilePath();
+		if (CommonUtils.isStringNullOrEmpty(filePath)) {
+			return true;
+		}
+		return initialize(Paths.get(filePath));
+	}
+
+	/**
+	 * Loads manifest from file, replacing digests loaded earlier.
+	 *
+	 * @param manifestFile - Manifest in sha256sum format.
+	 * @return Boolean value true / false based on if manifest was loaded successfully.
+	 */
+	public static boolean initialize(Path manifestFile) {
+		expectedDigestMap.clear();
+		try {
+			List<String> lines = Files.readAllLines(manifestFile, StandardCharsets.UTF_8);
+			for (String line : lines) {
+				String[] tokens = line.trim().split("\\s+", 2);
+				if (tokens.length != 2 || line.trim().startsWith("#")) {
+					continue;
+				}
+				String name = tokens[1].startsWith(BINARY_MODE_MARKER) ? tokens[1].substring(1) : tokens[1];
+				expectedDigestMap.put(name.trim(), tokens[0].toLowerCase());
+			}
+			logger.info("Loaded " + expectedDigestMap.size() + " digests from manifest " + manifestFile);
+			return true;
+		} catch (IOException e) {
+			logger.error("Unable to load digest manifest " + manifestFile + " " + e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * @param downloadUrl - URL of file.
+	 * @return Expected digest in lower case hex, looked up by URL and then by file name in URL. null if manifest has no entry.
+	 */
+	public static String getExpectedDigest(String downloadUrl) {
+		String expectedDigest = expectedDigestMap.get(downloadUrl);
+		if (expectedDigest == null) {
+			expectedDigest = expectedDigestMap.get(downloadUrl.substring(downloadUrl.lastIndexOf('/') + 1));
+		}
+		return expectedDigest;
+	}
+
+	/**
+	 * @return StreamingDigest for algorithm `digest.algorithm`, null if digests are not enabled.
+	 */
+	public static StreamingDigest newStreamingDigest() {
+		DigestAlgorithm algorithm = DigestAlgorithm.fromProperty(DMCache.getDigestAlgorithm());
+		return algorithm == null ? null : new StreamingDigest(algorithm);
+	}
+
+	/**
+	 * Completes digest of staged .part file and verifies it against manifest. On success digest is set to downloadMetadata and appended to results file.
+	 *
+	 * @param downloadMetadata - Metadata of file being downloaded.
+	 * @param streamingDigest - Digest computed while downloading, nothing is done if null.
+	 * @throws DigestMismatchException if digest does not match manifest, staged data is discarded in that case.
+	 * @throws IOException if staged file could not be read.
+	 */
+	public static void verify(DownloadMetadata downloadMetadata, StreamingDigest streamingDigest) throws IOException {
+		if (streamingDigest == null) {
+			return;
+		}
+		String location = downloadMetadata.getFilePath();
+		String digest = streamingDigest.finish(StagingUtils.getPartFile(location));
+		String expectedDigest = getExpectedDigest(downloadMetadata.getDownloadUrl());
+		if (expectedDigest != null && !expectedDigest.equals(digest)) {
+			StagingUtils.discard(location);
+			throw new DigestMismatchException(streamingDigest.getAlgorithm().getDigestAlgorithm() + " mismatch for "
+					+ downloadMetadata.getDownloadUrl() + ", expected " + expectedDigest + " got " + digest);
+		}
+		downloadMetadata.setDigest(digest);
+		recordResult(digest, location);
+	}
+
+	/**
+	 * Thrown when digest of downloaded file does not match manifest. Being an IOException, download is retried by RetryExecutor.
+	 */
+	public static class DigestMismatchException extends IOException {
+
+		private static final long serialVersionUID = 1L;
+
+		public DigestMismatchException(String message) {
+			super(message);
+		}
+	}
+
+	/**
+	 * Appends `{hex digest}  {location}` to results file `digest.results.filepath`, if specified.
+	 *
+	 * @param digest - Digest of file in lower case hex.
+	 * @param location - Path of file on local disk.
+	 */
+	public static void recordResult(String digest, String location) {
+		String filePath = DMCache.getDigestResultsFilePath();
+		if (CommonUtils.isStringNullOrEmpty(filePath)) {
+			return;
+		}
+		resultsLock.lock();
+		try {
+			try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(filePath), StandardCharsets.UTF_8,
+					StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+				writer.write(digest + RESULT_SEPARATOR + location);
+				writer.newLine();
+			} catch (IOException e) {
+				logger.error("Unable to record digest of " + location + " in " + filePath + " " + e.getMessage());
+			}
+		} finally {
+			resultsLock.unlock();
+		}
+	}
+
+}
@@ -0,0 +1,160 @@
+package com.kirtesh.downloadmanager.cache;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.log4j.Logger;
+/**
+ *
+ * @author kirteshdudawat
+ *
+ *
+ * This class acts as JVM level Cache of disk space reserved by downloads in progress, per FileStore (volume) of download directories.
+ *
+ * Before a download of known size starts writing, bytes it still has to write are reserved on FileStore of its location. Download is admitted only if
+ * FileStore.getUsableSpace() minus bytes reserved by other downloads still leaves `disk.min.free.bytes` free. Otherwise it fails with InsufficientDiskSpaceException
+ * before any data is downloaded. Being an IOException, download is deferred by RetryExecutor backoff and rejected once retries are exhausted.
+ * Reservation of a download with journal shrinks at every checkpoint to bytes not yet written (StagingUtils.setReservation), and to nothing once .part file is
+ * preallocated by preallocation.mode FULL, as written & allocated bytes are already accounted in usable space of FileStore. Reservation is released once download stops.
+ *
+ * Admission control is enabled by property `disk.admission.enabled`. Downloads of unknown size are always admitted.
+ * Note: Downloads without journal (no byte range support) keep their complete reservation till they stop, i.e. admission is conservative for them.
+ *
+ */
+public class DiskSpaceAdmission {
+
+	final static Logger logger = Logger.getLogger(DiskSpaceAdmission.class);
+
+	private static final ReentrantLock lock = new ReentrantLock();
+
+	private static final Map<FileStore, Long> reservedBytesMap = new HashMap<>();
+
+	/**
+	 * Reserves space for bytes still to be written by download at location.
+	 *
+	 * @param location - Final path of file on local disk, its parent directory must exist.
+	 * @param bytes - Bytes still to be written, value less than 1 (unknown size) is always admitted without reservation.
+	 * @return Reservation to be released once download stops.
+	 * @throws InsufficientDiskSpaceException if FileStore of location can not fit bytes.
+	 * @throws IOException if FileStore of location could not be read.
+	 */
+	public static Reservation reserve(String location, long bytes) throws IOException {
+		if (!DMCache.isDiskAdmissionEnabled() || bytes <= 0) {
+			return new Reservation(null, 0);
+		}
+		Path directory = Paths.get(location).toAbsolutePath().getParent();
+		FileStore fileStore = Files.getFileStore(directory);
+		long minFreeBytes = Math.max(0, DMCache.getDiskMinFreeBytes());
+		lock.lock();
+		try {
+			long reservedBytes = reservedBytesMap.getOrDefault(fileStore, 0L);
+			long availableBytes = fileStore.getUsableSpace() - reservedBytes - minFreeBytes;
+			if (bytes > availableBytes) {
+				throw new InsufficientDiskSpaceException("Not enough space on " + fileStore + " for " + location + ", needs " + bytes
+						+ " bytes, " + Math.max(0, availableBytes) + " bytes available after " + reservedBytes + " bytes reserved by downloads in progress");
+			}
+			reservedBytesMap.put(fileStore, reservedBytes + bytes);
+		} finally {
+			lock.unlock();
+		}
+		return new Reservation(fileStore, bytes);
+	}
+
+	/**
+	 * @param location - Final path of file on local disk.
+	 * @return Bytes reserved by downloads in progress on FileStore of location.
+	 * @throws IOException if FileStore of location could not be read.
+	 */
+	public static long getReservedBytes(String location) throws IOException {
+		FileStore fileStore = Files.getFileStore(Paths.get(location).toAbsolutePath().getParent());
+		lock.lock();
+		try {
+			return reservedBytesMap.getOrDefault(fileStore, 0L);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private static void release(FileStore fileStore, long bytes) {
+		lock.lock();
+		try {
+			long reservedBytes = reservedBytesMap.getOrDefault(fileStore, 0L) - bytes;
+			if (reservedBytes <= 0) {
+				reservedBytesMap.remove(fileStore);
+			} else {
+				reservedBytesMap.put(fileStore, reservedBytes);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Space reserved by a single download. It only shrinks as download writes, releasing it more than once has no effect.
+	 */
+	public static class Reservation implements AutoCloseable {
+
+		private final FileStore fileStore;
+
+		private final AtomicLong bytes;
+
+		private Reservation(FileStore fileStore, long bytes) {
+			this.fileStore = fileStore;
+			this.bytes = new AtomicLong(bytes);
+		}
+
+		/**
+		 * @return Bytes still reserved.
+		 */
+		public long getBytes() {
+			return bytes.get();
+		}
+
+		/**
+		 * Shrinks reservation to bytes download still has to write. Reservation never grows.
+		 *
+		 * @param remainingBytes - Bytes download still has to write.
+		 */
+		public void shrink(long remainingBytes) {
+			long target = Math.max(0, remainingBytes);
+			long current;
+			do {
+				current = bytes.get();
+				if (target >= current) {
+					return;
+				}
+			} while (!bytes.compareAndSet(current, target));
+			if (fileStore != null) {
+				release(fileStore, current - target);
+			}
+		}
+
+		@Override
+		public void close() {
+			long released = bytes.getAndSet(0);
+			if (fileStore != null && released > 0) {
+				release(fileStore, released);
+			}
+		}
+	}
+
+	/**
+	 * Thrown when a download can not fit on FileStore of its location.
+	 */
+	public static class InsufficientDiskSpaceException extends IOException {
+
+		private static final long serialVersionUID = 1L;
+
+		public InsufficientDiskSpaceException(String message) {
+			super(message);
+		}
+	}
+
+}
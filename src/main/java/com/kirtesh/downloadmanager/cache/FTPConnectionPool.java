@@ -0,0 +1,322 @@
+package com.kirtesh.downloadmanager.cache;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.log4j.Logger;
+
+import com.kirtesh.downloadmanager.utils.FTPConnection;
+/**
+ *
+ * @author kirteshdudawat
+ *
+ *
+ * This class acts as JVM level pool of logged in FTP control connections, keyed by user@host:port. Many files from one server reuse a few logins
+ * instead of connecting and logging in again for every file.
+ *
+ * Pool is bounded by:
+ * 1. `ftp.pool.max.connections.per.host` : Maximum control connections opened to same user@host:port. Callers wait (up to connect timeout) for a free connection if all are leased.
+ * 2. `ftp.pool.idle.timeout.millis` : Connections not leased for this time are closed by a background evictor.
+ *
+ * A control connection carries one transfer at a time, so a connection is leased to a single download. Connection idle for more than VALIDATION_INTERVAL_MILLIS
+ * is health checked with NOOP before reuse, broken connections are dropped from pool.
+ *
+ * Every connection acquired must be released via release(connection, reusable), in finally block.
+ *
+ */
+public class FTPConnectionPool {
+
+	final static Logger logger = Logger.getLogger(FTPConnectionPool.class);
+
+	private static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 2;
+	private static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 60000;
+	private static final long MIN_EVICTION_INTERVAL_MILLIS = 1000;
+	private static final long VALIDATION_INTERVAL_MILLIS = 5000;
+
+	private static final ReentrantLock lock = new ReentrantLock();
+
+	private static final Condition connectionReleased = lock.newCondition();
+
+	private static final Map<String, Deque<PooledConnection>> idleConnectionMap = new HashMap<>();
+
+	private static final Map<String, Integer> openConnectionMap = new HashMap<>();
+
+	private static final Map<FTPConnection, PooledConnection> leasedConnectionMap = new IdentityHashMap<>();
+
+	private static ScheduledExecutorService idleConnectionEvictor;
+
+	/**
+	 * Logged in connection along with its pool key and time it was last released.
+	 */
+	private static class PooledConnection {
+
+		private final String key;
+
+		private final FTPConnection connection;
+
+		private long lastUsedMillis = System.currentTimeMillis();
+
+		private PooledConnection(String key, FTPConnection connection) {
+			this.key = key;
+			this.connection = connection;
+		}
+	}
+
+	/**
+	 * Leases logged in FTP connection to user@host:port. Reuses idle connection, a new connection is opened and logged in only if none is idle and pool for host has capacity.
+	 *
+	 * @param username - User of FTP server, null for anonymous.
+	 * @param password - Password of user.
+	 * @param host - host where file is hosted
+	 * @param port - port of FTP server.
+	 * @param connectTimeout - Connect timeout in millis. Also maximum time to wait for a free connection if pool for host is exhausted, 0 waits without limit.
+	 * @param readTimeout - Maximum time a read on connection may block in millis.
+	 * @return Logged in connection in binary mode, to be returned via release(connection, reusable).
+	 * @throws IOException if connection can not be opened or logged in, or no connection became free within connect timeout.
+	 */
+	public static FTPConnection acquire(String username, String password, String host, int port, int connectTimeout,
+			int readTimeout) throws IOException {
+		String key = getKey(username, host, port);
+		long deadline = System.currentTimeMillis() + connectTimeout;
+		while (true) {
+			PooledConnection pooledConnection = null;
+			lock.lock();
+			try {
+				Deque<PooledConnection> idleConnections = idleConnectionMap.get(key);
+				if (idleConnections != null && !idleConnections.isEmpty()) {
+					pooledConnection = idleConnections.pollLast();
+				} else if (openConnectionMap.getOrDefault(key, 0) < getMaxConnectionsPerHost()) {
+					openConnectionMap.merge(key, 1, Integer::sum);
+				} else if (connectTimeout <= 0) {
+					connectionReleased.await();
+					continue;
+				} else {
+					long remaining = deadline - System.currentTimeMillis();
+					if (remaining <= 0) {
+						throw new IOException("Timed out waiting for free FTP connection to " + key);
+					}
+					connectionReleased.await(remaining, TimeUnit.MILLISECONDS);
+					continue;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while waiting for free FTP connection to " + key, e);
+			} finally {
+				lock.unlock();
+			}
+
+			if (pooledConnection != null && !isHealthy(pooledConnection)) {
+				discard(pooledConnection);
+				continue;
+			}
+			if (pooledConnection == null) {
+				pooledConnection = connect(key, username, password, host, port, connectTimeout, readTimeout);
+			}
+			lock.lock();
+			try {
+				leasedConnectionMap.put(pooledConnection.connection, pooledConnection);
+			} finally {
+				lock.unlock();
+			}
+			return pooledConnection.connection;
+		}
+	}
+
+	/**
+	 * Returns connection leased via acquire to pool.
+	 *
+	 * @param connection - Connection to be returned.
+	 * @param reusable - false if an error occurred on connection, connection is then closed instead of being handed to next caller.
+	 */
+	public static void release(FTPConnection connection, boolean reusable) {
+		PooledConnection pooledConnection;
+		lock.lock();
+		try {
+			pooledConnection = leasedConnectionMap.remove(connection);
+		} finally {
+			lock.unlock();
+		}
+		if (pooledConnection == null) {
+			connection.close();
+			return;
+		}
+		if (!reusable || !connection.isUsable()) {
+			discard(pooledConnection);
+			return;
+		}
+		lock.lock();
+		try {
+			pooledConnection.lastUsedMillis = System.currentTimeMillis();
+			idleConnectionMap.computeIfAbsent(pooledConnection.key, k -> new ArrayDeque<>()).addLast(pooledConnection);
+			connectionReleased.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Closes all connections which are not leased. Leased connections are left to idle evictor.
+	 */
+	public static void closeIdleConnections() {
+		evictIdleConnections(0);
+	}
+
+	/**
+	 * @param username - User of FTP server, null for anonymous.
+	 * @param host - host where file is hosted
+	 * @param port - port of FTP server.
+	 * @return Number of connections currently open (idle or leased) to user@host:port.
+	 */
+	public static int getConnectionCount(String username, String host, int port) {
+		lock.lock();
+		try {
+			return openConnectionMap.getOrDefault(getKey(username, host, port), 0);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return Pool key user@host:port.
+	 */
+	public static String getKey(String username, String host, int port) {
+		return username + "@" + host + ":" + port;
+	}
+
+	/**
+	 * Connects and logs in outside of lock, so logins to different hosts do not block each other. Slot was reserved in openConnectionMap by caller.
+	 */
+	private static PooledConnection connect(String key, String username, String password, String host, int port,
+			int connectTimeout, int readTimeout) throws IOException {
+		FTPConnection connection = null;
+		try {
+			connection = new FTPConnection(host, port, connectTimeout, readTimeout);
+			connection.login(username, password);
+		} catch (IOException | RuntimeException e) {
+			if (connection != null) {
+				connection.close();
+			}
+			lock.lock();
+			try {
+				openConnectionMap.merge(key, -1, Integer::sum);
+				connectionReleased.signalAll();
+			} finally {
+				lock.unlock();
+			}
+			throw e;
+		}
+		lock.lock();
+		try {
+			startIdleConnectionEvictor();
+		} finally {
+			lock.unlock();
+		}
+		logger.info("Opened pooled FTP connection to " + key);
+		return new PooledConnection(key, connection);
+	}
+
+	/**
+	 * Health check of idle connection. Connection idle for more than VALIDATION_INTERVAL_MILLIS must answer NOOP.
+	 */
+	private static boolean isHealthy(PooledConnection pooledConnection) {
+		if (!pooledConnection.connection.isUsable()) {
+			return false;
+		}
+		if (System.currentTimeMillis() - pooledConnection.lastUsedMillis < VALIDATION_INTERVAL_MILLIS) {
+			return true;
+		}
+		if (pooledConnection.connection.noop()) {
+			return true;
+		}
+		logger.info("Dropping broken FTP connection to " + pooledConnection.key);
+		return false;
+	}
+
+	/**
+	 * Closes connection and frees its slot in pool of its host.
+	 */
+	private static void discard(PooledConnection pooledConnection) {
+		lock.lock();
+		try {
+			openConnectionMap.merge(pooledConnection.key, -1, Integer::sum);
+			if (openConnectionMap.get(pooledConnection.key) <= 0) {
+				openConnectionMap.remove(pooledConnection.key);
+			}
+			connectionReleased.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		pooledConnection.connection.close();
+		logger.info("Closed pooled FTP connection to " + pooledConnection.key);
+	}
+
+	/**
+	 * Closes connections which were not leased for idleTimeoutMillis.
+	 */
+	private static void evictIdleConnections(long idleTimeoutMillis) {
+		List<PooledConnection> evicted = new ArrayList<>();
+		lock.lock();
+		try {
+			long now = System.currentTimeMillis();
+			for (Iterator<Deque<PooledConnection>> iterator = idleConnectionMap.values().iterator(); iterator.hasNext();) {
+				Deque<PooledConnection> idleConnections = iterator.next();
+				for (Iterator<PooledConnection> connectionIterator = idleConnections.iterator(); connectionIterator.hasNext();) {
+					PooledConnection pooledConnection = connectionIterator.next();
+					if (now - pooledConnection.lastUsedMillis >= idleTimeoutMillis) {
+						connectionIterator.remove();
+						evicted.add(pooledConnection);
+					}
+				}
+				if (idleConnections.isEmpty()) {
+					iterator.remove();
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+		for (PooledConnection pooledConnection : evicted) {
+			discard(pooledConnection);
+		}
+	}
+
+	/**
+	 * Starts daemon evictor on first pooled connection. Expects lock to be held.
+	 */
+	private static void startIdleConnectionEvictor() {
+		if (idleConnectionEvictor != null) {
+			return;
+		}
+		long idleTimeoutMillis = getIdleTimeoutMillis();
+		long interval = Math.max(MIN_EVICTION_INTERVAL_MILLIS, idleTimeoutMillis / 2);
+		idleConnectionEvictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "ftp-idle-connection-evictor");
+			thread.setDaemon(true);
+			return thread;
+		});
+		idleConnectionEvictor.scheduleWithFixedDelay(() -> evictIdleConnections(getIdleTimeoutMillis()), interval, interval,
+				TimeUnit.MILLISECONDS);
+	}
+
+	private static int getMaxConnectionsPerHost() {
+		int maxConnections = DMCache.getFtpPoolMaxConnectionsPerHost();
+		return maxConnections > 0 ? maxConnections : DEFAULT_MAX_CONNECTIONS_PER_HOST;
+	}
+
+	private static long getIdleTimeoutMillis() {
+		int idleTimeout = DMCache.getFtpPoolIdleTimeoutInMillis();
+		return idleTimeout > 0 ? idleTimeout : DEFAULT_IDLE_TIMEOUT_MILLIS;
+	}
+
+}
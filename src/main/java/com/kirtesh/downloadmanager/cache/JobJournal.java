@@ -0,0 +1,515 @@
+package com.kirtesh.downloadmanager.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.log4j.Logger;
+
+import com.kirtesh.downloadmanager.enums.JobState;
+import com.kirtesh.downloadmanager.metadata.JobEntry;
+import com.kirtesh.downloadmanager.utils.CommonUtils;
+/**
+ *
+ * @author kirteshdudawat
+ *
+ *
+ * This class acts as JVM level Cache of state of every download, backed by a durable write-ahead job journal on disk at `job.journal.filepath`.
+ * A record is appended when a URL is queued, started, completed (with filepath and size of saved file) or finally failed i.e. dead-lettered.
+ * On next run, journal is replayed at Startup via StartUpService. URLs completed in an earlier run which did not finish (crashed or was stopped), whose file is still on disk with same size,
+ * are not downloaded again, and with `job.journal.retry.failed.only` only dead-lettered URLs are downloaded.
+ *
+ * Journal is scoped to a run : once a run finishes cleanly, i.e. journal is closed with every URL recorded in run completed or dead-lettered and every record committed, journal is
+ * compacted to dead-lettered entries alone. Completed entries are hence only replayed to resume an unfinished run, a later run goes through RevalidationIndex as usual.
+ *
+ * On disk journal is an append only binary log, in same layout as RevalidationIndex. Each record is [int length][byte state][url] followed by [filePath][long contentLength] for COMPLETED
+ * and [error] for FAILED, later record of same URL overrides earlier one. A record partially written by a crashed run is detected by its length and truncated,
+ * journal is compacted (rewritten with only last record of every URL) at Startup if it has more dead records than live entries.
+ *
+ * Records are group committed: download threads only hand serialized record to a single writer thread, which collects records for `job.journal.group.commit.millis`,
+ * writes whole batch at once and forces it to disk with a single fsync. Hot path never waits for disk, a crash may lose only records of last batch, whose URLs are then downloaded again.
+ * If a batch can not be committed, journal stops taking records, batch is not acknowledged and sync throws error of commit.
+ * Journal is disabled if `job.journal.filepath` is not specified.
+ *
+ */
+public class JobJournal {
+
+	final static Logger logger = Logger.getLogger(JobJournal.class);
+
+	private static final String COMPACT_FILE_SUFFIX = ".compact";
+
+	private static final int MAX_ERROR_LENGTH = 1024;
+
+	public static Map<String, JobEntry> jobEntryMap = new ConcurrentHashMap<String, JobEntry>();
+
+	private static final ReentrantLock lock = new ReentrantLock();
+
+	private static final Condition recordsPending = lock.newCondition();
+
+	private static final Condition recordsCommitted = lock.newCondition();
+
+	private static List<byte[]> pendingRecords = new ArrayList<>();
+
+	private static long appendedRecords;
+
+	private static long committedRecords;
+
+	private static long groupCommitMillis;
+
+	private static boolean closing;
+
+	private static IOException commitError;
+
+	private static Set<String> runUrls = new HashSet<>();
+
+	private static Path journalFile;
+
+	private static FileChannel fileChannel;
+
+	private static Thread writerThread;
+
+	private static boolean shutdownHookAdded;
+
+	/**
+	 * Replays journal from `job.journal.filepath` and opens it for appending. Does nothing if property is not specified.
+	 *
+	 * @return Boolean value true / false based on if journal was initialized successfully or is disabled.
+	 */
+	public static boolean initialize() {
+		String filePath = DMCache.getJobJournalFilePath();
+		if (CommonUtils.isStringNullOrEmpty(filePath)) {
+			return true;
+		}
+		return initialize(Paths.get(filePath), DMCache.getJobJournalGroupCommitMillis());
+	}
+
+	/**
+	 * Replays journal from file and opens it for appending. Truncates partially written tail record and compacts file if required.
+	 * Record with length beyond end of file or which can not be parsed (eg. zero filled tail after a crash) is treated as end of journal, it is truncated along with anything after it.
+	 * Pending records are committed on JVM shutdown.
+	 *
+	 * @param journalFile - Path of journal file on Local Disk, created if not exist.
+	 * @param groupCommitMillis - Millis for which records are collected before a batch is written, 0 commits records as soon as writer is free.
+	 * @return Boolean value true / false based on if journal was initialized successfully.
+	 */
+	public static boolean initialize(Path journalFile, long groupCommitMillis) {
+		close();
+		lock.lock();
+		try {
+			if (journalFile.getParent() != null) {
+				Files.createDirectories(journalFile.getParent());
+			}
+			int records = 0;
+			long validLength = 0;
+			if (Files.exists(journalFile)) {
+				long fileSize = Files.size(journalFile);
+				try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(Files.newInputStream(journalFile)))) {
+					while (true) {
+						int length;
+						try {
+							length = inputStream.readInt();
+						} catch (EOFException e) {
+							break;
+						}
+						if (length < 0 || length > fileSize - validLength - Integer.BYTES) {
+							break;
+						}
+						byte[] record = new byte[length];
+						try {
+							inputStream.readFully(record);
+						} catch (EOFException e) {
+							break;
+						}
+						JobEntry entry;
+						try {
+							entry = readRecord(record);
+						} catch (IOException | RuntimeException e) {
+							break;
+						}
+						jobEntryMap.put(entry.getDownloadUrl(), entry);
+						validLength += Integer.BYTES + length;
+						records++;
+					}
+				}
+				if (validLength < fileSize) {
+					logger.info("Truncating partially written or corrupt tail of job journal " + journalFile);
+					try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.WRITE)) {
+						channel.truncate(validLength);
+					}
+				}
+			}
+			if (records - jobEntryMap.size() >= jobEntryMap.size() && records > 0) {
+				compact(journalFile, jobEntryMap.values());
+			}
+			JobJournal.groupCommitMillis = groupCommitMillis;
+			JobJournal.journalFile = journalFile;
+			fileChannel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+			writerThread = new Thread(JobJournal::writeRecords, "job-journal-writer");
+			writerThread.setDaemon(true);
+			writerThread.start();
+			if (!shutdownHookAdded) {
+				Runtime.getRuntime().addShutdownHook(new Thread(JobJournal::close, "job-journal-shutdown"));
+				shutdownHookAdded = true;
+			}
+			logger.info("Replayed " + jobEntryMap.size() + " entries from job journal " + journalFile);
+			return true;
+		} catch (IOException e) {
+			logger.error("Unable to load job journal " + journalFile + " " + e.getMessage());
+			jobEntryMap.clear();
+			return false;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return true if journal is initialized and records are being appended.
+	 */
+	public static boolean isEnabled() {
+		return fileChannel != null;
+	}
+
+	/**
+	 * @param downloadUrl - URL of file.
+	 * @return Last recorded state of download, null if URL was never recorded or journal is disabled.
+	 */
+	public static JobEntry get(String downloadUrl) {
+		return jobEntryMap.get(downloadUrl);
+	}
+
+	/**
+	 * @param downloadUrl - URL of file.
+	 * @return true if URL was completed in an earlier unfinished run and its file is still on disk with recorded size.
+	 */
+	public static boolean isCompleted(String downloadUrl) {
+		JobEntry entry = jobEntryMap.get(downloadUrl);
+		if (entry == null || entry.getJobState() != JobState.COMPLETED || entry.getFilePath() == null) {
+			return false;
+		}
+		try {
+			return Files.size(Paths.get(entry.getFilePath())) == entry.getContentLength();
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @return URLs whose download failed after all its retries, and was not completed later.
+	 */
+	public static List<String> getDeadLetteredUrls() {
+		List<String> deadLetteredUrls = new ArrayList<>();
+		for (JobEntry entry : jobEntryMap.values()) {
+			if (entry.getJobState() == JobState.FAILED) {
+				deadLetteredUrls.add(entry.getDownloadUrl());
+			}
+		}
+		return deadLetteredUrls;
+	}
+
+	public static void queued(String downloadUrl) {
+		append(new JobEntry(downloadUrl, JobState.QUEUED, null, -1, null));
+	}
+
+	public static void started(String downloadUrl) {
+		append(new JobEntry(downloadUrl, JobState.STARTED, null, -1, null));
+	}
+
+	/**
+	 * @param downloadUrl - URL of downloaded file.
+	 * @param filePath - Path of Local Disk where file was saved, its current size is recorded.
+	 */
+	public static void completed(String downloadUrl, String filePath) {
+		if (fileChannel == null) {
+			return;
+		}
+		long contentLength;
+		try {
+			contentLength = Files.size(Paths.get(filePath));
+		} catch (IOException e) {
+			contentLength = -1;
+		}
+		append(new JobEntry(downloadUrl, JobState.COMPLETED, filePath, contentLength, null));
+	}
+
+	/**
+	 * @param downloadUrl - URL of file whose download failed after all its retries.
+	 * @param error - Error of last attempt, null if unknown.
+	 */
+	public static void failed(String downloadUrl, Throwable error) {
+		String message = error == null ? null : String.valueOf(error);
+		if (message != null && message.length() > MAX_ERROR_LENGTH) {
+			message = message.substring(0, MAX_ERROR_LENGTH);
+		}
+		append(new JobEntry(downloadUrl, JobState.FAILED, null, -1, message));
+	}
+
+	/**
+	 * Waits till every record appended before this call is written and forced to disk.
+	 *
+	 * @throws IOException if a batch could not be committed, journal then takes no more records.
+	 */
+	public static void sync() throws IOException {
+		lock.lock();
+		try {
+			long target = appendedRecords;
+			while (committedRecords < target && writerThread != null && commitError == null) {
+				recordsCommitted.await();
+			}
+			if (commitError != null) {
+				throw commitError;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Commits pending records, stops writer thread, closes journal file and clears JVM cache of entries.
+	 * If run has finished cleanly (see isRunFinished), journal is compacted to dead-lettered entries.
+	 */
+	public static void close() {
+		Thread writer;
+		lock.lock();
+		try {
+			closing = true;
+			writer = writerThread;
+			recordsPending.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		if (writer != null) {
+			try {
+				writer.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		lock.lock();
+		try {
+			if (fileChannel != null) {
+				try {
+					fileChannel.close();
+				} catch (IOException e) {
+					logger.error("Unable to close job journal " + e.getMessage());
+				}
+				fileChannel = null;
+				if (isRunFinished()) {
+					try {
+						compact(journalFile, getDeadLetteredEntries());
+					} catch (IOException e) {
+						logger.error("Unable to compact job journal " + journalFile + " " + e.getMessage());
+					}
+				}
+			}
+			writerThread = null;
+			closing = false;
+			commitError = null;
+			runUrls = new HashSet<>();
+			journalFile = null;
+			pendingRecords = new ArrayList<>();
+			committedRecords = appendedRecords;
+			recordsCommitted.signalAll();
+			jobEntryMap.clear();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Serializes record on calling thread and hands it to writer thread, JVM cache is updated right away.
+	 */
+	private static void append(JobEntry entry) {
+		if (fileChannel == null) {
+			return;
+		}
+		byte[] record;
+		try {
+			record = writeRecord(entry);
+		} catch (IOException e) {
+			logger.error("Unable to record " + entry.getJobState() + " of " + entry.getDownloadUrl() + " in job journal " + e.getMessage());
+			return;
+		}
+		lock.lock();
+		try {
+			if (fileChannel == null || closing || commitError != null) {
+				return;
+			}
+			pendingRecords.add(record);
+			appendedRecords++;
+			runUrls.add(entry.getDownloadUrl());
+			jobEntryMap.put(entry.getDownloadUrl(), entry);
+			recordsPending.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Loop of writer thread. Waits for a record, collects records for groupCommitMillis, then writes batch and forces it to disk outside lock,
+	 * so download threads keep appending to next batch meanwhile. Remaining records are committed once journal is closed.
+	 * Writer stops at first batch which can not be committed, batch is not acknowledged and its error is kept for sync.
+	 */
+	private static void writeRecords() {
+		while (true) {
+			List<byte[]> batch;
+			long batchEnd;
+			lock.lock();
+			try {
+				while (pendingRecords.isEmpty() && !closing) {
+					recordsPending.await();
+				}
+				long remainingNanos = TimeUnit.MILLISECONDS.toNanos(groupCommitMillis);
+				while (remainingNanos > 0 && !closing) {
+					remainingNanos = recordsPending.awaitNanos(remainingNanos);
+				}
+				if (pendingRecords.isEmpty()) {
+					return;
+				}
+				batch = pendingRecords;
+				pendingRecords = new ArrayList<>();
+				batchEnd = appendedRecords;
+			} catch (InterruptedException e) {
+				return;
+			} finally {
+				lock.unlock();
+			}
+			IOException error = null;
+			try {
+				commit(batch);
+			} catch (IOException e) {
+				logger.error("Unable to commit " + batch.size() + " records to job journal, no more records are taken " + e.getMessage());
+				error = e;
+			}
+			lock.lock();
+			try {
+				if (error != null) {
+					commitError = error;
+				} else {
+					committedRecords = batchEnd;
+				}
+				recordsCommitted.signalAll();
+			} finally {
+				lock.unlock();
+			}
+			if (error != null) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Run has finished cleanly if every record was committed and every URL recorded in run is completed or dead-lettered. Must be called holding lock.
+	 */
+	private static boolean isRunFinished() {
+		if (commitError != null || !pendingRecords.isEmpty()) {
+			return false;
+		}
+		for (String downloadUrl : runUrls) {
+			JobState jobState = jobEntryMap.get(downloadUrl).getJobState();
+			if (jobState != JobState.COMPLETED && jobState != JobState.FAILED) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static List<JobEntry> getDeadLetteredEntries() {
+		List<JobEntry> deadLetteredEntries = new ArrayList<>();
+		for (JobEntry entry : jobEntryMap.values()) {
+			if (entry.getJobState() == JobState.FAILED) {
+				deadLetteredEntries.add(entry);
+			}
+		}
+		return deadLetteredEntries;
+	}
+
+	/**
+	 * Writes batch of records with a single write and a single fsync.
+	 */
+	private static void commit(List<byte[]> batch) throws IOException {
+		int size = 0;
+		for (byte[] record : batch) {
+			size += Integer.BYTES + record.length;
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		for (byte[] record : batch) {
+			buffer.putInt(record.length).put(record);
+		}
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			fileChannel.write(buffer);
+		}
+		fileChannel.force(false);
+	}
+
+	/**
+	 * Rewrites journal with only given entries, i.e. last record of URLs to be kept, to a temporary file, and atomically replaces journal with it.
+	 */
+	private static void compact(Path journalFile, Collection<JobEntry> entries) throws IOException {
+		Path compactFile = journalFile.resolveSibling(journalFile.getFileName() + COMPACT_FILE_SUFFIX);
+		try (DataOutputStream compactStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(compactFile)))) {
+			for (JobEntry entry : entries) {
+				byte[] record = writeRecord(entry);
+				compactStream.writeInt(record.length);
+				compactStream.write(record);
+			}
+		}
+		Files.move(compactFile, journalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		logger.info("Compacted job journal " + journalFile + " to " + entries.size() + " entries");
+	}
+
+	private static byte[] writeRecord(JobEntry entry) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream record = new DataOutputStream(bytes);
+		record.writeByte(entry.getJobState().ordinal());
+		record.writeUTF(entry.getDownloadUrl());
+		if (entry.getJobState() == JobState.COMPLETED) {
+			record.writeUTF(entry.getFilePath());
+			record.writeLong(entry.getContentLength());
+		} else if (entry.getJobState() == JobState.FAILED) {
+			record.writeBoolean(entry.getError() != null);
+			if (entry.getError() != null) {
+				record.writeUTF(entry.getError());
+			}
+		}
+		return bytes.toByteArray();
+	}
+
+	private static JobEntry readRecord(byte[] bytes) throws IOException {
+		DataInputStream record = new DataInputStream(new ByteArrayInputStream(bytes));
+		JobState jobState = JobState.values()[record.readByte()];
+		JobEntry entry = new JobEntry(record.readUTF(), jobState, null, -1, null);
+		if (jobState == JobState.COMPLETED) {
+			entry.setFilePath(record.readUTF());
+			entry.setContentLength(record.readLong());
+		} else if (jobState == JobState.FAILED && record.readBoolean()) {
+			entry.setError(record.readUTF());
+		}
+		return entry;
+	}
+
+}
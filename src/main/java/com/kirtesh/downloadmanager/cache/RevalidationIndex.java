@@ -0,0 +1,285 @@
+package com.kirtesh.downloadmanager.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.log4j.Logger;
+
+import com.kirtesh.downloadmanager.metadata.ProbeMetadata;
+import com.kirtesh.downloadmanager.metadata.RevalidationEntry;
+import com.kirtesh.downloadmanager.utils.CommonUtils;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ * 
+ * This class acts as JVM level Cache of validators (ETag, Last-Modified, size) and local filepath of every URL downloaded in earlier runs, persisted on disk at `revalidation.index.filepath`.
+ * On next run, requests are made conditional (If-None-Match / If-Modified-Since) and unchanged files are not downloaded again, nor saved under a new name.
+ * 
+ * On disk index is an append only binary log. Each record is [int length][byte type][url][etag][lastModified][long contentLength][filePath], later record of same URL overrides earlier one.
+ * Log is read into memory once at Startup via StartUpService, and compacted (rewritten with only live entries) if it has more dead records than live entries.
+ * A record partially written by a crashed run is detected by its length and truncated.
+ * 
+ * Lookups are served from ConcurrentHashMap, appends from many download threads are serialized by a lock. Index is disabled if `revalidation.index.filepath` is not specified.
+ *
+ */
+public class RevalidationIndex {
+	
+	final static Logger logger = Logger.getLogger(RevalidationIndex.class);
+	
+	private static final byte PUT_RECORD = 1;
+	private static final byte REMOVE_RECORD = 2;
+	private static final String COMPACT_FILE_SUFFIX = ".compact";
+	
+	public static Map<String, RevalidationEntry> revalidationEntryMap = new ConcurrentHashMap<String, RevalidationEntry>();
+	
+	private static final ReentrantLock lock = new ReentrantLock();
+	
+	private static DataOutputStream outputStream;
+	
+	/**
+	 * Loads index from `revalidation.index.filepath` and opens it for appending. Does nothing if property is not specified.
+	 * 
+	 * @return Boolean value true / false based on if index was initialized successfully or is disabled.
+	 */
+	public static boolean initialize() {
+		String filePath = DMCache.getRevalidationIndexFilePath();
+		if (CommonUtils.isStringNullOrEmpty(filePath)) {
+			return true;
+		}
+		return initialize(Paths.get(filePath));
+	}
+	
+	/**
+	 * Loads index from file and opens it for appending. Truncates partially written tail record and compacts file if required.
+	 * Record with length beyond end of file or which can not be parsed is treated as end of index, it is truncated along with anything after it.
+	 * 
+	 * @param indexFile - Path of index file on Local Disk, created if not exist.
+	 * @return Boolean value true / false based on if index was initialized successfully.
+	 */
+	public static boolean initialize(Path indexFile) {
+		lock.lock();
+		try {
+			close();
+			if (indexFile.getParent() != null) {
+				Files.createDirectories(indexFile.getParent());
+			}
+			int records = 0;
+			long validLength = 0;
+			if (Files.exists(indexFile)) {
+				long fileSize = Files.size(indexFile);
+				try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+					while (true) {
+						int length;
+						try {
+							length = inputStream.readInt();
+						} catch (EOFException e) {
+							break;
+						}
+						if (length < 0 || length > fileSize - validLength - Integer.BYTES) {
+							break;
+						}
+						byte[] record = new byte[length];
+						try {
+							inputStream.readFully(record);
+						} catch (EOFException e) {
+							break;
+						}
+						try {
+							readRecord(record);
+						} catch (IOException | RuntimeException e) {
+							break;
+						}
+						validLength += Integer.BYTES + length;
+						records++;
+					}
+				}
+				if (validLength < fileSize) {
+					logger.info("Truncating partially written or corrupt tail of revalidation index " + indexFile);
+					try (FileChannel fileChannel = FileChannel.open(indexFile, StandardOpenOption.WRITE)) {
+						fileChannel.truncate(validLength);
+					}
+				}
+			}
+			if (records - revalidationEntryMap.size() >= revalidationEntryMap.size() && records > 0) {
+				compact(indexFile);
+			}
+			outputStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile,
+					StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+			logger.info("Loaded " + revalidationEntryMap.size() + " entries from revalidation index " + indexFile);
+			return true;
+		} catch (IOException e) {
+			logger.error("Unable to load revalidation index " + indexFile + " " + e.getMessage());
+			revalidationEntryMap.clear();
+			return false;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * @param downloadUrl - URL of file.
+	 * @return Validators & filepath of copy downloaded in earlier run, null if URL was never downloaded or index is disabled.
+	 */
+	public static RevalidationEntry get(String downloadUrl) {
+		return revalidationEntryMap.get(downloadUrl);
+	}
+	
+	/**
+	 * Records validators of a successfully downloaded file. If remote file has no validator, earlier entry of URL (if any) is removed as it can no longer be revalidated.
+	 * 
+	 * @param downloadUrl - URL of downloaded file.
+	 * @param probeMetadata - Metadata of remote file as probed before download.
+	 * @param location - Path of Local Disk where file was saved.
+	 */
+	public static void update(String downloadUrl, ProbeMetadata probeMetadata, String location) {
+		if (outputStream == null) {
+			return;
+		}
+		if (probeMetadata.getEtag() == null && probeMetadata.getLastModified() == null) {
+			if (revalidationEntryMap.containsKey(downloadUrl)) {
+				append(REMOVE_RECORD, new RevalidationEntry(downloadUrl, null, null, -1, null));
+			}
+			return;
+		}
+		append(PUT_RECORD, new RevalidationEntry(downloadUrl, probeMetadata.getEtag(), probeMetadata.getLastModified(),
+				probeMetadata.getContentLength(), location));
+	}
+	
+	/**
+	 * Records validators of a file published from download of another URL of same resource (see InFlightRegistry), so published copy is reused in next run as well.
+	 * If source URL has no entry, earlier entry of URL (if any) is removed.
+	 * 
+	 * @param sourceUrl - URL whose download was published.
+	 * @param downloadUrl - URL of published file.
+	 * @param location - Path of Local Disk where file was published.
+	 */
+	public static void copy(String sourceUrl, String downloadUrl, String location) {
+		if (outputStream == null) {
+			return;
+		}
+		RevalidationEntry entry = revalidationEntryMap.get(sourceUrl);
+		if (entry == null) {
+			if (revalidationEntryMap.containsKey(downloadUrl)) {
+				append(REMOVE_RECORD, new RevalidationEntry(downloadUrl, null, null, -1, null));
+			}
+			return;
+		}
+		append(PUT_RECORD, new RevalidationEntry(downloadUrl, entry.getEtag(), entry.getLastModified(),
+				entry.getContentLength(), location));
+	}
+	
+	/**
+	 * Flushes and closes index file, and clears JVM cache of entries.
+	 */
+	public static void close() {
+		lock.lock();
+		try {
+			if (outputStream != null) {
+				try {
+					outputStream.close();
+				} catch (IOException e) {
+					logger.error("Unable to close revalidation index " + e.getMessage());
+				}
+				outputStream = null;
+			}
+			revalidationEntryMap.clear();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Appends record to index file and updates JVM cache. Record is flushed to OS immediately, so it survives crash of the JVM.
+	 */
+	private static void append(byte type, RevalidationEntry entry) {
+		lock.lock();
+		try {
+			if (outputStream == null) {
+				return;
+			}
+			writeRecord(outputStream, type, entry);
+			outputStream.flush();
+			if (type == PUT_RECORD) {
+				revalidationEntryMap.put(entry.getDownloadUrl(), entry);
+			} else {
+				revalidationEntryMap.remove(entry.getDownloadUrl());
+			}
+		} catch (IOException e) {
+			logger.error("Unable to update revalidation index for " + entry.getDownloadUrl() + " " + e.getMessage());
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Rewrites index with only live entries to a temporary file, and atomically replaces index with it.
+	 */
+	private static void compact(Path indexFile) throws IOException {
+		Path compactFile = indexFile.resolveSibling(indexFile.getFileName() + COMPACT_FILE_SUFFIX);
+		try (DataOutputStream compactStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(compactFile)))) {
+			for (RevalidationEntry entry : revalidationEntryMap.values()) {
+				writeRecord(compactStream, PUT_RECORD, entry);
+			}
+		}
+		Files.move(compactFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		logger.info("Compacted revalidation index " + indexFile + " to " + revalidationEntryMap.size() + " entries");
+	}
+	
+	private static void writeRecord(DataOutputStream stream, byte type, RevalidationEntry entry) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream record = new DataOutputStream(bytes);
+		record.writeByte(type);
+		record.writeUTF(entry.getDownloadUrl());
+		if (type == PUT_RECORD) {
+			writeNullableString(record, entry.getEtag());
+			writeNullableString(record, entry.getLastModified());
+			record.writeLong(entry.getContentLength());
+			record.writeUTF(entry.getFilePath());
+		}
+		stream.writeInt(bytes.size());
+		bytes.writeTo(stream);
+	}
+	
+	private static void readRecord(byte[] bytes) throws IOException {
+		DataInputStream record = new DataInputStream(new ByteArrayInputStream(bytes));
+		byte type = record.readByte();
+		String downloadUrl = record.readUTF();
+		if (type == PUT_RECORD) {
+			RevalidationEntry entry = new RevalidationEntry(downloadUrl, readNullableString(record),
+					readNullableString(record), record.readLong(), record.readUTF());
+			revalidationEntryMap.put(downloadUrl, entry);
+		} else if (type == REMOVE_RECORD) {
+			revalidationEntryMap.remove(downloadUrl);
+		} else {
+			throw new IOException("Unknown record type " + type);
+		}
+	}
+	
+	private static void writeNullableString(DataOutputStream stream, String value) throws IOException {
+		stream.writeBoolean(value != null);
+		if (value != null) {
+			stream.writeUTF(value);
+		}
+	}
+	
+	private static String readNullableString(DataInputStream stream) throws IOException {
+		return stream.readBoolean() ? stream.readUTF() : null;
+	}
+
+}
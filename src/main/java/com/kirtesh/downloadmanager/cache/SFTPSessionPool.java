@@ -0,0 +1,484 @@
+package com.kirtesh.downloadmanager.cache;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.log4j.Logger;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import com.jcraft.jsch.SftpException;
+import com.kirtesh.downloadmanager.enums.Protocols;
+/**
+ *
+ * @author kirteshdudawat
+ *
+ *
+ * This class acts as JVM level pool of authenticated SFTP sessions, keyed by user@host:port. Hundreds of files from one server reuse a few sessions
+ * instead of paying a full SSH handshake for every file.
+ *
+ * Pool is bounded by:
+ * 1. `sftp.pool.max.sessions.per.host` : Maximum sessions opened to same user@host:port. Callers wait (up to session timeout) for a free channel if all sessions are busy.
+ * 2. `sftp.pool.max.channels.per.session` : Maximum SFTP channels opened concurrently on a single session (server side MaxSessions, 10 for OpenSSH by default).
+ * 3. `sftp.pool.idle.timeout.millis` : Sessions without any leased channel for this time are disconnected by a background evictor.
+ *
+ * Released channels are kept open on their session and handed to next caller. A channel idle for more than VALIDATION_INTERVAL_MILLIS is health checked
+ * with a round trip to server before reuse, broken channels and sessions are dropped from pool.
+ *
+ * Every channel acquired must be released via release(channel, reusable), in finally block.
+ *
+ * Sessions are connected, checked and disconnected through a SessionConnector, JSch by default. Tests replace it to pool stubbed sessions without an SSH server.
+ *
+ */
+public class SFTPSessionPool {
+
+	final static Logger logger = Logger.getLogger(SFTPSessionPool.class);
+
+	private static final int DEFAULT_MAX_SESSIONS_PER_HOST = 2;
+	private static final int DEFAULT_MAX_CHANNELS_PER_SESSION = 4;
+	private static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 60000;
+	private static final long MIN_EVICTION_INTERVAL_MILLIS = 1000;
+	private static final long VALIDATION_INTERVAL_MILLIS = 5000;
+	private static final String CURRENT_DIRECTORY = ".";
+
+	private static final JSch jsch = new JSch();
+
+	private static final ReentrantLock lock = new ReentrantLock();
+
+	private static final Condition channelReleased = lock.newCondition();
+
+	private static final Map<String, List<PooledSession>> sessionMap = new HashMap<>();
+
+	private static final Map<String, Integer> pendingSessionMap = new HashMap<>();
+
+	private static final Map<ChannelSftp, PooledSession> leasedChannelMap = new IdentityHashMap<>();
+
+	private static ScheduledExecutorService idleSessionEvictor;
+
+	private static volatile SessionConnector sessionConnector = new JSchSessionConnector();
+
+	/**
+	 * Connects sessions and opens channels of pool.
+	 */
+	public interface SessionConnector {
+
+		Session connect(String username, String password, String host, int port, int sessionTimeout) throws JSchException;
+
+		ChannelSftp openChannel(Session session, int channelTimeout) throws JSchException;
+
+		boolean isConnected(Session session);
+
+		void disconnect(Session session);
+	}
+
+	/**
+	 * SessionConnector making SSH connections with JSch.
+	 */
+	private static class JSchSessionConnector implements SessionConnector {
+
+		@Override
+		public Session connect(String username, String password, String host, int port, int sessionTimeout) throws JSchException {
+			Session session = jsch.getSession(username, host, port);
+			session.setPassword(password);
+			Properties props = new Properties();
+			props.put("StrictHostKeyChecking", "no");
+			session.setConfig(props);
+			session.setDaemonThread(true);
+			session.setTimeout(sessionTimeout);
+			session.connect(sessionTimeout);
+			return session;
+		}
+
+		@Override
+		public ChannelSftp openChannel(Session session, int channelTimeout) throws JSchException {
+			ChannelSftp channel = (ChannelSftp) session.openChannel(Protocols.SFTP.name().toLowerCase());
+			channel.connect(channelTimeout);
+			return channel;
+		}
+
+		@Override
+		public boolean isConnected(Session session) {
+			return session.isConnected();
+		}
+
+		@Override
+		public void disconnect(Session session) {
+			session.disconnect();
+		}
+	}
+
+	/**
+	 * Authenticated session along with its idle channels and number of channels currently leased.
+	 */
+	private static class PooledSession {
+
+		private final String key;
+
+		private final Session session;
+
+		private final SessionConnector connector;
+
+		private final Deque<ChannelSftp> idleChannels = new ArrayDeque<>();
+
+		private int leasedChannels;
+
+		private long lastUsedMillis = System.currentTimeMillis();
+
+		private PooledSession(String key, Session session, SessionConnector connector) {
+			this.key = key;
+			this.session = session;
+			this.connector = connector;
+		}
+
+		private boolean isConnected() {
+			return connector.isConnected(session);
+		}
+	}
+
+	/**
+	 * Leases SFTP channel to user@host:port. Reuses idle channel or opens a new channel on a pooled session with free capacity, a new session is connected only if none has capacity.
+	 *
+	 * @param username - Username for SSH connection
+	 * @param password - password for SSH connection
+	 * @param host - host where file is hosted
+	 * @param port - port, to connect to for SFTP downloads.
+	 * @param sessionTimeout - Used to set Session timeout. Also maximum time to wait for a free channel if pool for host is exhausted.
+	 * @param channelTimeout - Used to set Channel timeout.
+	 * @return Connected SFTP channel, to be returned via release(channel, reusable).
+	 * @throws JSchException if session or channel can not be connected, or no channel became free within session timeout.
+	 */
+	public static ChannelSftp acquire(String username, String password, String host, int port, int sessionTimeout,
+			int channelTimeout) throws JSchException {
+		String key = getKey(username, host, port);
+		long deadline = System.currentTimeMillis() + sessionTimeout;
+		while (true) {
+			PooledSession pooledSession = null;
+			ChannelSftp channel = null;
+			lock.lock();
+			try {
+				List<PooledSession> sessions = sessionMap.computeIfAbsent(key, k -> new ArrayList<>());
+				pooledSession = findSessionWithCapacity(sessions);
+				if (pooledSession != null) {
+					pooledSession.leasedChannels++;
+					channel = pooledSession.idleChannels.pollLast();
+				} else if (sessions.size() + pendingSessionMap.getOrDefault(key, 0) < getMaxSessionsPerHost()) {
+					pendingSessionMap.merge(key, 1, Integer::sum);
+				} else {
+					long remaining = deadline - System.currentTimeMillis();
+					if (remaining <= 0) {
+						throw new JSchException("Timed out waiting for free SFTP channel to " + key);
+					}
+					channelReleased.await(remaining, TimeUnit.MILLISECONDS);
+					continue;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new JSchException("Interrupted while waiting for free SFTP channel to " + key);
+			} finally {
+				lock.unlock();
+			}
+
+			if (pooledSession == null) {
+				pooledSession = connectSession(key, username, password, host, port, sessionTimeout);
+			}
+			try {
+				if (channel != null && !isHealthy(pooledSession, channel)) {
+					channel.disconnect();
+					channel = null;
+				}
+				if (channel == null) {
+					if (!pooledSession.isConnected()) {
+						invalidate(pooledSession);
+						continue;
+					}
+					channel = pooledSession.connector.openChannel(pooledSession.session, channelTimeout);
+				}
+			} catch (JSchException e) {
+				returnLease(pooledSession, null, false);
+				throw e;
+			}
+			lock.lock();
+			try {
+				leasedChannelMap.put(channel, pooledSession);
+			} finally {
+				lock.unlock();
+			}
+			return channel;
+		}
+	}
+
+	/**
+	 * Returns channel leased via acquire to pool.
+	 *
+	 * @param channel - Channel to be returned.
+	 * @param reusable - false if an error occurred on channel, channel is then disconnected instead of being handed to next caller.
+	 */
+	public static void release(ChannelSftp channel, boolean reusable) {
+		PooledSession pooledSession;
+		lock.lock();
+		try {
+			pooledSession = leasedChannelMap.remove(channel);
+		} finally {
+			lock.unlock();
+		}
+		if (pooledSession == null) {
+			channel.disconnect();
+			return;
+		}
+		returnLease(pooledSession, channel, reusable);
+	}
+
+	/**
+	 * Disconnects all sessions having no leased channel. Sessions in use are left to idle evictor.
+	 */
+	public static void closeIdleSessions() {
+		evictIdleSessions(0);
+	}
+
+	/**
+	 * Disconnects sessions having no leased channel for `sftp.pool.idle.timeout.millis`, run periodically by idle evictor.
+	 */
+	public static void evictIdleSessions() {
+		evictIdleSessions(getIdleTimeoutMillis());
+	}
+
+	/**
+	 * Replaces connector of sessions, eg. by tests to pool stubbed sessions. Only sessions connected afterwards use it.
+	 *
+	 * @param connector - SessionConnector to be used, null restores JSch.
+	 */
+	public static void setSessionConnector(SessionConnector connector) {
+		sessionConnector = connector == null ? new JSchSessionConnector() : connector;
+	}
+
+	/**
+	 * @param username - Username for SSH connection
+	 * @param host - host where file is hosted
+	 * @param port - port, to connect to for SFTP downloads.
+	 * @return Number of sessions currently pooled for user@host:port.
+	 */
+	public static int getSessionCount(String username, String host, int port) {
+		lock.lock();
+		try {
+			List<PooledSession> sessions = sessionMap.get(getKey(username, host, port));
+			return sessions == null ? 0 : sessions.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return Pool key user@host:port.
+	 */
+	public static String getKey(String username, String host, int port) {
+		return username + "@" + host + ":" + port;
+	}
+
+	/**
+	 * Prefers session having an idle channel, else least loaded session with free channel capacity. Expects lock to be held.
+	 */
+	private static PooledSession findSessionWithCapacity(List<PooledSession> sessions) {
+		PooledSession leastLoaded = null;
+		for (PooledSession pooledSession : sessions) {
+			if (pooledSession.leasedChannels >= getMaxChannelsPerSession()) {
+				continue;
+			}
+			if (!pooledSession.idleChannels.isEmpty()) {
+				return pooledSession;
+			}
+			if (leastLoaded == null || pooledSession.leasedChannels < leastLoaded.leasedChannels) {
+				leastLoaded = pooledSession;
+			}
+		}
+		return leastLoaded;
+	}
+
+	/**
+	 * Connects new session outside of lock, so handshakes to different hosts do not block each other. Slot was reserved in pendingSessionMap by caller.
+	 */
+	private static PooledSession connectSession(String key, String username, String password, String host, int port,
+			int sessionTimeout) throws JSchException {
+		PooledSession pooledSession = null;
+		try {
+			SessionConnector connector = sessionConnector;
+			Session session = connector.connect(username, password, host, port, sessionTimeout);
+			pooledSession = new PooledSession(key, session, connector);
+			pooledSession.leasedChannels = 1;
+		} finally {
+			lock.lock();
+			try {
+				pendingSessionMap.merge(key, -1, Integer::sum);
+				if (pooledSession != null) {
+					sessionMap.computeIfAbsent(key, k -> new ArrayList<>()).add(pooledSession);
+					startIdleSessionEvictor();
+				} else {
+					channelReleased.signalAll();
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+		logger.info("Opened pooled SFTP session to " + key);
+		return pooledSession;
+	}
+
+	/**
+	 * Health check of idle channel. Channel idle for more than VALIDATION_INTERVAL_MILLIS must answer a realpath round trip.
+	 */
+	private static boolean isHealthy(PooledSession pooledSession, ChannelSftp channel) {
+		if (!pooledSession.isConnected() || !channel.isConnected()) {
+			return false;
+		}
+		if (System.currentTimeMillis() - pooledSession.lastUsedMillis < VALIDATION_INTERVAL_MILLIS) {
+			return true;
+		}
+		try {
+			channel.realpath(CURRENT_DIRECTORY);
+			return true;
+		} catch (SftpException e) {
+			logger.info("Dropping broken SFTP channel to " + pooledSession.key + " " + e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Returns lease of channel on session. Channel is kept idle on session if reusable, else disconnected. Session is dropped if it got disconnected.
+	 */
+	private static void returnLease(PooledSession pooledSession, ChannelSftp channel, boolean reusable) {
+		boolean sessionBroken = !pooledSession.isConnected();
+		if (channel != null && (!reusable || sessionBroken || !channel.isConnected())) {
+			channel.disconnect();
+			channel = null;
+		}
+		lock.lock();
+		try {
+			pooledSession.leasedChannels--;
+			pooledSession.lastUsedMillis = System.currentTimeMillis();
+			if (channel != null) {
+				pooledSession.idleChannels.addLast(channel);
+			}
+			if (sessionBroken) {
+				removeSession(pooledSession);
+			}
+			channelReleased.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		if (sessionBroken) {
+			disconnect(pooledSession);
+		}
+	}
+
+	/**
+	 * Drops session whose connection was lost, along with lease taken on it.
+	 */
+	private static void invalidate(PooledSession pooledSession) {
+		lock.lock();
+		try {
+			pooledSession.leasedChannels--;
+			removeSession(pooledSession);
+			channelReleased.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		disconnect(pooledSession);
+	}
+
+	/**
+	 * Expects lock to be held.
+	 */
+	private static void removeSession(PooledSession pooledSession) {
+		List<PooledSession> sessions = sessionMap.get(pooledSession.key);
+		if (sessions != null) {
+			sessions.remove(pooledSession);
+			if (sessions.isEmpty()) {
+				sessionMap.remove(pooledSession.key);
+			}
+		}
+	}
+
+	private static void disconnect(PooledSession pooledSession) {
+		for (ChannelSftp channel : pooledSession.idleChannels) {
+			channel.disconnect();
+		}
+		pooledSession.connector.disconnect(pooledSession.session);
+		logger.info("Closed pooled SFTP session to " + pooledSession.key);
+	}
+
+	/**
+	 * Disconnects sessions which have no leased channel and were not used for idleTimeoutMillis.
+	 */
+	private static void evictIdleSessions(long idleTimeoutMillis) {
+		List<PooledSession> evicted = new ArrayList<>();
+		lock.lock();
+		try {
+			long now = System.currentTimeMillis();
+			for (Iterator<List<PooledSession>> iterator = sessionMap.values().iterator(); iterator.hasNext();) {
+				List<PooledSession> sessions = iterator.next();
+				for (Iterator<PooledSession> sessionIterator = sessions.iterator(); sessionIterator.hasNext();) {
+					PooledSession pooledSession = sessionIterator.next();
+					if (pooledSession.leasedChannels == 0 && now - pooledSession.lastUsedMillis >= idleTimeoutMillis) {
+						sessionIterator.remove();
+						evicted.add(pooledSession);
+					}
+				}
+				if (sessions.isEmpty()) {
+					iterator.remove();
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+		for (PooledSession pooledSession : evicted) {
+			disconnect(pooledSession);
+		}
+	}
+
+	/**
+	 * Starts daemon evictor on first pooled session. Expects lock to be held.
+	 */
+	private static void startIdleSessionEvictor() {
+		if (idleSessionEvictor != null) {
+			return;
+		}
+		long idleTimeoutMillis = getIdleTimeoutMillis();
+		long interval = Math.max(MIN_EVICTION_INTERVAL_MILLIS, idleTimeoutMillis / 2);
+		idleSessionEvictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "sftp-idle-session-evictor");
+			thread.setDaemon(true);
+			return thread;
+		});
+		idleSessionEvictor.scheduleWithFixedDelay(SFTPSessionPool::evictIdleSessions, interval, interval,
+				TimeUnit.MILLISECONDS);
+	}
+
+	private static int getMaxSessionsPerHost() {
+		int maxSessions = DMCache.getSftpPoolMaxSessionsPerHost();
+		return maxSessions > 0 ? maxSessions : DEFAULT_MAX_SESSIONS_PER_HOST;
+	}
+
+	private static int getMaxChannelsPerSession() {
+		int maxChannels = DMCache.getSftpPoolMaxChannelsPerSession();
+		return maxChannels > 0 ? maxChannels : DEFAULT_MAX_CHANNELS_PER_SESSION;
+	}
+
+	private static long getIdleTimeoutMillis() {
+		int idleTimeout = DMCache.getSftpPoolIdleTimeoutInMillis();
+		return idleTimeout > 0 ? idleTimeout : DEFAULT_IDLE_TIMEOUT_MILLIS;
+	}
+
+}
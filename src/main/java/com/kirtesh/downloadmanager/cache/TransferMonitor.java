@@ -0,0 +1,300 @@
+package com.kirtesh.downloadmanager.cache;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+/**
+ *
+ * @author kirteshdudawat
+ *
+ *
+ * This class acts as JVM level Cache of throughput of every running transfer, used to find stragglers i.e. transfers far behind rest of the batch.
+ *
+ * Every stream of a transfer is wrapped with track(inputStream), so bytes are counted in the copy loop itself. Every `straggler.check.interval.millis`,
+ * throughput of running transfers older than `straggler.min.age.millis` and of last RECENT_TRANSFERS finished transfers is taken as batch, and a running transfer
+ * slower than `straggler.slowness.ratio` x median of batch is marked as straggler. Its onStraggler callback is run once, eg. to start a speculative attempt (see SpeculationUtils).
+ * Median is taken only if batch has at least `straggler.min.transfers` samples. Detection is disabled if `straggler.check.interval.millis` is not specified.
+ * Bytes read by all transfers of a URL are also summed up, so bytes copied by a download attempt can be measured (see getTransferredBytes).
+ *
+ */
+public class TransferMonitor {
+
+	final static Logger logger = Logger.getLogger(TransferMonitor.class);
+
+	private static final int RECENT_TRANSFERS = 32;
+
+	private static final Set<Transfer> activeTransfers = ConcurrentHashMap.newKeySet();
+
+	private static final Deque<Double> recentThroughputs = new ArrayDeque<>(RECENT_TRANSFERS);
+
+	private static final ConcurrentMap<String, AtomicLong> transferredBytesMap = new ConcurrentHashMap<>();
+
+	private static ScheduledExecutorService checkExecutorService;
+
+	/**
+	 * Registers a new transfer, checks for stragglers are scheduled on first call.
+	 *
+	 * @param downloadUrl - URL of file being transferred.
+	 * @param onStraggler - Run once if transfer becomes a straggler, null if nothing needs to be done.
+	 * @return Transfer, must be closed once it stops.
+	 */
+	public static Transfer start(String downloadUrl, Runnable onStraggler) {
+		Transfer transfer = new Transfer(downloadUrl, onStraggler);
+		activeTransfers.add(transfer);
+		scheduleChecks();
+		return transfer;
+	}
+
+	/**
+	 * Used to measure bytes copied by a single download attempt, as difference of values taken before and after attempt.
+	 *
+	 * @param downloadUrl - URL of file.
+	 * @return Bytes read by all transfers of URL, till it is forgotten.
+	 */
+	public static long getTransferredBytes(String downloadUrl) {
+		AtomicLong transferredBytes = transferredBytesMap.get(downloadUrl);
+		return transferredBytes == null ? 0 : transferredBytes.get();
+	}
+
+	/**
+	 * Forgets bytes read by transfers of URL, called once its download is finished.
+	 *
+	 * @param downloadUrl - URL of file.
+	 */
+	public static void forget(String downloadUrl) {
+		transferredBytesMap.remove(downloadUrl);
+	}
+
+	private static synchronized void scheduleChecks() {
+		long intervalMillis = DMCache.getStragglerCheckIntervalMillis();
+		if (checkExecutorService != null || intervalMillis <= 0) {
+			return;
+		}
+		checkExecutorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "straggler-monitor");
+			thread.setDaemon(true);
+			return thread;
+		});
+		checkExecutorService.scheduleWithFixedDelay(TransferMonitor::checkStragglers, intervalMillis, intervalMillis,
+				TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Compares throughput of every running transfer with median of batch, and runs onStraggler of transfers which have fallen behind.
+	 * A transfer is marked as straggler only once.
+	 *
+	 * @return Transfers marked as straggler in this check.
+	 */
+	public static List<Transfer> checkStragglers() {
+		double slownessRatio = DMCache.getStragglerSlownessRatio();
+		if (slownessRatio <= 0) {
+			return Collections.emptyList();
+		}
+		long nowNanos = System.nanoTime();
+		long minAgeNanos = TimeUnit.MILLISECONDS.toNanos(DMCache.getStragglerMinAgeMillis());
+		List<Transfer> candidates = new ArrayList<>();
+		List<Double> samples = new ArrayList<>();
+		for (Transfer transfer : activeTransfers) {
+			if (nowNanos - transfer.startNanos >= minAgeNanos) {
+				candidates.add(transfer);
+				samples.add(transfer.getBytesPerSecond(nowNanos));
+			}
+		}
+		synchronized (recentThroughputs) {
+			samples.addAll(recentThroughputs);
+		}
+		if (samples.size() < Math.max(2, DMCache.getStragglerMinTransfers())) {
+			return Collections.emptyList();
+		}
+		Collections.sort(samples);
+		int middle = samples.size() / 2;
+		double median = samples.size() % 2 == 1 ? samples.get(middle) : (samples.get(middle - 1) + samples.get(middle)) / 2;
+		List<Transfer> stragglers = new ArrayList<>();
+		for (Transfer transfer : candidates) {
+			double bytesPerSecond = transfer.getBytesPerSecond(nowNanos);
+			if (transfer.onStraggler == null || bytesPerSecond >= median * slownessRatio || !transfer.straggler.compareAndSet(false, true)) {
+				continue;
+			}
+			logger.info("Transfer of " + transfer.downloadUrl + " is a straggler at " + (long) bytesPerSecond
+					+ " bytes/s, median of batch is " + (long) median + " bytes/s");
+			stragglers.add(transfer);
+			try {
+				transfer.onStraggler.run();
+			} catch (RuntimeException e) {
+				logger.error("Straggler callback failed for " + transfer.downloadUrl, e);
+			}
+		}
+		return stragglers;
+	}
+
+	/**
+	 * Forgets throughput of finished transfers, so next batch is measured afresh.
+	 */
+	public static void reset() {
+		synchronized (recentThroughputs) {
+			recentThroughputs.clear();
+		}
+	}
+
+	private static void recordThroughput(double bytesPerSecond) {
+		synchronized (recentThroughputs) {
+			if (recentThroughputs.size() == RECENT_TRANSFERS) {
+				recentThroughputs.removeFirst();
+			}
+			recentThroughputs.addLast(bytesPerSecond);
+		}
+	}
+
+	/**
+	 * A single attempt of transferring a file or range. Once cancelled, every read of its tracked streams fails with TransferCancelledException,
+	 * so attempt stops at its next read and cleans up on its own thread.
+	 */
+	public static class Transfer implements AutoCloseable {
+
+		private final String downloadUrl;
+
+		private final Runnable onStraggler;
+
+		private final long startNanos = System.nanoTime();
+
+		private final AtomicLong bytes = new AtomicLong();
+
+		private final AtomicLong transferredBytes;
+
+		private final AtomicBoolean straggler = new AtomicBoolean();
+
+		private volatile boolean cancelled;
+
+		private Transfer(String downloadUrl, Runnable onStraggler) {
+			this.downloadUrl = downloadUrl;
+			this.onStraggler = onStraggler;
+			this.transferredBytes = transferredBytesMap.computeIfAbsent(downloadUrl, key -> new AtomicLong());
+		}
+
+		/**
+		 * @param inputStream - Stream of remote data.
+		 * @return Stream counting bytes read towards this transfer, null if inputStream is null.
+		 */
+		public InputStream track(InputStream inputStream) {
+			return inputStream == null ? null : new TrackedInputStream(inputStream, this);
+		}
+
+		/**
+		 * @param count - Bytes transferred, used by transfers which do not read through a stream.
+		 */
+		public void addBytes(long count) {
+			bytes.addAndGet(count);
+			transferredBytes.addAndGet(count);
+		}
+
+		public long getBytes() {
+			return bytes.get();
+		}
+
+		/**
+		 * @param nowNanos - Current System.nanoTime().
+		 * @return Average throughput since transfer started.
+		 */
+		public double getBytesPerSecond(long nowNanos) {
+			return bytes.get() * 1e9 / Math.max(1, nowNanos - startNanos);
+		}
+
+		public void cancel() {
+			cancelled = true;
+		}
+
+		public boolean isCancelled() {
+			return cancelled;
+		}
+
+		public boolean isStraggler() {
+			return straggler.get();
+		}
+
+		/**
+		 * Unregisters transfer. Throughput of a transfer which was not cancelled is kept as part of batch for following checks.
+		 */
+		@Override
+		public void close() {
+			if (activeTransfers.remove(this) && !cancelled && bytes.get() > 0) {
+				recordThroughput(getBytesPerSecond(System.nanoTime()));
+			}
+		}
+	}
+
+	/**
+	 * Thrown by read of a cancelled transfer.
+	 */
+	public static class TransferCancelledException extends IOException {
+
+		private static final long serialVersionUID = 1L;
+
+		public TransferCancelledException(String message) {
+			super(message);
+		}
+	}
+
+	/**
+	 * Stream counting every read towards its transfer.
+	 */
+	private static class TrackedInputStream extends FilterInputStream {
+
+		private final Transfer transfer;
+
+		private TrackedInputStream(InputStream inputStream, Transfer transfer) {
+			super(inputStream);
+			this.transfer = transfer;
+		}
+
+		@Override
+		public int read() throws IOException {
+			checkCancelled();
+			int value = super.read();
+			if (value >= 0) {
+				transfer.addBytes(1);
+			}
+			return value;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			checkCancelled();
+			int read = super.read(b, off, len);
+			if (read > 0) {
+				transfer.addBytes(read);
+			}
+			return read;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			checkCancelled();
+			long skipped = super.skip(n);
+			transfer.addBytes(skipped);
+			return skipped;
+		}
+
+		private void checkCancelled() throws TransferCancelledException {
+			if (transfer.cancelled) {
+				throw new TransferCancelledException("Transfer of " + transfer.downloadUrl + " was cancelled");
+			}
+		}
+	}
+
+}
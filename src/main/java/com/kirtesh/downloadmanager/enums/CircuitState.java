@@ -0,0 +1,28 @@
+package com.kirtesh.downloadmanager.enums;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ * Contains all states of circuit of a host (see HostCircuitBreaker) as Enum Constants.
+ * 
+ * CLOSED - Host is healthy, its downloads are dispatched and attempted as usual. (Default)
+ * OPEN - Host failed download.circuit.failure.threshold attempts in a row. Its downloads are parked for download.circuit.open.millis, no attempt is made.
+ * HALF_OPEN - Open time has passed and a single probe download is attempted. Circuit closes if probe succeeds, parked downloads then resume. Otherwise it opens again.
+ *
+ */
+public enum CircuitState {
+	
+	CLOSED("CLOSED"),
+	OPEN("OPEN"),
+	HALF_OPEN("HALF_OPEN");
+	
+	private String _circuitState;
+	
+	private CircuitState(String _circuitState) {
+		this._circuitState = _circuitState;
+	}
+
+	public String getCircuitState() {
+		return _circuitState;
+	}
+}
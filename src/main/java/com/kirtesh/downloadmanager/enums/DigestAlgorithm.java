@@ -0,0 +1,46 @@
+package com.kirtesh.downloadmanager.enums;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ * Contains all eligible digest algorithms, computed while file is downloaded, as Enum Constants. Algorithm is selected via property digest.algorithm.
+ * 
+ * CRC32C - java.util.zip.CRC32C, hardware accelerated checksum. Fastest, detects corruption but not tampering.
+ * SHA_256 - SHA-256 MessageDigest, same as sha256sum.
+ * MD5 - MD5 MessageDigest, same as md5sum. Only for sources publishing MD5 manifests.
+ *
+ */
+public enum DigestAlgorithm {
+	
+	CRC32C("CRC32C"),
+	SHA_256("SHA-256"),
+	MD5("MD5");
+	
+	private String _digestAlgorithm;
+	
+	private DigestAlgorithm(String _digestAlgorithm) {
+		this._digestAlgorithm = _digestAlgorithm;
+	}
+
+	public String getDigestAlgorithm() {
+		return _digestAlgorithm;
+	}
+
+	/**
+	 * Converts property value to DigestAlgorithm.
+	 * 
+	 * @param digestAlgorithm - Value of property digest.algorithm, eg. SHA-256 or SHA_256
+	 * @return Matching DigestAlgorithm, null if value is empty or invalid i.e. no digest is computed.
+	 */
+	public static DigestAlgorithm fromProperty(String digestAlgorithm) {
+		if (digestAlgorithm != null) {
+			for (DigestAlgorithm algorithm : DigestAlgorithm.values()) {
+				if (algorithm._digestAlgorithm.equalsIgnoreCase(digestAlgorithm.trim())
+						|| algorithm.name().equalsIgnoreCase(digestAlgorithm.trim())) {
+					return algorithm;
+				}
+			}
+		}
+		return null;
+	}
+}
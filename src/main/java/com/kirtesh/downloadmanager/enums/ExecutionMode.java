@@ -0,0 +1,45 @@
+package com.kirtesh.downloadmanager.enums;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ * Contains all eligible thread models for running blocking downloads (CommonDownloader, HttpClientDownloader, SFTPDownloader) as Enum Constants.
+ * Mode is selected via property download.execution.mode.
+ * 
+ * PLATFORM - Downloads run on scheduled thread pool of RetryExecutor, at most scheduled.threadpool.core.size downloads are in flight. (Default)
+ * VIRTUAL - Every download attempt and every segment runs on its own virtual thread, RetryExecutor only schedules retries on a small pool.
+ *           Upto async.max.concurrent.downloads blocking downloads are in flight without tuning pool sizes. Needs JDK 21 or newer, PLATFORM is used otherwise.
+ *
+ */
+public enum ExecutionMode {
+	
+	PLATFORM("PLATFORM"),
+	VIRTUAL("VIRTUAL");
+	
+	private String _executionMode;
+	
+	private ExecutionMode(String _executionMode) {
+		this._executionMode = _executionMode;
+	}
+
+	public String getExecutionMode() {
+		return _executionMode;
+	}
+
+	/**
+	 * Converts property value to ExecutionMode.
+	 * 
+	 * @param executionMode - Value of property download.execution.mode
+	 * @return Matching ExecutionMode, PLATFORM if value is empty or invalid.
+	 */
+	public static ExecutionMode fromProperty(String executionMode) {
+		if (executionMode != null) {
+			for (ExecutionMode mode : ExecutionMode.values()) {
+				if (mode._executionMode.equalsIgnoreCase(executionMode.trim())) {
+					return mode;
+				}
+			}
+		}
+		return PLATFORM;
+	}
+}
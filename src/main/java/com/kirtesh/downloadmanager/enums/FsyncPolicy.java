@@ -0,0 +1,48 @@
+package com.kirtesh.downloadmanager.enums;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ * Contains all eligible policies of syncing downloaded data to disk as Enum Constants. Policy is selected via property fsync.policy.
+ * 
+ * CHECKPOINT - .part file is synced at every resume checkpoint before journal is written, and once more before it is published. Journal never claims bytes which are not on disk. (Default)
+ * PUBLISH - .part file is synced only once, before it is published to download directory. Fewer syncs, but after an OS crash or power loss
+ *           a resumed download may contain bytes journal claims but disk lost, they are caught by size / digest verification only.
+ * NONE - Data is never synced explicitly, OS flushes it in background. Fastest, a published file may be incomplete after power loss.
+ * 
+ * With every policy, file is published atomically (temp .part file moved with ATOMIC_MOVE), so download directory never shows partial data to a live consumer.
+ *
+ */
+public enum FsyncPolicy {
+	
+	CHECKPOINT("CHECKPOINT"),
+	PUBLISH("PUBLISH"),
+	NONE("NONE");
+	
+	private String _fsyncPolicy;
+	
+	private FsyncPolicy(String _fsyncPolicy) {
+		this._fsyncPolicy = _fsyncPolicy;
+	}
+
+	public String getFsyncPolicy() {
+		return _fsyncPolicy;
+	}
+
+	/**
+	 * Converts property value to FsyncPolicy.
+	 * 
+	 * @param fsyncPolicy - Value of property fsync.policy
+	 * @return Matching FsyncPolicy, CHECKPOINT if value is empty or invalid.
+	 */
+	public static FsyncPolicy fromProperty(String fsyncPolicy) {
+		if (fsyncPolicy != null) {
+			for (FsyncPolicy policy : FsyncPolicy.values()) {
+				if (policy._fsyncPolicy.equalsIgnoreCase(fsyncPolicy.trim())) {
+					return policy;
+				}
+			}
+		}
+		return CHECKPOINT;
+	}
+}
@@ -0,0 +1,46 @@
+package com.kirtesh.downloadmanager.enums;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ * Contains all eligible HTTP client implementations used for HTTP, HTTPS file downloads as Enum Constants.
+ * Engine is selected via property http.engine.
+ * 
+ * URL_CONNECTION - java.net.URLConnection, one request per connection unless JDK keep-alive cache can reuse it. (Default)
+ * HTTP_CLIENT - java.net.http.HttpClient, keeps pool of connections per host and multiplexes requests over HTTP/2 where server supports it.
+ * ASYNC_HTTP_CLIENT - java.net.http.HttpClient with non blocking sendAsync, no thread waits on network, for 10k+ concurrent downloads.
+ *
+ */
+public enum HttpEngine {
+	
+	URL_CONNECTION("URL_CONNECTION"),
+	HTTP_CLIENT("HTTP_CLIENT"),
+	ASYNC_HTTP_CLIENT("ASYNC_HTTP_CLIENT");
+	
+	private String _httpEngine;
+	
+	private HttpEngine(String _httpEngine) {
+		this._httpEngine = _httpEngine;
+	}
+
+	public String getHttpEngine() {
+		return _httpEngine;
+	}
+
+	/**
+	 * Converts property value to HttpEngine.
+	 * 
+	 * @param httpEngine - Value of property http.engine
+	 * @return Matching HttpEngine, URL_CONNECTION if value is empty or invalid.
+	 */
+	public static HttpEngine fromProperty(String httpEngine) {
+		if (httpEngine != null) {
+			for (HttpEngine engine : HttpEngine.values()) {
+				if (engine._httpEngine.equalsIgnoreCase(httpEngine.trim())) {
+					return engine;
+				}
+			}
+		}
+		return URL_CONNECTION;
+	}
+}
@@ -0,0 +1,30 @@
+package com.kirtesh.downloadmanager.enums;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ * Contains all states of a download recorded in job journal (see JobJournal) as Enum Constants.
+ * 
+ * QUEUED - Download is queued on DownloadExecutorService.
+ * STARTED - Download is dispatched and its first attempt is made.
+ * COMPLETED - Download, including all its retries, succeeded. Record holds filepath and size of downloaded file.
+ * FAILED - Download failed after all its retries, i.e. it is dead-lettered and can be retried alone in next run (job.journal.retry.failed.only).
+ *
+ */
+public enum JobState {
+	
+	QUEUED("QUEUED"),
+	STARTED("STARTED"),
+	COMPLETED("COMPLETED"),
+	FAILED("FAILED");
+	
+	private String _jobState;
+	
+	private JobState(String _jobState) {
+		this._jobState = _jobState;
+	}
+
+	public String getJobState() {
+		return _jobState;
+	}
+}
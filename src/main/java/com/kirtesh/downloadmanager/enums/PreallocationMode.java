@@ -0,0 +1,46 @@
+package com.kirtesh.downloadmanager.enums;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ * Contains all eligible ways of preallocating .part file of a download of known size as Enum Constants. Mode is selected via property preallocation.mode.
+ * 
+ * SPARSE - File is extended to its final size (RandomAccessFile.setLength). Cheap, but most filesystems allocate blocks only when they are written. (Default)
+ * FULL - File is extended and a byte is written in every block, so filesystem allocates all blocks upfront, same as posix_fallocate emulation of glibc.
+ *        Reduces fragmentation & a full disk is hit before any data is downloaded, at cost of touching every block once.
+ * NONE - File grows as data is written. .part file of a resumable download (see DownloadJournal) is still extended to its final size, without allocating blocks.
+ *
+ */
+public enum PreallocationMode {
+	
+	SPARSE("SPARSE"),
+	FULL("FULL"),
+	NONE("NONE");
+	
+	private String _preallocationMode;
+	
+	private PreallocationMode(String _preallocationMode) {
+		this._preallocationMode = _preallocationMode;
+	}
+
+	public String getPreallocationMode() {
+		return _preallocationMode;
+	}
+
+	/**
+	 * Converts property value to PreallocationMode.
+	 * 
+	 * @param preallocationMode - Value of property preallocation.mode
+	 * @return Matching PreallocationMode, SPARSE if value is empty or invalid.
+	 */
+	public static PreallocationMode fromProperty(String preallocationMode) {
+		if (preallocationMode != null) {
+			for (PreallocationMode mode : PreallocationMode.values()) {
+				if (mode._preallocationMode.equalsIgnoreCase(preallocationMode.trim())) {
+					return mode;
+				}
+			}
+		}
+		return SPARSE;
+	}
+}
@@ -0,0 +1,53 @@
+package com.kirtesh.downloadmanager.enums;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ * Contains all eligible priority classes of a download as Enum Constants. Priority of a URL is set in file download.url.filepath, eg. `https://host/file priority=HIGH job=backfill`.
+ * DownloadScheduler shares permits across priority classes in ratio of their weights (download.priority.weights), every class with queued downloads gets its turn, so low priority work is never starved.
+ * 
+ * HIGH - Urgent downloads, besides their weight they may use permits reserved by download.priority.reserved.permits. Default weight 8.
+ * NORMAL - Downloads with no priority specified. Default weight 4. (Default)
+ * LOW - Bulk / backfill downloads. Default weight 1.
+ *
+ */
+public enum Priority {
+	
+	HIGH("HIGH", 8),
+	NORMAL("NORMAL", 4),
+	LOW("LOW", 1);
+	
+	private String _priority;
+	
+	private int _defaultWeight;
+	
+	private Priority(String _priority, int _defaultWeight) {
+		this._priority = _priority;
+		this._defaultWeight = _defaultWeight;
+	}
+
+	public String getPriority() {
+		return _priority;
+	}
+
+	public int getDefaultWeight() {
+		return _defaultWeight;
+	}
+
+	/**
+	 * Converts value of `priority` option in file download.url.filepath to Priority.
+	 * 
+	 * @param priority - Value of priority option, case insensitive.
+	 * @return Matching Priority, null if value is empty or invalid.
+	 */
+	public static Priority fromProperty(String priority) {
+		if (priority != null) {
+			for (Priority value : Priority.values()) {
+				if (value._priority.equalsIgnoreCase(priority.trim())) {
+					return value;
+				}
+			}
+		}
+		return null;
+	}
+}
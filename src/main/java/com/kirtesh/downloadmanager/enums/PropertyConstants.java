@@ -28,7 +28,43 @@ public enum PropertyConstants {
 	CREATE_DOWNLOAD_FILEPATH_IF_NOT_EXIST("create.download.filepath"),
 	URL_TO_DOWNLOAD_FILEPATH("download.url.filepath"),
 	OVERRIDE_EXISITING_FILE("override.existing.file"),
+	STAGING_DIRECTORY_NAME("staging.directory.name"),
+	RESUME_CHECKPOINT_BYTES("resume.checkpoint.bytes"),
+	FSYNC_POLICY("fsync.policy"),
+	PREALLOCATION_MODE("preallocation.mode"),
+	DISK_ADMISSION_ENABLED("disk.admission.enabled"),
+	DISK_MIN_FREE_BYTES("disk.min.free.bytes"),
+	REVALIDATION_INDEX_FILEPATH("revalidation.index.filepath"),
+	THROTTLE_CONFIG_FILEPATH("throttle.config.filepath"),
+	THROTTLE_CONFIG_RELOAD_MILLIS("throttle.config.reload.millis"),
+	DIGEST_ALGORITHM("digest.algorithm"),
+	DIGEST_MANIFEST_FILEPATH("digest.manifest.filepath"),
+	DIGEST_RESULTS_FILEPATH("digest.results.filepath"),
+	CONTENT_STORE_DIRECTORY_NAME("content.store.directory.name"),
+	DOWNLOAD_PREFLIGHT_ENABLED("download.preflight.enabled"),
+	DOWNLOAD_SCHEDULING_POLICY("download.scheduling.policy"),
+	LISTING_PARALLELISM("listing.parallelism"),
+	DOWNLOAD_PRIORITY_WEIGHTS("download.priority.weights"),
+	DOWNLOAD_PRIORITY_RESERVED_PERMITS("download.priority.reserved.permits"),
+	CONCURRENCY_ADAPTIVE_ENABLED("concurrency.adaptive.enabled"),
+	CONCURRENCY_ADAPTIVE_MIN_LIMIT("concurrency.adaptive.min.limit"),
+	CONCURRENCY_ADAPTIVE_MAX_LIMIT("concurrency.adaptive.max.limit"),
+	CONCURRENCY_ADAPTIVE_WINDOW_MILLIS("concurrency.adaptive.window.millis"),
+	CONCURRENCY_ADAPTIVE_LATENCY_TOLERANCE("concurrency.adaptive.latency.tolerance"),
+	STRAGGLER_CHECK_INTERVAL_MILLIS("straggler.check.interval.millis"),
+	STRAGGLER_SLOWNESS_RATIO("straggler.slowness.ratio"),
+	STRAGGLER_MIN_AGE_MILLIS("straggler.min.age.millis"),
+	STRAGGLER_MIN_TRANSFERS("straggler.min.transfers"),
+	MIRROR_CHUNK_SIZE_BYTES("mirror.chunk.size.bytes"),
+	MIRROR_CONNECTIONS_PER_SOURCE("mirror.connections.per.source"),
+	MIRROR_MAX_FAILURES("mirror.max.failures"),
+	JOB_JOURNAL_FILEPATH("job.journal.filepath"),
+	JOB_JOURNAL_GROUP_COMMIT_MILLIS("job.journal.group.commit.millis"),
+	JOB_JOURNAL_RETRY_FAILED_ONLY("job.journal.retry.failed.only"),
 	
+	HTTP_ENGINE("http.engine"),
+	ASYNC_MAX_CONCURRENT_DOWNLOADS("async.max.concurrent.downloads"),
+	ASYNC_EVENT_LOOP_THREADS("async.event.loop.threads"),
 	HTTP_CONNECTION_TIMEOUT_IN_MILLIS("http.connection.timeout.millis"),
 	HTTPS_CONNECTION_TIMEOUT_IN_MILLIS("https.connection.timeout.millis"),
 	FTP_CONNECTION_TIMEOUT_IN_MILLIS("ftp.connection.timeout.millis"),
@@ -39,15 +75,37 @@ public enum PropertyConstants {
 	HTTPS_BUFFER_SIZE("https.buffer.size"),
 	HTTP_BUFFER_SIZE("http.buffer.size"),
 	SFTP_BUFFER_SIZE("sftp.buffer.size"),
+	HTTP_SEGMENT_COUNT("http.segment.count"),
+	HTTPS_SEGMENT_COUNT("https.segment.count"),
+	HTTP_SEGMENT_MIN_SIZE_BYTES("http.segment.min.size.bytes"),
+	HTTPS_SEGMENT_MIN_SIZE_BYTES("https.segment.min.size.bytes"),
+	SFTP_SEGMENT_COUNT("sftp.segment.count"),
+	SFTP_SEGMENT_MIN_SIZE_BYTES("sftp.segment.min.size.bytes"),
+	HTTP_TRANSFER_MODE("http.transfer.mode"),
+	HTTPS_TRANSFER_MODE("https.transfer.mode"),
+	FTP_TRANSFER_MODE("ftp.transfer.mode"),
+	SFTP_TRANSFER_MODE("sftp.transfer.mode"),
 	SFTP_SESSION_TIMEOUT_MILLIS("sftp.session.timeout.millis"),
 	SFTP_CHANNEL_TIMEOUT_MILLIS("sftp.channel.timeout.millis"),
 	SFTP_DEFAULT_PORT("sftp.default.port"),
+	SFTP_POOL_MAX_SESSIONS_PER_HOST("sftp.pool.max.sessions.per.host"),
+	SFTP_POOL_MAX_CHANNELS_PER_SESSION("sftp.pool.max.channels.per.session"),
+	SFTP_POOL_IDLE_TIMEOUT_MILLIS("sftp.pool.idle.timeout.millis"),
+	FTP_POOL_MAX_CONNECTIONS_PER_HOST("ftp.pool.max.connections.per.host"),
+	FTP_POOL_IDLE_TIMEOUT_MILLIS("ftp.pool.idle.timeout.millis"),
 	
 	RETRY_EXPONENTIAL_BACKOFF_MILLIS("retry.exponential.backoff.millis"),
 	RETRY_EXPONENTIAL_BACKOFF_MULTIPLIER("retry.exponential.backoff.multiplier"),
 	RETRY_MAX_DELAY_MILLIS("retry.max.delay.millis"),
 	RETRY_MAX_RETRIES("retry.max.retries"),
-	SCHEDULED_THREADPOOL_CORE_SIZE("scheduled.threadpool.core.size");
+	RETRY_BUDGET_RATIO("retry.budget.ratio"),
+	RETRY_BUDGET_BURST("retry.budget.burst"),
+	CIRCUIT_FAILURE_THRESHOLD("circuit.failure.threshold"),
+	CIRCUIT_OPEN_MILLIS("circuit.open.millis"),
+	SCHEDULED_THREADPOOL_CORE_SIZE("scheduled.threadpool.core.size"),
+	DOWNLOAD_EXECUTION_MODE("download.execution.mode"),
+	DOWNLOAD_MAX_CONNECTIONS_PER_HOST("download.max.connections.per.host"),
+	DOWNLOAD_MAX_CONNECTIONS_PER_HOST_OVERRIDES("download.max.connections.per.host.overrides");
 	
 	private static Set<String> propertyNameSet = new HashSet<String>();
 	
@@ -0,0 +1,73 @@
+package com.kirtesh.downloadmanager.enums;
+
+import java.util.Comparator;
+
+import com.kirtesh.downloadmanager.metadata.DownloadMetadata;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ * Contains all eligible orders in which downloads are started as Enum Constants. Policy is selected via property download.scheduling.policy.
+ * Sizes are known only for files probed by preflight stage (download.preflight.enabled), files of unknown size are always started last.
+ * 
+ * FIFO - Downloads are started in order they are listed. (Default)
+ * LONGEST_FIRST - Largest files are started first, so a few huge files do not start last and stretch total runtime.
+ * SHORTEST_FIRST - Smallest files are started first, for fastest time to first results.
+ *
+ */
+public enum SchedulingPolicy {
+	
+	FIFO("FIFO"),
+	LONGEST_FIRST("LONGEST_FIRST"),
+	SHORTEST_FIRST("SHORTEST_FIRST");
+	
+	private String _schedulingPolicy;
+	
+	private SchedulingPolicy(String _schedulingPolicy) {
+		this._schedulingPolicy = _schedulingPolicy;
+	}
+
+	public String getSchedulingPolicy() {
+		return _schedulingPolicy;
+	}
+
+	/**
+	 * @return Comparator ordering downloads as per policy, null for FIFO.
+	 */
+	public Comparator<DownloadMetadata> getComparator() {
+		switch (this) {
+			case LONGEST_FIRST:
+				return (first, second) -> compareBySize(first, second, true);
+			case SHORTEST_FIRST:
+				return (first, second) -> compareBySize(first, second, false);
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * Converts property value to SchedulingPolicy.
+	 * 
+	 * @param schedulingPolicy - Value of property download.scheduling.policy
+	 * @return Matching SchedulingPolicy, FIFO if value is empty or invalid.
+	 */
+	public static SchedulingPolicy fromProperty(String schedulingPolicy) {
+		if (schedulingPolicy != null) {
+			for (SchedulingPolicy policy : SchedulingPolicy.values()) {
+				if (policy._schedulingPolicy.equalsIgnoreCase(schedulingPolicy.trim())) {
+					return policy;
+				}
+			}
+		}
+		return FIFO;
+	}
+
+	private static int compareBySize(DownloadMetadata first, DownloadMetadata second, boolean descending) {
+		long firstLength = first.getContentLength();
+		long secondLength = second.getContentLength();
+		if ((firstLength < 0) != (secondLength < 0)) {
+			return firstLength < 0 ? 1 : -1;
+		}
+		return descending ? Long.compare(secondLength, firstLength) : Long.compare(firstLength, secondLength);
+	}
+}
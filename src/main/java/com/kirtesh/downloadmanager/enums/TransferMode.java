@@ -0,0 +1,46 @@
+package com.kirtesh.downloadmanager.enums;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ * Contains all eligible ways of copying downloaded bytes from remote stream to local file as Enum Constants.
+ * Mode is selected per protocol via property {protocol}.transfer.mode.
+ * 
+ * STREAM - Reads into heap byte[] of {protocol}.buffer.size and writes it to file. (Default)
+ * TRANSFER_FROM - Wraps remote stream as ReadableByteChannel and writes with FileChannel.transferFrom, no heap buffer is involved in Application.
+ * DIRECT_BUFFER - Wraps remote stream as ReadableByteChannel, fills a reused direct ByteBuffer of {protocol}.buffer.size and writes it with a single FileChannel write.
+ *
+ */
+public enum TransferMode {
+	
+	STREAM("STREAM"),
+	TRANSFER_FROM("TRANSFER_FROM"),
+	DIRECT_BUFFER("DIRECT_BUFFER");
+	
+	private String _transferMode;
+	
+	private TransferMode(String _transferMode) {
+		this._transferMode = _transferMode;
+	}
+
+	public String getTransferMode() {
+		return _transferMode;
+	}
+
+	/**
+	 * Converts property value to TransferMode.
+	 * 
+	 * @param transferMode - Value of property {protocol}.transfer.mode
+	 * @return Matching TransferMode, STREAM if value is empty or invalid.
+	 */
+	public static TransferMode fromProperty(String transferMode) {
+		if (transferMode != null) {
+			for (TransferMode mode : TransferMode.values()) {
+				if (mode._transferMode.equalsIgnoreCase(transferMode.trim())) {
+					return mode;
+				}
+			}
+		}
+		return STREAM;
+	}
+}
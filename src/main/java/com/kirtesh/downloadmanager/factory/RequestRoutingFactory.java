@@ -2,12 +2,31 @@ package com.kirtesh.downloadmanager.factory;
 
 import java.util.Properties;
 
+import com.kirtesh.downloadmanager.cache.DMCache;
+import com.kirtesh.downloadmanager.enums.HttpEngine;
 import com.kirtesh.downloadmanager.enums.Protocols;
+import com.kirtesh.downloadmanager.enums.TransferMode;
+import com.kirtesh.downloadmanager.metadata.DownloadMetadata;
 import com.kirtesh.downloadmanager.service.DownloadExecutorService;
 import com.kirtesh.downloadmanager.service.Downloader;
+import com.kirtesh.downloadmanager.service.RemoteDirectoryLister;
+import com.kirtesh.downloadmanager.service.TransferEngine;
+import com.kirtesh.downloadmanager.service.impl.ChannelTransferEngine;
 import com.kirtesh.downloadmanager.service.impl.CommonDownloader;
+import com.kirtesh.downloadmanager.service.impl.DirectBufferTransferEngine;
 import com.kirtesh.downloadmanager.service.impl.DownloadExecutorServiceImpl;
+import com.kirtesh.downloadmanager.service.impl.FTPDirectoryLister;
+import com.kirtesh.downloadmanager.service.impl.FTPDownloader;
+import com.kirtesh.downloadmanager.service.impl.AsyncHttpClientDownloader;
+import com.kirtesh.downloadmanager.service.impl.HttpClientDownloader;
+import com.kirtesh.downloadmanager.service.impl.MirrorDownloader;
+import com.kirtesh.downloadmanager.service.impl.SFTPDirectoryLister;
 import com.kirtesh.downloadmanager.service.impl.SFTPDownloader;
+import com.kirtesh.downloadmanager.service.impl.StreamTransferEngine;
+import com.kirtesh.downloadmanager.service.expansion.UrlExpansionService;
+import com.kirtesh.downloadmanager.service.expansion.impl.UrlExpansionServiceImpl;
+import com.kirtesh.downloadmanager.service.preflight.PreflightService;
+import com.kirtesh.downloadmanager.service.preflight.impl.PreflightServiceImpl;
 import com.kirtesh.downloadmanager.service.startup.StartUpService;
 import com.kirtesh.downloadmanager.service.startup.impl.StartUpServiceImpl;
 import com.kirtesh.downloadmanager.service.validation.ValidationService;
@@ -32,25 +51,96 @@ public class RequestRoutingFactory {
 	 * Returns propert implementation of Download based on protocol on which file needs to be downloaded.
 	 * 
 	 * @param protocols - Enum Protocol, specifying protocol on which Download would take place.
-	 * @return Return CommonDownloder implementation if protocol for Download is FTP, HTTP, or HTTPS else return SFTPDownloader for SFTP protocol.
+	 * @return Return CommonDownloder implementation if protocol for Download is HTTP, or HTTPS, FTPDownloader for FTP protocol else return SFTPDownloader for SFTP protocol.
+	 * 		For HTTP, HTTPS HttpClientDownloader is returned instead, if property http.engine is set to HTTP_CLIENT, AsyncHttpClientDownloader if it is set to ASYNC_HTTP_CLIENT.
 	 */
 	public static Downloader getDownloaderImpl(Protocols protocols) {
 
 		switch (protocols) {
-			case FTP:
 			case HTTP:
 			case HTTPS:
+				HttpEngine httpEngine = HttpEngine.fromProperty(DMCache.getHttpEngine());
+				if (httpEngine == HttpEngine.HTTP_CLIENT) {
+					return new HttpClientDownloader();
+				}
+				if (httpEngine == HttpEngine.ASYNC_HTTP_CLIENT) {
+					return new AsyncHttpClientDownloader();
+				}
 				return new CommonDownloader();
+			case FTP:
+				return new FTPDownloader();
 			case SFTP:
 				return new SFTPDownloader();
 		}
 		return null;
 	}
 
+	/**
+	 * 
+	 * Returns implementation of Download for a file, based on its sources.
+	 * 
+	 * @param downloadMetadata - Metadata of file to be downloaded.
+	 * @return MirrorDownloader if file has mirrorUrls, else implementation for protocol of downloadUrl (see getDownloaderImpl(Protocols)).
+	 */
+	public static Downloader getDownloaderImpl(DownloadMetadata downloadMetadata) {
+
+		if (downloadMetadata.getMirrorUrls() != null && !downloadMetadata.getMirrorUrls().isEmpty()) {
+			return new MirrorDownloader();
+		}
+		return getDownloaderImpl(downloadMetadata.getProtocols());
+	}
+
+	/**
+	 * 
+	 * Returns implementation of TransferEngine based on TransferMode configured for protocol in property {protocol}.transfer.mode.
+	 * 
+	 * @param protocols - Enum Protocol, specifying protocol on which Download would take place.
+	 * @return ChannelTransferEngine for TRANSFER_FROM, DirectBufferTransferEngine for DIRECT_BUFFER else StreamTransferEngine.
+	 */
+	public static TransferEngine getTransferEngine(Protocols protocols) {
+
+		TransferMode transferMode = getCommonUtils().getTransferMode(protocols);
+		switch (transferMode) {
+			case TRANSFER_FROM:
+				return new ChannelTransferEngine();
+			case DIRECT_BUFFER:
+				return new DirectBufferTransferEngine();
+			default:
+				return new StreamTransferEngine();
+		}
+	}
+
+	/**
+	 * 
+	 * Returns implementation of RemoteDirectoryLister used to expand directory / glob URLs of protocol.
+	 * 
+	 * @param protocols - Enum Protocol, specifying protocol of directory to be listed.
+	 * @return SFTPDirectoryLister for SFTP, FTPDirectoryLister for FTP, null for protocols whose directories can not be listed (HTTP, HTTPS).
+	 */
+	public static RemoteDirectoryLister getRemoteDirectoryLister(Protocols protocols) {
+
+		switch (protocols) {
+			case SFTP:
+				return new SFTPDirectoryLister();
+			case FTP:
+				return new FTPDirectoryLister();
+			default:
+				return null;
+		}
+	}
+
 	public static ValidationService getValidationServiceImpl() {
 		return new ValidationServiceImpl();
 	}
 
+	public static PreflightService getPreflightServiceImpl() {
+		return new PreflightServiceImpl();
+	}
+
+	public static UrlExpansionService getUrlExpansionServiceImpl() {
+		return new UrlExpansionServiceImpl();
+	}
+
 	public static StartUpService getStartUpServiceImpl() {
 		return new StartUpServiceImpl();
 	}
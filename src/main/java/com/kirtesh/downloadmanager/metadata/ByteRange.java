@@ -0,0 +1,61 @@
+package com.kirtesh.downloadmanager.metadata;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ * 
+ * It contains a contiguous range of bytes of a remote file. Used while downloading single file in multiple segments.
+ * For eg. 
+ * start - Offset of first byte of range (inclusive).
+ * end - Offset of last byte of range (inclusive), same as HTTP Range header semantics.
+ *
+ */
+public class ByteRange {
+	
+	private long start;
+	
+	private long end;
+	
+	public ByteRange() {
+		super();
+	}
+
+	public ByteRange(long start, long end) {
+		super();
+		this.start = start;
+		this.end = end;
+	}
+
+	public long getStart() {
+		return start;
+	}
+
+	public void setStart(long start) {
+		this.start = start;
+	}
+
+	public long getEnd() {
+		return end;
+	}
+
+	public void setEnd(long end) {
+		this.end = end;
+	}
+
+	/**
+	 * @return Number of bytes contained in range.
+	 */
+	public long getLength() {
+		return end - start + 1;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append(start);
+		builder.append("-");
+		builder.append(end);
+		return builder.toString();
+	}
+	
+}
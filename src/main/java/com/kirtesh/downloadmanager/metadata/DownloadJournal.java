@@ -0,0 +1,145 @@
+package com.kirtesh.downloadmanager.metadata;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.kirtesh.downloadmanager.cache.DiskSpaceAdmission.Reservation;
+import com.kirtesh.downloadmanager.utils.StreamingDigest;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ * 
+ * It contains state of a partially downloaded file kept in staging area. Journal is persisted next to .part file, so a retry or restart can continue download.
+ * For eg. 
+ * downloadUrl - URL of file which is being downloaded.
+ * contentLength - Size of remote file in bytes when download started.
+ * etag, lastModified - Validators of remote file when download started. Download is resumed only if remote file still has same validators.
+ * remainingRanges - Byte ranges which are not yet durably written to .part file.
+ * streamingDigest - Digest being computed while ranges are written, kept in memory only and not persisted. null if digests are not enabled.
+ * reservation - Disk space reserved for download (DiskSpaceAdmission), shrunk at every checkpoint. Kept in memory only and not persisted, null if not set.
+ * lock - Guards remainingRanges and persisting of journal across ranges. A ReentrantLock and not a monitor, as journal is synced to disk while it is held
+ * and a virtual thread blocked inside synchronized block would pin its carrier thread.
+ *
+ */
+public class DownloadJournal {
+	
+	private String downloadUrl;
+	
+	private long contentLength;
+	
+	private String etag;
+	
+	private String lastModified;
+	
+	private List<ByteRange> remainingRanges = new ArrayList<>();
+	
+	private StreamingDigest streamingDigest;
+
+	private Reservation reservation;
+	
+	private final ReentrantLock lock = new ReentrantLock();
+	
+	public DownloadJournal() {
+		super();
+	}
+
+	public DownloadJournal(String downloadUrl, ProbeMetadata probeMetadata, List<ByteRange> remainingRanges) {
+		super();
+		this.downloadUrl = downloadUrl;
+		this.contentLength = probeMetadata.getContentLength();
+		this.etag = probeMetadata.getEtag();
+		this.lastModified = probeMetadata.getLastModified();
+		this.remainingRanges = remainingRanges;
+	}
+
+	public String getDownloadUrl() {
+		return downloadUrl;
+	}
+
+	public void setDownloadUrl(String downloadUrl) {
+		this.downloadUrl = downloadUrl;
+	}
+
+	public long getContentLength() {
+		return contentLength;
+	}
+
+	public void setContentLength(long contentLength) {
+		this.contentLength = contentLength;
+	}
+
+	public String getEtag() {
+		return etag;
+	}
+
+	public void setEtag(String etag) {
+		this.etag = etag;
+	}
+
+	public String getLastModified() {
+		return lastModified;
+	}
+
+	public void setLastModified(String lastModified) {
+		this.lastModified = lastModified;
+	}
+
+	public List<ByteRange> getRemainingRanges() {
+		return remainingRanges;
+	}
+
+	public void setRemainingRanges(List<ByteRange> remainingRanges) {
+		this.remainingRanges = remainingRanges;
+	}
+
+	/**
+	 * @return Number of bytes durably written to .part file.
+	 */
+	public long getBytesWritten() {
+		long remaining = 0;
+		for (ByteRange range : remainingRanges) {
+			remaining += range.getLength();
+		}
+		return contentLength - remaining;
+	}
+
+	public ReentrantLock getLock() {
+		return lock;
+	}
+
+	public StreamingDigest getStreamingDigest() {
+		return streamingDigest;
+	}
+
+	public void setStreamingDigest(StreamingDigest streamingDigest) {
+		this.streamingDigest = streamingDigest;
+	}
+
+	public Reservation getReservation() {
+		return reservation;
+	}
+
+	public void setReservation(Reservation reservation) {
+		this.reservation = reservation;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("DownloadJournal [downloadUrl=");
+		builder.append(downloadUrl);
+		builder.append(", contentLength=");
+		builder.append(contentLength);
+		builder.append(", etag=");
+		builder.append(etag);
+		builder.append(", lastModified=");
+		builder.append(lastModified);
+		builder.append(", remainingRanges=");
+		builder.append(remainingRanges);
+		builder.append("]");
+		return builder.toString();
+	}
+	
+}
@@ -1,5 +1,9 @@
 package com.kirtesh.downloadmanager.metadata;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import com.kirtesh.downloadmanager.enums.Priority;
 import com.kirtesh.downloadmanager.enums.Protocols;
 /**
  * 
@@ -11,16 +15,39 @@ import com.kirtesh.downloadmanager.enums.Protocols;
  * protocol - Specifies protocol on which download takes place.
  * downloadUrl - Specifies complete URL of file which needs to be downloaded.
  * filePath - Contains complete filepath of Local Disk where file needs to be saved.
+ * digest - Digest (digest.algorithm) of downloaded file in lower case hex, set once download completes. null if digests are not enabled.
+ * revalidationEntry - Validators of copy of same URL downloaded to filePath in an earlier run, null if there is none. Used for conditional requests.
+ * probeMetadata - Size, byte range support & validators of remote file learnt by preflight stage (PreflightService), null if file was not probed.
+ * priority - Priority class of download used by DownloadScheduler, set from `priority` option in file download.url.filepath. NORMAL by default.
+ * jobId - Job to which download belongs, set from `job` option in file download.url.filepath. Jobs of same priority share permits equally. DEFAULT_JOB_ID by default.
+ * mirrorUrls - URLs of same file on other mirrors, set from `mirrors` option in file download.url.filepath. File is then downloaded by MirrorDownloader. Empty by default.
  *
  */
 public class DownloadMetadata {
 	
+	/**
+	 * Job of downloads listed without `job` option.
+	 */
+	public static final String DEFAULT_JOB_ID = "default";
+	
 	private Protocols protocols;
 	
 	private String downloadUrl;
 	
 	private String filePath;
 	
+	private RevalidationEntry revalidationEntry;
+	
+	private String digest;
+	
+	private ProbeMetadata probeMetadata;
+	
+	private Priority priority = Priority.NORMAL;
+	
+	private String jobId = DEFAULT_JOB_ID;
+	
+	private List<String> mirrorUrls = new ArrayList<>();
+	
 	public DownloadMetadata() {
 		super();
 	}
@@ -56,6 +83,61 @@ public class DownloadMetadata {
 		this.filePath = filePath;
 	}
 
+	public RevalidationEntry getRevalidationEntry() {
+		return revalidationEntry;
+	}
+
+	public void setRevalidationEntry(RevalidationEntry revalidationEntry) {
+		this.revalidationEntry = revalidationEntry;
+	}
+
+	public String getDigest() {
+		return digest;
+	}
+
+	public void setDigest(String digest) {
+		this.digest = digest;
+	}
+
+	public ProbeMetadata getProbeMetadata() {
+		return probeMetadata;
+	}
+
+	public void setProbeMetadata(ProbeMetadata probeMetadata) {
+		this.probeMetadata = probeMetadata;
+	}
+
+	public Priority getPriority() {
+		return priority;
+	}
+
+	public void setPriority(Priority priority) {
+		this.priority = priority;
+	}
+
+	public String getJobId() {
+		return jobId;
+	}
+
+	public void setJobId(String jobId) {
+		this.jobId = jobId;
+	}
+
+	public List<String> getMirrorUrls() {
+		return mirrorUrls;
+	}
+
+	public void setMirrorUrls(List<String> mirrorUrls) {
+		this.mirrorUrls = mirrorUrls;
+	}
+
+	/**
+	 * @return Size of remote file learnt by preflight stage, -1 if unknown.
+	 */
+	public long getContentLength() {
+		return probeMetadata == null ? -1 : probeMetadata.getContentLength();
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder builder = new StringBuilder();
@@ -65,6 +147,14 @@ public class DownloadMetadata {
 		builder.append(downloadUrl);
 		builder.append(", filePath=");
 		builder.append(filePath);
+		builder.append(", digest=");
+		builder.append(digest);
+		builder.append(", priority=");
+		builder.append(priority);
+		builder.append(", jobId=");
+		builder.append(jobId);
+		builder.append(", mirrorUrls=");
+		builder.append(mirrorUrls);
 		builder.append("]");
 		return builder.toString();
 	}
@@ -0,0 +1,74 @@
+package com.kirtesh.downloadmanager.metadata;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.kirtesh.downloadmanager.enums.Priority;
+/**
+ *
+ * @author kirteshdudawat
+ *
+ *
+ * It contains options specified after a URL in file download.url.filepath, eg. `https://host/file priority=HIGH job=nightly-report mirrors=https://mirror/file,sftp://origin/file`.
+ * For eg.
+ * priority - Priority class of download, NORMAL if not specified.
+ * jobId - Job to which download belongs, DownloadMetadata.DEFAULT_JOB_ID if not specified. Jobs of same priority share permits equally.
+ * mirrorUrls - URLs of same file on other mirrors, possibly of other protocols. Empty if not specified.
+ *
+ */
+public class DownloadOptions {
+
+	private Priority priority = Priority.NORMAL;
+
+	private String jobId = DownloadMetadata.DEFAULT_JOB_ID;
+
+	private List<String> mirrorUrls = new ArrayList<>();
+
+	public DownloadOptions() {
+		super();
+	}
+
+	public DownloadOptions(Priority priority, String jobId) {
+		super();
+		this.priority = priority;
+		this.jobId = jobId;
+	}
+
+	public Priority getPriority() {
+		return priority;
+	}
+
+	public void setPriority(Priority priority) {
+		this.priority = priority;
+	}
+
+	public String getJobId() {
+		return jobId;
+	}
+
+	public void setJobId(String jobId) {
+		this.jobId = jobId;
+	}
+
+	public List<String> getMirrorUrls() {
+		return mirrorUrls;
+	}
+
+	public void setMirrorUrls(List<String> mirrorUrls) {
+		this.mirrorUrls = mirrorUrls;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("DownloadOptions [priority=");
+		builder.append(priority);
+		builder.append(", jobId=");
+		builder.append(jobId);
+		builder.append(", mirrorUrls=");
+		builder.append(mirrorUrls);
+		builder.append("]");
+		return builder.toString();
+	}
+
+}
@@ -0,0 +1,100 @@
+package com.kirtesh.downloadmanager.metadata;
+
+import com.kirtesh.downloadmanager.enums.JobState;
+/**
+ *
+ * @author kirteshdudawat
+ *
+ *
+ * It contains last recorded state of a download in job journal (see JobJournal), replayed at Startup so completed downloads are not made again.
+ * For eg.
+ * downloadUrl - Complete URL of file.
+ * jobState - Last recorded JobState of download.
+ * filePath - Complete filepath of Local Disk where file was saved, set only for COMPLETED.
+ * contentLength - Size of saved file in bytes, -1 unless COMPLETED.
+ * error - Error of last attempt, set only for FAILED.
+ *
+ */
+public class JobEntry {
+
+	private String downloadUrl;
+
+	private JobState jobState;
+
+	private String filePath;
+
+	private long contentLength = -1;
+
+	private String error;
+
+	public JobEntry() {
+		super();
+	}
+
+	public JobEntry(String downloadUrl, JobState jobState, String filePath, long contentLength, String error) {
+		super();
+		this.downloadUrl = downloadUrl;
+		this.jobState = jobState;
+		this.filePath = filePath;
+		this.contentLength = contentLength;
+		this.error = error;
+	}
+
+	public String getDownloadUrl() {
+		return downloadUrl;
+	}
+
+	public void setDownloadUrl(String downloadUrl) {
+		this.downloadUrl = downloadUrl;
+	}
+
+	public JobState getJobState() {
+		return jobState;
+	}
+
+	public void setJobState(JobState jobState) {
+		this.jobState = jobState;
+	}
+
+	public String getFilePath() {
+		return filePath;
+	}
+
+	public void setFilePath(String filePath) {
+		this.filePath = filePath;
+	}
+
+	public long getContentLength() {
+		return contentLength;
+	}
+
+	public void setContentLength(long contentLength) {
+		this.contentLength = contentLength;
+	}
+
+	public String getError() {
+		return error;
+	}
+
+	public void setError(String error) {
+		this.error = error;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("JobEntry [downloadUrl=");
+		builder.append(downloadUrl);
+		builder.append(", jobState=");
+		builder.append(jobState);
+		builder.append(", filePath=");
+		builder.append(filePath);
+		builder.append(", contentLength=");
+		builder.append(contentLength);
+		builder.append(", error=");
+		builder.append(error);
+		builder.append("]");
+		return builder.toString();
+	}
+
+}
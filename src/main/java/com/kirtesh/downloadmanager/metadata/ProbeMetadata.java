@@ -0,0 +1,104 @@
+package com.kirtesh.downloadmanager.metadata;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ * 
+ * It contains metadata of remote file, learnt before actual download takes place (HTTP HEAD / SFTP stat).
+ * For eg. 
+ * contentLength - Size of remote file in bytes, -1 if unknown.
+ * acceptRanges - Specifies if remote file can be read from an offset i.e. supports byte ranges / resume.
+ * etag - ETag of remote file (HTTP only), null if unknown.
+ * lastModified - Last modification time of remote file as returned by server, null if unknown.
+ * notModified - Specifies that remote file has not changed since it was last downloaded (HTTP 304), hence download can be skipped.
+ *
+ */
+public class ProbeMetadata {
+	
+	private long contentLength = -1;
+	
+	private boolean acceptRanges;
+	
+	private String etag;
+	
+	private String lastModified;
+	
+	private boolean notModified;
+	
+	public ProbeMetadata() {
+		super();
+	}
+
+	public ProbeMetadata(long contentLength, boolean acceptRanges, String etag, String lastModified) {
+		super();
+		this.contentLength = contentLength;
+		this.acceptRanges = acceptRanges;
+		this.etag = etag;
+		this.lastModified = lastModified;
+	}
+
+	public long getContentLength() {
+		return contentLength;
+	}
+
+	public void setContentLength(long contentLength) {
+		this.contentLength = contentLength;
+	}
+
+	public boolean isAcceptRanges() {
+		return acceptRanges;
+	}
+
+	public void setAcceptRanges(boolean acceptRanges) {
+		this.acceptRanges = acceptRanges;
+	}
+
+	public String getEtag() {
+		return etag;
+	}
+
+	public void setEtag(String etag) {
+		this.etag = etag;
+	}
+
+	public String getLastModified() {
+		return lastModified;
+	}
+
+	public void setLastModified(String lastModified) {
+		this.lastModified = lastModified;
+	}
+
+	public boolean isNotModified() {
+		return notModified;
+	}
+
+	public void setNotModified(boolean notModified) {
+		this.notModified = notModified;
+	}
+
+	/**
+	 * @return true if file size is known and remote file can be read from an offset.
+	 */
+	public boolean isResumable() {
+		return acceptRanges && contentLength > 0;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("ProbeMetadata [contentLength=");
+		builder.append(contentLength);
+		builder.append(", acceptRanges=");
+		builder.append(acceptRanges);
+		builder.append(", etag=");
+		builder.append(etag);
+		builder.append(", lastModified=");
+		builder.append(lastModified);
+		builder.append(", notModified=");
+		builder.append(notModified);
+		builder.append("]");
+		return builder.toString();
+	}
+	
+}
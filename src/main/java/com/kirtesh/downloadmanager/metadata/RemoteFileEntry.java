@@ -0,0 +1,84 @@
+package com.kirtesh.downloadmanager.metadata;
+/**
+ *
+ * @author kirteshdudawat
+ *
+ *
+ * It contains a single entry of a remote directory listing, used while expanding directory / glob URLs.
+ * For eg.
+ * name - Name of file or directory inside listed directory, without any path.
+ * directory - true if entry is a directory.
+ * size - Size of file in bytes, -1 if unknown.
+ * lastModifiedMillis - Last modification time of file in epoch millis, -1 if unknown.
+ *
+ */
+public class RemoteFileEntry {
+
+	private String name;
+
+	private boolean directory;
+
+	private long size = -1;
+
+	private long lastModifiedMillis = -1;
+
+	public RemoteFileEntry() {
+		super();
+	}
+
+	public RemoteFileEntry(String name, boolean directory, long size, long lastModifiedMillis) {
+		super();
+		this.name = name;
+		this.directory = directory;
+		this.size = size;
+		this.lastModifiedMillis = lastModifiedMillis;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public boolean isDirectory() {
+		return directory;
+	}
+
+	public void setDirectory(boolean directory) {
+		this.directory = directory;
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	public void setSize(long size) {
+		this.size = size;
+	}
+
+	public long getLastModifiedMillis() {
+		return lastModifiedMillis;
+	}
+
+	public void setLastModifiedMillis(long lastModifiedMillis) {
+		this.lastModifiedMillis = lastModifiedMillis;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("RemoteFileEntry [name=");
+		builder.append(name);
+		builder.append(", directory=");
+		builder.append(directory);
+		builder.append(", size=");
+		builder.append(size);
+		builder.append(", lastModifiedMillis=");
+		builder.append(lastModifiedMillis);
+		builder.append("]");
+		return builder.toString();
+	}
+
+}
@@ -0,0 +1,99 @@
+package com.kirtesh.downloadmanager.metadata;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ * 
+ * It contains validators of a file downloaded in an earlier run, kept in RevalidationIndex so an unchanged remote file is not downloaded again.
+ * For eg. 
+ * downloadUrl - Complete URL of downloaded file.
+ * etag - ETag of remote file at time of download (HTTP only), null if unknown.
+ * lastModified - Last modification time of remote file at time of download, null if unknown.
+ * contentLength - Size of downloaded file in bytes, -1 if unknown.
+ * filePath - Complete filepath of Local Disk where file was saved.
+ *
+ */
+public class RevalidationEntry {
+	
+	private String downloadUrl;
+	
+	private String etag;
+	
+	private String lastModified;
+	
+	private long contentLength = -1;
+	
+	private String filePath;
+	
+	public RevalidationEntry() {
+		super();
+	}
+
+	public RevalidationEntry(String downloadUrl, String etag, String lastModified, long contentLength,
+			String filePath) {
+		super();
+		this.downloadUrl = downloadUrl;
+		this.etag = etag;
+		this.lastModified = lastModified;
+		this.contentLength = contentLength;
+		this.filePath = filePath;
+	}
+
+	public String getDownloadUrl() {
+		return downloadUrl;
+	}
+
+	public void setDownloadUrl(String downloadUrl) {
+		this.downloadUrl = downloadUrl;
+	}
+
+	public String getEtag() {
+		return etag;
+	}
+
+	public void setEtag(String etag) {
+		this.etag = etag;
+	}
+
+	public String getLastModified() {
+		return lastModified;
+	}
+
+	public void setLastModified(String lastModified) {
+		this.lastModified = lastModified;
+	}
+
+	public long getContentLength() {
+		return contentLength;
+	}
+
+	public void setContentLength(long contentLength) {
+		this.contentLength = contentLength;
+	}
+
+	public String getFilePath() {
+		return filePath;
+	}
+
+	public void setFilePath(String filePath) {
+		this.filePath = filePath;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("RevalidationEntry [downloadUrl=");
+		builder.append(downloadUrl);
+		builder.append(", etag=");
+		builder.append(etag);
+		builder.append(", lastModified=");
+		builder.append(lastModified);
+		builder.append(", contentLength=");
+		builder.append(contentLength);
+		builder.append(", filePath=");
+		builder.append(filePath);
+		builder.append("]");
+		return builder.toString();
+	}
+	
+}
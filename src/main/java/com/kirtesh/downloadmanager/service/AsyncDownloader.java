@@ -0,0 +1,27 @@
+package com.kirtesh.downloadmanager.service;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.kirtesh.downloadmanager.metadata.DownloadMetadata;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ * 
+ * Non blocking Downloader Interface.
+ * 
+ * Implementations do not hold a thread while waiting on network. DownloadExecutorServiceImpl submits them with RetryExecutor.getFutureWithRetry,
+ * so thousands of downloads can be in flight on a handful of threads.
+ *
+ */
+public interface AsyncDownloader extends Downloader {
+
+	/**
+	 * 
+	 * This method starts download of file and returns without waiting for it.
+	 * 
+	 * @param downloadMetadata - Contains metadata of file which needs to be downloaded.
+	 * @return - Future completed with true / false based on Download was Successful or not, or completed exceptionally with IOException so download is retried.
+	 */
+	public CompletableFuture<Boolean> downloadAsync(DownloadMetadata downloadMetadata);
+}
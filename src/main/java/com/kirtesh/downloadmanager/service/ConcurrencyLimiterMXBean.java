@@ -0,0 +1,40 @@
+package com.kirtesh.downloadmanager.service;
+
+import java.util.Map;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ * 
+ * JMX view of adaptive concurrency limiter, registered as `com.kirtesh.downloadmanager:type=ConcurrencyLimiter` on platform MBeanServer.
+ * Current limits can be watched with jconsole / VisualVM or scraped by any JMX exporter while manager runs.
+ *
+ */
+public interface ConcurrencyLimiterMXBean {
+
+	/**
+	 * @return Current number of downloads allowed in flight across all hosts.
+	 */
+	public int getLimit();
+
+	/**
+	 * @return Lower bound of global limit.
+	 */
+	public int getMinLimit();
+
+	/**
+	 * @return Upper bound of global limit.
+	 */
+	public int getMaxLimit();
+
+	/**
+	 * @return Current limit of every host downloaded from so far.
+	 */
+	public Map<String, Integer> getHostLimits();
+
+	/**
+	 * @return Bytes per second of downloads completed in last window, across all hosts.
+	 */
+	public long getThroughputBytesPerSecond();
+
+}
@@ -18,4 +18,10 @@ public interface DownloadExecutorService {
 	 */
 	public void downloadUrls(Map<String, DownloadMetadata> urlToMetadataMapping);
 
+	/**
+	 * This method queues a single file for download, along with files already queued. Used to stream files in while they are still being discovered, eg. by listing remote directories.
+	 * @param downloadMetadata would contain metadata of file that would be downloaded.
+	 */
+	public void download(DownloadMetadata downloadMetadata);
+
 }
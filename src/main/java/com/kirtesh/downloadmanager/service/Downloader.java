@@ -3,6 +3,7 @@ package com.kirtesh.downloadmanager.service;
 import java.io.IOException;
 
 import com.kirtesh.downloadmanager.metadata.DownloadMetadata;
+import com.kirtesh.downloadmanager.metadata.ProbeMetadata;
 /**
  * 
  * @author kirteshdudawat
@@ -25,4 +26,14 @@ public interface Downloader {
 	 * @throws IOException - In case of IO Exception.
 	 */
 	public boolean download(DownloadMetadata downloadMetadata) throws IOException;
+
+	/**
+	 * 
+	 * This method learns metadata of remote file (size, byte range support, validators) without downloading it. Used by preflight stage before downloads are scheduled.
+	 * 
+	 * @param downloadMetadata - Contains metadata of file which needs to be downloaded.
+	 * @return - Metadata of remote file, empty metadata (unknown size) if protocol can not tell.
+	 * @throws IOException - In case of IO Exception.
+	 */
+	public ProbeMetadata probe(DownloadMetadata downloadMetadata) throws IOException;
 }
@@ -0,0 +1,31 @@
+package com.kirtesh.downloadmanager.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.kirtesh.downloadmanager.metadata.ByteRange;
+import com.kirtesh.downloadmanager.metadata.ProbeMetadata;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ * 
+ * RangeReader Interface.
+ * 
+ * Implemented by Downloaders which can read a byte range of remote file over a connection of its own. Used by MirrorDownloader to pull ranges of a single file from several mirrors.
+ *
+ */
+public interface RangeReader {
+
+	/**
+	 * 
+	 * This method opens stream of remote file starting at range start.
+	 * 
+	 * @param downloadUrl - URL of remote file.
+	 * @param range - Byte range to be read.
+	 * @param probeMetadata - Metadata of remote file from probe of same URL, its validators make sure range is read from same version of file where protocol allows.
+	 * @return - Stream starting at range start. It may continue beyond range end, caller stops reading at range end. Closing stream releases its connection.
+	 * @throws IOException - If range can not be read, or remote file has changed since it was probed.
+	 */
+	public InputStream openRange(String downloadUrl, ByteRange range, ProbeMetadata probeMetadata) throws IOException;
+}
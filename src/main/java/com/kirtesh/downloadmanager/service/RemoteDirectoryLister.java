@@ -0,0 +1,29 @@
+package com.kirtesh.downloadmanager.service;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.kirtesh.downloadmanager.metadata.RemoteFileEntry;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ * 
+ * RemoteDirectoryLister Interface.
+ * 
+ * Protocols whose directory / glob URLs can be expanded (SFTP, FTP) specify their own implementation, used by UrlExpansionService.
+ *
+ */
+public interface RemoteDirectoryLister {
+
+	/**
+	 * 
+	 * This method lists a single remote directory, without descending into its sub directories. Entries for directory itself and its parent are not returned.
+	 * 
+	 * @param directoryUrl - URL of remote directory, ending with `/`.
+	 * @return - Entries of directory with their type, size & modification time.
+	 * @throws IOException - If directory can not be listed.
+	 */
+	public List<RemoteFileEntry> list(String directoryUrl) throws IOException;
+
+}
@@ -0,0 +1,32 @@
+package com.kirtesh.downloadmanager.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ * 
+ * TransferEngine Interface.
+ * 
+ * Defines how downloaded bytes are copied from remote stream to local file. Implementation is selected per protocol (TransferMode) by RequestRoutingFactory,
+ * so CPU cost per GB of different implementations can be compared without changing Downloaders.
+ *
+ */
+public interface TransferEngine {
+	
+	/**
+	 * Reads at most maxBytes from inputStream and writes them to fileChannel starting at position. File position of channel is not used nor modified, 
+	 * hence multiple ranges can be transferred concurrently into same channel.
+	 * 
+	 * @param inputStream - Stream of remote file.
+	 * @param fileChannel - Channel of local file.
+	 * @param position - Offset in local file where first byte is written.
+	 * @param maxBytes - Maximum bytes to be transferred.
+	 * @param bufferSize - Max buffer available for transfer.
+	 * @return Number of bytes transferred, less than maxBytes only if inputStream has ended.
+	 * @throws IOException - In case of IO Exception.
+	 */
+	public long transfer(InputStream inputStream, FileChannel fileChannel, long position, long maxBytes, int bufferSize) throws IOException;
+}
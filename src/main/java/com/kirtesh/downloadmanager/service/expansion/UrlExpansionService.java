@@ -0,0 +1,27 @@
+package com.kirtesh.downloadmanager.service.expansion;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+
+import com.kirtesh.downloadmanager.metadata.DownloadMetadata;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ *
+ *	This Interface defines expansion of directory and glob URLs (eg. `sftp://host/data/**.csv`) of download.url.filepath into the files they match.
+ *	Files are handed over as soon as they are listed, so downloads can start while remote directories are still being listed.
+ */
+public interface UrlExpansionService {
+
+	/**
+	 * Lists remote directories of all directory / glob URLs and hands every matching file, whose local copy is missing or out of date, to consumer.
+	 * URLs which are not directory / glob URLs are ignored. Method returns once all listings have finished.
+	 * 
+	 * @param urls - URLs from download.url.filepath.
+	 * @param consumer - Receives Metadata of every file to be downloaded, may be called concurrently from multiple threads.
+	 * @return Number of files handed to consumer.
+	 */
+	public int expand(Collection<String> urls, Consumer<DownloadMetadata> consumer);
+
+}
@@ -0,0 +1,193 @@
+package com.kirtesh.downloadmanager.service.expansion.impl;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.apache.log4j.Logger;
+
+import com.kirtesh.downloadmanager.cache.DMCache;
+import com.kirtesh.downloadmanager.enums.Protocols;
+import com.kirtesh.downloadmanager.factory.RequestRoutingFactory;
+import com.kirtesh.downloadmanager.metadata.DownloadMetadata;
+import com.kirtesh.downloadmanager.metadata.DownloadOptions;
+import com.kirtesh.downloadmanager.metadata.RemoteFileEntry;
+import com.kirtesh.downloadmanager.service.RemoteDirectoryLister;
+import com.kirtesh.downloadmanager.service.expansion.UrlExpansionService;
+import com.kirtesh.downloadmanager.utils.DownloadUtils;
+import com.kirtesh.downloadmanager.utils.GlobUtils;
+import com.kirtesh.downloadmanager.utils.GlobUtils.UrlGlob;
+/**
+ * 
+ * @author kirteshdudawat
+ * 
+ * Expands directory / glob URLs by listing remote directories (RemoteDirectoryLister of protocol) on a pool of listing.parallelism threads.
+ * Every directory is a separate listing task, sub directories found are queued as new tasks, so a wide tree is listed in parallel. Directories which can not
+ * contain a matching file are not listed.
+ * 
+ * Matching files are compared with local copy (DownloadUtils.createMirroredDownloadMetadata) and handed to consumer right away, while listing of other directories goes on.
+ * A directory which can not be listed is logged and skipped, rest of tree is still expanded. Files inherit priority & job of directory / glob URL they were expanded from.
+ *
+ */
+public class UrlExpansionServiceImpl implements UrlExpansionService {
+
+	public final static Logger logger = Logger.getLogger(UrlExpansionServiceImpl.class);
+
+	private static final int DEFAULT_LISTING_PARALLELISM = 4;
+	private static final String PATH_SEPARATOR = "/";
+	private static final String CURRENT_DIRECTORY = ".";
+	private static final String PARENT_DIRECTORY = "..";
+
+	private DownloadUtils downloadUtils = RequestRoutingFactory.getDownloadUtils();
+
+	@Override
+	public int expand(Collection<String> urls, Consumer<DownloadMetadata> consumer) {
+		Expansion expansion = null;
+		ExecutorService executorService = null;
+		try {
+			for (String url : urls) {
+				if (!GlobUtils.isExpansionUrl(url)) {
+					continue;
+				}
+				if (expansion == null) {
+					executorService = Executors.newFixedThreadPool(getListingParallelism());
+					expansion = new Expansion(executorService, consumer);
+				}
+				expansion.start(url.trim(), DMCache.downloadUrlOptions.get(url));
+			}
+			if (expansion == null) {
+				return 0;
+			}
+			expansion.await();
+		} finally {
+			if (executorService != null) {
+				executorService.shutdown();
+			}
+		}
+		logger.info("Expanded directory / glob URLs : listed " + expansion.listedDirectories.get() + " directories ("
+				+ expansion.failedDirectories.get() + " failed), " + expansion.files.get() + " files to download");
+		return expansion.files.get();
+	}
+
+	private int getListingParallelism() {
+		int listingParallelism = DMCache.getListingParallelism();
+		return listingParallelism > 0 ? listingParallelism : DEFAULT_LISTING_PARALLELISM;
+	}
+
+	/**
+	 * State of a single expand call. pending counts queued and running listings, plus one held till all URLs are started, so expansion can not finish early.
+	 */
+	private class Expansion {
+
+		private final ExecutorService executorService;
+
+		private final Consumer<DownloadMetadata> consumer;
+
+		private final AtomicInteger pending = new AtomicInteger(1);
+
+		private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+		private final AtomicInteger listedDirectories = new AtomicInteger();
+
+		private final AtomicInteger failedDirectories = new AtomicInteger();
+
+		private final AtomicInteger files = new AtomicInteger();
+
+		private Expansion(ExecutorService executorService, Consumer<DownloadMetadata> consumer) {
+			this.executorService = executorService;
+			this.consumer = consumer;
+		}
+
+		private void start(String url, DownloadOptions downloadOptions) {
+			UrlGlob urlGlob;
+			Protocols protocols;
+			try {
+				urlGlob = GlobUtils.parse(url);
+				protocols = Protocols.valueOf(url.substring(0, url.indexOf(':')).toUpperCase());
+			} catch (IllegalArgumentException e) {
+				logger.error("Ignoring URL : " + url + " " + e.getMessage());
+				return;
+			}
+			RemoteDirectoryLister remoteDirectoryLister = RequestRoutingFactory.getRemoteDirectoryLister(protocols);
+			String directoryPath = downloadUtils.getDirectoryPathForDownloadedFile(protocols);
+			if (remoteDirectoryLister == null || directoryPath == null) {
+				logger.error("Ignoring URL : " + url + " as it can not be listed or download directory is not available");
+				return;
+			}
+			submit(urlGlob, protocols, remoteDirectoryLister, directoryPath, downloadOptions, urlGlob.getBaseUrl(), "");
+		}
+
+		private void await() {
+			finish();
+			completion.join();
+		}
+
+		private void submit(UrlGlob urlGlob, Protocols protocols, RemoteDirectoryLister remoteDirectoryLister,
+				String directoryPath, DownloadOptions downloadOptions, String directoryUrl, String relativeDirectory) {
+			pending.incrementAndGet();
+			executorService.execute(() -> {
+				try {
+					list(urlGlob, protocols, remoteDirectoryLister, directoryPath, downloadOptions, directoryUrl, relativeDirectory);
+				} finally {
+					finish();
+				}
+			});
+		}
+
+		private void finish() {
+			if (pending.decrementAndGet() == 0) {
+				completion.complete(null);
+			}
+		}
+
+		/**
+		 * Lists a single directory, queues sub directories which may contain matching files and hands matching files to consumer.
+		 */
+		private void list(UrlGlob urlGlob, Protocols protocols, RemoteDirectoryLister remoteDirectoryLister,
+				String directoryPath, DownloadOptions downloadOptions, String directoryUrl, String relativeDirectory) {
+			List<RemoteFileEntry> entries;
+			try {
+				entries = remoteDirectoryLister.list(directoryUrl);
+				listedDirectories.incrementAndGet();
+			} catch (IOException | RuntimeException e) {
+				failedDirectories.incrementAndGet();
+				logger.error("Unable to list " + directoryUrl + " " + e.getMessage());
+				return;
+			}
+			for (RemoteFileEntry entry : entries) {
+				String name = entry.getName();
+				if (name == null || name.isEmpty() || CURRENT_DIRECTORY.equals(name) || PARENT_DIRECTORY.equals(name)
+						|| name.contains(PATH_SEPARATOR)) {
+					continue;
+				}
+				String relativePath = relativeDirectory + name;
+				if (entry.isDirectory()) {
+					if (urlGlob.canContain(relativePath)) {
+						submit(urlGlob, protocols, remoteDirectoryLister, directoryPath, downloadOptions,
+								GlobUtils.resolve(directoryUrl, name, true), relativePath + PATH_SEPARATOR);
+					}
+				} else if (urlGlob.matches(relativePath)) {
+					String url = GlobUtils.resolve(directoryUrl, name, false);
+					DownloadMetadata downloadMetadata = downloadUtils.createMirroredDownloadMetadata(protocols, url,
+							directoryPath, relativePath, entry);
+					if (downloadMetadata == null) {
+						continue;
+					}
+					downloadUtils.setDownloadOptionsToDownloadMetadata(downloadOptions, downloadMetadata);
+					files.incrementAndGet();
+					try {
+						consumer.accept(downloadMetadata);
+					} catch (RuntimeException e) {
+						logger.error("Unable to queue download of " + url + " " + e.getMessage());
+					}
+				}
+			}
+		}
+	}
+
+}
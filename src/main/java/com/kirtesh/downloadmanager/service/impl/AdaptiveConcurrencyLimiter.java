@@ -0,0 +1,299 @@
+package com.kirtesh.downloadmanager.service.impl;
+
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+
+import com.kirtesh.downloadmanager.service.ConcurrencyLimiterMXBean;
+import com.kirtesh.downloadmanager.service.impl.CommonDownloader.HttpStatusException;
+import com.kirtesh.downloadmanager.utils.CommonUtils;
+/**
+ *
+ * @author kirteshdudawat
+ *
+ *
+ * Adaptive concurrency limiter used by DownloadScheduler, so download concurrency need not be hand tuned per environment. One limit is kept for all hosts together and
+ * one for every host, each is adjusted once per window (`concurrency.adaptive.window.millis`) from download attempts completed in that window :
+ *
+ * 1. Congestion : An attempt failed with timeout, connection reset or HTTP status 429 / 503, limit is cut multiplicatively (x 0.7).
+ * 2. Latency gradient : Average latency (millis per MiB, files under 1 MiB count as 1 MiB) of window is above `concurrency.adaptive.latency.tolerance` x its long term average,
+ *    queues are building up somewhere and limit is cut multiplicatively.
+ * 3. Throughput gradient : Limit was raised in last window but throughput fell by more than 10%, extra download did not help and limit is lowered by one.
+ * 4. Otherwise, if limit was reached in window, limit is raised by one (additive increase).
+ *
+ * Global limit stays within `concurrency.adaptive.min.limit` and `concurrency.adaptive.max.limit`, limit of a host within 1 and its host permits. onLimitChange is
+ * notified of every change of global limit, eg. to resize worker pool. Limits are exported over JMX (ConcurrencyLimiterMXBean).
+ *
+ */
+public class AdaptiveConcurrencyLimiter implements ConcurrencyLimiterMXBean {
+
+	final static Logger logger = Logger.getLogger(AdaptiveConcurrencyLimiter.class);
+
+	public static final String OBJECT_NAME = "com.kirtesh.downloadmanager:type=ConcurrencyLimiter";
+
+	private static final double DECREASE_FACTOR = 0.7;
+
+	private static final double THROUGHPUT_DROP = 0.9;
+
+	private static final double BASELINE_WEIGHT = 0.1;
+
+	private static final long MIN_BYTES = 1 << 20;
+
+	private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+	private final Limit globalLimit;
+
+	private final ConcurrentMap<String, Limit> hostLimitMap = new ConcurrentHashMap<>();
+
+	private final int minLimit;
+
+	private final int maxLimit;
+
+	private final long windowNanos;
+
+	private final double latencyTolerance;
+
+	private final IntConsumer onLimitChange;
+
+	/**
+	 * @param initialLimit - Global limit to start with, clamped to minLimit and maxLimit.
+	 * @param minLimit - Lower bound of global limit, value less than 1 is treated as 1.
+	 * @param maxLimit - Upper bound of global limit, value less than minLimit is treated as minLimit.
+	 * @param windowMillis - Limits are adjusted at most once per window, 0 adjusts on every completed download.
+	 * @param latencyTolerance - Latency of window above this multiple of its long term average cuts limit, value less than or equal to 1 is treated as 2.
+	 * @param onLimitChange - Notified with new global limit on every change, may be null.
+	 */
+	public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long windowMillis, double latencyTolerance,
+			IntConsumer onLimitChange) {
+		this.minLimit = Math.max(1, minLimit);
+		this.maxLimit = Math.max(this.minLimit, maxLimit);
+		this.windowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, windowMillis));
+		this.latencyTolerance = latencyTolerance > 1 ? latencyTolerance : 2;
+		this.onLimitChange = onLimitChange;
+		this.globalLimit = new Limit(Math.max(this.minLimit, Math.min(this.maxLimit, initialLimit)));
+	}
+
+	@Override
+	public int getLimit() {
+		return globalLimit.getValue();
+	}
+
+	@Override
+	public int getMinLimit() {
+		return minLimit;
+	}
+
+	@Override
+	public int getMaxLimit() {
+		return maxLimit;
+	}
+
+	@Override
+	public Map<String, Integer> getHostLimits() {
+		Map<String, Integer> hostLimits = new TreeMap<>();
+		hostLimitMap.forEach((host, limit) -> hostLimits.put(host, limit.getValue()));
+		return hostLimits;
+	}
+
+	@Override
+	public long getThroughputBytesPerSecond() {
+		return globalLimit.getThroughput();
+	}
+
+	/**
+	 * @param host - Host of download.
+	 * @param hostPermits - Configured permits of host, upper bound of its limit.
+	 * @return Current limit of host, hostPermits for a host with no completed download yet.
+	 */
+	public int getHostLimit(String host, int hostPermits) {
+		Limit limit = hostLimitMap.get(host);
+		if (limit == null) {
+			return hostPermits;
+		}
+		return Math.min(hostPermits, limit.getValue());
+	}
+
+	/**
+	 * Called by DownloadScheduler on dispatch of a download, a limit is only raised if it was reached in window.
+	 *
+	 * @param host - Host of download.
+	 * @param hostPermits - Configured permits of host.
+	 * @param globalReached - true if global limit is reached with this download.
+	 * @param hostReached - true if limit of host is reached with this download.
+	 */
+	public void onDispatch(String host, int hostPermits, boolean globalReached, boolean hostReached) {
+		if (globalReached) {
+			globalLimit.markReached();
+		}
+		Limit limit = hostLimitMap.computeIfAbsent(host, key -> new Limit(Math.max(1, hostPermits)));
+		limit.setMaxValue(Math.max(1, hostPermits));
+		if (hostReached) {
+			limit.markReached();
+		}
+	}
+
+	/**
+	 * Records a completed download attempt and adjusts limits if window has passed. Errors other than congestion (see isCongestion), eg. 404, digest mismatch or
+	 * parked by HostCircuitBreaker, say nothing of load on host and are ignored.
+	 *
+	 * @param host - Host of download.
+	 * @param durationNanos - Time taken by attempt, excluding backoff before it.
+	 * @param bytes - Bytes copied by attempt, -1 if unknown.
+	 * @param error - Error attempt failed with, null if it succeeded.
+	 */
+	public void onComplete(String host, long durationNanos, long bytes, Throwable error) {
+		boolean congestion = error != null && isCongestion(error);
+		if (error != null && !congestion) {
+			return;
+		}
+		long now = System.nanoTime();
+		int previous = globalLimit.getValue();
+		int current = globalLimit.record(now, durationNanos, bytes, congestion, minLimit, maxLimit);
+		if (current != previous) {
+			logger.info("Global concurrency limit changed from " + previous + " to " + current + ", throughput " + getThroughputBytesPerSecond() + " bytes/s");
+			if (onLimitChange != null) {
+				onLimitChange.accept(current);
+			}
+		}
+		Limit limit = hostLimitMap.get(host);
+		if (limit != null) {
+			previous = limit.getValue();
+			current = limit.record(now, durationNanos, bytes, congestion, 1, limit.getMaxValue());
+			if (current != previous) {
+				logger.info("Concurrency limit of host " + host + " changed from " + previous + " to " + current);
+			}
+		}
+	}
+
+	/**
+	 * @param error - Error of a download attempt.
+	 * @return true if error shows host or network is overloaded: timeout, connection reset, or HTTP status 429 (Too Many Requests) / 503 (Service Unavailable).
+	 */
+	public static boolean isCongestion(Throwable error) {
+		Throwable cause = CommonUtils.unwrap(error);
+		if (cause instanceof HttpStatusException) {
+			int statusCode = ((HttpStatusException) cause).getStatusCode();
+			return statusCode == HTTP_TOO_MANY_REQUESTS || statusCode == HttpURLConnection.HTTP_UNAVAILABLE;
+		}
+		return CommonUtils.isTimeout(cause) || CommonUtils.isConnectionReset(cause);
+	}
+
+	/**
+	 * Registers limiter on platform MBeanServer as OBJECT_NAME, replacing limiter registered earlier.
+	 */
+	public void register() {
+		try {
+			MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName(OBJECT_NAME);
+			if (mBeanServer.isRegistered(objectName)) {
+				mBeanServer.unregisterMBean(objectName);
+			}
+			mBeanServer.registerMBean(this, objectName);
+		} catch (JMException e) {
+			logger.error("Unable to register concurrency limiter over JMX " + e.getMessage());
+		}
+	}
+
+	/**
+	 * AIMD limit with latency & throughput gradient, guarded by its own monitor.
+	 */
+	private class Limit {
+
+		private int value;
+
+		private int maxValue = Integer.MAX_VALUE;
+
+		private long windowStartNanos = System.nanoTime();
+
+		private boolean reached;
+
+		private boolean congestion;
+
+		private int samples;
+
+		private double latencySum;
+
+		private long bytes;
+
+		private double baselineLatency = -1;
+
+		private long throughput = -1;
+
+		private boolean increased;
+
+		private Limit(int value) {
+			this.value = value;
+		}
+
+		private synchronized int getValue() {
+			return value;
+		}
+
+		private synchronized int getMaxValue() {
+			return maxValue;
+		}
+
+		private synchronized void setMaxValue(int maxValue) {
+			this.maxValue = maxValue;
+			this.value = Math.min(value, maxValue);
+		}
+
+		private synchronized long getThroughput() {
+			return Math.max(0, throughput);
+		}
+
+		private synchronized void markReached() {
+			reached = true;
+		}
+
+		private synchronized int record(long now, long durationNanos, long sampleBytes, boolean sampleCongestion, int lower, int upper) {
+			if (sampleCongestion) {
+				congestion = true;
+			} else {
+				samples++;
+				latencySum += (double) TimeUnit.NANOSECONDS.toMillis(durationNanos) * MIN_BYTES / Math.max(sampleBytes, MIN_BYTES);
+				bytes += Math.max(0, sampleBytes);
+			}
+			long elapsedNanos = now - windowStartNanos;
+			if (elapsedNanos < windowNanos) {
+				return value;
+			}
+			long windowThroughput = (long) (bytes * 1e9 / Math.max(elapsedNanos, TimeUnit.MILLISECONDS.toNanos(1)));
+			double latency = samples == 0 ? -1 : latencySum / samples;
+			int next = value;
+			if (congestion || (latency >= 0 && baselineLatency > 0 && latency > baselineLatency * latencyTolerance)) {
+				next = Math.min(value - 1, (int) (value * DECREASE_FACTOR));
+			} else if (increased && throughput > 0 && windowThroughput < throughput * THROUGHPUT_DROP) {
+				next = value - 1;
+			} else if (reached) {
+				next = value + 1;
+			}
+			next = Math.max(lower, Math.min(upper, next));
+			increased = next > value;
+			value = next;
+			if (latency >= 0) {
+				baselineLatency = baselineLatency < 0 ? latency : baselineLatency + BASELINE_WEIGHT * (latency - baselineLatency);
+			}
+			throughput = windowThroughput;
+			windowStartNanos = now;
+			reached = false;
+			congestion = false;
+			samples = 0;
+			latencySum = 0;
+			bytes = 0;
+			return value;
+		}
+	}
+
+}
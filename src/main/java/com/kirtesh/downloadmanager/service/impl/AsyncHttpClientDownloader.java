@@ -0,0 +1,601 @@
+package com.kirtesh.downloadmanager.service.impl;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+import com.kirtesh.downloadmanager.cache.BandwidthThrottle;
+import com.kirtesh.downloadmanager.cache.DMCache;
+import com.kirtesh.downloadmanager.cache.DigestManifest;
+import com.kirtesh.downloadmanager.cache.DiskSpaceAdmission;
+import com.kirtesh.downloadmanager.cache.DiskSpaceAdmission.Reservation;
+import com.kirtesh.downloadmanager.cache.RevalidationIndex;
+import com.kirtesh.downloadmanager.cache.TransferMonitor;
+import com.kirtesh.downloadmanager.cache.TransferMonitor.Transfer;
+import com.kirtesh.downloadmanager.metadata.ByteRange;
+import com.kirtesh.downloadmanager.metadata.DownloadJournal;
+import com.kirtesh.downloadmanager.metadata.DownloadMetadata;
+import com.kirtesh.downloadmanager.metadata.ProbeMetadata;
+import com.kirtesh.downloadmanager.service.AsyncDownloader;
+import com.kirtesh.downloadmanager.utils.ContentStoreUtils;
+import com.kirtesh.downloadmanager.utils.SegmentUtils;
+import com.kirtesh.downloadmanager.utils.StagingUtils;
+import com.kirtesh.downloadmanager.utils.StreamingDigest;
+/**
+ *
+ * @author kirteshdudawat
+ *
+ *
+ * Non blocking HTTP, HTTPS downloader. Selected by RequestRoutingFactory when property http.engine is set to ASYNC_HTTP_CLIENT.
+ *
+ * Requests are sent with HttpClient.sendAsync, all sockets are multiplexed by selector thread of HttpClient and response bodies are pushed to a BodySubscriber,
+ * which writes every buffer at its position in .part file through FileChannel. No thread waits on network, so thousands of downloads can be in flight on
+ * `async.event.loop.threads` threads. Slow connections cost a socket and a small buffer, not a thread.
+ *
+ * Staging, journal, resume, segments, digest, disk admission and content store are same as CommonDownloader.
+ * BandwidthThrottle is applied as backpressure: next buffer is requested from HttpClient only after throttle allows bytes already received.
+ * {protocol}.read.timeout.millis is applied as timeout for response headers and as maximum time without any data for response body.
+ *
+ * Note: TransferEngine and buffer size are not used, buffers are sized by HttpClient.
+ *
+ */
+public class AsyncHttpClientDownloader extends HttpClientDownloader implements AsyncDownloader {
+
+	final static Logger logger = Logger.getLogger(AsyncHttpClientDownloader.class);
+
+	private static final Map<Integer, HttpClient> asyncHttpClients = new ConcurrentHashMap<>();
+
+	private static final int DEFAULT_EVENT_LOOP_THREADS = Runtime.getRuntime().availableProcessors();
+
+	private static volatile ExecutorService eventLoopExecutor;
+
+	private static volatile ExecutorService publisherExecutor;
+
+	private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(newThreadFactory("async-download-timer"));
+
+	/**
+	 * Blocks on downloadAsync, for callers which are not asynchronous.
+	 */
+	@Override
+	protected boolean download(DownloadMetadata downloadMetadata, int connectTimeout, int readTimeout, int bufferSize,
+			int segmentCount, int minSegmentSize) throws IOException {
+		try {
+			return downloadAsync(downloadMetadata, connectTimeout, readTimeout, segmentCount, minSegmentSize).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while downloading " + downloadMetadata.getDownloadUrl(), e);
+		} catch (ExecutionException e) {
+			throw toIOException(e.getCause());
+		}
+	}
+
+	/**
+	 * Starts download with timeouts and segments of protocol.
+	 */
+	@Override
+	public CompletableFuture<Boolean> downloadAsync(DownloadMetadata downloadMetadata) {
+		int connectionTimeout = commonUtils.getConnectionTimeout(downloadMetadata.getProtocols());
+		int readTimeout = commonUtils.getReadTimeout(downloadMetadata.getProtocols());
+		int segmentCount = commonUtils.getSegmentCount(downloadMetadata.getProtocols());
+		int minSegmentSize = commonUtils.getSegmentMinSize(downloadMetadata.getProtocols());
+		return downloadAsync(downloadMetadata, connectionTimeout, readTimeout, segmentCount, minSegmentSize);
+	}
+
+	/**
+	 * Probes remote file asynchronously, stages it and downloads all remaining ranges concurrently on HttpClient.
+	 * Staging, checkpoints (fsync of .part file & journal) and publishing are done on publisher threads, never on event loop threads of HttpClient.
+	 * Event loop threads only copy received buffers into .part file.
+	 *
+	 * @param downloadMetadata - Contains URL of file which needs to be downloaded and location where file needs to be saved on Local Disk
+	 * @param connectTimeout - Connect timeout of HttpClient in millis.
+	 * @param readTimeout - Timeout for response headers and for response body to stay idle in millis.
+	 * @param segmentCount - Maximum number of byte range segments to be downloaded concurrently. Value of 1 or less disables segmented download.
+	 * @param minSegmentSize - Minimum size in bytes of a single segment.
+	 * @return Future completed with true once file is published at location, or exceptionally with IOException.
+	 */
+	public CompletableFuture<Boolean> downloadAsync(DownloadMetadata downloadMetadata, int connectTimeout, int readTimeout,
+			int segmentCount, int minSegmentSize) {
+		AsyncDownload asyncDownload = new AsyncDownload(downloadMetadata, connectTimeout, readTimeout, segmentCount, minSegmentSize);
+		getPublisherExecutor().execute(asyncDownload::start);
+		return asyncDownload.result;
+	}
+
+	/**
+	 * HttpClient of this engine runs its callbacks on a fixed pool of `async.event.loop.threads` threads instead of default cached pool.
+	 */
+	@Override
+	protected HttpClient getHttpClient(int connectTimeout) {
+		return asyncHttpClients.computeIfAbsent(connectTimeout,
+				timeout -> newHttpClientBuilder(timeout).executor(getEventLoopExecutor()).build());
+	}
+
+	private static ExecutorService getEventLoopExecutor() {
+		if (eventLoopExecutor == null) {
+			synchronized (AsyncHttpClientDownloader.class) {
+				if (eventLoopExecutor == null) {
+					eventLoopExecutor = Executors.newFixedThreadPool(getEventLoopThreads(), newThreadFactory("async-download-event-loop"));
+				}
+			}
+		}
+		return eventLoopExecutor;
+	}
+
+	private static ExecutorService getPublisherExecutor() {
+		if (publisherExecutor == null) {
+			synchronized (AsyncHttpClientDownloader.class) {
+				if (publisherExecutor == null) {
+					publisherExecutor = Executors.newFixedThreadPool(getEventLoopThreads(), newThreadFactory("async-download-publisher"));
+				}
+			}
+		}
+		return publisherExecutor;
+	}
+
+	private static int getEventLoopThreads() {
+		int eventLoopThreads = DMCache.getAsyncEventLoopThreads();
+		return eventLoopThreads > 0 ? eventLoopThreads : DEFAULT_EVENT_LOOP_THREADS;
+	}
+
+	private static ThreadFactory newThreadFactory(String name) {
+		AtomicInteger threadCount = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	private static IOException toIOException(Throwable throwable) {
+		while ((throwable instanceof CompletionException || throwable instanceof ExecutionException) && throwable.getCause() != null) {
+			throwable = throwable.getCause();
+		}
+		if (throwable instanceof IOException) {
+			return (IOException) throwable;
+		}
+		return new IOException(throwable);
+	}
+
+	/**
+	 * State of a single download in flight. Completes result exactly once, staged data is released on completion.
+	 */
+	private class AsyncDownload {
+
+		private final DownloadMetadata downloadMetadata;
+		private final String downloadUrl;
+		private final String location;
+		private final int connectTimeout;
+		private final int readTimeout;
+		private final int segmentCount;
+		private final int minSegmentSize;
+		private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+		private final AtomicBoolean finished = new AtomicBoolean();
+		private final AtomicBoolean remoteFileChanged = new AtomicBoolean();
+		private final List<RangeSubscriber> subscribers = new ArrayList<>();
+		private final Transfer transfer;
+
+		private URL url;
+		private ProbeMetadata probeMetadata;
+		private boolean isResumable;
+		private Reservation reservation;
+		private DownloadJournal journal;
+		private StreamingDigest streamingDigest;
+		private RandomAccessFile randomAccessFile;
+		private FileChannel fileChannel;
+
+		AsyncDownload(DownloadMetadata downloadMetadata, int connectTimeout, int readTimeout, int segmentCount, int minSegmentSize) {
+			this.downloadMetadata = downloadMetadata;
+			this.downloadUrl = downloadMetadata.getDownloadUrl();
+			this.location = downloadMetadata.getFilePath();
+			this.connectTimeout = connectTimeout;
+			this.readTimeout = readTimeout;
+			this.segmentCount = segmentCount;
+			this.minSegmentSize = minSegmentSize;
+			this.transfer = TransferMonitor.start(downloadUrl, null);
+		}
+
+		void start() {
+			try {
+				url = new URL(downloadUrl);
+				getHttpClient(connectTimeout)
+						.sendAsync(newProbeRequest(url, readTimeout, downloadMetadata.getRevalidationEntry()), BodyHandlers.discarding())
+						.whenCompleteAsync((response, error) -> {
+							if (error != null) {
+								finish(error);
+								return;
+							}
+							try {
+								onProbe(toProbeMetadata(response));
+							} catch (IOException | RuntimeException e) {
+								finish(e);
+							}
+						}, getPublisherExecutor());
+			} catch (IOException | RuntimeException e) {
+				finish(e);
+			}
+		}
+
+		private void onProbe(ProbeMetadata probeMetadata) throws IOException {
+			this.probeMetadata = probeMetadata;
+			if (probeMetadata.isNotModified()) {
+				logger.info("Skipping download of " + downloadUrl + ", not modified since last download to " + location);
+				finish(null);
+				return;
+			}
+			if (ContentStoreUtils.linkIfStored(downloadMetadata, probeMetadata.getContentLength())) {
+				finish(null);
+				return;
+			}
+			StagingUtils.createStagingDirectory(location);
+			streamingDigest = DigestManifest.newStreamingDigest();
+			List<ByteRange> ranges = new ArrayList<>();
+			if (probeMetadata.isResumable()) {
+				isResumable = true;
+				journal = StagingUtils.loadJournal(location, downloadUrl, probeMetadata);
+				if (journal == null) {
+					long contentLength = probeMetadata.getContentLength();
+					reservation = DiskSpaceAdmission.reserve(location, contentLength);
+					int segments = SegmentUtils.getSegmentCount(contentLength, segmentCount, minSegmentSize);
+					journal = StagingUtils.createJournal(location, downloadUrl, probeMetadata, SegmentUtils.split(contentLength, segments));
+				} else {
+					reservation = DiskSpaceAdmission.reserve(location, journal.getContentLength() - journal.getBytesWritten());
+				}
+				journal.setStreamingDigest(streamingDigest);
+				StagingUtils.setReservation(journal, reservation);
+				journal.getLock().lock();
+				try {
+					ranges.addAll(journal.getRemainingRanges());
+				} finally {
+					journal.getLock().unlock();
+				}
+				randomAccessFile = new RandomAccessFile(StagingUtils.getPartFile(location).toFile(), "rw");
+			} else {
+				reservation = DiskSpaceAdmission.reserve(location, probeMetadata.getContentLength());
+				randomAccessFile = new RandomAccessFile(StagingUtils.getPartFile(location).toFile(), "rw");
+				randomAccessFile.setLength(0);
+				StagingUtils.preallocate(randomAccessFile, probeMetadata.getContentLength());
+				ranges.add(null);
+			}
+			fileChannel = randomAccessFile.getChannel();
+
+			List<CompletableFuture<Long>> futures = new ArrayList<>(ranges.size());
+			for (ByteRange range : ranges) {
+				futures.add(fetch(range));
+			}
+			CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).whenCompleteAsync((ignored, error) -> {
+				if (error != null) {
+					finish(error);
+					return;
+				}
+				try {
+					onTransferred(isResumable ? -1 : futures.get(0).join());
+				} catch (IOException | RuntimeException e) {
+					finish(e);
+				}
+			}, getPublisherExecutor());
+		}
+
+		/**
+		 * Sends GET request for range (complete file if range is null), body is written into .part file by RangeSubscriber.
+		 *
+		 * @return Future of bytes written.
+		 */
+		private CompletableFuture<Long> fetch(ByteRange range) throws IOException {
+			HttpRequest.Builder builder = newRequest(url, readTimeout).GET();
+			if (range != null) {
+				builder.header(RANGE_HEADER, BYTES_UNIT + "=" + range);
+				String ifRangeValidator = getIfRangeValidator(journal);
+				if (ifRangeValidator != null) {
+					builder.header(IF_RANGE_HEADER, ifRangeValidator);
+				}
+			}
+			return getHttpClient(connectTimeout).sendAsync(builder.build(), responseInfo -> {
+				RangeSubscriber subscriber = new RangeSubscriber(this, range, responseInfo.statusCode());
+				synchronized (subscribers) {
+					subscribers.add(subscriber);
+				}
+				if (finished.get()) {
+					subscriber.cancel();
+				}
+				return subscriber;
+			}).thenApply(HttpResponse::body);
+		}
+
+		private void onTransferred(long bytesWritten) throws IOException {
+			if (bytesWritten >= 0) {
+				randomAccessFile.setLength(bytesWritten);
+			}
+			closeFile();
+			DigestManifest.verify(downloadMetadata, streamingDigest);
+			ContentStoreUtils.publish(downloadMetadata, probeMetadata.getContentLength());
+			RevalidationIndex.update(downloadUrl, probeMetadata, location);
+			finish(null);
+		}
+
+		/**
+		 * Completes download. On failure all ranges in flight are cancelled, resumable .part file is kept for next attempt unless remote file has changed.
+		 *
+		 * @param error - null on success.
+		 */
+		private void finish(Throwable error) {
+			if (!finished.compareAndSet(false, true)) {
+				return;
+			}
+			if (error != null) {
+				synchronized (subscribers) {
+					for (RangeSubscriber subscriber : subscribers) {
+						subscriber.cancel();
+					}
+				}
+			}
+			if (reservation != null) {
+				reservation.close();
+			}
+			transfer.close();
+			closeFile();
+			if (error != null && (!isResumable || remoteFileChanged.get())) {
+				StagingUtils.discard(location);
+			}
+			if (error == null) {
+				result.complete(true);
+			} else {
+				result.completeExceptionally(toIOException(error));
+			}
+		}
+
+		private void closeFile() {
+			if (randomAccessFile != null) {
+				try {
+					randomAccessFile.close();
+				} catch (IOException e) {
+					logger.info("IOException occured while closing output Stream.." + e.getMessage());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes response body of a single range into .part file as buffers arrive. One buffer list is requested at a time, so a slow disk or
+	 * BandwidthThrottle pushes back on connection instead of buffering in memory. Range progress is checkpointed to journal every checkpoint bytes
+	 * and when body ends or fails. Checkpoints run on publisher threads, next buffer list is requested once checkpoint is done, body is completed after its last checkpoint.
+	 */
+	private class RangeSubscriber implements BodySubscriber<Long> {
+
+		private final AsyncDownload asyncDownload;
+		private final ByteRange range;
+		private final long start;
+		private final IOException statusError;
+		private final CompletableFuture<Long> body = new CompletableFuture<>();
+		private final int checkpointBytes = StagingUtils.getCheckpointBytes();
+
+		private volatile Flow.Subscription subscription;
+		private volatile long lastActivityAt = System.nanoTime();
+		private ScheduledFuture<?> watchdog;
+		private long position;
+		private long uncheckpointedBytes;
+		private boolean completed;
+		private volatile CompletableFuture<Void> pendingCheckpoint = CompletableFuture.completedFuture(null);
+
+		RangeSubscriber(AsyncDownload asyncDownload, ByteRange range, int statusCode) {
+			this.asyncDownload = asyncDownload;
+			this.range = range;
+			this.start = range == null ? 0 : range.getStart();
+			this.position = start;
+			if (statusCode >= HTTP_BAD_REQUEST) {
+				statusError = new HttpStatusException(statusCode, "Server returned HTTP status " + statusCode + " for " + asyncDownload.downloadUrl);
+			} else if (range != null && statusCode != HTTP_PARTIAL) {
+				asyncDownload.remoteFileChanged.set(true);
+				statusError = new IOException("Server did not return partial content for range " + range + " of " + asyncDownload.downloadUrl);
+			} else {
+				statusError = null;
+			}
+		}
+
+		@Override
+		public CompletionStage<Long> getBody() {
+			return body;
+		}
+
+		@Override
+		public synchronized void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+			if (statusError != null) {
+				subscription.cancel();
+				body.completeExceptionally(statusError);
+				return;
+			}
+			if (completed) {
+				subscription.cancel();
+				return;
+			}
+			int readTimeout = asyncDownload.readTimeout;
+			if (readTimeout > 0) {
+				long period = Math.max(1, readTimeout / 4);
+				watchdog = timer.scheduleWithFixedDelay(() -> checkTimeout(readTimeout), period, period, TimeUnit.MILLISECONDS);
+			}
+			subscription.request(1);
+		}
+
+		@Override
+		public synchronized void onNext(List<ByteBuffer> buffers) {
+			if (completed) {
+				return;
+			}
+			lastActivityAt = System.nanoTime();
+			try {
+				long bytes = 0;
+				for (ByteBuffer buffer : buffers) {
+					int length = buffer.remaining();
+					if (range != null && position + length > range.getEnd() + 1) {
+						throw new IOException("Server sent more than range " + range + " of " + asyncDownload.downloadUrl);
+					}
+					digest(buffer, position);
+					while (buffer.hasRemaining()) {
+						position += asyncDownload.fileChannel.write(buffer, position);
+					}
+					bytes += length;
+				}
+				asyncDownload.transfer.addBytes(bytes);
+				uncheckpointedBytes += bytes;
+				if (asyncDownload.journal != null && uncheckpointedBytes >= checkpointBytes) {
+					uncheckpointedBytes = 0;
+					long checkpointPosition = position;
+					long bytesWritten = bytes;
+					pendingCheckpoint = CompletableFuture.runAsync(() -> checkpoint(checkpointPosition), getPublisherExecutor());
+					pendingCheckpoint.whenComplete((ignored, error) -> {
+						if (error == null) {
+							requestNext(bytesWritten);
+						} else {
+							subscription.cancel();
+							complete(error instanceof CompletionException ? error.getCause() : error);
+						}
+					});
+					return;
+				}
+				requestNext(bytes);
+			} catch (IOException | RuntimeException e) {
+				subscription.cancel();
+				complete(e);
+			}
+		}
+
+		/**
+		 * Requests next buffer list, delayed as per BandwidthThrottle for bytes just written.
+		 */
+		private synchronized void requestNext(long bytes) {
+			if (completed) {
+				return;
+			}
+			long waitNanos = BandwidthThrottle.reserve(asyncDownload.downloadUrl, bytes);
+			if (waitNanos > 0) {
+				lastActivityAt = System.nanoTime() + waitNanos;
+				timer.schedule(() -> subscription.request(1), waitNanos, TimeUnit.NANOSECONDS);
+			} else {
+				lastActivityAt = System.nanoTime();
+				subscription.request(1);
+			}
+		}
+
+		/**
+		 * Checkpoints range till position, runs on publisher threads.
+		 */
+		private void checkpoint(long checkpointPosition) {
+			try {
+				StagingUtils.checkpoint(asyncDownload.location, asyncDownload.journal, asyncDownload.fileChannel, range, checkpointPosition);
+			} catch (IOException e) {
+				throw new CompletionException(e);
+			}
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			complete(throwable);
+		}
+
+		@Override
+		public void onComplete() {
+			if (range != null && position != range.getEnd() + 1) {
+				complete(new IOException("Range " + range + " of " + asyncDownload.downloadUrl + " ended at " + position));
+			} else {
+				complete(null);
+			}
+		}
+
+		/**
+		 * Cancels body, used when another range of same download has failed.
+		 */
+		void cancel() {
+			Flow.Subscription subscription = this.subscription;
+			if (subscription != null) {
+				subscription.cancel();
+			}
+			complete(new IOException("Download of " + asyncDownload.downloadUrl + " cancelled"));
+		}
+
+		private synchronized void complete(Throwable error) {
+			if (completed) {
+				return;
+			}
+			completed = true;
+			if (watchdog != null) {
+				watchdog.cancel(false);
+			}
+			long bytesWritten = position - start;
+			if (asyncDownload.journal == null || range == null) {
+				completeBody(bytesWritten, error);
+				return;
+			}
+			long checkpointPosition = position;
+			pendingCheckpoint.whenCompleteAsync((ignored, checkpointError) -> {
+				try {
+					StagingUtils.checkpoint(asyncDownload.location, asyncDownload.journal, asyncDownload.fileChannel, range, checkpointPosition);
+				} catch (IOException e) {
+					logger.info("IOException occured while checkpointing journal of " + asyncDownload.location + ".." + e.getMessage());
+				}
+				completeBody(bytesWritten, error);
+			}, getPublisherExecutor());
+		}
+
+		private void completeBody(long bytesWritten, Throwable error) {
+			if (error == null) {
+				body.complete(bytesWritten);
+			} else {
+				body.completeExceptionally(error);
+			}
+		}
+
+		/**
+		 * Digests buffer only if it is next in file order, so buffer is copied only when digest needs it.
+		 */
+		private void digest(ByteBuffer buffer, long offset) {
+			StreamingDigest streamingDigest = asyncDownload.streamingDigest;
+			if (streamingDigest == null || streamingDigest.getPosition() != offset) {
+				return;
+			}
+			if (buffer.hasArray()) {
+				streamingDigest.update(offset, buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+			} else {
+				byte[] bytes = new byte[buffer.remaining()];
+				buffer.duplicate().get(bytes);
+				streamingDigest.update(offset, bytes, 0, bytes.length);
+			}
+		}
+
+		private void checkTimeout(int readTimeout) {
+			if (pendingCheckpoint.isDone() && System.nanoTime() - lastActivityAt > TimeUnit.MILLISECONDS.toNanos(readTimeout)) {
+				Flow.Subscription subscription = this.subscription;
+				if (subscription != null) {
+					subscription.cancel();
+				}
+				complete(new SocketTimeoutException("Read timed out"));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,35 @@
+package com.kirtesh.downloadmanager.service.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+import com.kirtesh.downloadmanager.service.TransferEngine;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ * 
+ * Wraps remote stream as ReadableByteChannel and writes with FileChannel.transferFrom (TransferMode TRANSFER_FROM). 
+ * No heap buffer is allocated by Application, JDK moves data through its own temporary direct buffer. If source is itself a FileChannel, transfer is zero-copy.
+ * bufferSize is not used, transfer size is decided by JDK.
+ *
+ */
+public class ChannelTransferEngine implements TransferEngine {
+
+	@Override
+	public long transfer(InputStream inputStream, FileChannel fileChannel, long position, long maxBytes,
+			int bufferSize) throws IOException {
+		ReadableByteChannel source = Channels.newChannel(inputStream);
+		long transferred = 0;
+		long bytesTransferred = 0;
+		while (transferred < maxBytes
+				&& (bytesTransferred = fileChannel.transferFrom(source, position + transferred, maxBytes - transferred)) > 0) {
+			transferred += bytesTransferred;
+		}
+		return transferred;
+	}
+
+}
@@ -1,20 +1,48 @@
 package com.kirtesh.downloadmanager.service.impl;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.UnknownHostException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.log4j.Logger;
 
+import com.kirtesh.downloadmanager.cache.BandwidthThrottle;
+import com.kirtesh.downloadmanager.cache.DigestManifest;
+import com.kirtesh.downloadmanager.cache.DiskSpaceAdmission;
+import com.kirtesh.downloadmanager.cache.DiskSpaceAdmission.Reservation;
+import com.kirtesh.downloadmanager.cache.RevalidationIndex;
+import com.kirtesh.downloadmanager.cache.TransferMonitor.Transfer;
+import com.kirtesh.downloadmanager.enums.Protocols;
 import com.kirtesh.downloadmanager.factory.RequestRoutingFactory;
+import com.kirtesh.downloadmanager.metadata.ByteRange;
+import com.kirtesh.downloadmanager.metadata.DownloadJournal;
 import com.kirtesh.downloadmanager.metadata.DownloadMetadata;
+import com.kirtesh.downloadmanager.metadata.ProbeMetadata;
+import com.kirtesh.downloadmanager.metadata.RevalidationEntry;
 import com.kirtesh.downloadmanager.service.Downloader;
+import com.kirtesh.downloadmanager.service.RangeReader;
+import com.kirtesh.downloadmanager.service.TransferEngine;
 import com.kirtesh.downloadmanager.utils.CommonUtils;
+import com.kirtesh.downloadmanager.utils.ContentStoreUtils;
+import com.kirtesh.downloadmanager.utils.SegmentUtils;
+import com.kirtesh.downloadmanager.utils.SpeculationUtils;
+import com.kirtesh.downloadmanager.utils.StagingUtils;
+import com.kirtesh.downloadmanager.utils.StreamingDigest;
 /**
  * 
  * @author kirteshdudawat
@@ -25,15 +53,30 @@ import com.kirtesh.downloadmanager.utils.CommonUtils;
  * Its expected that if Execution has reached implementation of Downloader Interface means it has passed all validation and filepath / name paths.
  *
  */
-public class CommonDownloader implements Downloader {
+public class CommonDownloader implements Downloader, RangeReader {
 	
 	public final static Logger logger = Logger.getLogger(CommonDownloader.class);
 	
-	private CommonUtils commonUtils = RequestRoutingFactory.getCommonUtils();
+	protected static final String ACCEPT_RANGES_HEADER = "Accept-Ranges";
+	protected static final String CONTENT_LENGTH_HEADER = "Content-Length";
+	protected static final String RANGE_HEADER = "Range";
+	protected static final String BYTES_UNIT = "bytes";
+	protected static final String IF_RANGE_HEADER = "If-Range";
+	protected static final String ETAG_HEADER = "ETag";
+	protected static final String LAST_MODIFIED_HEADER = "Last-Modified";
+	protected static final String WEAK_ETAG_PREFIX = "W/";
+	protected static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+	protected static final String IF_MODIFIED_SINCE_HEADER = "If-Modified-Since";
+	protected static final int HTTP_NOT_MODIFIED = HttpURLConnection.HTTP_NOT_MODIFIED;
+	protected static final int HTTP_OK = HttpURLConnection.HTTP_OK;
+	protected static final int HTTP_PARTIAL = HttpURLConnection.HTTP_PARTIAL;
+	protected static final int HTTP_BAD_REQUEST = HttpURLConnection.HTTP_BAD_REQUEST;
+	
+	protected CommonUtils commonUtils = RequestRoutingFactory.getCommonUtils();
 	
 	/**
 	 * This methods provides implementation of Downloading file based on HTTP, HTTPS, and FTP protocols only.
-	 * This method handles ConnectionTimeout, readTimeOut, and BufferSize based on protocol on which file is downloaded.
+	 * This method handles ConnectionTimeout, readTimeOut, BufferSize and Segments based on protocol on which file is downloaded.
 	 * Protocol for file to be downloaded is passed in DownloadMetadata along with Download URL and Save URL. 
 	 */
 	@Override
@@ -41,52 +84,212 @@ public class CommonDownloader implements Downloader {
 		int connectionTimeout = commonUtils.getConnectionTimeout(downloadMetadata.getProtocols());
 		int readTimeout = commonUtils.getReadTimeout(downloadMetadata.getProtocols());
 		int bufferSize = commonUtils.getBufferSize(downloadMetadata.getProtocols());
-		return download(downloadMetadata.getDownloadUrl(), downloadMetadata.getFilePath(), connectionTimeout,
-				readTimeout, bufferSize);
+		int segmentCount = commonUtils.getSegmentCount(downloadMetadata.getProtocols());
+		int minSegmentSize = commonUtils.getSegmentMinSize(downloadMetadata.getProtocols());
+		return download(downloadMetadata, connectionTimeout, readTimeout, bufferSize, segmentCount, minSegmentSize);
+	}
+
+	/**
+	 * Sends unconditional HEAD request with timeouts of protocol. FTP file metadata is not probed, empty metadata is returned.
+	 */
+	@Override
+	public ProbeMetadata probe(DownloadMetadata downloadMetadata) throws IOException {
+		int connectionTimeout = commonUtils.getConnectionTimeout(downloadMetadata.getProtocols());
+		int readTimeout = commonUtils.getReadTimeout(downloadMetadata.getProtocols());
+		return probe(new URL(downloadMetadata.getDownloadUrl()), connectionTimeout, readTimeout, null);
+	}
+
+	/**
+	 * Downloads file as a single stream. Same as download(downloadUrl, location, connectTimeout, readTimeout, bufferSize, 1, 0).
+	 * 
+	 * @param downloadUrl - URL of file which needs to be downloaded.
+	 * @param location - location where file needs to be saved on Local Disk
+	 * @param connectTimeout - Specify connectionTimeout for URLConnection class.
+	 * @param readTimeout - Specify readTimeout for URLConnection class.
+	 * @param bufferSize - Max buffer available for downloading.
+	 * @return - Boolean value true / false, representing if Download was successful or not.
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 */
+	public boolean download(String downloadUrl, String location, int connectTimeout, int readTimeout,
+			int bufferSize) throws MalformedURLException, IOException {
+		return download(downloadUrl, location, connectTimeout, readTimeout, bufferSize, 1, 0);
+	}
+
+	/**
+	 * Downloads file without any earlier metadata. Same as download(downloadMetadata, connectTimeout, readTimeout, bufferSize, segmentCount, minSegmentSize)
+	 * for a DownloadMetadata containing only downloadUrl and location.
+	 * 
+	 * @param downloadUrl - URL of file which needs to be downloaded.
+	 * @param location - location where file needs to be saved on Local Disk
+	 * @param connectTimeout - Specify connectionTimeout for URLConnection class.
+	 * @param readTimeout - Specify readTimeout for URLConnection class.
+	 * @param bufferSize - Max buffer available for downloading.
+	 * @param segmentCount - Maximum number of byte range segments to be downloaded concurrently. Value of 1 or less disables segmented download.
+	 * @param minSegmentSize - Minimum size in bytes of a single segment.
+	 * @return - Boolean value true / false, representing if Download was successful or not.
+	 * @throws MalformedURLException
+	 * @throws IOException
+	 */
+	public boolean download(String downloadUrl, String location, int connectTimeout, int readTimeout,
+			int bufferSize, int segmentCount, int minSegmentSize) throws MalformedURLException, IOException {
+		return download(new DownloadMetadata(null, downloadUrl, location), connectTimeout, readTimeout, bufferSize,
+				segmentCount, minSegmentSize);
 	}
 
 	/**
 	 * File Downloading is Done using java.io package. 
 	 * URLConnection class is used to make connection. Only size equivalent to bufferSize would be read and written at one time.
 	 * 
-	 * Note: If Download stops in between, file would be Auto-Deleted before execution exits the method. 
+	 * If downloadMetadata carries a RevalidationEntry from an earlier run, HEAD request is made conditional (If-None-Match / If-Modified-Since). 
+	 * If server answers 304 Not Modified, existing local file is kept as is and nothing is downloaded.
+	 * 
+	 * Data is never written at location directly. It is staged as .part file along with its journal in staging directory (StagingUtils) and moved to location only after download is verified complete.
+	 * Before data is written, space for bytes still to be downloaded is reserved on volume of location (DiskSpaceAdmission), a file which can not fit fails before it starts.
+	 * If content store is enabled, location is published as a link to stored content (ContentStoreUtils), and content of probed size already in store is not downloaded again.
+	 * 
+	 * For HTTP / HTTPS, server is probed for Accept-Ranges, Content-Length, ETag & Last-Modified. If server supports byte ranges, .part file is preallocated and split in 
+	 * upto segmentCount segments of atleast minSegmentSize bytes. All segments are downloaded concurrently, each segment writes at its own position in file and checkpoints its progress in journal.
+	 * If an earlier attempt (retry or run before a crash) left a journal for same unchanged remote file, only remaining ranges are downloaded using Range & If-Range headers.
+	 * If server does not support ranges (or protocol is FTP), file is downloaded as a single stream from byte 0.
+	 * 
+	 * Note: If Download stops in between, resumable .part file is kept in staging directory for next attempt, non resumable .part file is Auto-Deleted before execution exits the method. 
 	 * Logging would be done if Application fails to close opened streams.
 	 * 
-	 * @param downloadUrl - URL of file which needs to be downloaded.
-	 * @param location - location where file needs to be saved on Local Disk
+	 * @param downloadMetadata - Contains URL of file which needs to be downloaded and location where file needs to be saved on Local Disk
 	 * @param connectTimeout - Specify connectionTimeout for URLConnection class.
 	 * @param readTimeout - Specify readTimeout for URLConnection class.
 	 * @param bufferSize - Max buffer available for downloading (Buffer size is based on properties specified for a protocol). Downloading of file would takes place be reading bufferSize bytes multiple times till we completely download the file.
+	 * @param segmentCount - Maximum number of byte range segments to be downloaded concurrently. Value of 1 or less disables segmented download.
+	 * @param minSegmentSize - Minimum size in bytes of a single segment.
 	 * @return - Boolean value true / false, representing if Download was successful or not.
 	 * @throws MalformedURLException
 	 * @throws IOException
 	 */
-	public boolean download(String downloadUrl, String location, int connectTimeout, int readTimeout,
-			int bufferSize) throws MalformedURLException, IOException {
+	protected boolean download(DownloadMetadata downloadMetadata, int connectTimeout, int readTimeout,
+			int bufferSize, int segmentCount, int minSegmentSize) throws MalformedURLException, IOException {
 		boolean isSuccess = false;
-
-		InputStream inputStream = null;
-		FileOutputStream outputStream = null;
-		File file = new File(location);
+		boolean isResumable = false;
+		Reservation reservation = null;
+		String downloadUrl = downloadMetadata.getDownloadUrl();
+		String location = downloadMetadata.getFilePath();
 		try {
 			URL url = new URL(downloadUrl);
-			URLConnection conn = url.openConnection();
-			conn.setConnectTimeout(connectTimeout);
-			conn.setReadTimeout(readTimeout);
-			inputStream = conn.getInputStream();
-			outputStream = new FileOutputStream(file);
-			byte[] buffer = new byte[bufferSize];
-			int bytesRead = -1;
-			while ((bytesRead = inputStream.read(buffer)) != -1) {
-				outputStream.write(buffer, 0, bytesRead);
+			TransferEngine transferEngine = RequestRoutingFactory
+					.getTransferEngine(Protocols.valueOf(url.getProtocol().toUpperCase()));
+			ProbeMetadata probeMetadata = probe(url, connectTimeout, readTimeout, downloadMetadata.getRevalidationEntry());
+			if (probeMetadata.isNotModified()) {
+				logger.info("Skipping download of " + downloadUrl + ", not modified since last download to " + location);
+				return true;
+			}
+			if (ContentStoreUtils.linkIfStored(downloadMetadata, probeMetadata.getContentLength())) {
+				return true;
 			}
+			StagingUtils.createStagingDirectory(location);
+			StreamingDigest streamingDigest = DigestManifest.newStreamingDigest();
+			if (probeMetadata.isResumable()) {
+				isResumable = true;
+				DownloadJournal journal = StagingUtils.loadJournal(location, downloadUrl, probeMetadata);
+				if (journal == null) {
+					long contentLength = probeMetadata.getContentLength();
+					reservation = DiskSpaceAdmission.reserve(location, contentLength);
+					int segments = SegmentUtils.getSegmentCount(contentLength, segmentCount, minSegmentSize);
+					journal = StagingUtils.createJournal(location, downloadUrl, probeMetadata,
+							SegmentUtils.split(contentLength, segments));
+				} else {
+					reservation = DiskSpaceAdmission.reserve(location, journal.getContentLength() - journal.getBytesWritten());
+				}
+				journal.setStreamingDigest(streamingDigest);
+				StagingUtils.setReservation(journal, reservation);
+				downloadRanges(url, location, journal, transferEngine, connectTimeout, readTimeout, bufferSize);
+			} else {
+				reservation = DiskSpaceAdmission.reserve(location, probeMetadata.getContentLength());
+				downloadStream(url, location, probeMetadata.getContentLength(), transferEngine, connectTimeout,
+						readTimeout, bufferSize, streamingDigest);
+			}
+			DigestManifest.verify(downloadMetadata, streamingDigest);
+			ContentStoreUtils.publish(downloadMetadata, probeMetadata.getContentLength());
+			RevalidationIndex.update(downloadUrl, probeMetadata, location);
 			isSuccess = true;
 		} catch(UnknownHostException e){
 			logger.info("UnknownHostException occured while closing Downloading.."+e.getMessage());
 		}finally {
-			if (outputStream != null) {
+			if (reservation != null) {
+				reservation.close();
+			}
+			if (!isSuccess && !isResumable) {
+				StagingUtils.discard(location);
+			}
+		}
+		return isSuccess;
+	}
+
+	/**
+	 * Downloads complete file as a single stream into .part file, when server does not support byte ranges.
+	 * 
+	 * As remaining bytes can not be requested on their own, a straggling stream (see TransferMonitor) is raced by a speculative second stream of complete file into .part.speculative file.
+	 * Whichever stream finishes first is kept as .part file, other one is cancelled and its file deleted.
+	 * 
+	 * @param url - URL of file which needs to be downloaded.
+	 * @param location - location where file needs to be saved on Local Disk.
+	 * @param contentLength - Size of remote file used to preallocate file, -1 if unknown. File is truncated to bytes actually received.
+	 * @param transferEngine - Engine used to copy stream into file.
+	 * @param connectTimeout - Specify connectionTimeout for URLConnection class.
+	 * @param readTimeout - Specify readTimeout for URLConnection class.
+	 * @param bufferSize - Max buffer available for downloading.
+	 * @param streamingDigest - Digest computed while stream is written, null if digests are not enabled. Both streams feed it, bytes already digested are skipped.
+	 * @throws IOException
+	 */
+	private void downloadStream(URL url, String location, long contentLength, TransferEngine transferEngine,
+			int connectTimeout, int readTimeout, int bufferSize, StreamingDigest streamingDigest) throws IOException {
+		Path partFile = StagingUtils.getPartFile(location);
+		Path speculativeFile = StagingUtils.getSpeculativeFile(location);
+		try {
+			boolean speculativeWon = SpeculationUtils.race(url.toString(),
+					transfer -> downloadStream(url, partFile.toFile(), transfer, contentLength, transferEngine,
+							connectTimeout, readTimeout, bufferSize, streamingDigest),
+					() -> transfer -> downloadStream(url, speculativeFile.toFile(), transfer, contentLength,
+							transferEngine, connectTimeout, readTimeout, bufferSize, streamingDigest));
+			if (speculativeWon) {
+				Files.move(speculativeFile, partFile, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(speculativeFile);
+		}
+	}
+
+	/**
+	 * Downloads complete file as a single stream from URLConnection.
+	 * 
+	 * @param url - URL of file which needs to be downloaded.
+	 * @param file - Local file where data would be saved.
+	 * @param transfer - Attempt this stream belongs to, stream is tracked by it so it is measured & can be cancelled.
+	 * @param contentLength - Size of remote file used to preallocate file, -1 if unknown. File is truncated to bytes actually received.
+	 * @param transferEngine - Engine used to copy stream into file.
+	 * @param connectTimeout - Specify connectionTimeout for URLConnection class.
+	 * @param readTimeout - Specify readTimeout for URLConnection class.
+	 * @param bufferSize - Max buffer available for downloading.
+	 * @param streamingDigest - Digest computed while stream is written, null if digests are not enabled.
+	 * @throws IOException
+	 */
+	private void downloadStream(URL url, File file, Transfer transfer, long contentLength, TransferEngine transferEngine,
+			int connectTimeout, int readTimeout, int bufferSize, StreamingDigest streamingDigest) throws IOException {
+		InputStream inputStream = null;
+		RandomAccessFile randomAccessFile = null;
+		try {
+			inputStream = BandwidthThrottle.throttle(transfer.track(openStream(url, null, null, connectTimeout, readTimeout)), url.toString());
+			if (streamingDigest != null) {
+				inputStream = streamingDigest.wrap(inputStream, 0);
+			}
+			randomAccessFile = new RandomAccessFile(file, "rw");
+			randomAccessFile.setLength(0);
+			StagingUtils.preallocate(randomAccessFile, contentLength);
+			long transferred = transferEngine.transfer(inputStream, randomAccessFile.getChannel(), 0, Long.MAX_VALUE, bufferSize);
+			randomAccessFile.setLength(transferred);
+		} finally {
+			if (randomAccessFile != null) {
 				try {
-					outputStream.close();
+					randomAccessFile.close();
 				} catch (IOException e) {
 					logger.info("IOException occured while closing output Stream.."+e.getMessage());
 				}
@@ -98,12 +301,289 @@ public class CommonDownloader implements Downloader {
 					logger.info("IOException occured while closing input Stream.."+e.getMessage());
 				}
 			}
+		}
+	}
+
+	/**
+	 * Sends HEAD request to learn size, byte range support and validators of remote file.
+	 * Connection is not disconnected, so JDK can reuse it (keep-alive) for next request to same host.
+	 * 
+	 * @param url - URL of file which needs to be downloaded.
+	 * @param connectTimeout - Specify connectionTimeout for URLConnection class.
+	 * @param readTimeout - Specify readTimeout for URLConnection class.
+	 * @param revalidationEntry - Validators of earlier downloaded copy, sent as If-None-Match / If-Modified-Since. null for unconditional request.
+	 * @return Metadata of remote file. Empty metadata (unknown size, no range support) for non HTTP URLs or if server does not answer HEAD.
+	 * @throws IOException
+	 */
+	protected ProbeMetadata probe(URL url, int connectTimeout, int readTimeout, RevalidationEntry revalidationEntry)
+			throws IOException {
+		ProbeMetadata probeMetadata = new ProbeMetadata();
+		URLConnection conn = url.openConnection();
+		if (!(conn instanceof HttpURLConnection)) {
+			return probeMetadata;
+		}
+		HttpURLConnection httpConn = (HttpURLConnection) conn;
+		httpConn.setRequestMethod("HEAD");
+		httpConn.setConnectTimeout(connectTimeout);
+		httpConn.setReadTimeout(readTimeout);
+		if (revalidationEntry != null) {
+			if (revalidationEntry.getEtag() != null) {
+				httpConn.setRequestProperty(IF_NONE_MATCH_HEADER, revalidationEntry.getEtag());
+			}
+			if (revalidationEntry.getLastModified() != null) {
+				httpConn.setRequestProperty(IF_MODIFIED_SINCE_HEADER, revalidationEntry.getLastModified());
+			}
+		}
+		if (httpConn.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+			probeMetadata.setNotModified(true);
+			return probeMetadata;
+		}
+		if (httpConn.getResponseCode() != HttpURLConnection.HTTP_OK) {
+			drainErrorStream(httpConn);
+			return probeMetadata;
+		}
+		String acceptRanges = httpConn.getHeaderField(ACCEPT_RANGES_HEADER);
+		probeMetadata.setAcceptRanges(acceptRanges != null && acceptRanges.toLowerCase().contains(BYTES_UNIT));
+		probeMetadata.setContentLength(httpConn.getContentLengthLong());
+		probeMetadata.setEtag(httpConn.getHeaderField(ETAG_HEADER));
+		probeMetadata.setLastModified(httpConn.getHeaderField(LAST_MODIFIED_HEADER));
+		return probeMetadata;
+	}
+
+	/**
+	 * Opens stream to remote file. If range is specified, Range & If-Range headers are sent and server is expected to answer with partial content.
+	 * 
+	 * @param url - URL of file which needs to be downloaded.
+	 * @param range - Byte range to be read, null to read complete file.
+	 * @param ifRangeValidator - ETag / Last-Modified to be sent as If-Range header, null to skip header.
+	 * @param connectTimeout - Specify connectionTimeout for URLConnection class.
+	 * @param readTimeout - Specify readTimeout for URLConnection class.
+	 * @return Stream of remote data. null if range was requested but server sent complete file, i.e. remote file has changed since validator was taken.
+	 * @throws HttpStatusException if server answers with an error status.
+	 * @throws IOException
+	 */
+	protected InputStream openStream(URL url, ByteRange range, String ifRangeValidator, int connectTimeout,
+			int readTimeout) throws IOException {
+		URLConnection conn = url.openConnection();
+		conn.setConnectTimeout(connectTimeout);
+		conn.setReadTimeout(readTimeout);
+		if (range == null) {
+			if (conn instanceof HttpURLConnection) {
+				HttpURLConnection httpConn = (HttpURLConnection) conn;
+				int responseCode = httpConn.getResponseCode();
+				if (responseCode >= HttpURLConnection.HTTP_BAD_REQUEST) {
+					drainErrorStream(httpConn);
+					throw new HttpStatusException(responseCode, "Server returned HTTP status " + responseCode + " for " + url);
+				}
+			}
+			return conn.getInputStream();
+		}
+		HttpURLConnection httpConn = (HttpURLConnection) conn;
+		httpConn.setRequestProperty(RANGE_HEADER, BYTES_UNIT + "=" + range);
+		if (ifRangeValidator != null) {
+			httpConn.setRequestProperty(IF_RANGE_HEADER, ifRangeValidator);
+		}
+		int responseCode = httpConn.getResponseCode();
+		if (responseCode >= HttpURLConnection.HTTP_BAD_REQUEST) {
+			drainErrorStream(httpConn);
+			throw new HttpStatusException(responseCode, "Server returned HTTP status " + responseCode + " for range " + range + " of " + url);
+		}
+		if (responseCode != HttpURLConnection.HTTP_PARTIAL) {
+			// Body is complete file, cheaper to drop connection than to drain it.
+			httpConn.disconnect();
+			return null;
+		}
+		return httpConn.getInputStream();
+	}
+
+	/**
+	 * Reads & closes error body of connection, so that JDK can return connection to keep-alive cache.
+	 * 
+	 * @param httpConn - Connection which has received an error status.
+	 */
+	private void drainErrorStream(HttpURLConnection httpConn) {
+		try (InputStream errorStream = httpConn.getErrorStream()) {
+			if (errorStream != null) {
+				byte[] buffer = new byte[1024];
+				while (errorStream.read(buffer) != -1) {
+				}
+			}
+		} catch (IOException e) {
+			logger.info("IOException occured while draining error Stream.."+e.getMessage());
+		}
+	}
 
-			if (!isSuccess) {
-				file.delete();
+	/**
+	 * Downloads all remaining ranges of journal concurrently on SegmentUtils executor into preallocated .part file.
+	 * If any range fails, all other ranges are cancelled and exception of failed range is thrown. Progress of every range stays checkpointed in journal.
+	 * If remote file has changed since journal was created, staged data is discarded, so next attempt starts from byte 0.
+	 * 
+	 * @param url - URL of file which needs to be downloaded.
+	 * @param location - location where file needs to be saved on Local Disk.
+	 * @param journal - Journal of staged file.
+	 * @param transferEngine - Engine used to copy stream into file.
+	 * @param connectTimeout - Specify connectionTimeout for URLConnection class.
+	 * @param readTimeout - Specify readTimeout for URLConnection class.
+	 * @param bufferSize - Max buffer available for downloading a single range.
+	 * @throws IOException
+	 */
+	private void downloadRanges(URL url, String location, DownloadJournal journal, TransferEngine transferEngine,
+			int connectTimeout, int readTimeout, int bufferSize) throws IOException {
+		List<ByteRange> ranges;
+		journal.getLock().lock();
+		try {
+			ranges = new ArrayList<>(journal.getRemainingRanges());
+		} finally {
+			journal.getLock().unlock();
+		}
+		List<Future<Void>> futures = new ArrayList<>(ranges.size());
+		AtomicBoolean remoteFileChanged = new AtomicBoolean();
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(StagingUtils.getPartFile(location).toFile(), "rw")) {
+			FileChannel fileChannel = randomAccessFile.getChannel();
+			for (ByteRange range : ranges) {
+				futures.add(SegmentUtils.getSegmentExecutorService().submit(() -> {
+					downloadRange(url, location, journal, fileChannel, range, transferEngine, connectTimeout,
+							readTimeout, bufferSize, remoteFileChanged);
+					return null;
+				}));
+			}
+			for (Future<Void> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while downloading segments of " + url, e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Segment download failed for " + url, e.getCause());
+		} finally {
+			for (Future<Void> future : futures) {
+				future.cancel(true);
+			}
+			if (remoteFileChanged.get()) {
+				StagingUtils.discard(location);
 			}
 		}
-		return isSuccess;
+	}
+
+	/**
+	 * Downloads a single byte range of file and writes it at its own position in .part file.
+	 * If-Range header makes sure server sends partial content only if remote file is still same as when journal was created.
+	 * 
+	 * If range becomes a straggler (see TransferMonitor), rest of range from its last checkpoint is taken over by a speculative attempt on a new connection.
+	 * Whichever attempt finishes first is kept, range is then marked complete in journal.
+	 * 
+	 * @param url - URL of file which needs to be downloaded.
+	 * @param location - location where file needs to be saved on Local Disk.
+	 * @param journal - Journal of staged file.
+	 * @param fileChannel - Channel of preallocated .part file, shared by all ranges.
+	 * @param range - Byte range to be downloaded.
+	 * @param transferEngine - Engine used to copy stream into file.
+	 * @param connectTimeout - Specify connectionTimeout for URLConnection class.
+	 * @param readTimeout - Specify readTimeout for URLConnection class.
+	 * @param bufferSize - Max buffer available for downloading.
+	 * @param remoteFileChanged - Set to true if server returns complete file instead of partial content.
+	 * @throws IOException if server does not return partial content or stream ends before complete range is read.
+	 */
+	private void downloadRange(URL url, String location, DownloadJournal journal, FileChannel fileChannel,
+			ByteRange range, TransferEngine transferEngine, int connectTimeout, int readTimeout, int bufferSize,
+			AtomicBoolean remoteFileChanged) throws IOException {
+		boolean speculativeWon = SpeculationUtils.race(journal.getDownloadUrl(),
+				transfer -> transferRange(url, location, journal, fileChannel, range, transfer, transferEngine,
+						connectTimeout, readTimeout, bufferSize, remoteFileChanged),
+				() -> {
+					ByteRange remainingRange;
+					journal.getLock().lock();
+					try {
+						remainingRange = new ByteRange(range.getStart(), range.getEnd());
+					} finally {
+						journal.getLock().unlock();
+					}
+					if (remainingRange.getLength() <= 0) {
+						return null;
+					}
+					return transfer -> transferRange(url, location, journal, fileChannel, remainingRange, transfer,
+							transferEngine, connectTimeout, readTimeout, bufferSize, remoteFileChanged);
+				});
+		if (speculativeWon) {
+			StagingUtils.checkpoint(location, journal, fileChannel, range, range.getEnd() + 1);
+		}
+	}
+
+	/**
+	 * Opens stream of a byte range and writes it at its own position in .part file. Stream is tracked by transfer, so it is measured & can be cancelled.
+	 * 
+	 * @param range - Byte range to be downloaded, a speculative attempt passes its own copy which is not part of journal.
+	 * @param transfer - Attempt of range this stream belongs to.
+	 * @see #downloadRange
+	 */
+	private void transferRange(URL url, String location, DownloadJournal journal, FileChannel fileChannel,
+			ByteRange range, Transfer transfer, TransferEngine transferEngine, int connectTimeout, int readTimeout,
+			int bufferSize, AtomicBoolean remoteFileChanged) throws IOException {
+		InputStream stream = openStream(url, range, getIfRangeValidator(journal), connectTimeout, readTimeout);
+		if (stream == null) {
+			remoteFileChanged.set(true);
+			throw new IOException("Server did not return partial content for range " + range + " of " + url);
+		}
+		try (InputStream inputStream = transfer.track(stream)) {
+			StagingUtils.writeRange(location, journal, fileChannel, range, inputStream, transferEngine, bufferSize);
+		}
+	}
+
+	/**
+	 * Opens Range request with timeouts of protocol of URL. If-Range is taken from probeMetadata, so a mirror whose file has changed since probe fails instead of sending other content.
+	 */
+	@Override
+	public InputStream openRange(String downloadUrl, ByteRange range, ProbeMetadata probeMetadata) throws IOException {
+		URL url = new URL(downloadUrl);
+		Protocols protocols = Protocols.valueOf(url.getProtocol().toUpperCase());
+		InputStream inputStream = openStream(url, range,
+				getIfRangeValidator(probeMetadata.getEtag(), probeMetadata.getLastModified()),
+				commonUtils.getConnectionTimeout(protocols), commonUtils.getReadTimeout(protocols));
+		if (inputStream == null) {
+			throw new IOException("Server did not return partial content for range " + range + " of " + downloadUrl);
+		}
+		return inputStream;
+	}
+
+	/**
+	 * @param journal - Journal of staged file.
+	 * @return Strong ETag if present else Last-Modified of remote file, to be sent as If-Range header. Weak ETags are not allowed in If-Range.
+	 */
+	protected String getIfRangeValidator(DownloadJournal journal) {
+		return getIfRangeValidator(journal.getEtag(), journal.getLastModified());
+	}
+
+	/**
+	 * @return Strong ETag if present else Last-Modified, to be sent as If-Range header.
+	 */
+	protected String getIfRangeValidator(String etag, String lastModified) {
+		if (etag != null && !etag.startsWith(WEAK_ETAG_PREFIX)) {
+			return etag;
+		}
+		return lastModified;
+	}
+
+	/**
+	 * Thrown when server answers with an error status (4xx / 5xx). Being an IOException, download is retried by RetryExecutor,
+	 * status lets HostCircuitBreaker and AdaptiveConcurrencyLimiter tell a failing server from a missing file.
+	 */
+	public static class HttpStatusException extends IOException {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int statusCode;
+
+		public HttpStatusException(int statusCode, String message) {
+			super(message);
+			this.statusCode = statusCode;
+		}
+
+		public int getStatusCode() {
+			return statusCode;
+		}
 	}
 
 }
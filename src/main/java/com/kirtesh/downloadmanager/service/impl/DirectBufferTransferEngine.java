@@ -0,0 +1,63 @@
+package com.kirtesh.downloadmanager.service.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+import com.kirtesh.downloadmanager.service.TransferEngine;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ * 
+ * Wraps remote stream as ReadableByteChannel and copies data through a direct ByteBuffer of bufferSize (TransferMode DIRECT_BUFFER).
+ * Buffer is filled completely before being written, hence one write call per bufferSize bytes. Writing a direct buffer also avoids the copy JDK makes for heap buffers.
+ * 
+ * Direct buffers are costly to allocate, hence one buffer is kept per thread and reused as long as bufferSize does not change.
+ *
+ */
+public class DirectBufferTransferEngine implements TransferEngine {
+
+	private static final ThreadLocal<ByteBuffer> directBuffer = new ThreadLocal<>();
+
+	@Override
+	public long transfer(InputStream inputStream, FileChannel fileChannel, long position, long maxBytes,
+			int bufferSize) throws IOException {
+		ReadableByteChannel source = Channels.newChannel(inputStream);
+		ByteBuffer buffer = getBuffer(bufferSize);
+		long transferred = 0;
+		boolean endOfStream = false;
+		while (transferred < maxBytes && !endOfStream) {
+			buffer.clear();
+			buffer.limit((int) Math.min(buffer.capacity(), maxBytes - transferred));
+			while (buffer.hasRemaining()) {
+				if (source.read(buffer) == -1) {
+					endOfStream = true;
+					break;
+				}
+			}
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				transferred += fileChannel.write(buffer, position + transferred);
+			}
+		}
+		return transferred;
+	}
+
+	/**
+	 * @param bufferSize - Required capacity.
+	 * @return Direct buffer of bufferSize capacity reused by current thread.
+	 */
+	private ByteBuffer getBuffer(int bufferSize) {
+		ByteBuffer buffer = directBuffer.get();
+		if (buffer == null || buffer.capacity() != bufferSize) {
+			buffer = ByteBuffer.allocateDirect(bufferSize);
+			directBuffer.set(buffer);
+		}
+		return buffer;
+	}
+
+}
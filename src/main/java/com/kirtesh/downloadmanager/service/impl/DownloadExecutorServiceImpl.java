@@ -1,19 +1,38 @@
 package com.kirtesh.downloadmanager.service.impl;
 
 import java.io.IOException;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.log4j.Logger;
 
 import com.kirtesh.downloadmanager.cache.DMCache;
+import com.kirtesh.downloadmanager.cache.JobJournal;
+import com.kirtesh.downloadmanager.cache.TransferMonitor;
+import com.kirtesh.downloadmanager.enums.HttpEngine;
+import com.kirtesh.downloadmanager.enums.SchedulingPolicy;
 import com.kirtesh.downloadmanager.factory.RequestRoutingFactory;
 import com.kirtesh.downloadmanager.metadata.DownloadMetadata;
+import com.kirtesh.downloadmanager.service.AsyncDownloader;
 import com.kirtesh.downloadmanager.service.DownloadExecutorService;
 import com.kirtesh.downloadmanager.service.Downloader;
+import com.kirtesh.downloadmanager.service.impl.HostCircuitBreaker.CircuitOpenException;
+import com.kirtesh.downloadmanager.utils.CommonUtils;
+import com.kirtesh.downloadmanager.utils.RetryBudget;
+import com.kirtesh.downloadmanager.utils.RetryBudget.RetryBudgetExhaustedException;
+import com.kirtesh.downloadmanager.utils.VirtualThreadUtils;
 import com.nurkiewicz.asyncretry.AsyncRetryExecutor;
 import com.nurkiewicz.asyncretry.RetryExecutor;
 /**
@@ -24,24 +43,54 @@ import com.nurkiewicz.asyncretry.RetryExecutor;
  *
  * This class uses Async Retry Executor for initiating Download concurrently. All the properties are configured via properties specified in application.properties. For more info on properties, follow  DMCache.
  * All Retry takes place in case connection fails or timeout or IOException occurs. RetryExecutor internally uses ScheduledExecutorService.
+ * Downloads are handed to RetryExecutor by DownloadScheduler, round-robin across hosts and within per host limits, so a single host can not take all the threads.
+ * Downloads of same resource (same normalized URL) are coalesced by InFlightRegistry, resource is transferred once and published to every requested location.
+ * Non blocking downloaders (AsyncDownloader) are retried on their futures, so in flight downloads are not limited by thread pool size.
+ * With download.execution.mode VIRTUAL, every blocking download attempt runs on its own virtual thread and is retried on its future as well.
+ * If sizes are known from preflight stage, downloads are queued in order of download.scheduling.policy and progress is logged in bytes after every download.
+ * Files found while expanding directory / glob URLs are queued one by one with download(downloadMetadata), while listing is still running.
+ * Every attempt is gated by HostCircuitBreaker of its host and retries by a global RetryBudget. Downloads of a host with open circuit are parked on DownloadScheduler till a probe succeeds,
+ * retries beyond budget fail download right away.
+ * With concurrency.adaptive.enabled, AdaptiveConcurrencyLimiter tunes global & per host concurrency while running and worker pool is resized to follow global limit.
+ * Every download is recorded in JobJournal when it is queued, started, completed or finally failed, so next run can skip completed downloads or retry only failed ones.
  *
  */
 public class DownloadExecutorServiceImpl implements DownloadExecutorService {
 
 	final static Logger logger = Logger.getLogger(DownloadExecutorServiceImpl.class);
 
-	private ScheduledExecutorService executorService = Executors
-			.newScheduledThreadPool(DMCache.getScheduledThreadpoolCoreSize());
+	private static final int VIRTUAL_MODE_RETRY_THREADS = 2;
+
+	private ScheduledExecutorService executorService;
+	private ExecutorService virtualThreadExecutor;
 	private RetryExecutor retryExecutor;
+	private DownloadScheduler downloadScheduler;
+	private HostCircuitBreaker hostCircuitBreaker;
+	private RetryBudget retryBudget;
+	private final Set<DownloadMetadata> budgetedDownloads = ConcurrentHashMap.newKeySet();
+	private AdaptiveConcurrencyLimiter concurrencyLimiter;
+	private final InFlightRegistry inFlightRegistry = new InFlightRegistry();
+	private final AtomicLong totalBytes = new AtomicLong();
+	private final AtomicLong completedBytes = new AtomicLong();
+	private final AtomicInteger totalFiles = new AtomicInteger();
+	private final AtomicInteger completedFiles = new AtomicInteger();
 	
 	/**
 	 * This method initializes AsynchRetryExecutor with features like condition like when to retry, its retry attempts,
 	 * retry strategy, delays in retry etc. to be used for initiating Downloads. 
 	 * 
 	 * All configuration linked properties are present in application.properties. 
+	 * With download.execution.mode VIRTUAL, downloads run on virtual threads and scheduled thread pool only runs retry backoff, so it is kept small.
 	 */
 	private void prepareRetryService() {
+		if (VirtualThreadUtils.isEnabled()) {
+			virtualThreadExecutor = VirtualThreadUtils.getVirtualThreadExecutor();
+			executorService = Executors.newScheduledThreadPool(VIRTUAL_MODE_RETRY_THREADS);
+		} else {
+			executorService = Executors.newScheduledThreadPool(DMCache.getScheduledThreadpoolCoreSize());
+		}
 		retryExecutor = new AsyncRetryExecutor(executorService).retryOn(IOException.class)
+				.abortOn(CircuitOpenException.class).abortOn(RetryBudgetExhaustedException.class)
 				.withExponentialBackoff(DMCache.getRetryExponentialBackoffInMillis(),
 						DMCache.getRetryExponentialBackoffMultiplier())
 				.withMaxDelay(DMCache.getRetryMaxDelayMillis()).withUniformJitter()
@@ -49,25 +98,259 @@ public class DownloadExecutorServiceImpl implements DownloadExecutorService {
 	}
 	
 	/**
-	 * This method would allow multiple file to be downloaded concurrently at same time. All URLs to be downloaded would be submitted on RetryExecutor. 
+	 * This method would allow multiple file to be downloaded concurrently at same time. All URLs to be downloaded would be queued on DownloadScheduler,
+	 * which submits them on RetryExecutor round-robin across hosts, as per host permits (download.max.connections.per.host, download.max.connections.per.host.overrides) allow.
+	 * Permits are shared across priority classes as per download.priority.weights and across jobs of a class equally, download.priority.reserved.permits are kept for HIGH downloads.
+	 * Only first download of a resource is queued, other downloads of same resource wait for it in InFlightRegistry and do not take a permit.
+	 * Downloads are queued in order of SchedulingPolicy (download.scheduling.policy), each job's downloads from a host are started in that order and hosts get their first turn in order of their first download.
 	 * @param urlToMetadataMapping would contain mapping of URLs that would be downloaded along with its metadata.
 	 */
 	@Override
 	public void downloadUrls(Map<String, DownloadMetadata> urlToMetadataMapping) {
-		prepareRetryService();
-
-		Set<String> downloadUrlSet = new HashSet<>(urlToMetadataMapping.keySet());
-
-		downloadUrlSet.stream().forEach(url -> retryExecutor.getWithRetry(ctx -> {
-			StringBuffer sb = new StringBuffer().append("Downloading ").append(url).append(". Download Tries : ")
-					.append(ctx.getRetryCount());
-			logger.info(sb.toString());
-			return initiateDownload(urlToMetadataMapping.get(url));
-		}).whenComplete((result, error) -> {
-			StringBuffer sb = (result != null && result) ? new StringBuffer("Download Completed Successfully")
-					: new StringBuffer().append("Download Failed with Error : ").append(error);
-			logger.info(sb.toString());
-		}));
+		DownloadScheduler downloadScheduler = getDownloadScheduler();
+
+		List<DownloadMetadata> leaders = new ArrayList<>(urlToMetadataMapping.size());
+		for (DownloadMetadata downloadMetadata : urlToMetadataMapping.values()) {
+			if (join(downloadMetadata)) {
+				leaders.add(downloadMetadata);
+			}
+		}
+		Comparator<DownloadMetadata> comparator = SchedulingPolicy.fromProperty(DMCache.getDownloadSchedulingPolicy()).getComparator();
+		if (comparator != null) {
+			leaders.sort(comparator);
+		}
+		downloadScheduler.schedule(leaders);
+	}
+
+	/**
+	 * Queues a single download on same DownloadScheduler as downloadUrls, so it shares host & global permits with downloads already queued.
+	 * Downloads queued one by one are started in order they arrive, download.scheduling.policy is not applied to them.
+	 * @param downloadMetadata would contain metadata of file that would be downloaded.
+	 */
+	@Override
+	public void download(DownloadMetadata downloadMetadata) {
+		DownloadScheduler downloadScheduler = getDownloadScheduler();
+		if (join(downloadMetadata)) {
+			downloadScheduler.schedule(Collections.singletonList(downloadMetadata));
+		}
+	}
+
+	/**
+	 * Records download as queued in JobJournal, counts it for progress and joins it in InFlightRegistry.
+	 * @return true if download is first of its resource and needs to be scheduled, false if it waits for a download of same resource already in flight.
+	 */
+	private boolean join(DownloadMetadata downloadMetadata) {
+		JobJournal.queued(downloadMetadata.getDownloadUrl());
+		totalFiles.incrementAndGet();
+		totalBytes.addAndGet(Math.max(0, downloadMetadata.getContentLength()));
+		CompletableFuture<Boolean> follower = inFlightRegistry.join(downloadMetadata);
+		if (follower == null) {
+			return true;
+		}
+		follower.whenComplete((result, error) -> logResult(downloadMetadata, result, error));
+		return false;
+	}
+
+	/**
+	 * Follows global limit of AdaptiveConcurrencyLimiter with size of worker pool, so blocking downloads always have a thread per permit.
+	 * With virtual threads pool only runs retry backoff and is left as is.
+	 * 
+	 * @param limit - New global concurrency limit.
+	 */
+	private void resizeWorkerPool(int limit) {
+		if (virtualThreadExecutor == null && executorService instanceof ScheduledThreadPoolExecutor) {
+			((ScheduledThreadPoolExecutor) executorService).setCorePoolSize(limit);
+		}
+	}
+
+	/**
+	 * @return DownloadScheduler of this service, RetryExecutor, HostCircuitBreaker, RetryBudget, AdaptiveConcurrencyLimiter and scheduler are created on first call.
+	 */
+	private synchronized DownloadScheduler getDownloadScheduler() {
+		if (downloadScheduler == null) {
+			prepareRetryService();
+			retryBudget = new RetryBudget(DMCache.getRetryBudgetRatio(), DMCache.getRetryBudgetBurst());
+			hostCircuitBreaker = new HostCircuitBreaker(DMCache.getCircuitFailureThreshold(), DMCache.getCircuitOpenMillis(),
+					executorService, () -> downloadScheduler.resume());
+			downloadScheduler = new DownloadScheduler(getMaxConcurrentDownloads(), DMCache.getDownloadMaxConnectionsPerHost(),
+					DMCache.getDownloadMaxConnectionsPerHostOverrides(), DMCache.getDownloadPriorityWeights(),
+					DMCache.getDownloadPriorityReservedPermits(), hostCircuitBreaker::isDispatchable, this::submitDownload);
+			if (DMCache.isConcurrencyAdaptiveEnabled()) {
+				int initialLimit = getMaxConcurrentDownloads();
+				concurrencyLimiter = new AdaptiveConcurrencyLimiter(initialLimit, DMCache.getConcurrencyAdaptiveMinLimit(),
+						Math.max(initialLimit, DMCache.getConcurrencyAdaptiveMaxLimit()), DMCache.getConcurrencyAdaptiveWindowMillis(),
+						DMCache.getConcurrencyAdaptiveLatencyTolerance(), this::resizeWorkerPool);
+				concurrencyLimiter.register();
+				downloadScheduler.setConcurrencyLimiter(concurrencyLimiter);
+			}
+		}
+		return downloadScheduler;
+	}
+
+	/**
+	 * @return Number of downloads in flight at a time. Non blocking engine (http.engine ASYNC_HTTP_CLIENT) and virtual threads (download.execution.mode VIRTUAL)
+	 * do not hold a platform thread per download, so they are bounded by async.max.concurrent.downloads instead of scheduled.threadpool.core.size.
+	 */
+	private int getMaxConcurrentDownloads() {
+		int corePoolSize = DMCache.getScheduledThreadpoolCoreSize();
+		if (virtualThreadExecutor != null || HttpEngine.fromProperty(DMCache.getHttpEngine()) == HttpEngine.ASYNC_HTTP_CLIENT) {
+			return Math.max(corePoolSize, DMCache.getAsyncMaxConcurrentDownloads());
+		}
+		return corePoolSize;
+	}
+
+	/**
+	 * Submits download on RetryExecutor. AsyncDownloader is submitted with getFutureWithRetry, so no thread of RetryExecutor waits for it. Once download, including all its retries, is finished, result is published to downloads of same resource waiting in InFlightRegistry.
+	 * Download stopped by open circuit of its host is parked on DownloadScheduler again instead, it is attempted afresh once circuit closes.
+	 * 
+	 * @param downloadMetadata - Metadata of file that needs to be downloaded & saved to local disk.
+	 * @return Future completed once download, including all its retries, is finished or parked.
+	 */
+	private CompletableFuture<Boolean> submitDownload(DownloadMetadata downloadMetadata) {
+		String url = downloadMetadata.getDownloadUrl();
+		String host = CommonUtils.getHost(url);
+		JobJournal.started(url);
+		Downloader downloader = RequestRoutingFactory.getDownloaderImpl(downloadMetadata);
+		CompletableFuture<Boolean> future;
+		if (downloader instanceof AsyncDownloader) {
+			future = retryExecutor.getFutureWithRetry(ctx -> {
+				logger.info(new StringBuffer().append("Downloading ").append(url).append(". Download Tries : ")
+						.append(ctx.getRetryCount()).toString());
+				admit(host, downloadMetadata, ctx.getRetryCount());
+				long startNanos = System.nanoTime();
+				long startBytes = TransferMonitor.getTransferredBytes(url);
+				return ((AsyncDownloader) downloader).downloadAsync(downloadMetadata)
+						.whenComplete((result, error) -> recordAttempt(host, url, startNanos, startBytes, result, error));
+			});
+		} else if (virtualThreadExecutor != null) {
+			future = retryExecutor.getFutureWithRetry(ctx -> {
+				logger.info(new StringBuffer().append("Downloading ").append(url).append(". Download Tries : ")
+						.append(ctx.getRetryCount()).toString());
+				admit(host, downloadMetadata, ctx.getRetryCount());
+				return initiateDownloadOnVirtualThread(host, downloadMetadata);
+			});
+		} else {
+			future = retryExecutor.getWithRetry(ctx -> {
+				StringBuffer sb = new StringBuffer().append("Downloading ").append(url).append(". Download Tries : ")
+						.append(ctx.getRetryCount());
+				logger.info(sb.toString());
+				admit(host, downloadMetadata, ctx.getRetryCount());
+				return initiateDownload(host, downloadMetadata);
+			});
+		}
+		return future.whenComplete((result, error) -> {
+			if (CommonUtils.unwrap(error) instanceof CircuitOpenException) {
+				logger.info("Parking " + url + " till circuit of host " + host + " closes");
+				downloadScheduler.schedule(Collections.singletonList(downloadMetadata));
+				return;
+			}
+			budgetedDownloads.remove(downloadMetadata);
+			TransferMonitor.forget(url);
+			inFlightRegistry.complete(downloadMetadata, result != null && result);
+			logResult(downloadMetadata, result, error);
+		});
+	}
+
+	/**
+	 * Admits a download attempt. Circuit of host is checked first, so an attempt stopped by open circuit neither adds to nor takes from RetryBudget.
+	 * First admitted attempt of download adds to RetryBudget, once per download even if it is parked and attempted afresh. A retry takes from budget,
+	 * if budget is exhausted probe granted by circuit is given back.
+	 * 
+	 * @param host - Host of download.
+	 * @param downloadMetadata - Metadata of file being downloaded.
+	 * @param retryCount - Retries made before this attempt, 0 for first attempt.
+	 * @throws RetryBudgetExhaustedException if attempt is a retry and budget is exhausted.
+	 * @throws CircuitOpenException if circuit of host is open.
+	 */
+	private void admit(String host, DownloadMetadata downloadMetadata, int retryCount) {
+		hostCircuitBreaker.acquire(host);
+		if (retryCount == 0) {
+			if (budgetedDownloads.add(downloadMetadata)) {
+				retryBudget.onFirstAttempt();
+			}
+		} else if (!retryBudget.tryRetry()) {
+			hostCircuitBreaker.release(host);
+			throw new RetryBudgetExhaustedException("Retry budget exhausted, not retrying download from host " + host);
+		}
+	}
+
+	/**
+	 * Records final outcome of download in JobJournal and logs it along with progress.
+	 */
+	private void logResult(DownloadMetadata downloadMetadata, Boolean result, Throwable error) {
+		if (result != null && result) {
+			JobJournal.completed(downloadMetadata.getDownloadUrl(), downloadMetadata.getFilePath());
+		} else {
+			JobJournal.failed(downloadMetadata.getDownloadUrl(), CommonUtils.unwrap(error));
+		}
+		StringBuffer sb = (result != null && result) ? new StringBuffer("Download Completed Successfully")
+				: new StringBuffer().append("Download Failed with Error : ").append(error);
+		sb.append(" for ").append(downloadMetadata.getFilePath());
+		sb.append(". Progress : ").append(completedFiles.incrementAndGet()).append(" of ").append(totalFiles.get()).append(" files");
+		if (totalBytes.get() > 0) {
+			sb.append(", ").append(completedBytes.addAndGet(Math.max(0, downloadMetadata.getContentLength()))).append(" of ")
+					.append(totalBytes.get()).append(" bytes");
+		}
+		logger.info(sb.toString());
+	}
+
+	/**
+	 * Runs a single download attempt on its own virtual thread. Future is completed with exception thrown by download as is, so RetryExecutor retries on IOException.
+	 * 
+	 * @param host - Host of download, outcome is recorded on its circuit.
+	 * @param downloadMetadata - Metadata of file that needs to be downloaded & saved to local disk.
+	 * @return Future completed with result of download attempt.
+	 */
+	private CompletableFuture<Boolean> initiateDownloadOnVirtualThread(String host, DownloadMetadata downloadMetadata) {
+		CompletableFuture<Boolean> future = new CompletableFuture<>();
+		virtualThreadExecutor.execute(() -> {
+			try {
+				future.complete(initiateDownload(host, downloadMetadata));
+			} catch (Throwable e) {
+				future.completeExceptionally(e);
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Makes a download attempt and records its outcome on circuit of host.
+	 * 
+	 * @param host - Host of download.
+	 * @param downloadMetadata - Metadata of file that needs to be downloaded & saved to local disk.
+	 * @return Boolean value true / false, based on was Download successful or not.
+	 * @throws IOException
+	 */
+	private boolean initiateDownload(String host, DownloadMetadata downloadMetadata) throws IOException {
+		String url = downloadMetadata.getDownloadUrl();
+		long startNanos = System.nanoTime();
+		long startBytes = TransferMonitor.getTransferredBytes(url);
+		try {
+			boolean result = initiateDownload(downloadMetadata);
+			recordAttempt(host, url, startNanos, startBytes, result, null);
+			return result;
+		} catch (IOException | RuntimeException e) {
+			recordAttempt(host, url, startNanos, startBytes, null, e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Records outcome of a download attempt on circuit of host and, if concurrency is adaptive, its duration & bytes copied (as counted by TransferMonitor) on
+	 * AdaptiveConcurrencyLimiter. An attempt which was not successful without an error is not a sample for limiter.
+	 * 
+	 * @param host - Host of download.
+	 * @param url - URL of file.
+	 * @param startNanos - System.nanoTime() when attempt started.
+	 * @param startBytes - TransferMonitor.getTransferredBytes(url) when attempt started.
+	 * @param result - Result of attempt, null if it ended with error.
+	 * @param error - Error of attempt, null if attempt completed without error.
+	 */
+	private void recordAttempt(String host, String url, long startNanos, long startBytes, Boolean result, Throwable error) {
+		hostCircuitBreaker.record(host, result, error);
+		if (concurrencyLimiter != null && (error != null || (result != null && result))) {
+			concurrencyLimiter.onComplete(host, System.nanoTime() - startNanos, TransferMonitor.getTransferredBytes(url) - startBytes, error);
+		}
 	}
 
 	/**
@@ -79,7 +362,7 @@ public class DownloadExecutorServiceImpl implements DownloadExecutorService {
 	 */
 	private boolean initiateDownload(DownloadMetadata downloadMetadata) throws IOException {
 
-		Downloader downloader = RequestRoutingFactory.getDownloaderImpl(downloadMetadata.getProtocols());
+		Downloader downloader = RequestRoutingFactory.getDownloaderImpl(downloadMetadata);
 		if (downloader == null) {
 			return false;
 		}
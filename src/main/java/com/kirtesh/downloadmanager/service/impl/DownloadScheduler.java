@@ -0,0 +1,410 @@
+package com.kirtesh.downloadmanager.service.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import org.apache.log4j.Logger;
+
+import com.kirtesh.downloadmanager.enums.Priority;
+import com.kirtesh.downloadmanager.metadata.DownloadMetadata;
+import com.kirtesh.downloadmanager.utils.CommonUtils;
+/**
+ *
+ * @author kirteshdudawat
+ *
+ *
+ * Politeness & fair-share scheduler used by DownloadExecutorServiceImpl. Downloads are queued per priority class, per job and per host, so a huge backfill job
+ * neither starves a small urgent job, nor does one host holding half of URL list get all the threads while other hosts sit idle.
+ *
+ * Next download is picked in three steps:
+ * 1. Priority class : Stride scheduling on weights (download.priority.weights), eg. with HIGH:8,NORMAL:4,LOW:1 and all classes backlogged, out of 13 downloads started
+ *    8 are HIGH, 4 NORMAL and 1 LOW. Every class with queued downloads gets its turn, so LOW is never starved. A class which was idle joins at current pass and does not
+ *    get a burst for time it was idle.
+ * 2. Job : Jobs of a class are served round-robin, so they share permits of class equally.
+ * 3. Host : Hosts of a job are served round-robin, skipping hosts without a free permit.
+ *
+ * Limits applied before a download is dispatched:
+ * 1. Per host permits : `download.max.connections.per.host` for every host, `download.max.connections.per.host.overrides` (host:permits,...) for specific hosts. Shared by all jobs.
+ * 2. Global limit : Downloads in flight across all hosts, same as `scheduled.threadpool.core.size`.
+ * 3. Reserved permits : `download.priority.reserved.permits` of global permits are only used by HIGH downloads, so urgent work gets them even if lower classes have a large backlog.
+ *    At most global limit - 1 are reserved, so lower classes always keep one permit.
+ * 4. Host gate : Downloads of a host whose circuit is open (HostCircuitBreaker.isDispatchable) stay parked in queue, resume is called once they may be dispatched again.
+ * 5. Adaptive limits : If an AdaptiveConcurrencyLimiter is set, its current global limit replaces global limit and its host limit further caps host permits.
+ *    Limiter is told of every dispatch here and of every download attempt by DownloadExecutorServiceImpl, so limits follow measured throughput & latency.
+ *
+ * A download keeps its permit till it completes, including its retries. A slow or throttling host only holds its own permits and never blocks downloads from other hosts.
+ *
+ */
+public class DownloadScheduler {
+
+	final static Logger logger = Logger.getLogger(DownloadScheduler.class);
+
+	/**
+	 * Pass advanced by a class of weight 1 per download, class of weight w advances by STRIDE / w.
+	 */
+	private static final long STRIDE = 1 << 20;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Map<Priority, PriorityClass> priorityClassMap = new EnumMap<>(Priority.class);
+
+	private final Map<String, Integer> inFlightMap = new HashMap<>();
+
+	private final Map<String, Integer> hostPermitOverrides;
+
+	private final int defaultHostPermits;
+
+	private final int globalPermits;
+
+	private final int reservedPermits;
+
+	private final Predicate<String> hostGate;
+
+	private final Function<DownloadMetadata, CompletableFuture<Boolean>> dispatcher;
+
+	private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+	private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+	private int inFlight;
+
+	private long virtualPass;
+
+	/**
+	 * Creates scheduler with default weights of Priority and no reserved permits.
+	 *
+	 * @param globalPermits - Maximum downloads in flight across all hosts, value less than 1 is treated as 1.
+	 * @param defaultHostPermits - Maximum downloads in flight per host, value less than 1 means host is only limited by globalPermits.
+	 * @param hostPermitOverrides - Maximum downloads in flight for specific hosts, overrides defaultHostPermits.
+	 * @param dispatcher - Starts download and returns future completed (with result or error) once download, including retries, is finished.
+	 */
+	public DownloadScheduler(int globalPermits, int defaultHostPermits, Map<String, Integer> hostPermitOverrides,
+			Function<DownloadMetadata, CompletableFuture<Boolean>> dispatcher) {
+		this(globalPermits, defaultHostPermits, hostPermitOverrides, Collections.emptyMap(), 0, dispatcher);
+	}
+
+	/**
+	 * @param globalPermits - Maximum downloads in flight across all hosts, value less than 1 is treated as 1.
+	 * @param defaultHostPermits - Maximum downloads in flight per host, value less than 1 means host is only limited by globalPermits.
+	 * @param hostPermitOverrides - Maximum downloads in flight for specific hosts, overrides defaultHostPermits.
+	 * @param priorityWeights - Weight of priority classes (HIGH, NORMAL, LOW), default weight of Priority is used for missing classes and values less than 1.
+	 * @param reservedPermits - Global permits only used by HIGH downloads, capped at global limit - 1.
+	 * @param dispatcher - Starts download and returns future completed (with result or error) once download, including retries, is finished.
+	 */
+	public DownloadScheduler(int globalPermits, int defaultHostPermits, Map<String, Integer> hostPermitOverrides,
+			Map<String, Integer> priorityWeights, int reservedPermits,
+			Function<DownloadMetadata, CompletableFuture<Boolean>> dispatcher) {
+		this(globalPermits, defaultHostPermits, hostPermitOverrides, priorityWeights, reservedPermits, host -> true, dispatcher);
+	}
+
+	/**
+	 * @param globalPermits - Maximum downloads in flight across all hosts, value less than 1 is treated as 1.
+	 * @param defaultHostPermits - Maximum downloads in flight per host, value less than 1 means host is only limited by globalPermits.
+	 * @param hostPermitOverrides - Maximum downloads in flight for specific hosts, overrides defaultHostPermits.
+	 * @param priorityWeights - Weight of priority classes (HIGH, NORMAL, LOW), default weight of Priority is used for missing classes and values less than 1.
+	 * @param reservedPermits - Global permits only used by HIGH downloads, capped at global limit - 1.
+	 * @param hostGate - Tests if downloads of host may be dispatched, downloads of a host failing it stay queued till resume is called.
+	 * @param dispatcher - Starts download and returns future completed (with result or error) once download, including retries, is finished.
+	 */
+	public DownloadScheduler(int globalPermits, int defaultHostPermits, Map<String, Integer> hostPermitOverrides,
+			Map<String, Integer> priorityWeights, int reservedPermits, Predicate<String> hostGate,
+			Function<DownloadMetadata, CompletableFuture<Boolean>> dispatcher) {
+		this.globalPermits = Math.max(1, globalPermits);
+		this.defaultHostPermits = defaultHostPermits;
+		this.hostPermitOverrides = hostPermitOverrides;
+		this.reservedPermits = Math.max(0, reservedPermits);
+		this.hostGate = hostGate;
+		this.dispatcher = dispatcher;
+		for (Priority priority : Priority.values()) {
+			priorityClassMap.put(priority, new PriorityClass(priority, getWeight(priorityWeights, priority)));
+		}
+	}
+
+	/**
+	 * Queues downloads per priority class, job & host and dispatches as many as permits allow.
+	 *
+	 * @param downloads - Metadata of files to be downloaded.
+	 * @return Future completed once all queued downloads are finished.
+	 */
+	public CompletableFuture<Void> schedule(Collection<DownloadMetadata> downloads) {
+		lock.lock();
+		try {
+			for (DownloadMetadata downloadMetadata : downloads) {
+				Priority priority = downloadMetadata.getPriority() == null ? Priority.NORMAL : downloadMetadata.getPriority();
+				PriorityClass priorityClass = priorityClassMap.get(priority);
+				if (priorityClass.isEmpty()) {
+					priorityClass.pass = Math.max(priorityClass.pass, virtualPass);
+				}
+				priorityClass.add(downloadMetadata);
+			}
+		} finally {
+			lock.unlock();
+		}
+		dispatch();
+		return completion;
+	}
+
+	/**
+	 * Sets limiter adjusting global & host limits while downloads run. Must be set before first download is scheduled.
+	 *
+	 * @param concurrencyLimiter - Adaptive limiter, null to only use configured permits.
+	 */
+	public void setConcurrencyLimiter(AdaptiveConcurrencyLimiter concurrencyLimiter) {
+		this.concurrencyLimiter = concurrencyLimiter;
+	}
+
+	/**
+	 * Dispatches queued downloads as permits allow. Called once host gate of a parked host may have opened, as no download completion would trigger dispatch otherwise.
+	 */
+	public void resume() {
+		dispatch();
+	}
+
+	/**
+	 * @param host - Host of URL.
+	 * @return Number of downloads currently in flight for host.
+	 */
+	public int getInFlight(String host) {
+		lock.lock();
+		try {
+			return inFlightMap.getOrDefault(host, 0);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Visits priority classes in order of their pass and dispatches next download of first class having a download whose host has a free permit, till global limit is reached.
+	 * Classes other than HIGH are skipped once only reserved permits are left.
+	 */
+	private void dispatch() {
+		while (true) {
+			DownloadMetadata next = null;
+			String nextHost = null;
+			lock.lock();
+			try {
+				int globalLimit = getGlobalLimit();
+				if (inFlight >= globalLimit) {
+					return;
+				}
+				List<PriorityClass> priorityClasses = new ArrayList<>(priorityClassMap.values());
+				priorityClasses.sort(Comparator.comparingLong((PriorityClass priorityClass) -> priorityClass.pass)
+						.thenComparing(priorityClass -> priorityClass.priority));
+				boolean onlyReservedLeft = inFlight >= globalLimit - Math.min(reservedPermits, globalLimit - 1);
+				for (PriorityClass priorityClass : priorityClasses) {
+					if (priorityClass.isEmpty() || (onlyReservedLeft && priorityClass.priority != Priority.HIGH)) {
+						continue;
+					}
+					next = priorityClass.poll(host -> inFlightMap.getOrDefault(host, 0) < getHostLimit(host) && hostGate.test(host));
+					if (next != null) {
+						virtualPass = priorityClass.pass;
+						priorityClass.pass += priorityClass.stride;
+						break;
+					}
+				}
+				if (next == null) {
+					if (inFlight == 0 && isEmpty()) {
+						completion.complete(null);
+					}
+					return;
+				}
+				nextHost = CommonUtils.getHost(next.getDownloadUrl());
+				inFlight++;
+				int hostInFlight = inFlightMap.merge(nextHost, 1, Integer::sum);
+				if (concurrencyLimiter != null) {
+					concurrencyLimiter.onDispatch(nextHost, getHostPermits(nextHost), inFlight >= globalLimit,
+							hostInFlight >= getHostLimit(nextHost));
+				}
+			} finally {
+				lock.unlock();
+			}
+			start(nextHost, next);
+		}
+	}
+
+	private void start(String host, DownloadMetadata downloadMetadata) {
+		CompletableFuture<Boolean> future;
+		try {
+			future = dispatcher.apply(downloadMetadata);
+		} catch (RuntimeException e) {
+			future = new CompletableFuture<>();
+			future.completeExceptionally(e);
+		}
+		future.whenComplete((result, error) -> {
+			release(host);
+			dispatch();
+		});
+	}
+
+	private void release(String host) {
+		lock.lock();
+		try {
+			inFlight--;
+			if (inFlightMap.merge(host, -1, Integer::sum) <= 0) {
+				inFlightMap.remove(host);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private boolean isEmpty() {
+		for (PriorityClass priorityClass : priorityClassMap.values()) {
+			if (!priorityClass.isEmpty()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int getGlobalLimit() {
+		return concurrencyLimiter == null ? globalPermits : concurrencyLimiter.getLimit();
+	}
+
+	private int getHostLimit(String host) {
+		int hostPermits = getHostPermits(host);
+		return concurrencyLimiter == null ? hostPermits : concurrencyLimiter.getHostLimit(host, hostPermits);
+	}
+
+	private int getHostPermits(String host) {
+		Integer permits = hostPermitOverrides.get(host);
+		if (permits != null && permits > 0) {
+			return permits;
+		}
+		if (defaultHostPermits > 0) {
+			return defaultHostPermits;
+		}
+		return concurrencyLimiter == null ? globalPermits : Math.max(globalPermits, concurrencyLimiter.getMaxLimit());
+	}
+
+	private static int getWeight(Map<String, Integer> priorityWeights, Priority priority) {
+		for (Map.Entry<String, Integer> entry : priorityWeights.entrySet()) {
+			if (priority.getPriority().equalsIgnoreCase(entry.getKey()) && entry.getValue() != null && entry.getValue() > 0) {
+				return entry.getValue();
+			}
+		}
+		return priority.getDefaultWeight();
+	}
+
+	/**
+	 * Downloads of a priority class, queued per job. Jobs are served round-robin.
+	 */
+	private static class PriorityClass {
+
+		private final Priority priority;
+
+		private final long stride;
+
+		private final Map<String, JobQueue> jobQueueMap = new HashMap<>();
+
+		private final Deque<String> jobRotation = new ArrayDeque<>();
+
+		private long pass;
+
+		private PriorityClass(Priority priority, int weight) {
+			this.priority = priority;
+			this.stride = STRIDE / weight;
+		}
+
+		private boolean isEmpty() {
+			return jobRotation.isEmpty();
+		}
+
+		private void add(DownloadMetadata downloadMetadata) {
+			String jobId = downloadMetadata.getJobId() == null ? DownloadMetadata.DEFAULT_JOB_ID : downloadMetadata.getJobId();
+			JobQueue jobQueue = jobQueueMap.get(jobId);
+			if (jobQueue == null) {
+				jobQueue = new JobQueue();
+				jobQueueMap.put(jobId, jobQueue);
+				jobRotation.addLast(jobId);
+			}
+			jobQueue.add(downloadMetadata);
+		}
+
+		/**
+		 * Job served is moved to end of rotation, so every job gets its turn before any job gets a second one.
+		 *
+		 * @param hasFreePermit - Tests if host has a free permit.
+		 * @return Next download of first job in rotation having a download whose host has a free permit, null if there is none.
+		 */
+		private DownloadMetadata poll(Predicate<String> hasFreePermit) {
+			int jobs = jobRotation.size();
+			for (int i = 0; i < jobs; i++) {
+				String jobId = jobRotation.pollFirst();
+				jobRotation.addLast(jobId);
+				JobQueue jobQueue = jobQueueMap.get(jobId);
+				DownloadMetadata next = jobQueue.poll(hasFreePermit);
+				if (next != null) {
+					if (jobQueue.isEmpty()) {
+						jobQueueMap.remove(jobId);
+						jobRotation.remove(jobId);
+					}
+					return next;
+				}
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Downloads of a job, queued per host. Hosts are served round-robin.
+	 */
+	private static class JobQueue {
+
+		private final Map<String, Deque<DownloadMetadata>> hostQueueMap = new HashMap<>();
+
+		private final Deque<String> hostRotation = new ArrayDeque<>();
+
+		private boolean isEmpty() {
+			return hostRotation.isEmpty();
+		}
+
+		private void add(DownloadMetadata downloadMetadata) {
+			String host = CommonUtils.getHost(downloadMetadata.getDownloadUrl());
+			Deque<DownloadMetadata> queue = hostQueueMap.get(host);
+			if (queue == null) {
+				queue = new ArrayDeque<>();
+				hostQueueMap.put(host, queue);
+				hostRotation.addLast(host);
+			}
+			queue.addLast(downloadMetadata);
+		}
+
+		/**
+		 * Host served is moved to end of rotation, so every host gets its turn before any host gets a second one.
+		 *
+		 * @param hasFreePermit - Tests if host has a free permit.
+		 * @return Next download of first host in rotation having a free permit, null if there is none.
+		 */
+		private DownloadMetadata poll(Predicate<String> hasFreePermit) {
+			int hosts = hostRotation.size();
+			for (int i = 0; i < hosts; i++) {
+				String host = hostRotation.pollFirst();
+				hostRotation.addLast(host);
+				if (hasFreePermit.test(host)) {
+					Deque<DownloadMetadata> queue = hostQueueMap.get(host);
+					DownloadMetadata next = queue.pollFirst();
+					if (queue.isEmpty()) {
+						hostQueueMap.remove(host);
+						hostRotation.remove(host);
+					}
+					return next;
+				}
+			}
+			return null;
+		}
+	}
+
+}
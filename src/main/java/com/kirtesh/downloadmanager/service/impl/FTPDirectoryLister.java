@@ -0,0 +1,43 @@
+package com.kirtesh.downloadmanager.service.impl;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+
+import com.kirtesh.downloadmanager.cache.FTPConnectionPool;
+import com.kirtesh.downloadmanager.enums.Protocols;
+import com.kirtesh.downloadmanager.factory.RequestRoutingFactory;
+import com.kirtesh.downloadmanager.metadata.RemoteFileEntry;
+import com.kirtesh.downloadmanager.service.RemoteDirectoryLister;
+import com.kirtesh.downloadmanager.utils.CommonUtils;
+import com.kirtesh.downloadmanager.utils.FTPConnection;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ * 
+ * Lists FTP directories with MLSD over a connection leased from FTPConnectionPool, so listing and downloads from same user@host:port share logins.
+ * Server must support MLSD (RFC 3659), older servers only offering LIST return no machine readable size & time and are not supported.
+ *
+ */
+public class FTPDirectoryLister implements RemoteDirectoryLister {
+
+	private CommonUtils commonUtils = RequestRoutingFactory.getCommonUtils();
+
+	@Override
+	public List<RemoteFileEntry> list(String directoryUrl) throws IOException {
+		URI uri = FTPDownloader.toURI(directoryUrl);
+		String[] credentials = FTPDownloader.getCredentials(uri);
+		FTPConnection connection = FTPConnectionPool.acquire(credentials[0], credentials[1], uri.getHost(),
+				FTPDownloader.getPort(uri), commonUtils.getConnectionTimeout(Protocols.FTP), commonUtils.getReadTimeout(Protocols.FTP));
+		boolean isSuccess = false;
+		try {
+			List<RemoteFileEntry> entries = connection.list(FTPDownloader.getRemotePath(uri));
+			isSuccess = true;
+			return entries;
+		} finally {
+			FTPConnectionPool.release(connection, isSuccess);
+		}
+	}
+
+}
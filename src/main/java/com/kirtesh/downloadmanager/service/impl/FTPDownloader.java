@@ -0,0 +1,290 @@
+package com.kirtesh.downloadmanager.service.impl;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import com.kirtesh.downloadmanager.cache.BandwidthThrottle;
+import com.kirtesh.downloadmanager.cache.DigestManifest;
+import com.kirtesh.downloadmanager.cache.DiskSpaceAdmission;
+import com.kirtesh.downloadmanager.cache.DiskSpaceAdmission.Reservation;
+import com.kirtesh.downloadmanager.cache.FTPConnectionPool;
+import com.kirtesh.downloadmanager.cache.RevalidationIndex;
+import com.kirtesh.downloadmanager.cache.TransferMonitor;
+import com.kirtesh.downloadmanager.cache.TransferMonitor.Transfer;
+import com.kirtesh.downloadmanager.enums.Protocols;
+import com.kirtesh.downloadmanager.factory.RequestRoutingFactory;
+import com.kirtesh.downloadmanager.metadata.ByteRange;
+import com.kirtesh.downloadmanager.metadata.DownloadJournal;
+import com.kirtesh.downloadmanager.metadata.DownloadMetadata;
+import com.kirtesh.downloadmanager.metadata.ProbeMetadata;
+import com.kirtesh.downloadmanager.metadata.RevalidationEntry;
+import com.kirtesh.downloadmanager.service.Downloader;
+import com.kirtesh.downloadmanager.service.RangeReader;
+import com.kirtesh.downloadmanager.service.TransferEngine;
+import com.kirtesh.downloadmanager.utils.CommonUtils;
+import com.kirtesh.downloadmanager.utils.ContentStoreUtils;
+import com.kirtesh.downloadmanager.utils.FTPConnection;
+import com.kirtesh.downloadmanager.utils.SegmentUtils;
+import com.kirtesh.downloadmanager.utils.StagingUtils;
+import com.kirtesh.downloadmanager.utils.StreamingDigest;
+/**
+ *
+ * @author kirteshdudawat
+ *
+ *
+ * Uses FTPConnection, Supports FTP protocol file downloads.
+ * This class only downloads file. No Validation or handling are done in it.
+ * Its expected that if Execution has reached implementation of Downloader Interface means it has passed all validation and filepath / name paths.
+ *
+ */
+public class FTPDownloader implements Downloader, RangeReader {
+
+	final static Logger logger = Logger.getLogger(FTPDownloader.class);
+
+	private static final String PATH_SEPARATOR = "/";
+
+	protected CommonUtils commonUtils = RequestRoutingFactory.getCommonUtils();
+
+	/**
+	 * This methods provides implementation of Downloading file based on FTP protocol only.
+	 * This method handles ConnectionTimeout, readTimeOut and BufferSize of FTP.
+	 */
+	@Override
+	public boolean download(DownloadMetadata downloadMetadata) throws IOException {
+		return download(downloadMetadata, commonUtils.getConnectionTimeout(Protocols.FTP), commonUtils.getReadTimeout(Protocols.FTP),
+				commonUtils.getBufferSize(Protocols.FTP));
+	}
+
+	/**
+	 * Same as download(downloadMetadata, connectTimeout, readTimeout, bufferSize) without any earlier downloaded copy.
+	 */
+	public boolean download(String downloadUrl, String location, int connectTimeout, int readTimeout, int bufferSize)
+			throws IOException {
+		return download(new DownloadMetadata(Protocols.FTP, downloadUrl, location), connectTimeout, readTimeout, bufferSize);
+	}
+
+	/**
+	 * This method fetches username, password from download URL (anonymous login if not specified). Only size equivalent to bufferSize would be read and written at one time.
+	 *
+	 * Logged in control connection is leased from FTPConnectionPool, so files from same user@host:port reuse logins. Connection is returned to pool once download completes.
+	 *
+	 * Remote file is probed with SIZE, MDTM and REST. If server supports all of them, data is staged as .part file along with its journal in staging directory (StagingUtils),
+	 * and an earlier attempt for same unchanged remote file is resumed from last checkpoint with REST. Otherwise file is downloaded as a single stream from byte 0.
+	 * If remote file has same size & modification time as copy downloaded in an earlier run (revalidationEntry), download is skipped.
+	 * Digest, disk admission, content store and bandwidth limits are same as for other protocols.
+	 *
+	 * Note: If Download stops in between, resumable .part file is kept in staging directory for next attempt and IOException is thrown, so download is retried.
+	 * Non resumable .part file is Auto-Deleted before execution exits the method.
+	 *
+	 * @param downloadMetadata - URL, location & revalidationEntry of file to be downloaded. Digest of file is set on it once download completes.
+	 * @param connectTimeout - Connect timeout of control and data connections.
+	 * @param readTimeout - Maximum time a read on control or data connection may block.
+	 * @param bufferSize - Max buffer available for downloading.
+	 * @return Boolean value true / false, based on wheather download is successful or not.
+	 * @throws IOException if download fails, so it is retried.
+	 */
+	public boolean download(DownloadMetadata downloadMetadata, int connectTimeout, int readTimeout, int bufferSize)
+			throws IOException {
+		String downloadUrl = downloadMetadata.getDownloadUrl();
+		String location = downloadMetadata.getFilePath();
+		URI uri = toURI(downloadUrl);
+		String[] credentials = getCredentials(uri);
+		String remotePath = getRemotePath(uri);
+
+		boolean isSuccess = false;
+		boolean isResumable = false;
+		Reservation reservation = null;
+		FTPConnection connection = null;
+		try {
+			connection = FTPConnectionPool.acquire(credentials[0], credentials[1], uri.getHost(), getPort(uri), connectTimeout, readTimeout);
+			ProbeMetadata probeMetadata = stat(connection, remotePath);
+			RevalidationEntry revalidationEntry = downloadMetadata.getRevalidationEntry();
+			if (revalidationEntry != null && probeMetadata.getLastModified() != null
+					&& probeMetadata.getLastModified().equals(revalidationEntry.getLastModified())
+					&& probeMetadata.getContentLength() == revalidationEntry.getContentLength()) {
+				logger.info("Skipping download of " + downloadUrl + ", not modified since last download to " + location);
+				isSuccess = true;
+				return true;
+			}
+			if (ContentStoreUtils.linkIfStored(downloadMetadata, probeMetadata.getContentLength())) {
+				isSuccess = true;
+				return true;
+			}
+			StagingUtils.createStagingDirectory(location);
+			StreamingDigest streamingDigest = DigestManifest.newStreamingDigest();
+			TransferEngine transferEngine = RequestRoutingFactory.getTransferEngine(Protocols.FTP);
+			if (probeMetadata.isResumable()) {
+				isResumable = true;
+				DownloadJournal journal = StagingUtils.loadJournal(location, downloadUrl, probeMetadata);
+				if (journal == null) {
+					reservation = DiskSpaceAdmission.reserve(location, probeMetadata.getContentLength());
+					journal = StagingUtils.createJournal(location, downloadUrl, probeMetadata,
+							SegmentUtils.split(probeMetadata.getContentLength(), 1));
+				} else {
+					reservation = DiskSpaceAdmission.reserve(location, journal.getContentLength() - journal.getBytesWritten());
+				}
+				journal.setStreamingDigest(streamingDigest);
+				StagingUtils.setReservation(journal, reservation);
+				List<ByteRange> ranges;
+				journal.getLock().lock();
+				try {
+					ranges = new ArrayList<>(journal.getRemainingRanges());
+				} finally {
+					journal.getLock().unlock();
+				}
+				try (RandomAccessFile randomAccessFile = new RandomAccessFile(StagingUtils.getPartFile(location).toFile(), "rw")) {
+					for (ByteRange range : ranges) {
+						try (Transfer transfer = TransferMonitor.start(downloadUrl, null);
+								InputStream inputStream = transfer.track(connection.retrieve(remotePath, range.getStart()))) {
+							StagingUtils.writeRange(location, journal, randomAccessFile.getChannel(), range, inputStream,
+									transferEngine, bufferSize);
+						}
+					}
+				}
+			} else {
+				reservation = DiskSpaceAdmission.reserve(location, probeMetadata.getContentLength());
+				downloadStream(connection, remotePath, downloadUrl, location, probeMetadata.getContentLength(), transferEngine,
+						bufferSize, streamingDigest);
+			}
+			DigestManifest.verify(downloadMetadata, streamingDigest);
+			ContentStoreUtils.publish(downloadMetadata, probeMetadata.getContentLength());
+			RevalidationIndex.update(downloadUrl, probeMetadata, location);
+			isSuccess = true;
+		} finally {
+			if (reservation != null) {
+				reservation.close();
+			}
+			if (connection != null) {
+				FTPConnectionPool.release(connection, isSuccess);
+			}
+			if (!isSuccess && !isResumable) {
+				StagingUtils.discard(location);
+			}
+		}
+		return isSuccess;
+	}
+
+	/**
+	 * Probes remote file with SIZE, MDTM and REST over a connection leased from FTPConnectionPool, with timeouts of FTP.
+	 */
+	@Override
+	public ProbeMetadata probe(DownloadMetadata downloadMetadata) throws IOException {
+		URI uri = toURI(downloadMetadata.getDownloadUrl());
+		String[] credentials = getCredentials(uri);
+		FTPConnection connection = FTPConnectionPool.acquire(credentials[0], credentials[1], uri.getHost(), getPort(uri),
+				commonUtils.getConnectionTimeout(Protocols.FTP), commonUtils.getReadTimeout(Protocols.FTP));
+		boolean isSuccess = false;
+		try {
+			ProbeMetadata probeMetadata = stat(connection, getRemotePath(uri));
+			isSuccess = true;
+			return probeMetadata;
+		} finally {
+			FTPConnectionPool.release(connection, isSuccess);
+		}
+	}
+
+	/**
+	 * Reads range with REST over a connection leased from FTPConnectionPool, with timeouts of FTP. Connection is returned to pool when stream is closed,
+	 * a transfer closed before end of file is aborted and its connection is discarded (see FTPConnection.retrieve).
+	 */
+	@Override
+	public InputStream openRange(String downloadUrl, ByteRange range, ProbeMetadata probeMetadata) throws IOException {
+		URI uri = toURI(downloadUrl);
+		String[] credentials = getCredentials(uri);
+		FTPConnection connection = FTPConnectionPool.acquire(credentials[0], credentials[1], uri.getHost(), getPort(uri),
+				commonUtils.getConnectionTimeout(Protocols.FTP), commonUtils.getReadTimeout(Protocols.FTP));
+		try {
+			return new FilterInputStream(connection.retrieve(getRemotePath(uri), range.getStart())) {
+				private boolean isClosed;
+
+				@Override
+				public void close() throws IOException {
+					if (isClosed) {
+						return;
+					}
+					isClosed = true;
+					try {
+						super.close();
+					} finally {
+						FTPConnectionPool.release(connection, connection.isUsable());
+					}
+				}
+			};
+		} catch (IOException e) {
+			FTPConnectionPool.release(connection, false);
+			throw e;
+		}
+	}
+
+	/**
+	 * Downloads complete file from byte 0 as a single stream into .part file, truncated to bytes actually received.
+	 */
+	private void downloadStream(FTPConnection connection, String remotePath, String downloadUrl, String location,
+			long contentLength, TransferEngine transferEngine, int bufferSize, StreamingDigest streamingDigest) throws IOException {
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(StagingUtils.getPartFile(location).toFile(), "rw");
+				Transfer transfer = TransferMonitor.start(downloadUrl, null);
+				InputStream dataStream = transfer.track(connection.retrieve(remotePath, 0))) {
+			InputStream inputStream = BandwidthThrottle.throttle(dataStream, downloadUrl);
+			if (streamingDigest != null) {
+				inputStream = streamingDigest.wrap(inputStream, 0);
+			}
+			randomAccessFile.setLength(0);
+			StagingUtils.preallocate(randomAccessFile, contentLength);
+			long transferred = transferEngine.transfer(inputStream, randomAccessFile.getChannel(), 0, Long.MAX_VALUE, bufferSize);
+			randomAccessFile.setLength(transferred);
+		}
+	}
+
+	/**
+	 * @return Size (SIZE) & modification time (MDTM) of remote file as ProbeMetadata. Resumable only if size is known and server accepts REST.
+	 */
+	private static ProbeMetadata stat(FTPConnection connection, String remotePath) throws IOException {
+		long size = connection.size(remotePath);
+		String modificationTime = connection.modificationTime(remotePath);
+		boolean isRestartSupported = size > 0 && connection.isRestartSupported();
+		return new ProbeMetadata(size, isRestartSupported, null, modificationTime);
+	}
+
+	static URI toURI(String downloadUrl) throws IOException {
+		try {
+			return new URI(downloadUrl);
+		} catch (URISyntaxException e) {
+			throw new IOException("URI Syntax Exception for " + downloadUrl, e);
+		}
+	}
+
+	static int getPort(URI uri) {
+		return uri.getPort() == -1 ? FTPConnection.DEFAULT_PORT : uri.getPort();
+	}
+
+	/**
+	 * @return Path of file relative to login directory, as per RFC 1738. `ftp://host/%2Fpub/file` refers to absolute path /pub/file.
+	 */
+	static String getRemotePath(URI uri) {
+		String path = uri.getPath();
+		return path.startsWith(PATH_SEPARATOR) ? path.substring(1) : path;
+	}
+
+	/**
+	 * @param uri - FTP URI of file.
+	 * @return Array of username & password from user info of URI, elements are null if not specified.
+	 */
+	static String[] getCredentials(URI uri) {
+		String[] credentials = new String[2];
+		if (uri.getUserInfo() != null && !uri.getUserInfo().isEmpty()) {
+			String[] userInfo = uri.getUserInfo().split(":", 2);
+			credentials[0] = userInfo[0];
+			credentials[1] = userInfo.length == 2 ? userInfo[1] : null;
+		}
+		return credentials;
+	}
+
+}
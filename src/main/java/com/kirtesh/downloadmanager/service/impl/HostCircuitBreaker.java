@@ -0,0 +1,236 @@
+package com.kirtesh.downloadmanager.service.impl;
+
+import java.net.HttpURLConnection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import com.kirtesh.downloadmanager.cache.DiskSpaceAdmission.InsufficientDiskSpaceException;
+import com.kirtesh.downloadmanager.enums.CircuitState;
+import com.kirtesh.downloadmanager.service.impl.CommonDownloader.HttpStatusException;
+import com.kirtesh.downloadmanager.utils.CommonUtils;
+/**
+ *
+ * @author kirteshdudawat
+ *
+ *
+ * Per host circuit breaker used by DownloadExecutorServiceImpl, fed by outcome of every download attempt. Hosts are same as keys of host permits (CommonUtils.getHost).
+ *
+ * 1. CLOSED : Attempts are made as usual. A host failing `circuit.failure.threshold` attempts in a row (connect failure, timeout, connection reset, 5xx status or unsuccessful result) is opened.
+ * 2. OPEN : For `circuit.open.millis` no attempt is made on host. DownloadScheduler keeps its downloads parked in queue, attempts already scheduled for retry throw
+ *    CircuitOpenException and are parked again, so a dead host neither runs full backoff for each of its URLs nor holds threads and permits of healthy hosts.
+ * 3. HALF_OPEN : Once open time has passed, onProbeDue wakes DownloadScheduler and a single attempt is let through as probe. Circuit closes if it succeeds and parked downloads resume,
+ *    otherwise circuit opens again.
+ *
+ * Breaker with threshold less than 1 is disabled, circuits then stay closed.
+ *
+ */
+public class HostCircuitBreaker {
+
+	final static Logger logger = Logger.getLogger(HostCircuitBreaker.class);
+
+	private static final int HTTP_SERVER_ERROR = HttpURLConnection.HTTP_INTERNAL_ERROR;
+
+	private final ConcurrentMap<String, Circuit> circuitMap = new ConcurrentHashMap<>();
+
+	private final int failureThreshold;
+
+	private final long openMillis;
+
+	private final ScheduledExecutorService timer;
+
+	private final Runnable onProbeDue;
+
+	/**
+	 * @param failureThreshold - Failed attempts in a row after which circuit of host is opened, value less than 1 disables breaker.
+	 * @param openMillis - Millis circuit stays open before a probe is let through.
+	 * @param timer - Runs onProbeDue once open time of a circuit has passed.
+	 * @param onProbeDue - Wakes up dispatch of parked downloads, eg. DownloadScheduler.resume.
+	 */
+	public HostCircuitBreaker(int failureThreshold, long openMillis, ScheduledExecutorService timer, Runnable onProbeDue) {
+		this.failureThreshold = failureThreshold;
+		this.openMillis = Math.max(0, openMillis);
+		this.timer = timer;
+		this.onProbeDue = onProbeDue;
+	}
+
+	public boolean isEnabled() {
+		return failureThreshold > 0;
+	}
+
+	/**
+	 * Used by DownloadScheduler before dispatching a download, it does not change state of circuit.
+	 *
+	 * @param host - Host of download.
+	 * @return true if circuit of host is closed, or open time has passed and probe has not been let through yet.
+	 */
+	public boolean isDispatchable(String host) {
+		Circuit circuit = circuitMap.get(host);
+		if (circuit == null) {
+			return true;
+		}
+		synchronized (circuit) {
+			switch (circuit.state) {
+				case CLOSED:
+					return true;
+				case OPEN:
+					return System.currentTimeMillis() >= circuit.openUntilMillis;
+				default:
+					return false;
+			}
+		}
+	}
+
+	/**
+	 * Called before every download attempt. If open time of circuit has passed, circuit turns HALF_OPEN and caller's attempt is the probe.
+	 *
+	 * @param host - Host of download.
+	 * @throws CircuitOpenException if circuit is open, or half open with probe already in flight.
+	 */
+	public void acquire(String host) {
+		Circuit circuit = circuitMap.get(host);
+		if (circuit == null) {
+			return;
+		}
+		synchronized (circuit) {
+			if (circuit.state == CircuitState.CLOSED) {
+				return;
+			}
+			if (circuit.state == CircuitState.OPEN && System.currentTimeMillis() >= circuit.openUntilMillis) {
+				circuit.state = CircuitState.HALF_OPEN;
+				logger.info("Circuit of host " + host + " is half open, probing host");
+				return;
+			}
+		}
+		throw new CircuitOpenException("Circuit of host " + host + " is open");
+	}
+
+	/**
+	 * Records outcome of a download attempt made after acquire. Attempt fails host if it could not reach or hear back from host (see isHostFailure), or it ended without error
+	 * but was not successful. Any other error, eg. 404 or digest mismatch, means host did answer and counts as success. Local errors (InsufficientDiskSpaceException) say nothing
+	 * of host and count as neither, a half open circuit then gets a new probe right away.
+	 *
+	 * @param host - Host of download.
+	 * @param result - Result of attempt, null if it ended with error.
+	 * @param error - Error of attempt, null if attempt completed without error.
+	 */
+	public void record(String host, Boolean result, Throwable error) {
+		if (!isEnabled()) {
+			return;
+		}
+		Throwable cause = CommonUtils.unwrap(error);
+		if (cause instanceof InsufficientDiskSpaceException) {
+			release(host);
+			return;
+		}
+		boolean failure = cause == null ? result == null || !result : isHostFailure(cause);
+		Circuit circuit = failure ? circuitMap.computeIfAbsent(host, key -> new Circuit()) : circuitMap.get(host);
+		if (circuit == null) {
+			return;
+		}
+		long probeDelayMillis = -1;
+		synchronized (circuit) {
+			if (!failure) {
+				if (circuit.state != CircuitState.CLOSED) {
+					logger.info("Circuit of host " + host + " is closed, resuming its downloads");
+				}
+				circuit.state = CircuitState.CLOSED;
+				circuit.failures = 0;
+			} else if (circuit.state == CircuitState.HALF_OPEN
+					|| (circuit.state == CircuitState.CLOSED && ++circuit.failures >= failureThreshold)) {
+				circuit.state = CircuitState.OPEN;
+				circuit.openUntilMillis = System.currentTimeMillis() + openMillis;
+				probeDelayMillis = openMillis;
+				logger.error("Circuit of host " + host + " is open for " + openMillis + " millis after " + circuit.failures
+						+ " failed attempts in a row, parking its downloads");
+			}
+		}
+		if (probeDelayMillis >= 0) {
+			scheduleProbe(probeDelayMillis);
+		}
+	}
+
+	/**
+	 * Gives up an attempt admitted by acquire without recording any outcome, eg. attempt was not made or failed for a local reason.
+	 * If attempt was the probe of a half open circuit, a new probe is let through right away.
+	 *
+	 * @param host - Host of download.
+	 */
+	public void release(String host) {
+		Circuit circuit = circuitMap.get(host);
+		if (circuit == null) {
+			return;
+		}
+		synchronized (circuit) {
+			if (circuit.state != CircuitState.HALF_OPEN) {
+				return;
+			}
+			circuit.state = CircuitState.OPEN;
+			circuit.openUntilMillis = System.currentTimeMillis();
+		}
+		scheduleProbe(0);
+	}
+
+	/**
+	 * @param error - Error of a download attempt.
+	 * @return true if error shows host is unreachable or failing: connect failure, timeout, connection reset or 5xx status.
+	 */
+	public static boolean isHostFailure(Throwable error) {
+		Throwable cause = CommonUtils.unwrap(error);
+		if (cause instanceof HttpStatusException) {
+			return ((HttpStatusException) cause).getStatusCode() >= HTTP_SERVER_ERROR;
+		}
+		return CommonUtils.isConnectFailure(cause) || CommonUtils.isTimeout(cause) || CommonUtils.isConnectionReset(cause);
+	}
+
+	/**
+	 * @param host - Host of download.
+	 * @return Current state of circuit of host.
+	 */
+	public CircuitState getState(String host) {
+		Circuit circuit = circuitMap.get(host);
+		if (circuit == null) {
+			return CircuitState.CLOSED;
+		}
+		synchronized (circuit) {
+			return circuit.state;
+		}
+	}
+
+	private void scheduleProbe(long delayMillis) {
+		try {
+			timer.schedule(onProbeDue, delayMillis, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			logger.error("Unable to schedule probe of open circuit " + e.getMessage());
+		}
+	}
+
+	/**
+	 * State of circuit of a single host, guarded by its own monitor.
+	 */
+	private static class Circuit {
+
+		private CircuitState state = CircuitState.CLOSED;
+
+		private int failures;
+
+		private long openUntilMillis;
+	}
+
+	/**
+	 * Thrown by an attempt on a host whose circuit is open. It is not an IOException, so RetryExecutor stops retrying and download is parked on DownloadScheduler.
+	 */
+	public static class CircuitOpenException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		public CircuitOpenException(String message) {
+			super(message);
+		}
+	}
+
+}
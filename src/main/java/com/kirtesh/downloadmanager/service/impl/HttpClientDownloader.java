@@ -0,0 +1,275 @@
+package com.kirtesh.downloadmanager.service.impl;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.kirtesh.downloadmanager.metadata.ByteRange;
+import com.kirtesh.downloadmanager.metadata.ProbeMetadata;
+import com.kirtesh.downloadmanager.metadata.RevalidationEntry;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ * 
+ * Uses java.net.http.HttpClient, Supports HTTP, HTTPS protocol file downloads. Selected by RequestRoutingFactory when property http.engine is set to HTTP_CLIENT.
+ * 
+ * All downloads share one HttpClient per connection timeout. HttpClient keeps a pool of keep-alive connections per host and negotiates HTTP/2 (ALPN for HTTPS, h2c upgrade for HTTP),
+ * where server supports it, so many requests to same host are multiplexed over a single connection instead of paying TCP + TLS setup for every file.
+ * 
+ * Staging, resume, segments and TransferEngine are same as CommonDownloader, only requests are sent through HttpClient.
+ * {protocol}.connection.timeout.millis is applied as connect timeout of HttpClient. {protocol}.read.timeout.millis is applied as timeout for response headers 
+ * and as maximum time a single read of response body may block.
+ *
+ */
+public class HttpClientDownloader extends CommonDownloader {
+
+	private static final Map<Integer, HttpClient> httpClients = new ConcurrentHashMap<>();
+
+	private static final ScheduledExecutorService readTimeoutWatchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "http-client-read-timeout");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Sends HEAD request through pooled HttpClient to learn size, byte range support and validators of remote file.
+	 */
+	@Override
+	protected ProbeMetadata probe(URL url, int connectTimeout, int readTimeout, RevalidationEntry revalidationEntry)
+			throws IOException {
+		HttpResponse<Void> response = send(getHttpClient(connectTimeout), newProbeRequest(url, readTimeout, revalidationEntry),
+				BodyHandlers.discarding());
+		return toProbeMetadata(response);
+	}
+
+	/**
+	 * @param url - URL of file which needs to be downloaded.
+	 * @param readTimeout - Timeout for response headers in millis.
+	 * @param revalidationEntry - Validators of earlier downloaded copy, sent as If-None-Match / If-Modified-Since. null for unconditional request.
+	 * @return HEAD request for URL.
+	 * @throws IOException if URL can not be converted to URI.
+	 */
+	protected HttpRequest newProbeRequest(URL url, int readTimeout, RevalidationEntry revalidationEntry) throws IOException {
+		HttpRequest.Builder builder = newRequest(url, readTimeout).method("HEAD", HttpRequest.BodyPublishers.noBody());
+		if (revalidationEntry != null) {
+			if (revalidationEntry.getEtag() != null) {
+				builder.header(IF_NONE_MATCH_HEADER, revalidationEntry.getEtag());
+			}
+			if (revalidationEntry.getLastModified() != null) {
+				builder.header(IF_MODIFIED_SINCE_HEADER, revalidationEntry.getLastModified());
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 * @param response - Response of HEAD request.
+	 * @return Metadata of remote file. Empty metadata (unknown size, no range support) if server does not answer HEAD.
+	 */
+	protected ProbeMetadata toProbeMetadata(HttpResponse<Void> response) {
+		ProbeMetadata probeMetadata = new ProbeMetadata();
+		if (response.statusCode() == HTTP_NOT_MODIFIED) {
+			probeMetadata.setNotModified(true);
+			return probeMetadata;
+		}
+		if (response.statusCode() != HTTP_OK) {
+			return probeMetadata;
+		}
+		HttpHeaders headers = response.headers();
+		probeMetadata.setAcceptRanges(headers.firstValue(ACCEPT_RANGES_HEADER)
+				.map(acceptRanges -> acceptRanges.toLowerCase().contains(BYTES_UNIT)).orElse(false));
+		probeMetadata.setContentLength(headers.firstValueAsLong(CONTENT_LENGTH_HEADER).orElse(-1));
+		probeMetadata.setEtag(headers.firstValue(ETAG_HEADER).orElse(null));
+		probeMetadata.setLastModified(headers.firstValue(LAST_MODIFIED_HEADER).orElse(null));
+		return probeMetadata;
+	}
+
+	/**
+	 * Sends GET request through pooled HttpClient. Response body is streamed, reading it till end returns connection to pool.
+	 */
+	@Override
+	protected InputStream openStream(URL url, ByteRange range, String ifRangeValidator, int connectTimeout,
+			int readTimeout) throws IOException {
+		HttpRequest.Builder builder = newRequest(url, readTimeout).GET();
+		if (range != null) {
+			builder.header(RANGE_HEADER, BYTES_UNIT + "=" + range);
+			if (ifRangeValidator != null) {
+				builder.header(IF_RANGE_HEADER, ifRangeValidator);
+			}
+		}
+		HttpResponse<InputStream> response = send(getHttpClient(connectTimeout), builder.build(), BodyHandlers.ofInputStream());
+		int statusCode = response.statusCode();
+		if (statusCode >= HTTP_BAD_REQUEST) {
+			response.body().close();
+			throw new HttpStatusException(statusCode, "Server returned HTTP status " + statusCode + " for " + url);
+		}
+		if (range != null && statusCode != HTTP_PARTIAL) {
+			response.body().close();
+			return null;
+		}
+		return new ReadTimeoutInputStream(response.body(), readTimeout);
+	}
+
+	/**
+	 * @param connectTimeout - Connect timeout in millis.
+	 * @return Shared HttpClient for connect timeout. Created on first use.
+	 */
+	protected HttpClient getHttpClient(int connectTimeout) {
+		return httpClients.computeIfAbsent(connectTimeout, timeout -> newHttpClientBuilder(timeout).build());
+	}
+
+	/**
+	 * @param connectTimeout - Connect timeout in millis.
+	 * @return HttpClient builder preferring HTTP/2 and following redirects.
+	 */
+	protected HttpClient.Builder newHttpClientBuilder(int connectTimeout) {
+		HttpClient.Builder builder = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2)
+				.followRedirects(HttpClient.Redirect.NORMAL);
+		if (connectTimeout > 0) {
+			builder.connectTimeout(Duration.ofMillis(connectTimeout));
+		}
+		return builder;
+	}
+
+	/**
+	 * @param url - URL of file which needs to be downloaded.
+	 * @param readTimeout - Timeout for response headers in millis.
+	 * @return Request builder for URL.
+	 * @throws IOException if URL can not be converted to URI.
+	 */
+	protected HttpRequest.Builder newRequest(URL url, int readTimeout) throws IOException {
+		try {
+			HttpRequest.Builder builder = HttpRequest.newBuilder(url.toURI());
+			if (readTimeout > 0) {
+				builder.timeout(Duration.ofMillis(readTimeout));
+			}
+			return builder;
+		} catch (URISyntaxException e) {
+			throw new IOException("Invalid URL " + url, e);
+		}
+	}
+
+	/**
+	 * Sends request and waits for response headers.
+	 * 
+	 * @throws IOException if request fails, times out or thread is interrupted.
+	 */
+	private <T> HttpResponse<T> send(HttpClient httpClient, HttpRequest request, BodyHandler<T> bodyHandler)
+			throws IOException {
+		try {
+			return httpClient.send(request, bodyHandler);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while requesting " + request.uri(), e);
+		}
+	}
+
+	/**
+	 * HttpClient has no read timeout for response body. This stream closes response body if a single read blocks longer than readTimeout,
+	 * same as readTimeout of URLConnection, and fails that read with SocketTimeoutException.
+	 * Time spent by caller outside of read (eg. writing to disk) is not counted.
+	 */
+	private static class ReadTimeoutInputStream extends FilterInputStream {
+
+		private final long readTimeoutNanos;
+
+		private final ScheduledFuture<?> watchdog;
+
+		private volatile long readStartedAt;
+
+		private volatile boolean timedOut;
+
+		ReadTimeoutInputStream(InputStream inputStream, int readTimeout) {
+			super(inputStream);
+			this.readTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(readTimeout);
+			long period = Math.max(1, readTimeout / 4);
+			this.watchdog = readTimeout > 0
+					? readTimeoutWatchdog.scheduleWithFixedDelay(this::checkTimeout, period, period, TimeUnit.MILLISECONDS)
+					: null;
+		}
+
+		@Override
+		public int read() throws IOException {
+			readStartedAt = System.nanoTime();
+			try {
+				int value = super.read();
+				checkTimedOut();
+				return value;
+			} catch (IOException e) {
+				throw getTimeoutException(e);
+			} finally {
+				readStartedAt = 0;
+			}
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			readStartedAt = System.nanoTime();
+			try {
+				int bytesRead = super.read(buffer, offset, length);
+				checkTimedOut();
+				return bytesRead;
+			} catch (IOException e) {
+				throw getTimeoutException(e);
+			} finally {
+				readStartedAt = 0;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (watchdog != null) {
+				watchdog.cancel(false);
+			}
+			super.close();
+		}
+
+		private void checkTimedOut() throws SocketTimeoutException {
+			if (timedOut) {
+				throw new SocketTimeoutException("Read timed out");
+			}
+		}
+
+		/**
+		 * Response body closed by watchdog fails a blocked read with IOException("closed") of HttpClient, it is reported as SocketTimeoutException instead.
+		 */
+		private IOException getTimeoutException(IOException e) {
+			if (!timedOut || e instanceof SocketTimeoutException) {
+				return e;
+			}
+			SocketTimeoutException timeoutException = new SocketTimeoutException("Read timed out");
+			timeoutException.initCause(e);
+			return timeoutException;
+		}
+
+		private void checkTimeout() {
+			long startedAt = readStartedAt;
+			if (startedAt != 0 && System.nanoTime() - startedAt > readTimeoutNanos) {
+				timedOut = true;
+				try {
+					close();
+				} catch (IOException e) {
+					logger.info("IOException occured while closing timed out response Stream.." + e.getMessage());
+				}
+			}
+		}
+	}
+
+}
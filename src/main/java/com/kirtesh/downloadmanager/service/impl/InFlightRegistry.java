@@ -0,0 +1,96 @@
+package com.kirtesh.downloadmanager.service.impl;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.log4j.Logger;
+
+import com.kirtesh.downloadmanager.cache.RevalidationIndex;
+import com.kirtesh.downloadmanager.metadata.DownloadMetadata;
+import com.kirtesh.downloadmanager.utils.CommonUtils;
+import com.kirtesh.downloadmanager.utils.ContentStoreUtils;
+/**
+ *
+ * @author kirteshdudawat
+ *
+ *
+ * Single flight registry used by DownloadExecutorServiceImpl. Downloads are keyed by normalized URL (CommonUtils.normalizeUrl), so `http://Host:80/a` and `http://host/a` are same resource.
+ *
+ * First download of a resource is the leader and is actually transferred. Any download of same resource requested while leader is in flight is a follower,
+ * it is not transferred again and waits for leader. Once leader succeeds, its file is hardlinked (or copied) to location of every follower, along with its RevalidationIndex entry.
+ * If leader fails, its followers fail as well, next request for resource starts a new transfer.
+ *
+ */
+public class InFlightRegistry {
+
+	final static Logger logger = Logger.getLogger(InFlightRegistry.class);
+
+	private final ConcurrentMap<String, CompletableFuture<DownloadMetadata>> inFlightMap = new ConcurrentHashMap<>();
+
+	/**
+	 * Registers download of a resource.
+	 *
+	 * @param downloadMetadata - Metadata of file to be downloaded.
+	 * @return null if caller is leader and must transfer file, then call complete. Otherwise future of follower, completed with true once leader's file is published at its location.
+	 */
+	public CompletableFuture<Boolean> join(DownloadMetadata downloadMetadata) {
+		CompletableFuture<DownloadMetadata> leaderFuture = new CompletableFuture<>();
+		CompletableFuture<DownloadMetadata> inFlight = inFlightMap.putIfAbsent(getKey(downloadMetadata), leaderFuture);
+		if (inFlight == null) {
+			return null;
+		}
+		logger.info("Coalescing download of " + downloadMetadata.getDownloadUrl() + " with download in flight");
+		return inFlight.thenApply(leader -> publish(leader, downloadMetadata));
+	}
+
+	/**
+	 * Completes leader of a resource, publishing its result to all followers. Resource is removed from registry before followers are published.
+	 *
+	 * @param downloadMetadata - Metadata of leader.
+	 * @param isSuccess - true if leader's file is completely downloaded at its location.
+	 */
+	public void complete(DownloadMetadata downloadMetadata, boolean isSuccess) {
+		CompletableFuture<DownloadMetadata> leaderFuture = inFlightMap.remove(getKey(downloadMetadata));
+		if (leaderFuture == null) {
+			return;
+		}
+		if (isSuccess) {
+			leaderFuture.complete(downloadMetadata);
+		} else {
+			leaderFuture.completeExceptionally(new IOException("Coalesced download failed for " + downloadMetadata.getDownloadUrl()));
+		}
+	}
+
+	/**
+	 * @return Number of resources currently in flight.
+	 */
+	public int size() {
+		return inFlightMap.size();
+	}
+
+	private boolean publish(DownloadMetadata leader, DownloadMetadata follower) {
+		Path source = Paths.get(leader.getFilePath()).toAbsolutePath();
+		if (!source.equals(Paths.get(follower.getFilePath()).toAbsolutePath())) {
+			try {
+				ContentStoreUtils.link(source, follower.getFilePath());
+			} catch (IOException e) {
+				logger.error("Unable to publish " + source + " at " + follower.getFilePath() + " " + e.getMessage());
+				return false;
+			}
+		}
+		if (!leader.getDownloadUrl().equals(follower.getDownloadUrl())) {
+			RevalidationIndex.copy(leader.getDownloadUrl(), follower.getDownloadUrl(), follower.getFilePath());
+		}
+		follower.setDigest(leader.getDigest());
+		return true;
+	}
+
+	private static String getKey(DownloadMetadata downloadMetadata) {
+		return CommonUtils.normalizeUrl(downloadMetadata.getDownloadUrl());
+	}
+
+}
@@ -0,0 +1,484 @@
+package com.kirtesh.downloadmanager.service.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.log4j.Logger;
+
+import com.kirtesh.downloadmanager.cache.DMCache;
+import com.kirtesh.downloadmanager.cache.DigestManifest;
+import com.kirtesh.downloadmanager.cache.DiskSpaceAdmission;
+import com.kirtesh.downloadmanager.cache.DiskSpaceAdmission.Reservation;
+import com.kirtesh.downloadmanager.cache.RevalidationIndex;
+import com.kirtesh.downloadmanager.cache.TransferMonitor.Transfer;
+import com.kirtesh.downloadmanager.enums.Protocols;
+import com.kirtesh.downloadmanager.factory.RequestRoutingFactory;
+import com.kirtesh.downloadmanager.metadata.ByteRange;
+import com.kirtesh.downloadmanager.metadata.DownloadJournal;
+import com.kirtesh.downloadmanager.metadata.DownloadMetadata;
+import com.kirtesh.downloadmanager.metadata.ProbeMetadata;
+import com.kirtesh.downloadmanager.metadata.RevalidationEntry;
+import com.kirtesh.downloadmanager.service.Downloader;
+import com.kirtesh.downloadmanager.service.RangeReader;
+import com.kirtesh.downloadmanager.utils.CommonUtils;
+import com.kirtesh.downloadmanager.utils.ContentStoreUtils;
+import com.kirtesh.downloadmanager.utils.SegmentUtils;
+import com.kirtesh.downloadmanager.utils.SpeculationUtils;
+import com.kirtesh.downloadmanager.utils.StagingUtils;
+import com.kirtesh.downloadmanager.utils.StreamingDigest;
+/**
+ *
+ * @author kirteshdudawat
+ *
+ *
+ * Downloads a single file from all its sources at once, i.e. downloadUrl along with mirrorUrls of DownloadMetadata. Sources may be of different protocols, eg. an HTTP mirror along with SFTP origin.
+ * This class only downloads file. No Validation or handling are done in it.
+ *
+ * Every source is probed first, sources which do not support byte ranges or whose size differs from first usable source are not used.
+ * If no source supports byte ranges, file is downloaded from downloadUrl alone by Downloader of its protocol.
+ *
+ * File is staged as .part file with journal (StagingUtils), split in chunks of `mirror.chunk.size.bytes`. Every source pulls next chunk from a shared queue over
+ * `mirror.connections.per.source` connections of its own (RangeReader). As a faster source comes back for more chunks sooner, bytes are spread across sources in proportion to their speed
+ * and file is downloaded with combined bandwidth of all sources. A failed chunk goes back to queue, keeping bytes already checkpointed, and is picked by a connection of another healthy source.
+ * A source failing `mirror.max.failures` chunks in a row is dropped for this file. A chunk straggling behind rest of the batch (TransferMonitor) is raced by fastest other source from its last checkpoint.
+ *
+ * Digest, disk admission and content store are same as for other downloaders. Journal uses validators of first usable source, revalidation is done only if that source is downloadUrl.
+ *
+ */
+public class MirrorDownloader implements Downloader {
+
+	final static Logger logger = Logger.getLogger(MirrorDownloader.class);
+
+	private static final int DEFAULT_CHUNK_SIZE_BYTES = 4 * 1024 * 1024;
+
+	private static final int DEFAULT_MAX_FAILURES = 3;
+
+	protected CommonUtils commonUtils = RequestRoutingFactory.getCommonUtils();
+
+	/**
+	 * This methods downloads file from downloadUrl & mirrorUrls of downloadMetadata, see class documentation.
+	 *
+	 * @return Boolean value true / false, based on wheather download is successful or not.
+	 * @throws IOException if download fails, chunks already written stay checkpointed in journal for next attempt.
+	 */
+	@Override
+	public boolean download(DownloadMetadata downloadMetadata) throws IOException {
+		String downloadUrl = downloadMetadata.getDownloadUrl();
+		String location = downloadMetadata.getFilePath();
+		List<Source> sources = probeSources(downloadMetadata);
+		if (sources.isEmpty()) {
+			logger.info("No source of " + downloadUrl + " supports byte ranges, downloading from " + downloadUrl + " alone");
+			Downloader downloader = RequestRoutingFactory.getDownloaderImpl(downloadMetadata.getProtocols());
+			return downloader != null && downloader.download(downloadMetadata);
+		}
+		ProbeMetadata probeMetadata = sources.get(0).probeMetadata;
+		boolean isDownloadUrlProbed = sources.get(0).url.equals(downloadUrl);
+		if (isDownloadUrlProbed && isUnchanged(probeMetadata, downloadMetadata.getRevalidationEntry())) {
+			logger.info("Skipping download of " + downloadUrl + ", not modified since last download to " + location);
+			return true;
+		}
+		if (ContentStoreUtils.linkIfStored(downloadMetadata, probeMetadata.getContentLength())) {
+			return true;
+		}
+		Reservation reservation = null;
+		boolean isSuccess = false;
+		try {
+			StagingUtils.createStagingDirectory(location);
+			StreamingDigest streamingDigest = DigestManifest.newStreamingDigest();
+			DownloadJournal journal = StagingUtils.loadJournal(location, downloadUrl, probeMetadata);
+			if (journal == null) {
+				long contentLength = probeMetadata.getContentLength();
+				reservation = DiskSpaceAdmission.reserve(location, contentLength);
+				journal = StagingUtils.createJournal(location, downloadUrl, probeMetadata,
+						SegmentUtils.split(contentLength, getChunkCount(contentLength)));
+			} else {
+				reservation = DiskSpaceAdmission.reserve(location, journal.getContentLength() - journal.getBytesWritten());
+			}
+			journal.setStreamingDigest(streamingDigest);
+			StagingUtils.setReservation(journal, reservation);
+			downloadChunks(sources, location, journal);
+			DigestManifest.verify(downloadMetadata, streamingDigest);
+			ContentStoreUtils.publish(downloadMetadata, probeMetadata.getContentLength());
+			if (isDownloadUrlProbed) {
+				RevalidationIndex.update(downloadUrl, probeMetadata, location);
+			}
+			isSuccess = true;
+		} finally {
+			if (reservation != null) {
+				reservation.close();
+			}
+		}
+		return isSuccess;
+	}
+
+	/**
+	 * Probes downloadUrl by Downloader of its protocol, mirrors are only used while downloading.
+	 */
+	@Override
+	public ProbeMetadata probe(DownloadMetadata downloadMetadata) throws IOException {
+		Downloader downloader = RequestRoutingFactory.getDownloaderImpl(downloadMetadata.getProtocols());
+		if (downloader == null) {
+			return new ProbeMetadata();
+		}
+		return downloader.probe(downloadMetadata);
+	}
+
+	/**
+	 * Probes downloadUrl & every mirror by Downloader of its protocol.
+	 *
+	 * @param downloadMetadata - Metadata of file with mirrors.
+	 * @return Sources which support byte ranges and have same size as first of them, in order of download file.
+	 */
+	private List<Source> probeSources(DownloadMetadata downloadMetadata) {
+		List<String> urls = new ArrayList<>();
+		urls.add(downloadMetadata.getDownloadUrl());
+		urls.addAll(downloadMetadata.getMirrorUrls());
+		List<Source> sources = new ArrayList<>(urls.size());
+		for (String url : urls) {
+			Protocols protocols;
+			try {
+				protocols = Protocols.valueOf(new URI(url).getScheme().toUpperCase());
+			} catch (URISyntaxException | IllegalArgumentException | NullPointerException e) {
+				logger.error("Not using source " + url + " of " + downloadMetadata.getDownloadUrl() + ", invalid URL");
+				continue;
+			}
+			Downloader downloader = RequestRoutingFactory.getDownloaderImpl(protocols);
+			if (!(downloader instanceof RangeReader)) {
+				continue;
+			}
+			ProbeMetadata probeMetadata;
+			try {
+				probeMetadata = downloader.probe(new DownloadMetadata(protocols, url, downloadMetadata.getFilePath()));
+			} catch (IOException e) {
+				logger.error("Not using source " + url + " of " + downloadMetadata.getDownloadUrl() + ", probe failed " + e.getMessage());
+				continue;
+			}
+			if (!probeMetadata.isResumable()) {
+				logger.info("Not using source " + url + " of " + downloadMetadata.getDownloadUrl() + ", byte ranges are not supported");
+				continue;
+			}
+			if (!sources.isEmpty() && probeMetadata.getContentLength() != sources.get(0).probeMetadata.getContentLength()) {
+				logger.error("Not using source " + url + " of " + downloadMetadata.getDownloadUrl() + ", size "
+						+ probeMetadata.getContentLength() + " differs from " + sources.get(0).probeMetadata.getContentLength());
+				continue;
+			}
+			sources.add(new Source(url, protocols, (RangeReader) downloader, probeMetadata));
+		}
+		return sources;
+	}
+
+	/**
+	 * @return true if remote file has same size and ETag (or Last-Modified, if there is no ETag) as copy downloaded in an earlier run.
+	 */
+	private static boolean isUnchanged(ProbeMetadata probeMetadata, RevalidationEntry revalidationEntry) {
+		if (revalidationEntry == null || probeMetadata.getContentLength() != revalidationEntry.getContentLength()) {
+			return false;
+		}
+		if (probeMetadata.getEtag() != null) {
+			return probeMetadata.getEtag().equals(revalidationEntry.getEtag());
+		}
+		return probeMetadata.getLastModified() != null && probeMetadata.getLastModified().equals(revalidationEntry.getLastModified());
+	}
+
+	private static int getChunkCount(long contentLength) {
+		int chunkSize = DMCache.getMirrorChunkSizeBytes() > 0 ? DMCache.getMirrorChunkSizeBytes() : DEFAULT_CHUNK_SIZE_BYTES;
+		return (int) Math.max(1, (contentLength + chunkSize - 1) / chunkSize);
+	}
+
+	/**
+	 * Downloads all remaining ranges of journal from all sources into .part file. Every source pulls chunks over `mirror.connections.per.source` connections on SegmentUtils executor.
+	 *
+	 * @param sources - Usable sources of file.
+	 * @param location - location where file needs to be saved on Local Disk.
+	 * @param journal - Journal of staged file.
+	 * @throws IOException if chunks are left after every source has failed.
+	 */
+	private void downloadChunks(List<Source> sources, String location, DownloadJournal journal) throws IOException {
+		ChunkQueue chunkQueue;
+		journal.getLock().lock();
+		try {
+			chunkQueue = new ChunkQueue(journal.getRemainingRanges());
+		} finally {
+			journal.getLock().unlock();
+		}
+		int connections = Math.max(1, DMCache.getMirrorConnectionsPerSource());
+		List<Future<Void>> workers = new ArrayList<>(sources.size() * connections);
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(StagingUtils.getPartFile(location).toFile(), "rw")) {
+			FileChannel fileChannel = randomAccessFile.getChannel();
+			for (Source source : sources) {
+				for (int i = 0; i < connections; i++) {
+					workers.add(SegmentUtils.getSegmentExecutorService().submit(() -> {
+						pullChunks(source, sources, chunkQueue, location, journal, fileChannel);
+						return null;
+					}));
+				}
+			}
+			for (Future<Void> worker : workers) {
+				worker.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while downloading chunks of " + journal.getDownloadUrl(), e);
+		} catch (ExecutionException e) {
+			throw new IOException("Chunk download failed for " + journal.getDownloadUrl(), e.getCause());
+		} finally {
+			chunkQueue.close();
+			for (Future<Void> worker : workers) {
+				worker.cancel(true);
+			}
+		}
+		if (!chunkQueue.isEmpty()) {
+			throw new IOException("All sources of " + journal.getDownloadUrl() + " failed", chunkQueue.lastException);
+		}
+		StringBuilder sb = new StringBuilder().append("Downloaded ").append(journal.getDownloadUrl()).append(" from");
+		for (Source source : sources) {
+			sb.append(" ").append(source.url).append(" (").append(source.bytes.get()).append(" bytes at ")
+					.append((long) source.getBytesPerSecond()).append(" bytes/s)");
+		}
+		logger.info(sb.toString());
+	}
+
+	/**
+	 * Pulls chunks from queue and downloads them from source, till queue is empty or source fails `mirror.max.failures` chunks in a row.
+	 */
+	private void pullChunks(Source source, List<Source> sources, ChunkQueue chunkQueue, String location,
+			DownloadJournal journal, FileChannel fileChannel) throws InterruptedException {
+		int maxFailures = DMCache.getMirrorMaxFailures() > 0 ? DMCache.getMirrorMaxFailures() : DEFAULT_MAX_FAILURES;
+		while (source.healthy) {
+			ByteRange chunk = chunkQueue.take(source, sources);
+			if (chunk == null) {
+				return;
+			}
+			boolean completed = false;
+			try {
+				downloadChunk(source, sources, chunk, location, journal, fileChannel);
+				completed = true;
+				source.failuresInRow.set(0);
+			} catch (IOException e) {
+				chunkQueue.lastException = e;
+				if (source.failuresInRow.incrementAndGet() >= maxFailures) {
+					source.healthy = false;
+					logger.error("Dropping source " + source.url + " after " + maxFailures + " failures in a row.." + e.getMessage());
+				} else {
+					logger.info("Chunk " + chunk + " failed on source " + source.url + ".." + e.getMessage());
+				}
+			} finally {
+				chunkQueue.done(chunk, source, completed);
+			}
+		}
+	}
+
+	/**
+	 * Downloads chunk from source. If it becomes a straggler, rest of chunk from its last checkpoint is raced by fastest other healthy source.
+	 */
+	private void downloadChunk(Source source, List<Source> sources, ByteRange chunk, String location,
+			DownloadJournal journal, FileChannel fileChannel) throws IOException {
+		boolean speculativeWon = SpeculationUtils.race(source.url,
+				transfer -> readChunk(source, chunk, transfer, location, journal, fileChannel),
+				() -> {
+					Source fastest = getFastestSource(sources, source);
+					ByteRange remainingChunk = new ByteRange(getStart(journal, chunk), chunk.getEnd());
+					if (fastest == null || remainingChunk.getLength() <= 0) {
+						return null;
+					}
+					return transfer -> readChunk(fastest, remainingChunk, transfer, location, journal, fileChannel);
+				});
+		if (speculativeWon) {
+			StagingUtils.checkpoint(location, journal, fileChannel, chunk, chunk.getEnd() + 1);
+		}
+	}
+
+	/**
+	 * Reads chunk from source and writes it at its own position in .part file, with TransferEngine & buffer size of protocol of source.
+	 * Source is credited with bytes read by this attempt (its own Transfer) and time spent on it, so a straggling attempt raced by another source
+	 * is not credited with bytes that other source downloaded.
+	 */
+	private void readChunk(Source source, ByteRange chunk, Transfer transfer, String location, DownloadJournal journal,
+			FileChannel fileChannel) throws IOException {
+		long startNanos = System.nanoTime();
+		long startBytes = transfer.getBytes();
+		try (InputStream inputStream = transfer.track(source.rangeReader.openRange(source.url, chunk, source.probeMetadata))) {
+			StagingUtils.writeRange(location, journal, fileChannel, chunk, inputStream,
+					RequestRoutingFactory.getTransferEngine(source.protocols), commonUtils.getBufferSize(source.protocols));
+		} finally {
+			source.bytes.addAndGet(transfer.getBytes() - startBytes);
+			source.nanos.addAndGet(System.nanoTime() - startNanos);
+		}
+	}
+
+	/**
+	 * @return Healthy source other than excluded one with highest measured speed, null if there is none.
+	 */
+	private static Source getFastestSource(List<Source> sources, Source excluded) {
+		Source fastest = null;
+		for (Source source : sources) {
+			if (source != excluded && source.healthy
+					&& (fastest == null || source.getBytesPerSecond() > fastest.getBytesPerSecond())) {
+				fastest = source;
+			}
+		}
+		return fastest;
+	}
+
+	/**
+	 * @return Offset of next byte to be written in chunk, read under journal lock as it is moved by checkpoints.
+	 */
+	private static long getStart(DownloadJournal journal, ByteRange chunk) {
+		journal.getLock().lock();
+		try {
+			return chunk.getStart();
+		} finally {
+			journal.getLock().unlock();
+		}
+	}
+
+	/**
+	 * A source of file along with its measured speed. Speed is bytes read from source over time its connections spent on chunks.
+	 */
+	private static class Source {
+
+		private final String url;
+
+		private final Protocols protocols;
+
+		private final RangeReader rangeReader;
+
+		private final ProbeMetadata probeMetadata;
+
+		private final AtomicLong bytes = new AtomicLong();
+
+		private final AtomicLong nanos = new AtomicLong();
+
+		private final AtomicInteger failuresInRow = new AtomicInteger();
+
+		private volatile boolean healthy = true;
+
+		private Source(String url, Protocols protocols, RangeReader rangeReader, ProbeMetadata probeMetadata) {
+			this.url = url;
+			this.protocols = protocols;
+			this.rangeReader = rangeReader;
+			this.probeMetadata = probeMetadata;
+		}
+
+		private double getBytesPerSecond() {
+			long elapsedNanos = nanos.get();
+			return elapsedNanos == 0 ? 0 : bytes.get() * 1e9 / elapsedNanos;
+		}
+	}
+
+	/**
+	 * Chunks still to be downloaded, guarded by its own lock. A failed chunk is handed to other healthy sources before source it failed on.
+	 * ReentrantLock & Condition are used instead of monitor, so a virtual thread waiting for a chunk does not pin its carrier thread.
+	 */
+	private static class ChunkQueue {
+
+		private final Deque<ByteRange> chunks;
+
+		private final Map<ByteRange, Source> failedSourceMap = new IdentityHashMap<>();
+
+		private int inFlight;
+
+		private boolean closed;
+
+		private final ReentrantLock lock = new ReentrantLock();
+
+		private final Condition changed = lock.newCondition();
+
+		private volatile IOException lastException;
+
+		private ChunkQueue(List<ByteRange> ranges) {
+			this.chunks = new ArrayDeque<>(ranges);
+		}
+
+		/**
+		 * Waits while chunks left can only be taken by other sources, or are in flight and may fail.
+		 *
+		 * @return Next chunk for source, null if all chunks are done, source is dropped or queue is closed.
+		 */
+		private ByteRange take(Source source, List<Source> sources) throws InterruptedException {
+			lock.lock();
+			try {
+				while (!closed && source.healthy) {
+					boolean isOtherSourceHealthy = false;
+					for (Source other : sources) {
+						isOtherSourceHealthy |= other != source && other.healthy;
+					}
+					Iterator<ByteRange> iterator = chunks.iterator();
+					while (iterator.hasNext()) {
+						ByteRange chunk = iterator.next();
+						if (!isOtherSourceHealthy || failedSourceMap.get(chunk) != source) {
+							iterator.remove();
+							inFlight++;
+							return chunk;
+						}
+					}
+					if (chunks.isEmpty() && inFlight == 0) {
+						return null;
+					}
+					changed.await();
+				}
+				return null;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/**
+		 * @param chunk - Chunk taken earlier.
+		 * @param source - Source chunk was taken by.
+		 * @param completed - false if chunk failed, it is then put back in front of queue.
+		 */
+		private void done(ByteRange chunk, Source source, boolean completed) {
+			lock.lock();
+			try {
+				inFlight--;
+				if (completed) {
+					failedSourceMap.remove(chunk);
+				} else {
+					failedSourceMap.put(chunk, source);
+					chunks.addFirst(chunk);
+				}
+				changed.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private void close() {
+			lock.lock();
+			try {
+				closed = true;
+				changed.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private boolean isEmpty() {
+			lock.lock();
+			try {
+				return chunks.isEmpty();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,69 @@
+package com.kirtesh.downloadmanager.service.impl;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Vector;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.ChannelSftp.LsEntry;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.SftpATTRS;
+import com.jcraft.jsch.SftpException;
+import com.kirtesh.downloadmanager.cache.DMCache;
+import com.kirtesh.downloadmanager.cache.SFTPSessionPool;
+import com.kirtesh.downloadmanager.metadata.RemoteFileEntry;
+import com.kirtesh.downloadmanager.service.RemoteDirectoryLister;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ * 
+ * Lists SFTP directories with `ls` over a channel leased from SFTPSessionPool, so listing and downloads from same user@host:port share authenticated sessions.
+ * Symbolic links are returned as files and are not followed.
+ *
+ */
+public class SFTPDirectoryLister implements RemoteDirectoryLister {
+
+	private static final String CURRENT_DIRECTORY = ".";
+	private static final String PARENT_DIRECTORY = "..";
+
+	@Override
+	public List<RemoteFileEntry> list(String directoryUrl) throws IOException {
+		URI uri;
+		try {
+			uri = new URI(directoryUrl);
+		} catch (URISyntaxException e) {
+			throw new IOException("URI Syntax Exception for " + directoryUrl, e);
+		}
+		String[] credentials = SFTPDownloader.getCredentials(uri);
+		int port = uri.getPort() == -1 ? DMCache.getSftpDefultPort() : uri.getPort();
+		ChannelSftp sftpChannel = null;
+		boolean isSuccess = false;
+		try {
+			sftpChannel = SFTPSessionPool.acquire(credentials[0], credentials[1], uri.getHost(), port,
+					DMCache.getSftpSessionTimeoutInMillis(), DMCache.getSftpChannelTimeoutInMillis());
+			Vector<?> lsEntries = sftpChannel.ls(uri.getPath());
+			List<RemoteFileEntry> entries = new ArrayList<>(lsEntries.size());
+			for (Object lsEntry : lsEntries) {
+				String name = ((LsEntry) lsEntry).getFilename();
+				if (CURRENT_DIRECTORY.equals(name) || PARENT_DIRECTORY.equals(name)) {
+					continue;
+				}
+				SftpATTRS attrs = ((LsEntry) lsEntry).getAttrs();
+				entries.add(new RemoteFileEntry(name, attrs.isDir(), attrs.getSize(), attrs.getMTime() * 1000L));
+			}
+			isSuccess = true;
+			return entries;
+		} catch (JSchException | SftpException e) {
+			throw new IOException("Unable to list " + uri.getHost() + uri.getPath() + " " + e.getMessage(), e);
+		} finally {
+			if (sftpChannel != null) {
+				SFTPSessionPool.release(sftpChannel, isSuccess);
+			}
+		}
+	}
+
+}
@@ -1,28 +1,48 @@
 package com.kirtesh.downloadmanager.service.impl;
 
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.Properties;
+import java.nio.file.Files;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.apache.log4j.Logger;
 
-import com.jcraft.jsch.Channel;
 import com.jcraft.jsch.ChannelSftp;
-import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.JSchException;
-import com.jcraft.jsch.Session;
+import com.jcraft.jsch.SftpATTRS;
 import com.jcraft.jsch.SftpException;
 import com.kirtesh.downloadmanager.cache.DMCache;
+import com.kirtesh.downloadmanager.cache.DigestManifest;
+import com.kirtesh.downloadmanager.cache.DigestManifest.DigestMismatchException;
+import com.kirtesh.downloadmanager.cache.DiskSpaceAdmission;
+import com.kirtesh.downloadmanager.cache.DiskSpaceAdmission.InsufficientDiskSpaceException;
+import com.kirtesh.downloadmanager.cache.DiskSpaceAdmission.Reservation;
+import com.kirtesh.downloadmanager.cache.RevalidationIndex;
+import com.kirtesh.downloadmanager.cache.SFTPSessionPool;
+import com.kirtesh.downloadmanager.cache.TransferMonitor;
+import com.kirtesh.downloadmanager.cache.TransferMonitor.Transfer;
 import com.kirtesh.downloadmanager.enums.Protocols;
 import com.kirtesh.downloadmanager.factory.RequestRoutingFactory;
+import com.kirtesh.downloadmanager.metadata.ByteRange;
+import com.kirtesh.downloadmanager.metadata.DownloadJournal;
 import com.kirtesh.downloadmanager.metadata.DownloadMetadata;
+import com.kirtesh.downloadmanager.metadata.ProbeMetadata;
+import com.kirtesh.downloadmanager.metadata.RevalidationEntry;
 import com.kirtesh.downloadmanager.service.Downloader;
+import com.kirtesh.downloadmanager.service.RangeReader;
 import com.kirtesh.downloadmanager.utils.CommonUtils;
+import com.kirtesh.downloadmanager.utils.ContentStoreUtils;
+import com.kirtesh.downloadmanager.utils.SegmentUtils;
+import com.kirtesh.downloadmanager.utils.StagingUtils;
+import com.kirtesh.downloadmanager.utils.StreamingDigest;
 /**
  * 
  * @author kirteshdudawat
@@ -34,7 +54,7 @@ import com.kirtesh.downloadmanager.utils.CommonUtils;
  *
  */
 
-public class SFTPDownloader implements Downloader {
+public class SFTPDownloader implements Downloader, RangeReader {
 	
 	final static Logger logger = Logger.getLogger(SFTPDownloader.class);
 	
@@ -46,28 +66,51 @@ public class SFTPDownloader implements Downloader {
 	 */
 	@Override
 	public boolean download(DownloadMetadata downloadMetadata) throws IOException {
-		return initiateDownload(downloadMetadata.getDownloadUrl(), downloadMetadata.getFilePath(),
-				DMCache.getSftpSessionTimeoutInMillis(), DMCache.getSftpChannelTimeoutInMillis(),
-				DMCache.getSftpDefultPort());
+		return initiateDownload(downloadMetadata, DMCache.getSftpSessionTimeoutInMillis(),
+				DMCache.getSftpChannelTimeoutInMillis(), DMCache.getSftpDefultPort());
+	}
+	
+	/**
+	 * Same as initiateDownload(downloadMetadata, sessionTimeout, channelTimeout, defaultPort) without any earlier downloaded copy.
+	 */
+	public boolean initiateDownload(String downloadUrl, String location, int sessionTimeout, int channelTimeout,
+			int defaultPort) throws IOException {
+		return initiateDownload(new DownloadMetadata(Protocols.SFTP, downloadUrl, location), sessionTimeout,
+				channelTimeout, defaultPort);
 	}
 	
 	/**
 	 * This method fetches username, password from download URL. Only size equivalent to bufferSize would be read and written at one time.
 	 * 
-	 * Note: If Download stops in between, file would be Auto-Deleted before execution exits the method. 
+	 * SFTP channel is leased from SFTPSessionPool, so files from same user@host:port reuse authenticated sessions. Channel is returned to pool once download completes.
+	 * 
+	 * Data is staged as .part file along with its journal in staging directory (StagingUtils). Remote file is stat'ed for size & modification time, 
+	 * if an earlier attempt left a journal for same unchanged remote file, download resumes from last checkpoint using offset based get.
+	 * If remote file has same size & modification time as copy downloaded in an earlier run (revalidationEntry), download is skipped.
+	 * If digests are enabled, digest is computed while ranges are written and verified against DigestManifest before file is moved to location.
+	 * Before data is written, space for bytes still to be downloaded is reserved on volume of location (DiskSpaceAdmission), a file which can not fit fails before it starts.
+	 * If content store is enabled, location is published as a link to stored content (ContentStoreUtils), and content of probed size already in store is not downloaded again.
+	 * 
+	 * Large files are split into offset ranges (sftp.segment.count, sftp.segment.min.size.bytes), each range is read over its own pooled channel
+	 * in parallel and written positionally into preallocated .part file. A single SSH channel is limited by its window size and round trip latency, parallel channels are not.
+	 * 
+	 * Note: If Download stops in between, .part file is kept in staging directory for next attempt and no file is created at location. 
 	 * Logging would be done if Application fails to close opened streams.
 	 * 
-	 * @param downloadUrl - Actual URL for file download
-	 * @param location - Actual path of Local Disk where file would be saved.
+	 * @param downloadMetadata - URL, location & revalidationEntry of file to be downloaded. Digest of file is set on it once download completes.
 	 * @param sessionTimeout - Used to set SessionTimeout for SFTP downloads.
 	 * @param channelTimeout - Used to set channeltimeout for channel to SFTP download.
 	 * @param defaultPort - Port to listen to for FileDownload
 	 * @return Boolean value true / false, based on wheather download is successful or not.
-	 * @throws IOException on Exception occured during IO
+	 * @throws DigestMismatchException if digest of file does not match manifest, so download is retried.
+	 * @throws InsufficientDiskSpaceException if file can not fit on volume of location, so download is deferred by retry.
 	 */
-	public boolean initiateDownload(String downloadUrl, String location, int sessionTimeout, int channelTimeout,
+	public boolean initiateDownload(DownloadMetadata downloadMetadata, int sessionTimeout, int channelTimeout,
 			int defaultPort) throws IOException {
 	
+		String downloadUrl = downloadMetadata.getDownloadUrl();
+		String location = downloadMetadata.getFilePath();
+		RevalidationEntry revalidationEntry = downloadMetadata.getRevalidationEntry();
 		boolean isSuccess = false;
 		URI uri = null;
 		try {
@@ -77,38 +120,79 @@ public class SFTPDownloader implements Downloader {
 			return false;
 		}
 		
-		String username = null;
-		String password = null;
-		if (uri.getUserInfo() != null && !uri.getUserInfo().isEmpty()) {
-			String[] userInfo = uri.getUserInfo().split(":");
-			username = userInfo[0];
-			password = userInfo.length == 2 ? userInfo[1] : null;
-		}
+		String[] credentials = getCredentials(uri);
+		String username = credentials[0];
+		String password = credentials[1];
 
 		String host = uri.getHost();
 		int port = uri.getPort() == -1 ? defaultPort : uri.getPort();
 		String remotePath = uri.getPath();
 
 		InputStream inputStream = null;
-		FileOutputStream outputStream = null;
-		File file = null;
+		Reservation reservation = null;
+		boolean isResumable = false;
+		ChannelSftp sftpChannel = null;
 		try {
-			file = new File(location);
-			ChannelSftp sftpChannel = openConnection(username, password, host, port, sessionTimeout, channelTimeout);
-			inputStream = sftpChannel.get(remotePath);
-			outputStream = writeToFile(inputStream, file);
+			sftpChannel = SFTPSessionPool.acquire(username, password, host, port, sessionTimeout, channelTimeout);
+			ProbeMetadata probeMetadata = stat(sftpChannel, remotePath);
+			if (revalidationEntry != null && probeMetadata.getLastModified().equals(revalidationEntry.getLastModified())
+					&& probeMetadata.getContentLength() == revalidationEntry.getContentLength()) {
+				logger.info("Skipping download of " + downloadUrl + ", not modified since last download to " + location);
+				isSuccess = true;
+				return isSuccess;
+			}
+			if (ContentStoreUtils.linkIfStored(downloadMetadata, probeMetadata.getContentLength())) {
+				isSuccess = true;
+				return isSuccess;
+			}
+			StagingUtils.createStagingDirectory(location);
+			StreamingDigest streamingDigest = DigestManifest.newStreamingDigest();
+			if (probeMetadata.isResumable()) {
+				isResumable = true;
+				DownloadJournal journal = StagingUtils.loadJournal(location, downloadUrl, probeMetadata);
+				if (journal == null) {
+					reservation = DiskSpaceAdmission.reserve(location, probeMetadata.getContentLength());
+					int segmentCount = SegmentUtils.getSegmentCount(probeMetadata.getContentLength(),
+							commonUtils.getSegmentCount(Protocols.SFTP), commonUtils.getSegmentMinSize(Protocols.SFTP));
+					journal = StagingUtils.createJournal(location, downloadUrl, probeMetadata,
+							SegmentUtils.split(probeMetadata.getContentLength(), segmentCount));
+				} else {
+					reservation = DiskSpaceAdmission.reserve(location, journal.getContentLength() - journal.getBytesWritten());
+				}
+				journal.setStreamingDigest(streamingDigest);
+				StagingUtils.setReservation(journal, reservation);
+				List<ByteRange> ranges = new ArrayList<>(journal.getRemainingRanges());
+				if (ranges.size() > 1) {
+					SFTPSessionPool.release(sftpChannel, true);
+					sftpChannel = null;
+					downloadRanges(username, password, host, port, sessionTimeout, channelTimeout, remotePath,
+							location, journal, ranges);
+				} else {
+					for (ByteRange range : ranges) {
+						inputStream = sftpChannel.get(remotePath, null, range.getStart());
+						writeToFile(inputStream, location, journal, range);
+						inputStream.close();
+						inputStream = null;
+					}
+				}
+			} else {
+				Files.deleteIfExists(StagingUtils.getPartFile(location));
+				Files.createFile(StagingUtils.getPartFile(location));
+			}
+			DigestManifest.verify(downloadMetadata, streamingDigest);
+			ContentStoreUtils.publish(downloadMetadata, probeMetadata.getContentLength());
+			RevalidationIndex.update(downloadUrl, probeMetadata, location);
 			isSuccess = true;
+		} catch (DigestMismatchException | InsufficientDiskSpaceException e) {
+			logger.error("Stopping SFTP Download, " + e.getMessage());
+			throw e;
 		} catch (IOException | JSchException | SftpException e) {
 			StringBuffer sb = new StringBuffer().append("Stopping SFTP Download, Exception.. Aborting Download for ").append(downloadUrl).append("with Exception").append(e.getMessage());
 			logger.error(sb.toString());
 			return false;
 		} finally {
-			if (outputStream != null) {
-				try {
-					outputStream.close();
-				} catch (IOException e) {
-					logger.info("Exception while closing SFTP output Stream"+e.getMessage());
-				}
+			if (reservation != null) {
+				reservation.close();
 			}
 			if (inputStream != null) {
 				try {
@@ -117,63 +201,184 @@ public class SFTPDownloader implements Downloader {
 					logger.info("Exception while closing SFTP input Stream"+e.getMessage());
 				}
 			}
-			if (!isSuccess && file != null) {
-				file.delete();
+			if (sftpChannel != null) {
+				SFTPSessionPool.release(sftpChannel, isSuccess);
+			}
+			if (!isSuccess && !isResumable) {
+				StagingUtils.discard(location);
 			}
 		}
 		return isSuccess;
 	}
 
 	/**
+	 * Stats remote file over a channel leased from SFTPSessionPool, with timeouts & default port of SFTP.
+	 */
+	@Override
+	public ProbeMetadata probe(DownloadMetadata downloadMetadata) throws IOException {
+		URI uri;
+		try {
+			uri = new URI(downloadMetadata.getDownloadUrl());
+		} catch (URISyntaxException e) {
+			throw new IOException("URI Syntax Exception for " + downloadMetadata.getDownloadUrl(), e);
+		}
+		String[] credentials = getCredentials(uri);
+		int port = uri.getPort() == -1 ? DMCache.getSftpDefultPort() : uri.getPort();
+		ChannelSftp sftpChannel = null;
+		boolean isSuccess = false;
+		try {
+			sftpChannel = SFTPSessionPool.acquire(credentials[0], credentials[1], uri.getHost(), port,
+					DMCache.getSftpSessionTimeoutInMillis(), DMCache.getSftpChannelTimeoutInMillis());
+			ProbeMetadata probeMetadata = stat(sftpChannel, uri.getPath());
+			isSuccess = true;
+			return probeMetadata;
+		} catch (JSchException | SftpException e) {
+			throw new IOException("Unable to stat " + uri.getHost() + uri.getPath() + " " + e.getMessage(), e);
+		} finally {
+			if (sftpChannel != null) {
+				SFTPSessionPool.release(sftpChannel, isSuccess);
+			}
+		}
+	}
+
+	/**
+	 * Reads range with offset based get over a channel leased from SFTPSessionPool, with timeouts & default port of SFTP. Channel is returned to pool when stream is closed.
+	 */
+	@Override
+	public InputStream openRange(String downloadUrl, ByteRange range, ProbeMetadata probeMetadata) throws IOException {
+		URI uri;
+		try {
+			uri = new URI(downloadUrl);
+		} catch (URISyntaxException e) {
+			throw new IOException("URI Syntax Exception for " + downloadUrl, e);
+		}
+		String[] credentials = getCredentials(uri);
+		int port = uri.getPort() == -1 ? DMCache.getSftpDefultPort() : uri.getPort();
+		ChannelSftp sftpChannel = null;
+		try {
+			sftpChannel = SFTPSessionPool.acquire(credentials[0], credentials[1], uri.getHost(), port,
+					DMCache.getSftpSessionTimeoutInMillis(), DMCache.getSftpChannelTimeoutInMillis());
+			ChannelSftp leasedChannel = sftpChannel;
+			InputStream inputStream = new FilterInputStream(sftpChannel.get(uri.getPath(), null, range.getStart())) {
+				private boolean isClosed;
+
+				@Override
+				public void close() throws IOException {
+					if (isClosed) {
+						return;
+					}
+					isClosed = true;
+					boolean isReusable = false;
+					try {
+						super.close();
+						isReusable = true;
+					} finally {
+						SFTPSessionPool.release(leasedChannel, isReusable);
+					}
+				}
+			};
+			sftpChannel = null;
+			return inputStream;
+		} catch (JSchException | SftpException e) {
+			throw new IOException("Unable to read range " + range + " of " + uri.getHost() + uri.getPath() + " " + e.getMessage(), e);
+		} finally {
+			if (sftpChannel != null) {
+				SFTPSessionPool.release(sftpChannel, false);
+			}
+		}
+	}
+
+	/**
+	 * @param uri - SFTP URI of file.
+	 * @return Array of username & password from user info of URI, elements are null if not specified.
+	 */
+	static String[] getCredentials(URI uri) {
+		String[] credentials = new String[2];
+		if (uri.getUserInfo() != null && !uri.getUserInfo().isEmpty()) {
+			String[] userInfo = uri.getUserInfo().split(":");
+			credentials[0] = userInfo[0];
+			credentials[1] = userInfo.length == 2 ? userInfo[1] : null;
+		}
+		return credentials;
+	}
+
+	/**
+	 * @return Size & modification time of remote file as ProbeMetadata. SFTP always supports offset reads.
+	 */
+	private static ProbeMetadata stat(ChannelSftp sftpChannel, String remotePath) throws SftpException {
+		SftpATTRS attrs = sftpChannel.stat(remotePath);
+		return new ProbeMetadata(attrs.getSize(), true, null, String.valueOf(attrs.getMTime()));
+	}
+
+	/**
+	 * Downloads all ranges in parallel on segment executor. Every range leases its own channel from SFTPSessionPool and reads from range start using offset based get.
+	 * If any range fails, others are cancelled and exception is thrown. Ranges already written stay checkpointed in journal for next attempt.
 	 * 
-	 * This methods opens SSH FTP connection for allowing file transfer.
-	 * 
-	 * @param username - Username for SSH connection
-	 * @param password - password for SSH connection
-	 * @param host - host where file is hosted
-	 * @param port - port, to connect to for SFTP downloads.
-	 * @param channelTimeout - Used to set Channel timeout.
-	 * @param sessionTimeout - Used to set Session timeout.
-	 * @return Opened SFTP Channel is returned between local & host system.
-	 * @throws JSchException
-	 * @throws SftpException
+	 * @param ranges - Remaining ranges of journal.
+	 * @throws IOException if a range could not be downloaded.
 	 */
-	private ChannelSftp openConnection(String username, String password, String host, int port, int channelTimeout,
-			int sessionTimeout) throws JSchException, SftpException {
-		
-		JSch jsch = new JSch();
-		Session session = jsch.getSession(username, host, port);
-		session.setPassword(password);
-		Properties props = new Properties();
-		props.put("StrictHostKeyChecking", "no");
-		session.setConfig(props);
-		session.setTimeout(sessionTimeout);
-		session.connect(sessionTimeout);
-
-		Channel channel = session.openChannel(Protocols.SFTP.name().toLowerCase());
-		channel.connect(channelTimeout);
-		ChannelSftp sftpChannel = (ChannelSftp) channel;
-		return sftpChannel;
+	private void downloadRanges(String username, String password, String host, int port, int sessionTimeout,
+			int channelTimeout, String remotePath, String location, DownloadJournal journal, List<ByteRange> ranges)
+			throws IOException {
+		List<Future<Void>> futures = new ArrayList<>(ranges.size());
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(StagingUtils.getPartFile(location).toFile(), "rw")) {
+			FileChannel fileChannel = randomAccessFile.getChannel();
+			for (ByteRange range : ranges) {
+				futures.add(SegmentUtils.getSegmentExecutorService().submit(() -> {
+					ChannelSftp sftpChannel = SFTPSessionPool.acquire(username, password, host, port, sessionTimeout, channelTimeout);
+					boolean isSuccess = false;
+					try (InputStream inputStream = sftpChannel.get(remotePath, null, range.getStart())) {
+						writeRange(inputStream, fileChannel, location, journal, range);
+						isSuccess = true;
+					} finally {
+						SFTPSessionPool.release(sftpChannel, isSuccess);
+					}
+					return null;
+				}));
+			}
+			for (Future<Void> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while downloading ranges of " + remotePath, e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Range download failed for " + remotePath + " " + e.getCause().getMessage(), e.getCause());
+		} finally {
+			for (Future<Void> future : futures) {
+				future.cancel(true);
+			}
+		}
 	}
 
 	/**
-	 * It writes the data read from file to local disk file.
+	 * It writes the data read from remote file to range of .part file in staging directory. Progress is checkpointed in journal, so an interrupted download resumes from last checkpoint.
 	 * 
-	 * @param inputStream - Stream to file to be downloaded
-	 * @param file - Local File (File which would be saved on local disk) 
-	 * @return Return stream to local Downloading file. 
-	 * @throws FileNotFoundException
+	 * @param inputStream - Stream to file to be downloaded, starting at range start.
+	 * @param location - Actual path of Local Disk where file would be saved.
+	 * @param journal - Journal of staged file.
+	 * @param range - Byte range to be written.
 	 * @throws IOException
 	 */
-	private FileOutputStream writeToFile(InputStream inputStream, File file) throws FileNotFoundException, IOException {
-		FileOutputStream outputStream = new FileOutputStream(file);
+	private void writeToFile(InputStream inputStream, String location, DownloadJournal journal, ByteRange range) throws IOException {
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(StagingUtils.getPartFile(location).toFile(), "rw")) {
+			writeRange(inputStream, randomAccessFile.getChannel(), location, journal, range);
+		}
+	}
+
+	/**
+	 * Writes range positionally to fileChannel of .part file using TransferEngine configured for SFTP.
+	 */
+	private void writeRange(InputStream inputStream, FileChannel fileChannel, String location, DownloadJournal journal,
+			ByteRange range) throws IOException {
 		int bufferSize = commonUtils.getBufferSize(Protocols.SFTP);
-		byte[] buffer = new byte[bufferSize];
-		int bytesRead = -1;
-		while ((bytesRead = inputStream.read(buffer)) != -1) {
-			outputStream.write(buffer, 0, bytesRead);
+		try (Transfer transfer = TransferMonitor.start(journal.getDownloadUrl(), null)) {
+			StagingUtils.writeRange(location, journal, fileChannel, range, transfer.track(inputStream),
+					RequestRoutingFactory.getTransferEngine(Protocols.SFTP), bufferSize);
 		}
-		return outputStream;
 	}
 
 }
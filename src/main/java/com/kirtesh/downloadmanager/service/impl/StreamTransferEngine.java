@@ -0,0 +1,36 @@
+package com.kirtesh.downloadmanager.service.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.kirtesh.downloadmanager.service.TransferEngine;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ * 
+ * Copies data through a heap byte[] of bufferSize. Only size equivalent to bufferSize would be read and written at one time.
+ * This is how Application has always copied data and is default TransferMode (STREAM).
+ *
+ */
+public class StreamTransferEngine implements TransferEngine {
+
+	@Override
+	public long transfer(InputStream inputStream, FileChannel fileChannel, long position, long maxBytes,
+			int bufferSize) throws IOException {
+		byte[] buffer = new byte[bufferSize];
+		long transferred = 0;
+		int bytesRead = -1;
+		while (transferred < maxBytes
+				&& (bytesRead = inputStream.read(buffer, 0, (int) Math.min(bufferSize, maxBytes - transferred))) != -1) {
+			ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, bytesRead);
+			while (byteBuffer.hasRemaining()) {
+				transferred += fileChannel.write(byteBuffer, position + transferred);
+			}
+		}
+		return transferred;
+	}
+
+}
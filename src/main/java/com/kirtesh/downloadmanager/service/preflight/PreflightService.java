@@ -0,0 +1,24 @@
+package com.kirtesh.downloadmanager.service.preflight;
+
+import java.util.Collection;
+
+import com.kirtesh.downloadmanager.metadata.DownloadMetadata;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ *
+ *	This Interface defines preflight stage, run after DownloadUtils.downloadPreprocessing and before downloads are scheduled.
+ *	Remote files are probed for size, byte range support & validators, which are used for scheduling order, disk space checks & progress reporting.
+ */
+public interface PreflightService {
+
+	/**
+	 * Probes all remote files and stores result in DownloadMetadata.probeMetadata. A file which could not be probed is left with null probeMetadata and is still downloaded.
+	 * 
+	 * @param downloads - Metadata of files to be downloaded.
+	 * @return Total size in bytes of files whose size is known.
+	 */
+	public long probe(Collection<DownloadMetadata> downloads);
+
+}
@@ -0,0 +1,85 @@
+package com.kirtesh.downloadmanager.service.preflight.impl;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.log4j.Logger;
+
+import com.kirtesh.downloadmanager.cache.DMCache;
+import com.kirtesh.downloadmanager.factory.RequestRoutingFactory;
+import com.kirtesh.downloadmanager.metadata.DownloadMetadata;
+import com.kirtesh.downloadmanager.service.Downloader;
+import com.kirtesh.downloadmanager.service.impl.DownloadScheduler;
+import com.kirtesh.downloadmanager.service.preflight.PreflightService;
+/**
+ * 
+ * @author kirteshdudawat
+ * 
+ * Probes remote files in parallel using Downloader.probe (HTTP HEAD / SFTP stat) of their protocol. Probes are dispatched by DownloadScheduler,
+ * so they are spread round-robin across hosts within same per host limits (download.max.connections.per.host) as downloads.
+ * Preflight is skipped if property download.preflight.enabled is not true.
+ *
+ */
+public class PreflightServiceImpl implements PreflightService {
+
+	public final static Logger logger = Logger.getLogger(PreflightServiceImpl.class);
+
+	/**
+	 * Probes all remote files on a thread pool of scheduled.threadpool.core.size threads and waits till every probe has finished.
+	 * 
+	 * @param downloads - Metadata of files to be downloaded.
+	 * @return Total size in bytes of files whose size is known, 0 if preflight is disabled.
+	 */
+	@Override
+	public long probe(Collection<DownloadMetadata> downloads) {
+		if (!DMCache.isDownloadPreflightEnabled() || downloads.isEmpty()) {
+			return 0;
+		}
+		int threads = Math.max(1, DMCache.getScheduledThreadpoolCoreSize());
+		ExecutorService executorService = Executors.newFixedThreadPool(threads);
+		try {
+			DownloadScheduler downloadScheduler = new DownloadScheduler(threads, DMCache.getDownloadMaxConnectionsPerHost(),
+					DMCache.getDownloadMaxConnectionsPerHostOverrides(),
+					downloadMetadata -> CompletableFuture.supplyAsync(() -> probe(downloadMetadata), executorService));
+			downloadScheduler.schedule(downloads).join();
+		} finally {
+			executorService.shutdown();
+		}
+
+		long totalBytes = 0;
+		int unknownSizes = 0;
+		for (DownloadMetadata downloadMetadata : downloads) {
+			if (downloadMetadata.getContentLength() >= 0) {
+				totalBytes += downloadMetadata.getContentLength();
+			} else {
+				unknownSizes++;
+			}
+		}
+		logger.info("Preflight probed " + downloads.size() + " files, total " + totalBytes + " bytes, " + unknownSizes + " files of unknown size");
+		return totalBytes;
+	}
+
+	/**
+	 * Probes a single remote file. Failure is only logged, download would report its own error.
+	 * 
+	 * @param downloadMetadata - Metadata of file to be downloaded.
+	 * @return Boolean value true / false based on if file was probed successfully.
+	 */
+	private boolean probe(DownloadMetadata downloadMetadata) {
+		Downloader downloader = RequestRoutingFactory.getDownloaderImpl(downloadMetadata.getProtocols());
+		if (downloader == null) {
+			return false;
+		}
+		try {
+			downloadMetadata.setProbeMetadata(downloader.probe(downloadMetadata));
+			return true;
+		} catch (IOException | RuntimeException e) {
+			logger.info("Unable to probe " + downloadMetadata.getDownloadUrl() + " " + e.getMessage());
+			return false;
+		}
+	}
+
+}
@@ -29,4 +29,32 @@ public interface StartUpService {
 	 */
 	public boolean initializeDownloadUrlsList();
 
+	/**
+	 * Loads validators of files downloaded in earlier runs from "revalidation.index.filepath" to JVM Cache - RevalidationIndex.
+	 * 
+	 * @return Boolean value true / false based on if revalidation index is initialized successfully or not.
+	 */
+	public boolean initializeRevalidationIndex();
+
+	/**
+	 * Replays job journal of earlier runs from "job.journal.filepath" to JVM Cache - JobJournal. URLs completed in an unfinished run are removed from JVM Cache - DMCache.downloadUrl, optionally only dead-lettered URLs are kept.
+	 * 
+	 * @return Boolean value true / false based on if job journal is initialized successfully or not.
+	 */
+	public boolean initializeJobJournal();
+
+	/**
+	 * Loads bandwidth limits from "throttle.config.filepath" to JVM Cache - BandwidthThrottle, and keeps reloading them on change.
+	 * 
+	 * @return Boolean value true / false based on if bandwidth limits are initialized successfully or not.
+	 */
+	public boolean initializeBandwidthThrottle();
+
+	/**
+	 * Loads expected digests of files to be downloaded from "digest.manifest.filepath" to JVM Cache - DigestManifest.
+	 * 
+	 * @return Boolean value true / false based on if digest manifest is initialized successfully or not.
+	 */
+	public boolean initializeDigestManifest();
+
 }
@@ -1,7 +1,19 @@
 package com.kirtesh.downloadmanager.utils;
 
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.UnknownHostException;
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
 import com.kirtesh.downloadmanager.cache.DMCache;
 import com.kirtesh.downloadmanager.enums.Protocols;
+import com.kirtesh.downloadmanager.enums.TransferMode;
 /**
  * 
  * @author kirteshdudawat
@@ -24,6 +36,157 @@ public class CommonUtils {
 		return false;
 	}
 
+	/**
+	 * Unwraps exception a future was completed with, CompletableFuture wraps it in CompletionException / ExecutionException.
+	 * 
+	 * @param throwable - Error of future, may be null.
+	 * @return First cause which is not CompletionException / ExecutionException, null if throwable is null.
+	 */
+	public static Throwable unwrap(Throwable throwable) {
+		while ((throwable instanceof CompletionException || throwable instanceof ExecutionException) && throwable.getCause() != null) {
+			throwable = throwable.getCause();
+		}
+		return throwable;
+	}
+
+	/**
+	 * @param throwable - Error of a download attempt, may be null.
+	 * @return true if throwable or one of its causes is a connect / read timeout.
+	 */
+	public static boolean isTimeout(Throwable throwable) {
+		for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+			if (cause instanceof SocketTimeoutException || cause instanceof HttpTimeoutException) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param throwable - Error of a download attempt, may be null.
+	 * @return true if throwable or one of its causes is a failure to reach host, i.e. connection refused, no route to host or unresolved host name.
+	 */
+	public static boolean isConnectFailure(Throwable throwable) {
+		for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+			if (cause instanceof ConnectException || cause instanceof NoRouteToHostException || cause instanceof UnknownHostException) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param throwable - Error of a download attempt, may be null.
+	 * @return true if throwable or one of its causes is an established connection being reset or broken by remote end.
+	 */
+	public static boolean isConnectionReset(Throwable throwable) {
+		for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+			String message = cause.getMessage() == null ? "" : cause.getMessage().toLowerCase();
+			if (cause instanceof IOException && (message.contains("connection reset") || message.contains("broken pipe"))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param downloadUrl - URL of file.
+	 * @return Lower case host of URL, used as key for host permits, host circuits & host bandwidth limits. Empty String if URL has no host.
+	 */
+	public static String getHost(String downloadUrl) {
+		try {
+			String host = new URI(downloadUrl.trim()).getHost();
+			return host == null ? "" : host.toLowerCase();
+		} catch (URISyntaxException e) {
+			return "";
+		}
+	}
+
+	/**
+	 * @param downloadUrl - URL of file.
+	 * @return Download directory of protocol of URL i.e. value of property `{protocol}.download.directory.path`, null if URL has no supported protocol.
+	 */
+	public static String getDownloadDirectoryPath(String downloadUrl) {
+		String scheme;
+		try {
+			scheme = new URI(downloadUrl.trim()).getScheme();
+		} catch (URISyntaxException e) {
+			return null;
+		}
+		if (scheme == null) {
+			return null;
+		}
+		switch (scheme.toLowerCase()) {
+			case "ftp":
+				return DMCache.getFtpDownloadDirectoryPath();
+			case "http":
+				return DMCache.getHttpDownloadDirectoryPath();
+			case "https":
+				return DMCache.getHttpsDownloadDirectoryPath();
+			case "sftp":
+				return DMCache.getSftpDownloadDirectoryPath();
+		}
+		return null;
+	}
+
+	/**
+	 * Normalizes URL, so URLs pointing to same resource are equal Strings. Surrounding whitespace & fragment are removed, scheme & host are lower cased,
+	 * default port of scheme is removed, dot segments are resolved and empty path becomes "/". User info, path & query are kept as is.
+	 * 
+	 * eg. " HTTP://Example.COM:80/a/./b#top " is normalized to "http://example.com/a/b"
+	 * 
+	 * @param downloadUrl - URL in String.
+	 * @return Normalized URL, trimmed downloadUrl if it can not be parsed as hierarchical URL with host.
+	 */
+	public static String normalizeUrl(String downloadUrl) {
+		if (downloadUrl == null) {
+			return null;
+		}
+		String trimmedUrl = downloadUrl.trim();
+		URI uri;
+		try {
+			uri = new URI(trimmedUrl).normalize();
+		} catch (URISyntaxException e) {
+			return trimmedUrl;
+		}
+		if (uri.getScheme() == null || uri.getHost() == null) {
+			return trimmedUrl;
+		}
+		String scheme = uri.getScheme().toLowerCase();
+		StringBuilder sb = new StringBuilder().append(scheme).append("://");
+		if (uri.getRawUserInfo() != null) {
+			sb.append(uri.getRawUserInfo()).append('@');
+		}
+		sb.append(uri.getHost().toLowerCase());
+		if (uri.getPort() != -1 && uri.getPort() != getDefaultPort(scheme)) {
+			sb.append(':').append(uri.getPort());
+		}
+		sb.append(isStringNullOrEmpty(uri.getRawPath()) ? "/" : uri.getRawPath());
+		if (uri.getRawQuery() != null) {
+			sb.append('?').append(uri.getRawQuery());
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @param scheme - Lower case scheme of URL.
+	 * @return Default port of scheme, -1 if scheme is not known.
+	 */
+	private static int getDefaultPort(String scheme) {
+		switch (scheme) {
+			case "http":
+				return 80;
+			case "https":
+				return 443;
+			case "ftp":
+				return 21;
+			case "sftp":
+				return 22;
+			default:
+				return -1;
+		}
+	}
+
 	/**
 	 * This method returns Connection timeout based on Protocol. This method is applicable only for FTP, HTTP, HTTPS.
 	 * 
@@ -82,4 +245,65 @@ public class CommonUtils {
 		}
 		return -1;
 	}
+
+	/**
+	 * This method returns maximum number of parallel byte range segments based on Protocol. This method is applicable only for HTTP, HTTPS, SFTP as only these protocols support reading from an offset.
+	 * 
+	 * @param protocol - Provides download file protocol
+	 * @return Segment count in integer, -1 if protocol does not support segmented downloads.
+	 */
+	public int getSegmentCount(Protocols protocol) {
+
+		switch (protocol) {
+			case HTTP:
+				return DMCache.getHttpSegmentCount();
+			case HTTPS:
+				return DMCache.getHttpsSegmentCount();
+			case SFTP:
+				return DMCache.getSftpSegmentCount();
+			default:
+				return -1;
+		}
+	}
+
+	/**
+	 * This method returns minimum size in bytes of a single byte range segment based on Protocol. This method is applicable only for HTTP, HTTPS, SFTP.
+	 * 
+	 * @param protocol - Provides download file protocol
+	 * @return Minimum segment size in integer, -1 if protocol does not support segmented downloads.
+	 */
+	public int getSegmentMinSize(Protocols protocol) {
+
+		switch (protocol) {
+			case HTTP:
+				return DMCache.getHttpSegmentMinSize();
+			case HTTPS:
+				return DMCache.getHttpsSegmentMinSize();
+			case SFTP:
+				return DMCache.getSftpSegmentMinSize();
+			default:
+				return -1;
+		}
+	}
+
+	/**
+	 * This method returns way of copying downloaded bytes to local file based on Protocol. This method is applicable only for FTP, HTTP, HTTPS, SFTP.
+	 * 
+	 * @param protocol - Provides download file protocol
+	 * @return TransferMode, STREAM if property is not specified.
+	 */
+	public TransferMode getTransferMode(Protocols protocol) {
+		
+		switch (protocol) {
+			case FTP:
+				return TransferMode.fromProperty(DMCache.getFtpTransferMode());
+			case HTTP:
+				return TransferMode.fromProperty(DMCache.getHttpTransferMode());
+			case HTTPS:
+				return TransferMode.fromProperty(DMCache.getHttpsTransferMode());
+			case SFTP:
+				return TransferMode.fromProperty(DMCache.getSftpTransferMode());
+		}
+		return TransferMode.STREAM;
+	}
 }
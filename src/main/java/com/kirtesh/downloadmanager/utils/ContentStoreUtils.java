@@ -0,0 +1,159 @@
+package com.kirtesh.downloadmanager.utils;
+
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+import org.apache.log4j.Logger;
+
+import com.kirtesh.downloadmanager.cache.DMCache;
+import com.kirtesh.downloadmanager.cache.DigestManifest;
+import com.kirtesh.downloadmanager.enums.DigestAlgorithm;
+import com.kirtesh.downloadmanager.metadata.DownloadMetadata;
+/**
+ *
+ * @author kirteshdudawat
+ *
+ *	This class contains utility methods for content addressable store of downloaded files.
+ *
+ *	If `content.store.directory.name` is specified along with `digest.algorithm` SHA-256, every downloaded file is kept once in store under download directory of its protocol
+ *	i.e. {protocol}.download.directory.path/{content.store.directory.name}/{algorithm}/{first 2 chars of digest}/{digest}, and location is published as a hardlink to it.
+ *	Same bytes downloaded from different URLs (mirrors, versioned aliases) or to different sub directories take disk space only once. If object is already in store, .part file is discarded
+ *	and location is linked to existing object. If digest manifest has expected digest of URL and object of probed size is already in store, file is linked without being downloaded.
+ *	Store is not enabled with CRC32C or MD5, as different content could have same digest and one file would be published with content of another.
+ *
+ *	Store is kept under download directory, so store and location are on same filesystem and can be hardlinked. If filesystem does not support hardlinks, object is copied.
+ *	A location outside download directory of its protocol uses store under its parent directory.
+ *
+ *	Note: All locations linked to an object share its data. Downloaded files must be replaced (as done by this application) and never modified in place.
+ *
+ */
+public class ContentStoreUtils {
+
+	final static Logger logger = Logger.getLogger(ContentStoreUtils.class);
+
+	private static final int FAN_OUT_LENGTH = 2;
+	private static final String LINK_EXTENSION = ".link";
+
+	/**
+	 * @return true if content store is enabled i.e. `content.store.directory.name` is specified and `digest.algorithm` is SHA-256.
+	 */
+	public static boolean isEnabled() {
+		return !CommonUtils.isStringNullOrEmpty(DMCache.getContentStoreDirectoryName()) && getDigestAlgorithm() == DigestAlgorithm.SHA_256;
+	}
+
+	/**
+	 * @param downloadUrl - URL of file, its protocol decides download directory.
+	 * @param location - Final path of file on local disk.
+	 * @param digest - Digest of file in lower case hex.
+	 * @return Path of object in store of download directory of protocol, or of parent directory if location is outside download directory.
+	 */
+	public static Path getObjectFile(String downloadUrl, String location, String digest) {
+		return getStoreDirectory(downloadUrl, location)
+				.resolve(getDigestAlgorithm().name().toLowerCase())
+				.resolve(digest.substring(0, Math.min(FAN_OUT_LENGTH, digest.length())))
+				.resolve(digest);
+	}
+
+	/**
+	 * Links location to object in store without downloading, if digest manifest has expected digest of URL and object with that digest and expected size is already in store.
+	 * Called once remote file is probed, a file of unknown size is always downloaded. Digest is set to downloadMetadata on success.
+	 *
+	 * @param downloadMetadata - Metadata of file to be downloaded.
+	 * @param expectedLength - Size of remote file learnt by probe, value less than 0 if unknown.
+	 * @return true if location is linked and file need not be downloaded.
+	 */
+	public static boolean linkIfStored(DownloadMetadata downloadMetadata, long expectedLength) {
+		if (!isEnabled() || expectedLength < 0) {
+			return false;
+		}
+		String expectedDigest = DigestManifest.getExpectedDigest(downloadMetadata.getDownloadUrl());
+		if (expectedDigest == null) {
+			return false;
+		}
+		String location = downloadMetadata.getFilePath();
+		Path objectFile = getObjectFile(downloadMetadata.getDownloadUrl(), location, expectedDigest);
+		try {
+			if (!Files.isRegularFile(objectFile) || Files.size(objectFile) != expectedLength) {
+				return false;
+			}
+			link(objectFile, location);
+		} catch (IOException e) {
+			logger.info("Unable to link " + location + " to stored " + objectFile + ", downloading again.." + e.getMessage());
+			return false;
+		}
+		downloadMetadata.setDigest(expectedDigest);
+		DigestManifest.recordResult(expectedDigest, location);
+		logger.info("Skipping download of " + downloadMetadata.getDownloadUrl() + ", content already stored at " + objectFile);
+		return true;
+	}
+
+	/**
+	 * Publishes completely downloaded .part file at location. If content store is enabled and digest of file is known, .part file is moved to store
+	 * (or discarded, if store already has same content) and location is linked to stored object. Otherwise .part file is promoted to location directly.
+	 *
+	 * @param downloadMetadata - Metadata of downloaded file, digest is set by DigestManifest.verify.
+	 * @param expectedLength - Expected size of file, value less than 0 skips size verification.
+	 * @throws IOException if file is incomplete or could not be published.
+	 */
+	public static void publish(DownloadMetadata downloadMetadata, long expectedLength) throws IOException {
+		String location = downloadMetadata.getFilePath();
+		String digest = downloadMetadata.getDigest();
+		if (!isEnabled() || digest == null) {
+			StagingUtils.promote(location, expectedLength);
+			return;
+		}
+		Path objectFile = getObjectFile(downloadMetadata.getDownloadUrl(), location, digest);
+		if (Files.isRegularFile(objectFile) && (expectedLength < 0 || Files.size(objectFile) == expectedLength)) {
+			logger.info("Content of " + location + " already stored at " + objectFile + ", discarding downloaded copy..");
+			StagingUtils.discard(location);
+		} else {
+			Files.createDirectories(objectFile.getParent());
+			StagingUtils.promote(location, expectedLength, objectFile);
+		}
+		link(objectFile, location);
+	}
+
+	/**
+	 * Creates hardlink to object next to .part file and moves it atomically to location, replacing an existing file. Object is copied if hardlinks are not supported.
+	 *
+	 * @param objectFile - Object in content store, or any other completely downloaded file.
+	 * @param location - Final path of file on local disk.
+	 * @throws IOException if link or copy could not be published.
+	 */
+	public static void link(Path objectFile, String location) throws IOException {
+		StagingUtils.createStagingDirectory(location);
+		Path linkFile = StagingUtils.getStagingDirectory(location).resolve(Paths.get(location).getFileName() + LINK_EXTENSION);
+		Files.deleteIfExists(linkFile);
+		try {
+			Files.createLink(linkFile, objectFile);
+		} catch (UnsupportedOperationException | FileSystemException e) {
+			logger.info("Hardlink not supported for " + objectFile + ", copying.." + e.getMessage());
+			Files.copy(objectFile, linkFile, StandardCopyOption.REPLACE_EXISTING);
+		}
+		StagingUtils.publish(linkFile, Paths.get(location));
+	}
+
+	/**
+	 * @return `content.store.directory.name` directory in download directory of protocol of downloadUrl, in parent directory of location if location is not inside download directory.
+	 */
+	private static Path getStoreDirectory(String downloadUrl, String location) {
+		Path parent = Paths.get(location).toAbsolutePath().normalize().getParent();
+		String downloadDirectoryPath = CommonUtils.getDownloadDirectoryPath(downloadUrl);
+		if (!CommonUtils.isStringNullOrEmpty(downloadDirectoryPath)) {
+			Path downloadDirectory = Paths.get(downloadDirectoryPath).toAbsolutePath().normalize();
+			if (parent.startsWith(downloadDirectory)) {
+				return downloadDirectory.resolve(DMCache.getContentStoreDirectoryName());
+			}
+		}
+		return parent.resolve(DMCache.getContentStoreDirectoryName());
+	}
+
+	private static DigestAlgorithm getDigestAlgorithm() {
+		return DigestAlgorithm.fromProperty(DMCache.getDigestAlgorithm());
+	}
+
+}
@@ -6,16 +6,23 @@ import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.apache.log4j.Logger;
 
 import com.kirtesh.downloadmanager.cache.DMCache;
+import com.kirtesh.downloadmanager.cache.RevalidationIndex;
 import com.kirtesh.downloadmanager.enums.Protocols;
 import com.kirtesh.downloadmanager.metadata.DownloadMetadata;
+import com.kirtesh.downloadmanager.metadata.DownloadOptions;
+import com.kirtesh.downloadmanager.metadata.ProbeMetadata;
+import com.kirtesh.downloadmanager.metadata.RemoteFileEntry;
+import com.kirtesh.downloadmanager.metadata.RevalidationEntry;
 /**
  * 
  * @author kirteshdudawat
@@ -29,6 +36,7 @@ public class DownloadUtils {
 
 	private static final String OPENING_BRACE = "(";
 	private static final String CLOSING_BRACE = ")";
+	private static final String VARIANT_SEPARATOR = "#";
 
 	/**
 	 * This methods creates Metadata associated with URL's to download. It performs following task:
@@ -40,38 +48,108 @@ public class DownloadUtils {
 	 * 4. Create Local File Name same as file to be Downloaded and validates if same name exists
 	 *  4.1. If 'override.existing.file' property is set to true, we persist the same name of file and previous data is lost.
 	 *  4.2  If 'override.existing.file' property is set to false, a new name is created. Eg. if 'download' file already existed with override.existing.file=false, new file would be saved as 'download(1)'. 
+	 * 5. If URL was downloaded in an earlier run and same copy still exists (RevalidationIndex), its filepath is reused instead of creating new name, so download can be skipped if remote file is unchanged.
+	 * 6. Directory / glob URLs (GlobUtils.isExpansionUrl) are skipped, they are expanded by UrlExpansionService.
+	 * 7. Priority, job & mirrors specified after URL in download file (DMCache.downloadUrlOptions) are set to metadata.
+	 * 8. Identical listings of URL get a single metadata. Distinct URLs listed which normalize to same URL (DMCache.downloadUrlVariants) get a metadata & file per variant,
+	 *    keyed as url#variant after first one, whose download URL is the variant as listed. Variants are coalesced by InFlightRegistry, so URL is downloaded once and published to file of every variant.
 	 *   
-	 * @return Map of URL as key to DownloadMetadata as value.
+	 * @return Map of URL (url#variant for further variants of same URL) as key to DownloadMetadata as value, in order variants should join InFlightRegistry.
 	 */
 	public Map<String, DownloadMetadata> downloadPreprocessing() {
 
-		Map<String, DownloadMetadata> urlToMetadataMapping = new HashMap<>();
+		Map<String, DownloadMetadata> urlToMetadataMapping = new LinkedHashMap<>();
 		Set<String> fileNameSet = new HashSet<>();
 
 		for (String url : DMCache.downloadUrl) {
-			DownloadMetadata downloadMetaData = new DownloadMetadata();
-			downloadMetaData.setDownloadUrl(url.trim());
-
-			boolean setProtocol = setProtocolToDownloadMetadata(url, downloadMetaData);
-
-			if (!setProtocol) {
+			if (GlobUtils.isExpansionUrl(url)) {
 				continue;
 			}
+			List<String> variants = getUrlVariants(url);
+			for (int variant = 0; variant < variants.size(); variant++) {
+				String key = variant == 0 ? url : url + VARIANT_SEPARATOR + variant;
+				DownloadMetadata downloadMetaData = new DownloadMetadata();
+				downloadMetaData.setDownloadUrl(variants.get(variant));
+				setDownloadOptionsToDownloadMetadata(DMCache.downloadUrlOptions.get(url), downloadMetaData);
+
+				boolean setProtocol = setProtocolToDownloadMetadata(url, downloadMetaData);
 
-			String directoryPath = getDirectoryPathForDownloadedFile(downloadMetaData.getProtocols());
-			if (null != directoryPath) {
-				String fileName = generateDownloadedFileName(directoryPath, downloadMetaData, fileNameSet);
-				fileNameSet.add(fileName);
-				urlToMetadataMapping.put(url, downloadMetaData);
+				if (!setProtocol) {
+					break;
+				}
+
+				String directoryPath = getDirectoryPathForDownloadedFile(downloadMetaData.getProtocols());
+				if (null != directoryPath) {
+					if (setRevalidationEntryToDownloadMetadata(directoryPath, downloadMetaData, fileNameSet)) {
+						urlToMetadataMapping.put(key, downloadMetaData);
+						continue;
+					}
+					String fileName = generateDownloadedFileName(directoryPath, downloadMetaData, fileNameSet);
+					fileNameSet.add(fileName);
+					urlToMetadataMapping.put(key, downloadMetaData);
+				}
 			}
 		}
 		return urlToMetadataMapping;
 	}
 
+	/**
+	 * @param url - Normalized URL in DMCache.downloadUrl.
+	 * @return url itself followed by other distinct URLs listed which normalize to it. First variant listed takes place of url, as url represents it.
+	 */
+	private List<String> getUrlVariants(String url) {
+		List<String> variants = new ArrayList<>(DMCache.getUrlVariants(url));
+		if (!variants.remove(url) && !variants.isEmpty()) {
+			variants.remove(0);
+		}
+		variants.add(0, url);
+		return variants;
+	}
+
+	/**
+	 * Creates Metadata of a file found while expanding a directory / glob URL. File is mirrored at its path relative to base directory of glob,
+	 * under download directory of protocol. Sub directories are created as needed, mirrored files replace older local copies irrespective of 'override.existing.file'.
+	 * 
+	 * Local copy is up to date, and file is not downloaded, if it has same size as remote file and was modified at or after modification time of remote file.
+	 * 
+	 * @param protocols - Protocol of file.
+	 * @param url - URL of remote file.
+	 * @param directoryPath - Download directory of protocol.
+	 * @param relativePath - Path of file relative to base directory of glob, eg. `2026-01/a.csv`.
+	 * @param entry - Listing entry of remote file, with size & modification time.
+	 * @return Metadata of file to be downloaded, null if local copy is up to date or file can not be placed under download directory.
+	 */
+	public DownloadMetadata createMirroredDownloadMetadata(Protocols protocols, String url, String directoryPath,
+			String relativePath, RemoteFileEntry entry) {
+		Path directory = Paths.get(directoryPath).toAbsolutePath().normalize();
+		Path file = directory.resolve(relativePath).normalize();
+		if (!file.startsWith(directory) || file.equals(directory)) {
+			logger.error("Ignoring " + url + " as it resolves outside of download directory " + directoryPath);
+			return null;
+		}
+		try {
+			if (Files.isRegularFile(file) && entry.getSize() >= 0 && Files.size(file) == entry.getSize()
+					&& entry.getLastModifiedMillis() >= 0
+					&& Files.getLastModifiedTime(file).toMillis() >= entry.getLastModifiedMillis()) {
+				logger.info("Skipping " + url + ", local copy " + file + " is up to date");
+				return null;
+			}
+			Files.createDirectories(file.getParent());
+		} catch (IOException e) {
+			logger.error("Ignoring " + url + " as local path " + file + " can not be created " + e.getMessage());
+			return null;
+		}
+		DownloadMetadata downloadMetaData = new DownloadMetadata(protocols, url, file.toString());
+		if (entry.getSize() >= 0) {
+			downloadMetaData.setProbeMetadata(new ProbeMetadata(entry.getSize(), false, null, null));
+		}
+		return downloadMetaData;
+	}
+
 	/**
 	 * This method generates Filename for file on local disk.
 	 * 
-	 * 1. Create Local File Name same as file to be Downloaded and validates if same name exists
+	 * 1. Create Local File Name same as file to be Downloaded (as per normalized URL) and validates if same name exists
 	 *  1.1. If 'override.existing.file' property is set to true, we persist the same name of file and previous data is lost.
 	 *  1.2  If 'override.existing.file' property is set to false, a new name is created. Eg. if 'download' file already existed with override.existing.file=false, new file would be saved as 'download(1)'. 
 	 * 
@@ -82,8 +160,8 @@ public class DownloadUtils {
 	 */
 	public String generateDownloadedFileName(String directoryPath, DownloadMetadata downloadMetaData,
 			Set<String> fileNameSet) {
-		String fileName = downloadMetaData.getDownloadUrl()
-				.substring(downloadMetaData.getDownloadUrl().lastIndexOf("/") + 1);
+		String downloadUrl = CommonUtils.normalizeUrl(downloadMetaData.getDownloadUrl());
+		String fileName = downloadUrl.substring(downloadUrl.lastIndexOf("/") + 1);
 
 		if(DMCache.overrideExisitngFile()) {
 			downloadMetaData.setFilePath(directoryPath + fileName);
@@ -108,6 +186,52 @@ public class DownloadUtils {
 		return newFileName;
 	}
 
+	/**
+	 * If URL was downloaded in an earlier run to same directory and that copy is still intact (same size), sets its filepath and validators to Download Metadata.
+	 * 
+	 * @param directoryPath - Path where downloaded file would be saved on local disk.
+	 * @param downloadMetaData - Metadata required for downloading file
+	 * @param fileNameSet - Set of unique filename contained in list provided with URLs to be downloaded.
+	 * @return Boolean true / false based on if earlier downloaded copy is reused.
+	 */
+	public boolean setRevalidationEntryToDownloadMetadata(String directoryPath, DownloadMetadata downloadMetaData,
+			Set<String> fileNameSet) {
+		RevalidationEntry entry = RevalidationIndex.get(downloadMetaData.getDownloadUrl());
+		if (entry == null) {
+			return false;
+		}
+		Path file = Paths.get(entry.getFilePath());
+		String fileName = file.getFileName().toString();
+		try {
+			if (!file.toAbsolutePath().getParent().equals(Paths.get(directoryPath).toAbsolutePath())
+					|| fileNameSet.contains(fileName) || !Files.isRegularFile(file)
+					|| (entry.getContentLength() >= 0 && Files.size(file) != entry.getContentLength())) {
+				return false;
+			}
+		} catch (IOException e) {
+			return false;
+		}
+		downloadMetaData.setFilePath(entry.getFilePath());
+		downloadMetaData.setRevalidationEntry(entry);
+		fileNameSet.add(fileName);
+		return true;
+	}
+
+	/**
+	 * This methods sets Priority, Job & Mirrors from options of URL to Download Metadata. Metadata keeps its defaults (NORMAL, DownloadMetadata.DEFAULT_JOB_ID, no mirrors) if URL has no options.
+	 * 
+	 * @param downloadOptions - Options specified after URL in download file, null if there are none.
+	 * @param downloadMetaData - metadata in which priority, job & mirrors would be updated.
+	 */
+	public void setDownloadOptionsToDownloadMetadata(DownloadOptions downloadOptions, DownloadMetadata downloadMetaData) {
+		if (downloadOptions == null) {
+			return;
+		}
+		downloadMetaData.setPriority(downloadOptions.getPriority());
+		downloadMetaData.setJobId(downloadOptions.getJobId());
+		downloadMetaData.setMirrorUrls(downloadOptions.getMirrorUrls());
+	}
+
 	/**
 	 * This methods sets Protocol from URL to Download Metadata.
 	 * 
@@ -0,0 +1,479 @@
+package com.kirtesh.downloadmanager.utils;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.apache.log4j.Logger;
+
+import com.kirtesh.downloadmanager.metadata.RemoteFileEntry;
+/**
+ *
+ * @author kirteshdudawat
+ *
+ *	Minimal FTP client (RFC 959, RFC 3659 SIZE / MDTM / REST / MLSD, RFC 2428 EPSV) used by FTPDownloader and FTPDirectoryLister, covering only what is needed to list and download files.
+ *
+ *	A connection is a logged in control connection in binary mode (TYPE I). Every retrieve opens a passive data connection (EPSV, falling back to PASV).
+ *	Data connection is always opened to address of control connection, address sent in PASV reply is ignored, so a misconfigured server behind NAT still works
+ *	and server can not redirect client to a third host.
+ *
+ *	Connection is not thread safe, it is leased to one download at a time by FTPConnectionPool.
+ *
+ */
+public class FTPConnection {
+
+	final static Logger logger = Logger.getLogger(FTPConnection.class);
+
+	public static final int DEFAULT_PORT = 21;
+
+	private static final String ANONYMOUS_USER = "anonymous";
+	private static final String ANONYMOUS_PASSWORD = "anonymous@";
+	private static final String CRLF = "\r\n";
+	private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+	private static final int REPLY_SERVICE_READY = 220;
+	private static final int REPLY_LOGGED_IN = 230;
+	private static final int REPLY_NEED_PASSWORD = 331;
+	private static final int REPLY_FILE_STATUS = 213;
+	private static final int REPLY_ENTERING_PASSIVE = 227;
+	private static final int REPLY_ENTERING_EXTENDED_PASSIVE = 229;
+	private static final int REPLY_PENDING_FURTHER_INFORMATION = 350;
+	private static final int REPLY_TRANSFER_COMPLETE = 226;
+
+	private final String host;
+	private final int port;
+	private final int connectTimeout;
+	private final int readTimeout;
+	private final Socket controlSocket;
+	private final BufferedReader reader;
+	private final OutputStream writer;
+
+	private boolean isExtendedPassiveSupported = true;
+	private boolean isUsable = true;
+	private int replyCode;
+	private String replyText;
+
+	/**
+	 * Connects control connection and reads greeting of server.
+	 *
+	 * @param host - FTP server.
+	 * @param port - Port of FTP server.
+	 * @param connectTimeout - Connect timeout of control and data connections in millis.
+	 * @param readTimeout - Maximum time a read on control or data connection may block in millis.
+	 * @throws IOException if server can not be connected or is not ready.
+	 */
+	public FTPConnection(String host, int port, int connectTimeout, int readTimeout) throws IOException {
+		this.host = host;
+		this.port = port;
+		this.connectTimeout = connectTimeout;
+		this.readTimeout = readTimeout;
+		this.controlSocket = new Socket();
+		try {
+			controlSocket.connect(new InetSocketAddress(host, port), connectTimeout);
+			controlSocket.setSoTimeout(readTimeout);
+			reader = new BufferedReader(new InputStreamReader(controlSocket.getInputStream(), StandardCharsets.UTF_8));
+			writer = controlSocket.getOutputStream();
+			expect(readReply(), REPLY_SERVICE_READY, "connect");
+		} catch (IOException e) {
+			controlSocket.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Logs in and switches to binary mode. Anonymous login is used if username is not specified.
+	 *
+	 * @param username - User of FTP server, null for anonymous.
+	 * @param password - Password of user.
+	 * @throws IOException if login is rejected.
+	 */
+	public void login(String username, String password) throws IOException {
+		if (username == null || username.isEmpty()) {
+			username = ANONYMOUS_USER;
+			password = ANONYMOUS_PASSWORD;
+		}
+		int reply = sendCommand("USER " + username);
+		if (reply == REPLY_NEED_PASSWORD) {
+			reply = sendCommand("PASS " + (password == null ? "" : password));
+		}
+		expect(reply, REPLY_LOGGED_IN, "login as " + username);
+		expect(sendCommand("TYPE I"), 200, "TYPE I");
+	}
+
+	/**
+	 * @param path - Path of remote file.
+	 * @return Size of file in bytes (SIZE), -1 if server does not support SIZE or file does not exist.
+	 * @throws IOException if control connection fails.
+	 */
+	public long size(String path) throws IOException {
+		if (sendCommand("SIZE " + path) != REPLY_FILE_STATUS) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(replyText.trim());
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * @param path - Path of remote file.
+	 * @return Modification time of file as YYYYMMDDHHMMSS (MDTM), null if server does not support MDTM.
+	 * @throws IOException if control connection fails.
+	 */
+	public String modificationTime(String path) throws IOException {
+		if (sendCommand("MDTM " + path) != REPLY_FILE_STATUS) {
+			return null;
+		}
+		return replyText.trim();
+	}
+
+	/**
+	 * @return true if server accepts REST, i.e. transfers can be started at an offset.
+	 * @throws IOException if control connection fails.
+	 */
+	public boolean isRestartSupported() throws IOException {
+		return sendCommand("REST 0") == REPLY_PENDING_FURTHER_INFORMATION;
+	}
+
+	/**
+	 * Opens passive data connection and starts transfer of file from offset. Returned stream must be closed before connection is used again,
+	 * closing it completes transfer on control connection. If stream is closed before end of file, transfer is aborted and connection is not reusable.
+	 *
+	 * @param path - Path of remote file.
+	 * @param offset - Offset of first byte to be transferred, REST is sent if greater than 0.
+	 * @return Stream of file data.
+	 * @throws IOException if server rejects passive mode, offset or file.
+	 */
+	public InputStream retrieve(String path, long offset) throws IOException {
+		Socket dataSocket = openDataConnection();
+		try {
+			if (offset > 0) {
+				expect(sendCommand("REST " + offset), REPLY_PENDING_FURTHER_INFORMATION, "REST " + offset);
+			}
+			int reply = sendCommand("RETR " + path);
+			if (reply != 125 && reply != 150) {
+				throw new IOException("FTP server " + host + " rejected RETR " + path + " : " + replyCode + " " + replyText);
+			}
+			return new DataInputStream(dataSocket);
+		} catch (IOException e) {
+			dataSocket.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Lists directory with MLSD (RFC 3659), which returns type, size and modification time of every entry in a machine readable format.
+	 * Entries for directory itself and its parent are skipped.
+	 *
+	 * @param path - Path of remote directory, empty for login directory.
+	 * @return Entries of directory.
+	 * @throws IOException if server does not support MLSD or rejects directory.
+	 */
+	public List<RemoteFileEntry> list(String path) throws IOException {
+		String command = path == null || path.isEmpty() ? "MLSD" : "MLSD " + path;
+		Socket dataSocket = openDataConnection();
+		List<String> lines = new ArrayList<>();
+		try {
+			int reply = sendCommand(command);
+			if (reply != 125 && reply != 150) {
+				throw new IOException("FTP server " + host + " rejected " + command + " : " + replyCode + " " + replyText);
+			}
+			try (InputStream inputStream = new DataInputStream(dataSocket);
+					BufferedReader listReader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = listReader.readLine()) != null) {
+					lines.add(line);
+				}
+			}
+		} finally {
+			dataSocket.close();
+		}
+		List<RemoteFileEntry> entries = new ArrayList<>(lines.size());
+		for (String line : lines) {
+			RemoteFileEntry entry = parseListEntry(line);
+			if (entry != null) {
+				entries.add(entry);
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * @return true if connection answers NOOP.
+	 */
+	public boolean noop() {
+		try {
+			return isUsable && sendCommand("NOOP") == 200;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @return false once a command or transfer has failed in a way that leaves control connection in unknown state.
+	 */
+	public boolean isUsable() {
+		return isUsable && !controlSocket.isClosed();
+	}
+
+	/**
+	 * Sends QUIT and closes control connection.
+	 */
+	public void close() {
+		try {
+			if (isUsable()) {
+				sendCommand("QUIT");
+			}
+		} catch (IOException e) {
+			logger.info("IOException occured while closing FTP connection to " + host + ".." + e.getMessage());
+		} finally {
+			try {
+				controlSocket.close();
+			} catch (IOException e) {
+				logger.info("IOException occured while closing FTP control socket to " + host + ".." + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Requests passive mode (EPSV, PASV if EPSV is not supported) and connects data connection to control connection's address.
+	 */
+	private Socket openDataConnection() throws IOException {
+		int dataPort = -1;
+		if (isExtendedPassiveSupported) {
+			if (sendCommand("EPSV") == REPLY_ENTERING_EXTENDED_PASSIVE) {
+				dataPort = parseExtendedPassivePort(replyText);
+			} else {
+				isExtendedPassiveSupported = false;
+			}
+		}
+		if (dataPort < 0) {
+			expect(sendCommand("PASV"), REPLY_ENTERING_PASSIVE, "PASV");
+			dataPort = parsePassivePort(replyText);
+		}
+		Socket dataSocket = new Socket();
+		try {
+			dataSocket.connect(new InetSocketAddress(controlSocket.getInetAddress(), dataPort), connectTimeout);
+			dataSocket.setSoTimeout(readTimeout);
+		} catch (IOException e) {
+			dataSocket.close();
+			throw e;
+		}
+		return dataSocket;
+	}
+
+	/**
+	 * @param reply - Text of 229 reply, eg. `Entering Extended Passive Mode (|||6446|)`.
+	 */
+	private int parseExtendedPassivePort(String reply) throws IOException {
+		int start = reply.indexOf('(');
+		int end = reply.indexOf(')', start + 1);
+		if (start < 0 || end <= start + 1) {
+			throw new IOException("Invalid EPSV reply from " + host + " : " + reply);
+		}
+		String delimiter = String.valueOf(reply.charAt(start + 1));
+		String[] fields = reply.substring(start + 1, end).split(Pattern.quote(delimiter));
+		try {
+			return Integer.parseInt(fields[fields.length - 1].trim());
+		} catch (NumberFormatException e) {
+			throw new IOException("Invalid EPSV reply from " + host + " : " + reply);
+		}
+	}
+
+	/**
+	 * @param reply - Text of 227 reply, eg. `Entering Passive Mode (192,168,1,2,19,137)`. Only port is used.
+	 */
+	private int parsePassivePort(String reply) throws IOException {
+		int start = reply.indexOf('(');
+		int end = reply.indexOf(')', start + 1);
+		String[] fields = start < 0 || end < 0 ? new String[0] : reply.substring(start + 1, end).split(",");
+		if (fields.length != 6) {
+			throw new IOException("Invalid PASV reply from " + host + " : " + reply);
+		}
+		try {
+			return Integer.parseInt(fields[4].trim()) * 256 + Integer.parseInt(fields[5].trim());
+		} catch (NumberFormatException e) {
+			throw new IOException("Invalid PASV reply from " + host + " : " + reply);
+		}
+	}
+
+	/**
+	 * @param line - Single MLSD line, eg. `type=file;size=1024;modify=20260101101010; data.csv`.
+	 * @return Entry of line, null for current / parent directory or a line which can not be parsed.
+	 */
+	private static RemoteFileEntry parseListEntry(String line) {
+		int separator = line.indexOf(' ');
+		if (separator < 0 || separator == line.length() - 1) {
+			return null;
+		}
+		RemoteFileEntry entry = new RemoteFileEntry();
+		entry.setName(line.substring(separator + 1));
+		String type = null;
+		for (String fact : line.substring(0, separator).split(";")) {
+			int equals = fact.indexOf('=');
+			if (equals < 0) {
+				continue;
+			}
+			String name = fact.substring(0, equals).toLowerCase();
+			String value = fact.substring(equals + 1);
+			try {
+				if ("type".equals(name)) {
+					type = value.toLowerCase();
+				} else if ("size".equals(name)) {
+					entry.setSize(Long.parseLong(value));
+				} else if ("modify".equals(name)) {
+					entry.setLastModifiedMillis(parseTime(value));
+				}
+			} catch (NumberFormatException | DateTimeParseException e) {
+				logger.debug("Ignoring fact " + fact + " of MLSD entry " + line);
+			}
+		}
+		if (type == null || "cdir".equals(type) || "pdir".equals(type)) {
+			return null;
+		}
+		entry.setDirectory("dir".equals(type));
+		return entry;
+	}
+
+	/**
+	 * @param time - Time as YYYYMMDDHHMMSS[.sss] in UTC, as sent by MDTM and MLSD.
+	 * @return Time in epoch millis.
+	 */
+	public static long parseTime(String time) {
+		int fraction = time.indexOf('.');
+		String seconds = fraction < 0 ? time : time.substring(0, fraction);
+		long millis = LocalDateTime.parse(seconds, TIME_FORMATTER).toInstant(ZoneOffset.UTC).toEpochMilli();
+		if (fraction > 0) {
+			String fractionDigits = (time.substring(fraction + 1) + "000").substring(0, 3);
+			millis += Integer.parseInt(fractionDigits);
+		}
+		return millis;
+	}
+
+	private int sendCommand(String command) throws IOException {
+		try {
+			writer.write((command + CRLF).getBytes(StandardCharsets.UTF_8));
+			writer.flush();
+			return readReply();
+		} catch (IOException e) {
+			isUsable = false;
+			throw e;
+		}
+	}
+
+	/**
+	 * Reads a single or multi line reply (`123-` ... `123 `).
+	 */
+	private int readReply() throws IOException {
+		String line = reader.readLine();
+		if (line == null || line.length() < 3) {
+			isUsable = false;
+			throw new IOException("FTP server " + host + ":" + port + " closed control connection");
+		}
+		String code = line.substring(0, 3);
+		StringBuilder text = new StringBuilder(line.length() > 4 ? line.substring(4) : "");
+		if (line.length() > 3 && line.charAt(3) == '-') {
+			while (true) {
+				line = reader.readLine();
+				if (line == null) {
+					isUsable = false;
+					throw new IOException("FTP server " + host + ":" + port + " closed control connection");
+				}
+				if (line.startsWith(code + " ")) {
+					break;
+				}
+				text.append('\n').append(line);
+			}
+		}
+		try {
+			replyCode = Integer.parseInt(code);
+		} catch (NumberFormatException e) {
+			isUsable = false;
+			throw new IOException("Invalid reply from FTP server " + host + " : " + line);
+		}
+		replyText = text.toString();
+		return replyCode;
+	}
+
+	private void expect(int reply, int expected, String command) throws IOException {
+		if (reply != expected) {
+			throw new IOException("FTP server " + host + " rejected " + command + " : " + replyCode + " " + replyText);
+		}
+	}
+
+	/**
+	 * Stream of passive data connection. Close reads completion reply of transfer from control connection.
+	 */
+	private class DataInputStream extends FilterInputStream {
+
+		private final Socket dataSocket;
+
+		private boolean isEndOfFile;
+
+		private boolean isClosed;
+
+		DataInputStream(Socket dataSocket) throws IOException {
+			super(dataSocket.getInputStream());
+			this.dataSocket = dataSocket;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int value = super.read();
+			isEndOfFile = value == -1;
+			return value;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			int bytesRead = super.read(buffer, offset, length);
+			isEndOfFile = bytesRead == -1;
+			return bytesRead;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (isClosed) {
+				return;
+			}
+			isClosed = true;
+			try {
+				if (!isEndOfFile) {
+					// Caller may stop exactly at end of file without reading end of stream.
+					isEndOfFile = super.read() == -1;
+				}
+			} catch (IOException e) {
+				isEndOfFile = false;
+			}
+			dataSocket.close();
+			if (!isEndOfFile) {
+				isUsable = false;
+				return;
+			}
+			try {
+				if (readReply() != REPLY_TRANSFER_COMPLETE) {
+					isUsable = false;
+					throw new IOException("FTP transfer from " + host + " failed : " + replyCode + " " + replyText);
+				}
+			} catch (IOException e) {
+				isUsable = false;
+				throw e;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,220 @@
+package com.kirtesh.downloadmanager.utils;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+import com.kirtesh.downloadmanager.enums.Protocols;
+/**
+ *
+ * @author kirteshdudawat
+ *
+ *	This class contains utility methods for directory and glob URLs of SFTP / FTP, eg. `sftp://host/data/**.csv` or `ftp://host/pub/`.
+ *
+ *	A URL is expanded if its path ends with `/` (complete directory tree is mirrored) or contains a glob. Supported glob syntax :
+ *	1. `*` : Any characters within a single path segment.
+ *	2. `**` : Any characters across path segments, a segment of only `**` matches zero or more directories.
+ *	3. `?` : A single character within a path segment.
+ *	4. `[abc]`, `[a-z]`, `[!abc]` : A single character of (or not of) given set.
+ *
+ *	Path before first segment containing a glob is base directory, listing starts there. Everything after it is matched against path of file relative to base directory.
+ *	Glob characters are not valid in a URI, hence URL is parsed by hand and not by java.net.URI.
+ *
+ */
+public class GlobUtils {
+
+	private static final String SCHEME_SEPARATOR = "://";
+	private static final String PATH_SEPARATOR = "/";
+	private static final String RECURSIVE_WILDCARD = "**";
+
+	/**
+	 * @param url - URL from download.url.filepath.
+	 * @return true if URL is of SFTP / FTP and its path ends with `/` or contains a glob.
+	 */
+	public static boolean isExpansionUrl(String url) {
+		int schemeEnd = url.indexOf(SCHEME_SEPARATOR);
+		if (schemeEnd < 0) {
+			return false;
+		}
+		String scheme = url.substring(0, schemeEnd).trim().toUpperCase();
+		if (!Protocols.SFTP.name().equals(scheme) && !Protocols.FTP.name().equals(scheme)) {
+			return false;
+		}
+		String path = getRawPath(url, schemeEnd);
+		return path.endsWith(PATH_SEPARATOR) || containsGlob(path);
+	}
+
+	/**
+	 * @param url - Directory or glob URL, see isExpansionUrl.
+	 * @return Parsed glob.
+	 * @throws IllegalArgumentException if URL is not a directory or glob URL.
+	 */
+	public static UrlGlob parse(String url) {
+		url = url.trim();
+		int schemeEnd = url.indexOf(SCHEME_SEPARATOR);
+		if (schemeEnd < 0 || !isExpansionUrl(url)) {
+			throw new IllegalArgumentException("Not a directory or glob URL : " + url);
+		}
+		String path = getRawPath(url, schemeEnd);
+		String prefix = url.substring(0, url.length() - path.length());
+		String[] segments = path.split(PATH_SEPARATOR, -1);
+		int firstGlob = 0;
+		while (firstGlob < segments.length && !containsGlob(segments[firstGlob])) {
+			firstGlob++;
+		}
+		if (firstGlob == segments.length) {
+			// Directory URL, mirror complete tree.
+			return new UrlGlob(prefix + path, new String[] { RECURSIVE_WILDCARD });
+		}
+		StringBuilder baseUrl = new StringBuilder(prefix);
+		for (int i = 0; i < firstGlob; i++) {
+			baseUrl.append(segments[i]).append(PATH_SEPARATOR);
+		}
+		String[] patternSegments = Arrays.copyOfRange(segments, firstGlob, segments.length);
+		if (patternSegments[patternSegments.length - 1].isEmpty()) {
+			// Glob of directories, mirror complete tree of every matching directory.
+			patternSegments[patternSegments.length - 1] = RECURSIVE_WILDCARD;
+		}
+		for (int i = 0; i < patternSegments.length; i++) {
+			patternSegments[i] = decode(patternSegments[i]);
+		}
+		return new UrlGlob(baseUrl.toString(), patternSegments);
+	}
+
+	/**
+	 * @param directoryUrl - URL of directory, ending with `/`.
+	 * @param name - Name of entry in directory.
+	 * @param directory - true if entry is a directory, URL then ends with `/`.
+	 * @return URL of entry, name is percent encoded.
+	 */
+	public static String resolve(String directoryUrl, String name, boolean directory) {
+		String encodedName;
+		try {
+			encodedName = new URI(null, null, PATH_SEPARATOR + name, null).getRawPath().substring(1);
+		} catch (URISyntaxException e) {
+			throw new IllegalArgumentException("Invalid file name " + name, e);
+		}
+		return directoryUrl + encodedName + (directory ? PATH_SEPARATOR : "");
+	}
+
+	private static String getRawPath(String url, int schemeEnd) {
+		int pathStart = url.indexOf(PATH_SEPARATOR, schemeEnd + SCHEME_SEPARATOR.length());
+		return pathStart < 0 ? "" : url.substring(pathStart);
+	}
+
+	private static boolean containsGlob(String path) {
+		return path.indexOf('*') >= 0 || path.indexOf('?') >= 0 || path.indexOf('[') >= 0;
+	}
+
+	private static String decode(String segment) {
+		try {
+			return URLDecoder.decode(segment.replace("+", "%2B"), StandardCharsets.UTF_8.name());
+		} catch (UnsupportedEncodingException | IllegalArgumentException e) {
+			return segment;
+		}
+	}
+
+	/**
+	 * @param segment - Glob of a single path segment, may contain `**`.
+	 * @return Regex equivalent of glob.
+	 */
+	private static String toRegex(String segment) {
+		StringBuilder regex = new StringBuilder();
+		for (int i = 0; i < segment.length(); i++) {
+			char c = segment.charAt(i);
+			if (c == '*') {
+				if (i + 1 < segment.length() && segment.charAt(i + 1) == '*') {
+					regex.append(".*");
+					i++;
+				} else {
+					regex.append("[^/]*");
+				}
+			} else if (c == '?') {
+				regex.append("[^/]");
+			} else if (c == '[' && segment.indexOf(']', i + 2) > 0) {
+				int end = segment.indexOf(']', i + 2);
+				String set = segment.substring(i + 1, end);
+				regex.append('[');
+				if (set.startsWith("!")) {
+					regex.append('^');
+					set = set.substring(1);
+				}
+				regex.append(set.replace("\\", "\\\\").replace("[", "\\[")).append(']');
+				i = end;
+			} else {
+				regex.append(Pattern.quote(String.valueOf(c)));
+			}
+		}
+		return regex.toString();
+	}
+
+	/**
+	 * Parsed directory / glob URL.
+	 */
+	public static class UrlGlob {
+
+		private final String baseUrl;
+
+		private final String[] patternSegments;
+
+		private final Pattern[] segmentPatterns;
+
+		private final Pattern pattern;
+
+		private UrlGlob(String baseUrl, String[] patternSegments) {
+			this.baseUrl = baseUrl;
+			this.patternSegments = patternSegments;
+			this.segmentPatterns = new Pattern[patternSegments.length];
+			StringBuilder regex = new StringBuilder();
+			for (int i = 0; i < patternSegments.length; i++) {
+				boolean isLast = i == patternSegments.length - 1;
+				segmentPatterns[i] = Pattern.compile(toRegex(patternSegments[i]));
+				if (RECURSIVE_WILDCARD.equals(patternSegments[i]) && !isLast) {
+					regex.append("(?:[^/]*/)*");
+				} else {
+					regex.append(toRegex(patternSegments[i])).append(isLast ? "" : PATH_SEPARATOR);
+				}
+			}
+			this.pattern = Pattern.compile(regex.toString());
+		}
+
+		/**
+		 * @return URL of directory where listing starts, ending with `/`.
+		 */
+		public String getBaseUrl() {
+			return baseUrl;
+		}
+
+		/**
+		 * @param relativePath - Path of file relative to base directory, eg. `2026-01/a.csv`.
+		 * @return true if file matches glob.
+		 */
+		public boolean matches(String relativePath) {
+			return pattern.matcher(relativePath).matches();
+		}
+
+		/**
+		 * Used to prune listing, directories which can not contain a matching file are not listed.
+		 *
+		 * @param relativePath - Path of directory relative to base directory, without trailing `/`.
+		 * @return true if a file below directory may match glob.
+		 */
+		public boolean canContain(String relativePath) {
+			String[] segments = relativePath.split(PATH_SEPARATOR);
+			for (int i = 0; i < segments.length; i++) {
+				if (i < patternSegments.length && patternSegments[i].contains(RECURSIVE_WILDCARD)) {
+					return true;
+				}
+				if (i >= patternSegments.length - 1 || !segmentPatterns[i].matcher(segments[i]).matches()) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+}
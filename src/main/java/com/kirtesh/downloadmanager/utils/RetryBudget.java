@@ -0,0 +1,79 @@
+package com.kirtesh.downloadmanager.utils;
+/**
+ * 
+ * @author kirteshdudawat
+ * 
+ * Global retry budget shared by all downloads, so a failing dependency can not turn most of capacity into retries.
+ * 
+ * Budget is a token bucket counted in retries. Every first attempt of a download adds `ratio` tokens and every retry takes one token. Bucket holds at most `burst` tokens
+ * and starts full, so a few failures are always retried, while a sustained failure is retried for only `ratio` of downloads. eg. with ratio 0.2 and burst 20,
+ * at most 20 + 0.2 x first attempts retries are made in total.
+ * 
+ * Budget with ratio less than or equal to 0 is disabled and allows every retry.
+ *
+ */
+public class RetryBudget {
+
+	private final double ratio;
+
+	private final double maxTokens;
+
+	private double tokens;
+
+	/**
+	 * @param ratio - Retries allowed per first attempt, value less than or equal to 0 disables budget.
+	 * @param burst - Retries allowed before ratio applies, value less than 1 is treated as 1.
+	 */
+	public RetryBudget(double ratio, int burst) {
+		this.ratio = ratio;
+		this.maxTokens = Math.max(1, burst);
+		this.tokens = maxTokens;
+	}
+
+	public boolean isEnabled() {
+		return ratio > 0;
+	}
+
+	/**
+	 * Records first attempt of a download, adding its share of retries to budget.
+	 */
+	public synchronized void onFirstAttempt() {
+		tokens = Math.min(maxTokens, tokens + ratio);
+	}
+
+	/**
+	 * Takes a retry from budget.
+	 * 
+	 * @return true if retry may be made, false if budget is exhausted.
+	 */
+	public synchronized boolean tryRetry() {
+		if (!isEnabled()) {
+			return true;
+		}
+		if (tokens < 1) {
+			return false;
+		}
+		tokens--;
+		return true;
+	}
+
+	/**
+	 * @return Retries currently left in budget.
+	 */
+	public synchronized double getTokens() {
+		return tokens;
+	}
+
+	/**
+	 * Thrown by an attempt which is a retry while budget is exhausted. It is not an IOException, so RetryExecutor aborts download instead of retrying it.
+	 */
+	public static class RetryBudgetExhaustedException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		public RetryBudgetExhaustedException(String message) {
+			super(message);
+		}
+	}
+
+}
@@ -0,0 +1,75 @@
+package com.kirtesh.downloadmanager.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.kirtesh.downloadmanager.metadata.ByteRange;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ *	This class contains utility methods for downloading single file in multiple byte range segments concurrently.
+ *
+ *	Segments are downloaded on a separate cached thread pool and not on Download Executor, as a download thread waits on its segments. Sharing same pool could result in deadlock once all threads are waiting on segments.
+ *	Threads are daemon threads, hence would never stop JVM from exiting. With download.execution.mode VIRTUAL, every segment runs on its own virtual thread instead.
+ *
+ */
+public class SegmentUtils {
+
+	private static final AtomicInteger threadCount = new AtomicInteger();
+
+	private static final ExecutorService segmentExecutorService = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "segment-downloader-" + threadCount.incrementAndGet());
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * @return Executor on which segments of a file are downloaded.
+	 */
+	public static ExecutorService getSegmentExecutorService() {
+		if (VirtualThreadUtils.isEnabled()) {
+			return VirtualThreadUtils.getVirtualThreadExecutor();
+		}
+		return segmentExecutorService;
+	}
+
+	/**
+	 * Calculates number of segments in which a file should be downloaded. No segment would be smaller than minSegmentSize.
+	 * 
+	 * @param contentLength - Total size of file in bytes, value less than 1 means size is unknown.
+	 * @param maxSegments - Maximum allowed segments for file.
+	 * @param minSegmentSize - Minimum size of a segment in bytes.
+	 * @return Number of segments, 1 means file should be downloaded as a single stream.
+	 */
+	public static int getSegmentCount(long contentLength, int maxSegments, int minSegmentSize) {
+		if (contentLength <= 0 || maxSegments <= 1) {
+			return 1;
+		}
+		long segments = contentLength / Math.max(minSegmentSize, 1);
+		return (int) Math.max(1, Math.min(maxSegments, segments));
+	}
+
+	/**
+	 * Splits a file of contentLength bytes into segmentCount contiguous ranges of (almost) equal size. Last range takes the remainder.
+	 * 
+	 * @param contentLength - Total size of file in bytes.
+	 * @param segmentCount - Number of ranges to be created.
+	 * @return List of ranges covering complete file.
+	 */
+	public static List<ByteRange> split(long contentLength, int segmentCount) {
+		List<ByteRange> ranges = new ArrayList<>(segmentCount);
+		long segmentSize = contentLength / segmentCount;
+		long start = 0;
+		for (int i = 0; i < segmentCount; i++) {
+			long end = (i == segmentCount - 1) ? contentLength - 1 : start + segmentSize - 1;
+			ranges.add(new ByteRange(start, end));
+			start = end + 1;
+		}
+		return ranges;
+	}
+
+}
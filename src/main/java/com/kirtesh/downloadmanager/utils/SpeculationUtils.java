@@ -0,0 +1,167 @@
+package com.kirtesh.downloadmanager.utils;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+import org.apache.log4j.Logger;
+
+import com.kirtesh.downloadmanager.cache.TransferMonitor;
+import com.kirtesh.downloadmanager.cache.TransferMonitor.Transfer;
+/**
+ *
+ * @author kirteshdudawat
+ *
+ *	This class contains utility methods for speculative re-issue of straggling transfers.
+ *
+ *	Primary attempt of a transfer runs on calling thread. If TransferMonitor marks it as straggler, a speculative attempt is started on SegmentUtils executor
+ *	and both attempts race. Whichever finishes first is kept, other one is cancelled (TransferMonitor.Transfer.cancel) and stops at its next read.
+ *	Calling thread returns only after both attempts have stopped, so a cancelled attempt never writes after its caller has moved on.
+ *
+ */
+public class SpeculationUtils {
+
+	final static Logger logger = Logger.getLogger(SpeculationUtils.class);
+
+	/**
+	 * A single attempt of a transfer. Every stream read by attempt must be wrapped with transfer.track(inputStream), so it is measured and can be cancelled.
+	 */
+	@FunctionalInterface
+	public interface Attempt {
+
+		void run(Transfer transfer) throws IOException;
+	}
+
+	/**
+	 * Runs primary attempt, racing it with speculative attempt if it becomes a straggler.
+	 *
+	 * @param downloadUrl - URL of file being transferred.
+	 * @param primary - Attempt run on calling thread.
+	 * @param speculative - Creates speculative attempt when primary becomes a straggler, may return null if there is nothing left to take over.
+	 * @return true if speculative attempt finished first, caller then uses its result. false if primary attempt finished first.
+	 * @throws IOException of primary attempt, if both attempts failed.
+	 */
+	public static boolean race(String downloadUrl, Attempt primary, Supplier<Attempt> speculative) throws IOException {
+		Race race = new Race(downloadUrl, speculative);
+		IOException primaryException = null;
+		try (Transfer transfer = TransferMonitor.start(downloadUrl, race::speculate)) {
+			race.primaryTransfer = transfer;
+			primary.run(transfer);
+		} catch (IOException e) {
+			primaryException = e;
+		}
+		CompletableFuture<Void> speculativeResult = race.finishPrimary(primaryException == null);
+		if (speculativeResult == null) {
+			if (primaryException != null) {
+				throw primaryException;
+			}
+			return false;
+		}
+		try {
+			speculativeResult.get();
+		} catch (InterruptedException e) {
+			race.speculativeTransfer.cancel();
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for speculative attempt of " + downloadUrl, e);
+		} catch (ExecutionException e) {
+			if (primaryException != null && !race.isSpeculativeWon()) {
+				primaryException.addSuppressed(e.getCause());
+			}
+		}
+		if (race.isSpeculativeWon()) {
+			logger.info("Speculative attempt of " + downloadUrl + " finished before straggling attempt, straggler cancelled");
+			return true;
+		}
+		if (primaryException != null) {
+			throw primaryException;
+		}
+		return false;
+	}
+
+	/**
+	 * State of a single race, guarded by its own monitor.
+	 */
+	private static class Race {
+
+		private final String downloadUrl;
+
+		private final Supplier<Attempt> speculative;
+
+		private volatile Transfer primaryTransfer;
+
+		private Transfer speculativeTransfer;
+
+		private CompletableFuture<Void> speculativeResult;
+
+		private boolean primaryFinished;
+
+		private boolean primaryWon;
+
+		private boolean speculativeWon;
+
+		private Race(String downloadUrl, Supplier<Attempt> speculative) {
+			this.downloadUrl = downloadUrl;
+			this.speculative = speculative;
+		}
+
+		/**
+		 * Starts speculative attempt, run by TransferMonitor when primary attempt becomes a straggler.
+		 */
+		private synchronized void speculate() {
+			if (primaryFinished || speculativeResult != null) {
+				return;
+			}
+			Attempt attempt = speculative.get();
+			if (attempt == null) {
+				return;
+			}
+			logger.info("Starting speculative attempt of straggling transfer of " + downloadUrl);
+			Transfer transfer = TransferMonitor.start(downloadUrl, null);
+			speculativeTransfer = transfer;
+			speculativeResult = new CompletableFuture<>();
+			CompletableFuture<Void> result = speculativeResult;
+			SegmentUtils.getSegmentExecutorService().execute(() -> {
+				try (Transfer speculativeTransfer = transfer) {
+					attempt.run(speculativeTransfer);
+					finishSpeculative();
+					result.complete(null);
+				} catch (Throwable e) {
+					if (!transfer.isCancelled()) {
+						logger.info("Speculative attempt of " + downloadUrl + " failed.." + e.getMessage());
+					}
+					result.completeExceptionally(e);
+				}
+			});
+		}
+
+		private synchronized void finishSpeculative() {
+			if (!primaryWon) {
+				speculativeWon = true;
+				if (primaryTransfer != null) {
+					primaryTransfer.cancel();
+				}
+			}
+		}
+
+		/**
+		 * @param success - true if primary attempt completed.
+		 * @return Result of speculative attempt, null if none was started.
+		 */
+		private synchronized CompletableFuture<Void> finishPrimary(boolean success) {
+			primaryFinished = true;
+			if (success && !speculativeWon) {
+				primaryWon = true;
+				if (speculativeTransfer != null) {
+					speculativeTransfer.cancel();
+				}
+			}
+			return speculativeResult;
+		}
+
+		private synchronized boolean isSpeculativeWon() {
+			return speculativeWon;
+		}
+	}
+
+}
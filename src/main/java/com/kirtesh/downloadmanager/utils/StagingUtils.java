@@ -0,0 +1,480 @@
+package com.kirtesh.downloadmanager.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+
+import org.apache.log4j.Logger;
+
+import com.kirtesh.downloadmanager.cache.BandwidthThrottle;
+import com.kirtesh.downloadmanager.cache.DMCache;
+import com.kirtesh.downloadmanager.cache.DiskSpaceAdmission.Reservation;
+import com.kirtesh.downloadmanager.enums.FsyncPolicy;
+import com.kirtesh.downloadmanager.enums.PreallocationMode;
+import com.kirtesh.downloadmanager.metadata.ByteRange;
+import com.kirtesh.downloadmanager.metadata.DownloadJournal;
+import com.kirtesh.downloadmanager.metadata.ProbeMetadata;
+import com.kirtesh.downloadmanager.service.TransferEngine;
+/**
+ *
+ * @author kirteshdudawat
+ *
+ *	This class contains utility methods for staging partially downloaded files.
+ *
+ *	A file being downloaded to 'location' is never written at 'location' directly. Data is written to {staging.directory.name}/{file name}.part in same directory,
+ *	along with a small journal {file name}.part.journal containing byte ranges still to be downloaded and validators (ETag / Last-Modified) of remote file.
+ *	Only when all ranges are downloaded and size is verified, .part file is promoted to 'location'. Hence, no partial file is ever visible in download directory.
+ *
+ *	Journal is written only after data is synced to disk (fsync.policy CHECKPOINT), so after a crash, journal never claims bytes which are not on disk.
+ *	.part file is published with ATOMIC_MOVE within same filesystem, so a consumer watching download directory (eg. WatchService / inotify) sees
+ *	complete file appear in a single rename event and never a half written file, without any extra copy.
+ *
+ */
+public class StagingUtils {
+
+	final static Logger logger = Logger.getLogger(StagingUtils.class);
+
+	private static final String DEFAULT_STAGING_DIRECTORY_NAME = ".staging";
+	private static final int DEFAULT_CHECKPOINT_BYTES = 8 * 1024 * 1024;
+	private static final String PART_EXTENSION = ".part";
+	private static final String JOURNAL_EXTENSION = ".journal";
+	private static final String SPECULATIVE_EXTENSION = ".speculative";
+	private static final String TEMP_EXTENSION = ".tmp";
+	private static final String RANGE_SEPARATOR = ",";
+	private static final int PREALLOCATION_BLOCK_SIZE = 4096;
+
+	private static final String DOWNLOAD_URL = "download.url";
+	private static final String CONTENT_LENGTH = "content.length";
+	private static final String ETAG = "etag";
+	private static final String LAST_MODIFIED = "last.modified";
+	private static final String REMAINING_RANGES = "remaining.ranges";
+
+	/**
+	 * @param location - Final path of file on local disk.
+	 * @return Staging directory for file i.e. {parent directory of location}/{staging.directory.name}
+	 */
+	public static Path getStagingDirectory(String location) {
+		String stagingDirectoryName = DMCache.getStagingDirectoryName();
+		if (CommonUtils.isStringNullOrEmpty(stagingDirectoryName)) {
+			stagingDirectoryName = DEFAULT_STAGING_DIRECTORY_NAME;
+		}
+		Path parent = Paths.get(location).toAbsolutePath().getParent();
+		return parent.resolve(stagingDirectoryName);
+	}
+
+	/**
+	 * @param location - Final path of file on local disk.
+	 * @return Path of .part file where data is written while download is in progress.
+	 */
+	public static Path getPartFile(String location) {
+		return getStagingDirectory(location).resolve(Paths.get(location).getFileName() + PART_EXTENSION);
+	}
+
+	/**
+	 * @param location - Final path of file on local disk.
+	 * @return Path of .part.speculative file where a speculative second stream of file is written, while first stream is straggling.
+	 */
+	public static Path getSpeculativeFile(String location) {
+		return getStagingDirectory(location).resolve(Paths.get(location).getFileName() + PART_EXTENSION + SPECULATIVE_EXTENSION);
+	}
+
+	/**
+	 * @param location - Final path of file on local disk.
+	 * @return Path of journal of .part file.
+	 */
+	public static Path getJournalFile(String location) {
+		return getStagingDirectory(location).resolve(Paths.get(location).getFileName() + PART_EXTENSION + JOURNAL_EXTENSION);
+	}
+
+	/**
+	 * @return Bytes after which data and journal of partial download are synced to disk.
+	 */
+	public static int getCheckpointBytes() {
+		int checkpointBytes = DMCache.getResumeCheckpointBytes();
+		return checkpointBytes > 0 ? checkpointBytes : DEFAULT_CHECKPOINT_BYTES;
+	}
+
+	/**
+	 * Creates staging directory for file if it does not exist.
+	 *
+	 * @param location - Final path of file on local disk.
+	 * @throws IOException
+	 */
+	public static void createStagingDirectory(String location) throws IOException {
+		Files.createDirectories(getStagingDirectory(location));
+	}
+
+	/**
+	 * Loads journal of partially downloaded file. Journal is returned only if it can be resumed, i.e. it belongs to same URL,
+	 * remote file still has same size and validators as well as .part file is present with expected size. Otherwise staged data is discarded.
+	 *
+	 * @param location - Final path of file on local disk.
+	 * @param downloadUrl - URL of file which needs to be downloaded.
+	 * @param probeMetadata - Current metadata of remote file.
+	 * @return Resumable journal or null if download needs to start from byte 0.
+	 */
+	public static DownloadJournal loadJournal(String location, String downloadUrl, ProbeMetadata probeMetadata) {
+		Path journalFile = getJournalFile(location);
+		Path partFile = getPartFile(location);
+		if (!Files.exists(journalFile)) {
+			return null;
+		}
+		try (InputStream inputStream = Files.newInputStream(journalFile)) {
+			Properties properties = new Properties();
+			properties.load(inputStream);
+			DownloadJournal journal = new DownloadJournal();
+			journal.setDownloadUrl(properties.getProperty(DOWNLOAD_URL));
+			journal.setContentLength(Long.parseLong(properties.getProperty(CONTENT_LENGTH)));
+			journal.setEtag(properties.getProperty(ETAG));
+			journal.setLastModified(properties.getProperty(LAST_MODIFIED));
+			journal.setRemainingRanges(parseRanges(properties.getProperty(REMAINING_RANGES)));
+
+			if (isResumable(journal, downloadUrl, probeMetadata) && Files.exists(partFile)
+					&& Files.size(partFile) == journal.getContentLength()) {
+				logger.info("Resuming download of " + downloadUrl + " from journal " + journal);
+				return journal;
+			}
+		} catch (IOException | RuntimeException e) {
+			logger.info("Ignoring unreadable journal " + journalFile + ".." + e.getMessage());
+		}
+		discard(location);
+		return null;
+	}
+
+	/**
+	 * Creates new journal for file and preallocates .part file to size of remote file. Any earlier staged data is overwritten.
+	 * .part file is extended to size of remote file even with preallocation.mode NONE, as ranges are written at their own offsets and resume requires .part file of full size.
+	 *
+	 * @param location - Final path of file on local disk.
+	 * @param downloadUrl - URL of file which needs to be downloaded.
+	 * @param probeMetadata - Current metadata of remote file. Content length must be known.
+	 * @param ranges - Byte ranges in which file would be downloaded.
+	 * @return Newly persisted journal.
+	 * @throws IOException
+	 */
+	public static DownloadJournal createJournal(String location, String downloadUrl, ProbeMetadata probeMetadata,
+			List<ByteRange> ranges) throws IOException {
+		createStagingDirectory(location);
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(getPartFile(location).toFile(), "rw")) {
+			preallocate(randomAccessFile, probeMetadata.getContentLength());
+			if (randomAccessFile.length() != probeMetadata.getContentLength()) {
+				randomAccessFile.setLength(probeMetadata.getContentLength());
+			}
+		}
+		DownloadJournal journal = new DownloadJournal(downloadUrl, probeMetadata, ranges);
+		storeJournal(location, journal);
+		return journal;
+	}
+
+	/**
+	 * Records that range has been written till (excluding) position. Data of .part file is synced to disk before journal is persisted.
+	 * Completed ranges are removed from journal and disk space reservation of journal, if any, is shrunk to bytes still to be written.
+	 *
+	 * @param location - Final path of file on local disk.
+	 * @param journal - Journal of file.
+	 * @param fileChannel - Channel of .part file.
+	 * @param range - Range which has been written.
+	 * @param position - Offset of next byte to be written in range.
+	 * @throws IOException
+	 */
+	public static void checkpoint(String location, DownloadJournal journal, FileChannel fileChannel, ByteRange range,
+			long position) throws IOException {
+		journal.getLock().lock();
+		try {
+			if (getFsyncPolicy() == FsyncPolicy.CHECKPOINT) {
+				fileChannel.force(false);
+			}
+			range.setStart(position);
+			Iterator<ByteRange> iterator = journal.getRemainingRanges().iterator();
+			while (iterator.hasNext()) {
+				if (iterator.next().getLength() <= 0) {
+					iterator.remove();
+				}
+			}
+			storeJournal(location, journal);
+			shrinkReservation(journal);
+		} finally {
+			journal.getLock().unlock();
+		}
+	}
+
+	/**
+	 * Attaches disk space reservation of download to journal, so it shrinks as ranges are checkpointed. Reservation is shrunk right away to bytes
+	 * not yet allocated in .part file, i.e. nothing if .part file is fully preallocated.
+	 *
+	 * @param journal - Journal of file.
+	 * @param reservation - Reservation made for download (DiskSpaceAdmission.reserve).
+	 */
+	public static void setReservation(DownloadJournal journal, Reservation reservation) {
+		journal.getLock().lock();
+		try {
+			journal.setReservation(reservation);
+			shrinkReservation(journal);
+		} finally {
+			journal.getLock().unlock();
+		}
+	}
+
+	/**
+	 * Shrinks reservation of journal to bytes not yet allocated in .part file. Blocks preallocated by preallocation.mode FULL and bytes written are already counted as used by FileStore.
+	 */
+	private static void shrinkReservation(DownloadJournal journal) {
+		Reservation reservation = journal.getReservation();
+		if (reservation == null) {
+			return;
+		}
+		if (PreallocationMode.fromProperty(DMCache.getPreallocationMode()) == PreallocationMode.FULL) {
+			reservation.shrink(0);
+		} else {
+			reservation.shrink(journal.getContentLength() - journal.getBytesWritten());
+		}
+	}
+
+	/**
+	 * Writes stream into range of .part file at its own position using transferEngine. Stream is transferred in chunks of checkpoint bytes, 
+	 * progress is checkpointed to journal after every chunk as well as when stream stops. Reads are limited by BandwidthThrottle and digested by journal's StreamingDigest, if any.
+	 *
+	 * Note: If transfer fails in between a chunk, only bytes upto last completed chunk are recorded in journal.
+	 *
+	 * @param location - Final path of file on local disk.
+	 * @param journal - Journal of file.
+	 * @param fileChannel - Channel of .part file, can be shared by multiple ranges.
+	 * @param range - Range which is to be written, stream is expected to start at range start.
+	 * @param inputStream - Stream of remote data.
+	 * @param transferEngine - Engine used to copy stream into file.
+	 * @param bufferSize - Max buffer available for downloading.
+	 * @throws IOException if stream fails or ends before complete range is read.
+	 */
+	public static void writeRange(String location, DownloadJournal journal, FileChannel fileChannel, ByteRange range,
+			InputStream inputStream, TransferEngine transferEngine, int bufferSize) throws IOException {
+		int checkpointBytes = getCheckpointBytes();
+		inputStream = BandwidthThrottle.throttle(inputStream, journal.getDownloadUrl());
+		if (journal.getStreamingDigest() != null) {
+			inputStream = journal.getStreamingDigest().wrap(inputStream, range.getStart());
+		}
+		long end = range.getEnd();
+		long position = range.getStart();
+		try {
+			while (position <= end) {
+				long requested = Math.min(checkpointBytes, end - position + 1);
+				long transferred = transferEngine.transfer(inputStream, fileChannel, position, requested, bufferSize);
+				position += transferred;
+				if (transferred < requested) {
+					break;
+				}
+				if (position <= end) {
+					checkpoint(location, journal, fileChannel, range, position);
+				}
+			}
+		} finally {
+			try {
+				checkpoint(location, journal, fileChannel, range, position);
+			} catch (IOException e) {
+				logger.info("IOException occured while checkpointing journal of " + location + ".." + e.getMessage());
+			}
+		}
+		if (position != end + 1) {
+			throw new IOException("Range " + range + " of " + journal.getDownloadUrl() + " ended at " + position);
+		}
+	}
+
+	/**
+	 * Verifies that .part file is completely downloaded & publishes it at final location. Journal is deleted afterwards.
+	 * 
+	 * Unless fsync.policy is NONE, .part file is synced before it is moved and download directory is synced after it, so published file survives power loss.
+	 * Move is atomic, an existing file at location is replaced in a single step. If filesystem does not support atomic move, a plain move is done.
+	 *
+	 * @param location - Final path of file on local disk.
+	 * @param expectedLength - Expected size of file, value less than 0 skips size verification.
+	 * @throws IOException if file is incomplete or move fails.
+	 */
+	public static void promote(String location, long expectedLength) throws IOException {
+		promote(location, expectedLength, Paths.get(location));
+	}
+
+	/**
+	 * Same as promote(location, expectedLength), but .part file is published at target instead of location. Used by ContentStoreUtils to move file into content store.
+	 *
+	 * @param location - Final path of file on local disk.
+	 * @param expectedLength - Expected size of file, value less than 0 skips size verification.
+	 * @param target - Path where .part file is moved.
+	 * @throws IOException if file is incomplete or move fails.
+	 */
+	public static void promote(String location, long expectedLength, Path target) throws IOException {
+		Path partFile = getPartFile(location);
+		long actualLength = Files.size(partFile);
+		if (expectedLength >= 0 && actualLength != expectedLength) {
+			throw new IOException("Staged file " + partFile + " has " + actualLength + " bytes, expected " + expectedLength);
+		}
+		FsyncPolicy fsyncPolicy = getFsyncPolicy();
+		if (fsyncPolicy != FsyncPolicy.NONE) {
+			try (FileChannel fileChannel = FileChannel.open(partFile, StandardOpenOption.WRITE)) {
+				fileChannel.force(true);
+			}
+		}
+		publish(partFile, target);
+		Files.deleteIfExists(getJournalFile(location));
+	}
+
+	/**
+	 * Moves source to target atomically, replacing an existing file at target. If filesystem does not support atomic move, a plain move is done.
+	 * Unless fsync.policy is NONE, directory of target is synced afterwards.
+	 *
+	 * @param source - File to be published, must be on same filesystem as target for move to be atomic.
+	 * @param target - Final path of file.
+	 * @throws IOException if move fails.
+	 */
+	public static void publish(Path source, Path target) throws IOException {
+		try {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			logger.info("Atomic move not supported for " + target + ", moving non atomically.." + e.getMessage());
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+		if (getFsyncPolicy() != FsyncPolicy.NONE) {
+			syncDirectory(target.toAbsolutePath().getParent());
+		}
+	}
+
+	/**
+	 * Preallocates file to length as per preallocation.mode (see PreallocationMode). Data already in file is kept.
+	 *
+	 * @param randomAccessFile - File to be preallocated.
+	 * @param length - Final size of file, value less than 0 (unknown size) does nothing.
+	 * @throws IOException if file could not be extended, eg. disk is full.
+	 */
+	public static void preallocate(RandomAccessFile randomAccessFile, long length) throws IOException {
+		PreallocationMode preallocationMode = PreallocationMode.fromProperty(DMCache.getPreallocationMode());
+		if (length < 0 || preallocationMode == PreallocationMode.NONE) {
+			return;
+		}
+		long currentLength = randomAccessFile.length();
+		randomAccessFile.setLength(length);
+		if (preallocationMode == PreallocationMode.FULL && length > currentLength) {
+			FileChannel fileChannel = randomAccessFile.getChannel();
+			ByteBuffer zero = ByteBuffer.allocate(1);
+			for (long position = currentLength + PREALLOCATION_BLOCK_SIZE - 1; position < length; position += PREALLOCATION_BLOCK_SIZE) {
+				zero.clear();
+				fileChannel.write(zero, position);
+			}
+			zero.clear();
+			fileChannel.write(zero, length - 1);
+		}
+	}
+
+	/**
+	 * Syncs directory entry, so a rename into it is durable. Not all platforms allow opening a directory, failure is only logged.
+	 *
+	 * @param directory - Directory to be synced.
+	 */
+	private static void syncDirectory(Path directory) {
+		try (FileChannel fileChannel = FileChannel.open(directory, StandardOpenOption.READ)) {
+			fileChannel.force(true);
+		} catch (IOException e) {
+			logger.debug("Unable to sync directory " + directory + ".." + e.getMessage());
+		}
+	}
+
+	/**
+	 * @return FsyncPolicy as per property fsync.policy, CHECKPOINT if not specified.
+	 */
+	public static FsyncPolicy getFsyncPolicy() {
+		return FsyncPolicy.fromProperty(DMCache.getFsyncPolicy());
+	}
+
+	/**
+	 * Deletes .part file and its journal.
+	 *
+	 * @param location - Final path of file on local disk.
+	 */
+	public static void discard(String location) {
+		try {
+			Files.deleteIfExists(getJournalFile(location));
+			Files.deleteIfExists(getPartFile(location));
+		} catch (IOException e) {
+			logger.info("IOException occured while discarding staged file of " + location + ".." + e.getMessage());
+		}
+	}
+
+	/**
+	 * Checks if journal can be used for continuing download of remote file.
+	 *
+	 * @param journal - Persisted journal.
+	 * @param downloadUrl - URL of file which needs to be downloaded.
+	 * @param probeMetadata - Current metadata of remote file.
+	 * @return true if journal belongs to same URL and remote file has not changed since journal was created.
+	 */
+	private static boolean isResumable(DownloadJournal journal, String downloadUrl, ProbeMetadata probeMetadata) {
+		return probeMetadata.isResumable()
+				&& downloadUrl.equals(journal.getDownloadUrl())
+				&& probeMetadata.getContentLength() == journal.getContentLength()
+				&& Objects.equals(probeMetadata.getEtag(), journal.getEtag())
+				&& Objects.equals(probeMetadata.getLastModified(), journal.getLastModified());
+	}
+
+	/**
+	 * Persists journal atomically, by writing a temporary file and moving it over existing journal.
+	 *
+	 * @param location - Final path of file on local disk.
+	 * @param journal - Journal to be persisted.
+	 * @throws IOException
+	 */
+	private static void storeJournal(String location, DownloadJournal journal) throws IOException {
+		Properties properties = new Properties();
+		properties.setProperty(DOWNLOAD_URL, journal.getDownloadUrl());
+		properties.setProperty(CONTENT_LENGTH, String.valueOf(journal.getContentLength()));
+		if (journal.getEtag() != null) {
+			properties.setProperty(ETAG, journal.getEtag());
+		}
+		if (journal.getLastModified() != null) {
+			properties.setProperty(LAST_MODIFIED, journal.getLastModified());
+		}
+		StringBuilder ranges = new StringBuilder();
+		for (ByteRange range : journal.getRemainingRanges()) {
+			if (ranges.length() > 0) {
+				ranges.append(RANGE_SEPARATOR);
+			}
+			ranges.append(range);
+		}
+		properties.setProperty(REMAINING_RANGES, ranges.toString());
+
+		Path journalFile = getJournalFile(location);
+		Path tempFile = journalFile.resolveSibling(journalFile.getFileName() + TEMP_EXTENSION);
+		try (OutputStream outputStream = Files.newOutputStream(tempFile)) {
+			properties.store(outputStream, null);
+		}
+		Files.move(tempFile, journalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Parses ranges persisted in journal in format start-end,start-end
+	 *
+	 * @param value - Persisted ranges.
+	 * @return List of ranges.
+	 */
+	private static List<ByteRange> parseRanges(String value) {
+		List<ByteRange> ranges = new ArrayList<>();
+		if (!CommonUtils.isStringNullOrEmpty(value)) {
+			for (String range : value.split(RANGE_SEPARATOR)) {
+				String[] bounds = range.trim().split("-");
+				ranges.add(new ByteRange(Long.parseLong(bounds[0]), Long.parseLong(bounds[1])));
+			}
+		}
+		return ranges;
+	}
+
+}
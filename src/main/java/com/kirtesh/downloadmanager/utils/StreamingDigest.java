@@ -0,0 +1,182 @@
+package com.kirtesh.downloadmanager.utils;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
+
+import com.kirtesh.downloadmanager.enums.DigestAlgorithm;
+/**
+ * 
+ * @author kirteshdudawat
+ * 
+ * Digest of a file computed inline, while downloaded bytes are already in memory, instead of reading file back from disk after download.
+ * 
+ * Digest can only be updated in file order. Every stream of a download is wrapped with its offset in file (wrap), and bytes are digested
+ * only if they continue exactly where digest stopped. A file downloaded as single stream is therefore digested completely inline. For segmented or
+ * resumed downloads, bytes arriving out of order are skipped and finish() reads back only the part of file after in order prefix.
+ *
+ */
+public class StreamingDigest {
+
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final DigestAlgorithm algorithm;
+
+	private final MessageDigest messageDigest;
+
+	private final Checksum checksum;
+
+	private volatile long position;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	public StreamingDigest(DigestAlgorithm algorithm) {
+		this.algorithm = algorithm;
+		if (algorithm == DigestAlgorithm.CRC32C) {
+			this.checksum = new CRC32C();
+			this.messageDigest = null;
+		} else {
+			this.checksum = null;
+			try {
+				this.messageDigest = MessageDigest.getInstance(algorithm.getDigestAlgorithm());
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException("Digest algorithm not available " + algorithm, e);
+			}
+		}
+	}
+
+	public DigestAlgorithm getAlgorithm() {
+		return algorithm;
+	}
+
+	/**
+	 * @return Number of bytes from start of file digested so far.
+	 */
+	public long getPosition() {
+		return position;
+	}
+
+	/**
+	 * Wraps stream, so bytes read from it are digested if they are next in file order.
+	 * 
+	 * @param inputStream - Stream of remote data.
+	 * @param offset - Offset in file of first byte of stream.
+	 * @return Digesting stream.
+	 */
+	public InputStream wrap(InputStream inputStream, long offset) {
+		return new DigestingInputStream(inputStream, offset);
+	}
+
+	/**
+	 * Digests bytes at offset of file, ignored if offset is not where digest stopped. Out of order segments return without taking lock.
+	 */
+	public void update(long offset, byte[] bytes, int off, int len) {
+		if (offset != position || len <= 0) {
+			return;
+		}
+		lock.lock();
+		try {
+			if (offset != position) {
+				return;
+			}
+			if (checksum != null) {
+				checksum.update(bytes, off, len);
+			} else {
+				messageDigest.update(bytes, off, len);
+			}
+			position += len;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Completes digest by reading back file from where inline digest stopped.
+	 * 
+	 * @param file - Completely downloaded file.
+	 * @return Digest in lower case hex.
+	 * @throws IOException
+	 */
+	public String finish(Path file) throws IOException {
+		lock.lock();
+		try {
+			try (FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+				ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+				long offset = position;
+				int read;
+				while ((read = fileChannel.read(buffer, offset)) > 0) {
+					update(offset, buffer.array(), 0, read);
+					offset += read;
+					buffer.clear();
+				}
+			}
+			byte[] digest;
+			if (checksum != null) {
+				long value = checksum.getValue();
+				digest = new byte[] { (byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value };
+			} else {
+				digest = messageDigest.digest();
+			}
+			char[] hex = new char[digest.length * 2];
+			for (int i = 0; i < digest.length; i++) {
+				hex[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+				hex[i * 2 + 1] = HEX[digest[i] & 0xF];
+			}
+			return new String(hex);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Stream passing every read to digest along with its offset in file.
+	 */
+	private class DigestingInputStream extends FilterInputStream {
+
+		private long offset;
+
+		private DigestingInputStream(InputStream inputStream, long offset) {
+			super(inputStream);
+			this.offset = offset;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int value = super.read();
+			if (value >= 0) {
+				update(offset, new byte[] { (byte) value }, 0, 1);
+				offset++;
+			}
+			return value;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read = super.read(b, off, len);
+			if (read > 0) {
+				update(offset, b, off, read);
+				offset += read;
+			}
+			return read;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			offset += skipped;
+			return skipped;
+		}
+	}
+
+}
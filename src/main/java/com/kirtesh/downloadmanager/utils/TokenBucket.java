@@ -0,0 +1,94 @@
+package com.kirtesh.downloadmanager.utils;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+/**
+ * 
+ * @author kirteshdudawat
+ * 
+ * Token bucket rate limiter, tokens being bytes. Bucket refills at bytesPerSecond and holds upto one second of tokens, so short bursts after idle time are not delayed.
+ * 
+ * Bucket is lock free. Instead of counting tokens it keeps virtual time at which bucket would be empty, every acquire moves that time ahead by cost of its tokens using a single CAS
+ * and sleeps till its share of time has passed. Callers are expected to acquire in batches (eg. every 64 KB), not on every read.
+ * 
+ * Rate can be changed at any time, value less than 1 means unlimited.
+ *
+ */
+public class TokenBucket {
+
+	private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+	
+	private static final long BURST_NANOS = NANOS_PER_SECOND;
+
+	private final AtomicLong emptyAtNanos = new AtomicLong(System.nanoTime() - BURST_NANOS);
+
+	private volatile long bytesPerSecond;
+
+	public TokenBucket(long bytesPerSecond) {
+		this.bytesPerSecond = bytesPerSecond;
+	}
+
+	public long getBytesPerSecond() {
+		return bytesPerSecond;
+	}
+
+	/**
+	 * Changes rate of bucket. Debt built up at earlier rate is forgiven, so a raised limit applies immediately.
+	 * 
+	 * @param bytesPerSecond - New rate, value less than 1 means unlimited.
+	 */
+	public void setBytesPerSecond(long bytesPerSecond) {
+		if (this.bytesPerSecond == bytesPerSecond) {
+			return;
+		}
+		this.bytesPerSecond = bytesPerSecond;
+		long now = System.nanoTime();
+		emptyAtNanos.accumulateAndGet(now, Math::min);
+	}
+
+	/**
+	 * Takes bytes from bucket, blocking till bucket has refilled enough to cover them.
+	 * 
+	 * @param bytes - Number of bytes read / to be read.
+	 * @throws InterruptedIOException if thread is interrupted while waiting.
+	 */
+	public void acquire(long bytes) throws InterruptedIOException {
+		long waitNanos = reserve(bytes);
+		if (waitNanos <= 0) {
+			return;
+		}
+		try {
+			TimeUnit.NANOSECONDS.sleep(waitNanos);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for bandwidth");
+		}
+	}
+
+	/**
+	 * Takes bytes from bucket without blocking. Caller is expected to wait for returned time before reading more, used by non blocking downloads.
+	 * 
+	 * @param bytes - Number of bytes read / to be read.
+	 * @return Nanoseconds till bucket has refilled enough to cover bytes, 0 or less if no wait is needed.
+	 */
+	public long reserve(long bytes) {
+		long rate = bytesPerSecond;
+		if (rate <= 0 || bytes <= 0) {
+			return 0;
+		}
+		long cost = (long) ((double) bytes * NANOS_PER_SECOND / rate);
+		long now;
+		long emptyAt;
+		while (true) {
+			now = System.nanoTime();
+			long previous = emptyAtNanos.get();
+			emptyAt = Math.max(previous, now - BURST_NANOS) + cost;
+			if (emptyAtNanos.compareAndSet(previous, emptyAt)) {
+				break;
+			}
+		}
+		return emptyAt - now;
+	}
+
+}
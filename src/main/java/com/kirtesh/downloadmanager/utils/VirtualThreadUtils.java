@@ -0,0 +1,73 @@
+package com.kirtesh.downloadmanager.utils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.log4j.Logger;
+
+import com.kirtesh.downloadmanager.cache.DMCache;
+import com.kirtesh.downloadmanager.enums.ExecutionMode;
+/**
+ *
+ * @author kirteshdudawat
+ *
+ *	This class contains utility methods for running blocking downloads on virtual threads (download.execution.mode=VIRTUAL).
+ *
+ *	Application is compiled for Java 11, so virtual threads (JDK 21+) are created through reflection (Thread.ofVirtual, Executors.newThreadPerTaskExecutor).
+ *	On an older JDK executor is not available and callers fall back to platform threads.
+ *
+ *	Note: A virtual thread blocked inside a synchronized block pins its carrier thread. Locks held across disk or network I/O in this application are ReentrantLocks.
+ *
+ */
+public class VirtualThreadUtils {
+
+	final static Logger logger = Logger.getLogger(VirtualThreadUtils.class);
+
+	private static volatile ExecutorService virtualThreadExecutor;
+
+	private static volatile boolean isUnsupported;
+
+	/**
+	 * @return true if download.execution.mode is VIRTUAL and JDK supports virtual threads.
+	 */
+	public static boolean isEnabled() {
+		return ExecutionMode.fromProperty(DMCache.getDownloadExecutionMode()) == ExecutionMode.VIRTUAL
+				&& getVirtualThreadExecutor() != null;
+	}
+
+	/**
+	 * @return Shared executor starting a new virtual thread per task, created on first use. null if JDK does not support virtual threads.
+	 */
+	public static ExecutorService getVirtualThreadExecutor() {
+		if (virtualThreadExecutor == null && !isUnsupported) {
+			synchronized (VirtualThreadUtils.class) {
+				if (virtualThreadExecutor == null && !isUnsupported) {
+					virtualThreadExecutor = newVirtualThreadPerTaskExecutor("download-virtual-");
+					isUnsupported = virtualThreadExecutor == null;
+				}
+			}
+		}
+		return virtualThreadExecutor;
+	}
+
+	/**
+	 * @param namePrefix - Prefix of thread names, followed by a counter.
+	 * @return New executor starting a virtual thread per task. null if JDK does not support virtual threads.
+	 */
+	public static ExecutorService newVirtualThreadPerTaskExecutor(String namePrefix) {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+			ThreadFactory threadFactory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+			Method newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+			return (ExecutorService) newThreadPerTaskExecutor.invoke(null, threadFactory);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			logger.warn("Virtual threads are not supported by JVM " + System.getProperty("java.version") + ", using platform threads.." + e);
+			return null;
+		}
+	}
+
+}
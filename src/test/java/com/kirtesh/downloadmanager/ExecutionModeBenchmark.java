@@ -0,0 +1,90 @@
+package com.kirtesh.downloadmanager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.kirtesh.downloadmanager.service.impl.CommonDownloader;
+import com.kirtesh.downloadmanager.utils.VirtualThreadUtils;
+/**
+ *
+ * @author kirteshdudawat
+ *
+ * Benchmark of download.execution.mode PLATFORM vs VIRTUAL for I/O bound downloads. It is not a test case and is not run by surefire.
+ *
+ * Every GET of LocalHttpServer is delayed to simulate network latency, so downloads spend nearly all their time blocked on socket.
+ * Same number of blocking CommonDownloader downloads are run on a fixed pool of platform threads (as scheduled.threadpool.core.size) and on a virtual thread per download.
+ * Throughput of PLATFORM is bounded by pool size / latency, VIRTUAL is bounded by latency only. VIRTUAL is skipped on JDK older than 21.
+ *
+ * Run after `mvn test-compile` :
+ * 	java -cp target/classes:target/test-classes:{dependencies} com.kirtesh.downloadmanager.ExecutionModeBenchmark [downloads] [latencyMillis] [platformThreads]
+ *
+ */
+public class ExecutionModeBenchmark {
+
+	private static final int FILE_SIZE = 16 * 1024;
+
+	public static void main(String[] args) throws Exception {
+		int downloads = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		int latencyMillis = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+		int platformThreads = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+
+		ExecutorService serverExecutor = VirtualThreadUtils.newVirtualThreadPerTaskExecutor("benchmark-server-");
+		if (serverExecutor == null) {
+			serverExecutor = Executors.newCachedThreadPool();
+		}
+		try (LocalHttpServer server = new LocalHttpServer(FILE_SIZE, false, serverExecutor)) {
+			server.setResponseDelayMillis(latencyMillis);
+			System.out.println("Downloads : " + downloads + ", latency : " + latencyMillis + " ms, file size : " + FILE_SIZE + " bytes");
+
+			run("PLATFORM (" + platformThreads + " threads)", Executors.newFixedThreadPool(platformThreads), server, downloads);
+
+			ExecutorService virtualThreadExecutor = VirtualThreadUtils.newVirtualThreadPerTaskExecutor("benchmark-download-");
+			if (virtualThreadExecutor == null) {
+				System.out.println("VIRTUAL : skipped, JDK " + System.getProperty("java.version") + " does not support virtual threads");
+			} else {
+				run("VIRTUAL", virtualThreadExecutor, server, downloads);
+			}
+		} finally {
+			serverExecutor.shutdownNow();
+		}
+	}
+
+	private static void run(String mode, ExecutorService executorService, LocalHttpServer server, int downloads)
+			throws Exception {
+		File directory = Files.createTempDirectory("benchmark").toFile();
+		CommonDownloader commonDownloader = new CommonDownloader();
+		List<Future<Boolean>> futures = new ArrayList<>(downloads);
+		long startedAt = System.nanoTime();
+		for (int i = 0; i < downloads; i++) {
+			String downloadUrl = server.getUrl("/" + mode.hashCode() + "/file" + i);
+			String location = new File(directory, "file" + i).getPath();
+			futures.add(executorService.submit(() -> download(commonDownloader, downloadUrl, location)));
+		}
+		int failed = 0;
+		for (Future<Boolean> future : futures) {
+			if (!future.get()) {
+				failed++;
+			}
+		}
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+		executorService.shutdown();
+		System.out.println(mode + " : " + elapsedMillis + " ms, " + (downloads * 1000L / Math.max(1, elapsedMillis))
+				+ " downloads/s, failed : " + failed);
+	}
+
+	private static boolean download(CommonDownloader commonDownloader, String downloadUrl, String location) {
+		try {
+			return commonDownloader.download(downloadUrl, location, 30000, 30000, 8192);
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+}
@@ -0,0 +1,267 @@
+package com.kirtesh.downloadmanager;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+/**
+ *
+ * @author kirteshdudawat
+ *
+ * Minimal FTP server on loopback used by tests, so FTPDownloader tests do not depend on external hosts.
+ * Accepts any login and serves a single random file on every path. Supports TYPE, SIZE, MDTM, REST, EPSV, PASV, RETR, MLSD, NOOP and QUIT.
+ * MLSD lists a directory tree built from paths added with addFile, every file has same content and modification time.
+ * failAfterBytes makes next RETR break after given bytes, to simulate an interrupted download. REST is rejected if restSupported is false.
+ *
+ */
+public class LocalFtpServer implements AutoCloseable {
+
+	private final ServerSocket serverSocket;
+
+	private final byte[] content;
+
+	private final AtomicInteger loginCount = new AtomicInteger();
+
+	private final AtomicInteger retrieveCount = new AtomicInteger();
+
+	private final Set<String> files = new ConcurrentSkipListSet<>();
+
+	private final Queue<String> listedDirectories = new ConcurrentLinkedQueue<>();
+
+	private volatile boolean restSupported = true;
+
+	private volatile String modificationTime = "20260101000000";
+
+	private volatile int failAfterBytes = -1;
+
+	private volatile long lastRestartOffset;
+
+	public LocalFtpServer(int contentLength) throws IOException {
+		this.content = new byte[contentLength];
+		new Random(contentLength).nextBytes(content);
+		this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		Thread acceptor = new Thread(this::accept, "local-ftp-server");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	public String getUrl(String path) {
+		return "ftp://127.0.0.1:" + serverSocket.getLocalPort() + path;
+	}
+
+	public byte[] getContent() {
+		return content;
+	}
+
+	public int getLoginCount() {
+		return loginCount.get();
+	}
+
+	public int getRetrieveCount() {
+		return retrieveCount.get();
+	}
+
+	public long getLastRestartOffset() {
+		return lastRestartOffset;
+	}
+
+	/**
+	 * @param path - Path of file relative to login directory, eg. `data/2026-01/a.csv`.
+	 */
+	public void addFile(String path) {
+		files.add(path);
+	}
+
+	public List<String> getListedDirectories() {
+		return new ArrayList<>(listedDirectories);
+	}
+
+	public void setRestSupported(boolean restSupported) {
+		this.restSupported = restSupported;
+	}
+
+	public void setModificationTime(String modificationTime) {
+		this.modificationTime = modificationTime;
+	}
+
+	public void setFailAfterBytes(int failAfterBytes) {
+		this.failAfterBytes = failAfterBytes;
+	}
+
+	private void accept() {
+		while (!serverSocket.isClosed()) {
+			try {
+				Socket socket = serverSocket.accept();
+				Thread session = new Thread(() -> serve(socket), "local-ftp-session");
+				session.setDaemon(true);
+				session.start();
+			} catch (IOException e) {
+				return;
+			}
+		}
+	}
+
+	private void serve(Socket socket) {
+		ServerSocket passiveSocket = null;
+		long restartOffset = 0;
+		try (Socket control = socket;
+				BufferedReader reader = new BufferedReader(new InputStreamReader(control.getInputStream(), StandardCharsets.US_ASCII));
+				Writer writer = new OutputStreamWriter(control.getOutputStream(), StandardCharsets.US_ASCII)) {
+			reply(writer, "220 Local FTP server ready");
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String command = line.split(" ", 2)[0].toUpperCase();
+				String argument = line.indexOf(' ') > 0 ? line.substring(line.indexOf(' ') + 1) : "";
+				switch (command) {
+					case "USER":
+						reply(writer, "331 Password required");
+						break;
+					case "PASS":
+						loginCount.incrementAndGet();
+						reply(writer, "230 Logged in");
+						break;
+					case "TYPE":
+					case "NOOP":
+						reply(writer, "200 OK");
+						break;
+					case "SIZE":
+						reply(writer, "213 " + content.length);
+						break;
+					case "MDTM":
+						reply(writer, "213 " + modificationTime);
+						break;
+					case "REST":
+						if (!restSupported) {
+							reply(writer, "502 REST not implemented");
+							break;
+						}
+						restartOffset = Long.parseLong(argument);
+						reply(writer, "350 Restarting at " + restartOffset);
+						break;
+					case "EPSV":
+						passiveSocket = openPassiveSocket(passiveSocket);
+						reply(writer, "229 Entering Extended Passive Mode (|||" + passiveSocket.getLocalPort() + "|)");
+						break;
+					case "PASV":
+						passiveSocket = openPassiveSocket(passiveSocket);
+						int port = passiveSocket.getLocalPort();
+						reply(writer, "227 Entering Passive Mode (127,0,0,1," + (port >> 8) + "," + (port & 0xff) + ")");
+						break;
+					case "RETR":
+						if (passiveSocket == null) {
+							reply(writer, "425 Use PASV first");
+							break;
+						}
+						retrieveCount.incrementAndGet();
+						lastRestartOffset = restartOffset;
+						reply(writer, "150 Opening BINARY mode data connection");
+						boolean complete = send(passiveSocket, restartOffset);
+						passiveSocket.close();
+						passiveSocket = null;
+						restartOffset = 0;
+						reply(writer, complete ? "226 Transfer complete" : "426 Connection closed; transfer aborted");
+						break;
+					case "MLSD":
+						if (passiveSocket == null) {
+							reply(writer, "425 Use PASV first");
+							break;
+						}
+						reply(writer, "150 Opening ASCII mode data connection for MLSD");
+						sendListing(passiveSocket, argument);
+						passiveSocket.close();
+						passiveSocket = null;
+						reply(writer, "226 Transfer complete");
+						break;
+					case "QUIT":
+						reply(writer, "221 Bye");
+						return;
+					default:
+						reply(writer, "502 Command not implemented");
+				}
+			}
+		} catch (IOException e) {
+			// Client went away.
+		} finally {
+			if (passiveSocket != null) {
+				try {
+					passiveSocket.close();
+				} catch (IOException e) {
+					// Ignore.
+				}
+			}
+		}
+	}
+
+	private ServerSocket openPassiveSocket(ServerSocket passiveSocket) throws IOException {
+		if (passiveSocket != null) {
+			passiveSocket.close();
+		}
+		return new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+	}
+
+	/**
+	 * @return false if transfer was broken because of failAfterBytes.
+	 */
+	private boolean send(ServerSocket passiveSocket, long offset) throws IOException {
+		int failAfter = failAfterBytes;
+		failAfterBytes = -1;
+		try (Socket data = passiveSocket.accept(); OutputStream outputStream = data.getOutputStream()) {
+			int length = (int) (content.length - offset);
+			if (failAfter >= 0 && failAfter < length) {
+				outputStream.write(content, (int) offset, failAfter);
+				return false;
+			}
+			outputStream.write(content, (int) offset, length);
+			return true;
+		}
+	}
+
+	private void sendListing(ServerSocket passiveSocket, String directory) throws IOException {
+		directory = directory.endsWith("/") ? directory.substring(0, directory.length() - 1) : directory;
+		listedDirectories.add(directory);
+		String prefix = directory.isEmpty() ? "" : directory + "/";
+		Map<String, Boolean> entries = new TreeMap<>();
+		for (String file : files) {
+			if (file.startsWith(prefix)) {
+				String rest = file.substring(prefix.length());
+				int separator = rest.indexOf('/');
+				entries.put(separator < 0 ? rest : rest.substring(0, separator), separator >= 0);
+			}
+		}
+		StringBuilder listing = new StringBuilder("type=cdir;modify=" + modificationTime + "; .\r\n");
+		for (Map.Entry<String, Boolean> entry : entries.entrySet()) {
+			listing.append(entry.getValue() ? "type=dir;" : "type=file;size=" + content.length + ";")
+					.append("modify=").append(modificationTime).append("; ").append(entry.getKey()).append("\r\n");
+		}
+		try (Socket data = passiveSocket.accept(); OutputStream outputStream = data.getOutputStream()) {
+			outputStream.write(listing.toString().getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	private static void reply(Writer writer, String reply) throws IOException {
+		writer.write(reply + "\r\n");
+		writer.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		serverSocket.close();
+	}
+
+}
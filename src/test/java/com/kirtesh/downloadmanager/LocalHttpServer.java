@@ -0,0 +1,208 @@
+package com.kirtesh.downloadmanager;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ * Minimal HTTP server on loopback used by tests, so Downloader tests do not depend on external hosts.
+ * Serves a single random file on every path. Supports HEAD, ETag, If-None-Match and single byte Range / If-Range requests when acceptRanges is set.
+ * failAfterBytes makes next GET response break after given bytes, to simulate an interrupted download.
+ * responseDelayMillis delays every GET response, to simulate network latency. Requests are served one at a time unless an executor is given.
+ * stallAfterBytes makes next GET response stop for STALL_MILLIS after given bytes before sending rest, to simulate a connection stalled mid body.
+ * slowResponses makes next GET responses trickle at SLOW_CHUNK_BYTES every SLOW_CHUNK_DELAY_MILLIS, to simulate a straggling connection.
+ * 
+ */
+public class LocalHttpServer implements AutoCloseable {
+
+	private static final int SLOW_CHUNK_BYTES = 1024;
+
+	private static final int SLOW_CHUNK_DELAY_MILLIS = 20;
+
+	private static final int STALL_MILLIS = 3000;
+
+	private final HttpServer server;
+	
+	private final byte[] content;
+	
+	private final AtomicInteger getRequestCount = new AtomicInteger();
+	
+	private volatile boolean acceptRanges;
+	
+	private volatile String etag = "\"v1\"";
+	
+	private volatile int failAfterBytes = -1;
+	
+	private volatile int stallAfterBytes = -1;
+	
+	private volatile String lastRange;
+	
+	private volatile int responseDelayMillis;
+	
+	private final AtomicInteger slowResponses = new AtomicInteger();
+
+	public LocalHttpServer(int contentLength, boolean acceptRanges) throws IOException {
+		this(contentLength, acceptRanges, null);
+	}
+
+	public LocalHttpServer(int contentLength, boolean acceptRanges, Executor executor) throws IOException {
+		this.content = new byte[contentLength];
+		new Random(contentLength).nextBytes(content);
+		this.acceptRanges = acceptRanges;
+		this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		this.server.createContext("/", this::handle);
+		this.server.setExecutor(executor);
+		this.server.start();
+	}
+
+	public String getUrl(String path) {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+	}
+
+	public byte[] getContent() {
+		return content;
+	}
+
+	public int getGetRequestCount() {
+		return getRequestCount.get();
+	}
+
+	public void setAcceptRanges(boolean acceptRanges) {
+		this.acceptRanges = acceptRanges;
+	}
+
+	public void setEtag(String etag) {
+		this.etag = etag;
+	}
+
+	public void setFailAfterBytes(int failAfterBytes) {
+		this.failAfterBytes = failAfterBytes;
+	}
+
+	public void setStallAfterBytes(int stallAfterBytes) {
+		this.stallAfterBytes = stallAfterBytes;
+	}
+
+	public void setResponseDelayMillis(int responseDelayMillis) {
+		this.responseDelayMillis = responseDelayMillis;
+	}
+
+	public void setSlowResponses(int slowResponses) {
+		this.slowResponses.set(slowResponses);
+	}
+
+	public String getLastRange() {
+		return lastRange;
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		boolean head = "HEAD".equals(exchange.getRequestMethod());
+		if (!head) {
+			getRequestCount.incrementAndGet();
+			if (responseDelayMillis > 0) {
+				try {
+					Thread.sleep(responseDelayMillis);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+		if (acceptRanges) {
+			exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+		}
+		exchange.getResponseHeaders().add("ETag", etag);
+		if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+			exchange.sendResponseHeaders(304, -1);
+			exchange.close();
+			return;
+		}
+		int start = 0;
+		int end = content.length - 1;
+		int status = 200;
+		String range = exchange.getRequestHeaders().getFirst("Range");
+		String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+		if (!head) {
+			lastRange = range;
+		}
+		if (acceptRanges && range != null && range.startsWith("bytes=") && (ifRange == null || ifRange.equals(etag))) {
+			String[] bounds = range.substring("bytes=".length()).split("-");
+			start = Integer.parseInt(bounds[0]);
+			if (bounds.length > 1 && !bounds[1].isEmpty()) {
+				end = Math.min(end, Integer.parseInt(bounds[1]));
+			}
+			status = 206;
+			exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+		}
+		int length = end - start + 1;
+		if (head) {
+			exchange.getResponseHeaders().add("Content-Length", String.valueOf(length));
+			exchange.sendResponseHeaders(status, -1);
+			exchange.close();
+			return;
+		}
+		exchange.sendResponseHeaders(status, length);
+		int failAfter = failAfterBytes;
+		failAfterBytes = -1;
+		if (failAfter >= 0 && failAfter < length) {
+			OutputStream outputStream = exchange.getResponseBody();
+			outputStream.write(content, start, failAfter);
+			outputStream.flush();
+			exchange.close();
+			return;
+		}
+		int stallAfter = stallAfterBytes;
+		stallAfterBytes = -1;
+		if (stallAfter >= 0 && stallAfter < length) {
+			writeStalled(exchange, start, length, stallAfter);
+			return;
+		}
+		if (slowResponses.getAndUpdate(count -> Math.max(0, count - 1)) > 0) {
+			writeSlowly(exchange, start, length);
+			return;
+		}
+		try (OutputStream outputStream = exchange.getResponseBody()) {
+			outputStream.write(content, start, length);
+		}
+	}
+
+	private void writeSlowly(HttpExchange exchange, int start, int length) {
+		try (OutputStream outputStream = exchange.getResponseBody()) {
+			for (int offset = start; offset < start + length; offset += SLOW_CHUNK_BYTES) {
+				outputStream.write(content, offset, Math.min(SLOW_CHUNK_BYTES, start + length - offset));
+				outputStream.flush();
+				Thread.sleep(SLOW_CHUNK_DELAY_MILLIS);
+			}
+		} catch (IOException e) {
+			// Client cancelled straggling response.
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void writeStalled(HttpExchange exchange, int start, int length, int stallAfter) {
+		try (OutputStream outputStream = exchange.getResponseBody()) {
+			outputStream.write(content, start, stallAfter);
+			outputStream.flush();
+			Thread.sleep(STALL_MILLIS);
+			outputStream.write(content, start + stallAfter, length - stallAfter);
+		} catch (IOException e) {
+			// Client closed stalled response.
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+	}
+
+}
@@ -0,0 +1,243 @@
+package com.kirtesh.downloadmanager;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import com.jcraft.jsch.SftpATTRS;
+import com.jcraft.jsch.SftpException;
+import com.jcraft.jsch.SftpProgressMonitor;
+import com.kirtesh.downloadmanager.cache.SFTPSessionPool;
+import com.kirtesh.downloadmanager.cache.SFTPSessionPool.SessionConnector;
+/**
+ *
+ * @author kirteshdudawat
+ *
+ * SessionConnector of SFTPSessionPool used by tests, so SFTP tests do not depend on an SSH server. Installed on construction and removed on close.
+ * Sessions are never connected over network, every channel serves a single random file on every path, with offset based get and stat.
+ * failAfterBytes makes next get (or next get at given offset) break after given bytes, to simulate an interrupted download.
+ * Counts sessions and channels connected / disconnected and records offset of every get, to check pooling and ranges.
+ *
+ */
+public class StubSftpConnector implements SessionConnector, AutoCloseable {
+
+	private static final int MTIME = 1500000000;
+
+	private final byte[] content;
+
+	private final Set<Session> connectedSessions = Collections.newSetFromMap(new IdentityHashMap<>());
+
+	private final AtomicInteger sessionsConnected = new AtomicInteger();
+
+	private final AtomicInteger sessionsDisconnected = new AtomicInteger();
+
+	private final AtomicInteger channelsOpened = new AtomicInteger();
+
+	private final AtomicInteger channelsDisconnected = new AtomicInteger();
+
+	private final Queue<Long> getOffsets = new ConcurrentLinkedQueue<>();
+
+	private volatile int failAfterBytes = -1;
+
+	private volatile long failOffset = -1;
+
+	public StubSftpConnector(int contentLength) {
+		this.content = new byte[contentLength];
+		new Random(contentLength).nextBytes(content);
+		SFTPSessionPool.setSessionConnector(this);
+	}
+
+	public byte[] getContent() {
+		return content;
+	}
+
+	public int getSessionsConnected() {
+		return sessionsConnected.get();
+	}
+
+	public int getSessionsDisconnected() {
+		return sessionsDisconnected.get();
+	}
+
+	public int getChannelsOpened() {
+		return channelsOpened.get();
+	}
+
+	public int getChannelsDisconnected() {
+		return channelsDisconnected.get();
+	}
+
+	public int getGetCount() {
+		return getOffsets.size();
+	}
+
+	/**
+	 * @return Offsets of gets made since last call.
+	 */
+	public List<Long> takeGetOffsets() {
+		List<Long> offsets = new ArrayList<>();
+		Long offset;
+		while ((offset = getOffsets.poll()) != null) {
+			offsets.add(offset);
+		}
+		return offsets;
+	}
+
+	public void setFailAfterBytes(int failAfterBytes) {
+		setFailAfterBytes(-1, failAfterBytes);
+	}
+
+	/**
+	 * @param offset - Offset of get to be broken, -1 for next get.
+	 * @param failAfterBytes - Bytes served before get breaks.
+	 */
+	public synchronized void setFailAfterBytes(long offset, int failAfterBytes) {
+		this.failOffset = offset;
+		this.failAfterBytes = failAfterBytes;
+	}
+
+	/**
+	 * @return Bytes after which get at offset breaks, -1 if it does not. Failure is used up once returned.
+	 */
+	private synchronized int takeFailAfterBytes(long offset) {
+		if (failAfterBytes < 0 || (failOffset >= 0 && failOffset != offset)) {
+			return -1;
+		}
+		int failAfter = failAfterBytes;
+		failAfterBytes = -1;
+		return failAfter;
+	}
+
+	@Override
+	public Session connect(String username, String password, String host, int port, int sessionTimeout) throws JSchException {
+		Session session = new JSch().getSession(username, host, port);
+		synchronized (connectedSessions) {
+			connectedSessions.add(session);
+		}
+		sessionsConnected.incrementAndGet();
+		return session;
+	}
+
+	@Override
+	public ChannelSftp openChannel(Session session, int channelTimeout) {
+		channelsOpened.incrementAndGet();
+		return new StubChannel(session);
+	}
+
+	@Override
+	public boolean isConnected(Session session) {
+		synchronized (connectedSessions) {
+			return connectedSessions.contains(session);
+		}
+	}
+
+	@Override
+	public void disconnect(Session session) {
+		synchronized (connectedSessions) {
+			if (connectedSessions.remove(session)) {
+				sessionsDisconnected.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Disconnects idle pooled sessions and restores JSch connector.
+	 */
+	@Override
+	public void close() {
+		SFTPSessionPool.closeIdleSessions();
+		SFTPSessionPool.setSessionConnector(null);
+	}
+
+	/**
+	 * Channel serving content of connector.
+	 */
+	private class StubChannel extends ChannelSftp {
+
+		private final Session stubSession;
+
+		private volatile boolean connected = true;
+
+		private StubChannel(Session stubSession) {
+			this.stubSession = stubSession;
+		}
+
+		@Override
+		public boolean isConnected() {
+			return connected && StubSftpConnector.this.isConnected(stubSession);
+		}
+
+		@Override
+		public void disconnect() {
+			if (connected) {
+				connected = false;
+				channelsDisconnected.incrementAndGet();
+			}
+		}
+
+		@Override
+		public String realpath(String path) {
+			return "/";
+		}
+
+		@Override
+		public SftpATTRS stat(String path) throws SftpException {
+			try {
+				Constructor<SftpATTRS> constructor = SftpATTRS.class.getDeclaredConstructor();
+				constructor.setAccessible(true);
+				SftpATTRS attrs = constructor.newInstance();
+				attrs.setSIZE(content.length);
+				attrs.setACMODTIME(MTIME, MTIME);
+				return attrs;
+			} catch (ReflectiveOperationException e) {
+				throw new SftpException(ChannelSftp.SSH_FX_FAILURE, e.getMessage());
+			}
+		}
+
+		@Override
+		public InputStream get(String path, SftpProgressMonitor monitor, long skip) {
+			getOffsets.add(skip);
+			int failAfter = takeFailAfterBytes(skip);
+			int length = (int) (content.length - skip);
+			if (failAfter < 0 || failAfter >= length) {
+				return new ByteArrayInputStream(content, (int) skip, length);
+			}
+			return new InputStream() {
+				private final InputStream delegate = new ByteArrayInputStream(content, (int) skip, failAfter);
+
+				@Override
+				public int read() throws IOException {
+					int value = delegate.read();
+					if (value < 0) {
+						throw new IOException("Connection reset");
+					}
+					return value;
+				}
+
+				@Override
+				public int read(byte[] b, int off, int len) throws IOException {
+					int read = delegate.read(b, off, len);
+					if (read < 0) {
+						throw new IOException("Connection reset");
+					}
+					return read;
+				}
+			};
+		}
+	}
+
+}
@@ -0,0 +1,158 @@
+package com.kirtesh.downloadmanager;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.ObjectName;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.kirtesh.downloadmanager.metadata.DownloadMetadata;
+import com.kirtesh.downloadmanager.service.impl.AdaptiveConcurrencyLimiter;
+import com.kirtesh.downloadmanager.service.impl.CommonDownloader.HttpStatusException;
+import com.kirtesh.downloadmanager.service.impl.DownloadScheduler;
+import com.kirtesh.downloadmanager.service.impl.HostCircuitBreaker.CircuitOpenException;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ * This class tests com.kirtesh.downloadmanager.service.impl.AdaptiveConcurrencyLimiter
+ * 
+ */
+public class TestAdaptiveConcurrencyLimiter {
+
+	private static final long LATENCY = TimeUnit.MILLISECONDS.toNanos(100);
+
+	/**
+	 * Limit grows by one per window in which it was reached, is cut multiplicatively on congestion and stays within bounds.
+	 */
+	@Test
+	public void testAdditiveIncreaseMultiplicativeDecrease() {
+		List<Integer> changes = new ArrayList<>();
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 2, 6, 0, 2, changes::add);
+		for (int i = 0; i < 4; i++) {
+			limiter.onDispatch("a.com", 10, true, false);
+			limiter.onComplete("a.com", LATENCY, -1, null);
+		}
+		Assert.assertEquals(6, limiter.getLimit());
+
+		limiter.onComplete("a.com", LATENCY, -1, null);
+		Assert.assertEquals(6, limiter.getLimit());
+
+		limiter.onComplete("a.com", LATENCY, -1, new CircuitOpenException("open"));
+		Assert.assertEquals(6, limiter.getLimit());
+
+		limiter.onComplete("a.com", LATENCY, -1, new SocketTimeoutException("Read timed out"));
+		Assert.assertEquals(4, limiter.getLimit());
+		limiter.onComplete("a.com", LATENCY, -1, new SocketTimeoutException("Read timed out"));
+		limiter.onComplete("a.com", LATENCY, -1, new SocketTimeoutException("Read timed out"));
+		Assert.assertEquals(2, limiter.getLimit());
+		Assert.assertEquals(Arrays.asList(5, 6, 4, 2), changes);
+	}
+
+	/**
+	 * Only timeout, connection reset and 429 / 503 cut limit, other failed attempts (404, refused connection) are not samples at all.
+	 */
+	@Test
+	public void testOnlyCongestionCutsLimit() {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 20, 0, 2, null);
+		limiter.onComplete("a.com", LATENCY, -1, new HttpStatusException(404, "Server returned HTTP status 404"));
+		limiter.onComplete("a.com", LATENCY, -1, new HttpStatusException(500, "Server returned HTTP status 500"));
+		limiter.onComplete("a.com", LATENCY, -1, new ConnectException("Connection refused"));
+		Assert.assertEquals(10, limiter.getLimit());
+
+		limiter.onComplete("a.com", LATENCY, -1, new CompletionException(new HttpStatusException(503, "Server returned HTTP status 503")));
+		Assert.assertEquals(7, limiter.getLimit());
+		limiter.onComplete("a.com", LATENCY, -1, new HttpStatusException(429, "Server returned HTTP status 429"));
+		Assert.assertEquals(4, limiter.getLimit());
+	}
+
+	/**
+	 * Latency well above its long term average cuts limit, even without errors. Latency is normalized by size of file.
+	 */
+	@Test
+	public void testLatencyGradient() {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 20, 0, 2, null);
+		limiter.onComplete("a.com", LATENCY, -1, null);
+		limiter.onComplete("a.com", LATENCY * 10, 10 << 20, null);
+		Assert.assertEquals(10, limiter.getLimit());
+
+		limiter.onComplete("a.com", LATENCY * 3, -1, null);
+		Assert.assertEquals(7, limiter.getLimit());
+	}
+
+	/**
+	 * Throughput of a window with more than Long.MAX_VALUE / 1e9 bytes does not overflow, so it is not mistaken for a throughput drop.
+	 */
+	@Test
+	public void testLargeWindowThroughput() {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 10, 0, 2, null);
+		limiter.onDispatch("a.com", 10, true, false);
+		limiter.onComplete("a.com", LATENCY, 1, null);
+		Assert.assertEquals(5, limiter.getLimit());
+
+		limiter.onDispatch("a.com", 10, true, false);
+		limiter.onComplete("a.com", LATENCY, 10000000000L, null);
+		Assert.assertEquals(6, limiter.getLimit());
+	}
+
+	/**
+	 * Host limit is cut on failures of its host only and is exported over JMX along with global limit.
+	 */
+	@Test
+	public void testHostLimitAndJmx() throws Exception {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, 1, 8, 0, 2, null);
+		Assert.assertEquals(4, limiter.getHostLimit("a.com", 4));
+		limiter.onDispatch("a.com", 4, false, true);
+		limiter.onDispatch("b.com", 4, false, true);
+		limiter.onComplete("a.com", LATENCY, -1, new IOException("Connection reset"));
+		limiter.onComplete("b.com", LATENCY, -1, null);
+		Assert.assertEquals(2, limiter.getHostLimit("a.com", 4));
+		Assert.assertEquals(4, limiter.getHostLimit("b.com", 4));
+
+		limiter.register();
+		ObjectName objectName = new ObjectName(AdaptiveConcurrencyLimiter.OBJECT_NAME);
+		try {
+			Assert.assertEquals(limiter.getLimit(), ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "Limit"));
+		} finally {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		}
+	}
+
+	/**
+	 * DownloadScheduler dispatches upto limit of limiter, which grows as attempts complete with limit reached.
+	 */
+	@Test
+	public void testSchedulerFollowsLimit() {
+		List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+		DownloadScheduler downloadScheduler = new DownloadScheduler(2, 0, new HashMap<>(), downloadMetadata -> {
+			CompletableFuture<Boolean> future = new CompletableFuture<>();
+			futures.add(future);
+			return future;
+		});
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 4, 0, 2, null);
+		downloadScheduler.setConcurrencyLimiter(limiter);
+		List<DownloadMetadata> downloads = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			downloads.add(new DownloadMetadata(null, "http://host" + i + ".com/file", null));
+		}
+		downloadScheduler.schedule(downloads);
+		Assert.assertEquals(2, futures.size());
+
+		limiter.onComplete("host0.com", LATENCY, 1000, null);
+		futures.get(0).complete(true);
+		Assert.assertEquals(3, limiter.getLimit());
+		Assert.assertEquals(4, futures.size());
+	}
+
+}
@@ -0,0 +1,128 @@
+package com.kirtesh.downloadmanager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.kirtesh.downloadmanager.cache.DMCache;
+import com.kirtesh.downloadmanager.enums.Protocols;
+import com.kirtesh.downloadmanager.metadata.DownloadMetadata;
+import com.kirtesh.downloadmanager.service.impl.AsyncHttpClientDownloader;
+import com.kirtesh.downloadmanager.utils.StagingUtils;
+/**
+ *
+ * @author kirteshdudawat
+ *
+ *
+ * Test cases for class com.kirtesh.downloadmanager.service.impl.AsyncHttpClientDownloader.
+ * Downloads are done from LocalHttpServer, hence no external host is required.
+ *
+ */
+public class TestAsyncHttpClientDownloader {
+
+	/**
+	 * Server does not support byte ranges, file is downloaded as a single non blocking stream.
+	 * @throws IOException
+	 */
+	@Test
+	public void testSingleStreamDownload() throws IOException {
+		try (LocalHttpServer server = new LocalHttpServer(300000, false)) {
+			File file = new File(Files.createTempDirectory("async").toFile(), "single.bin");
+			Assert.assertTrue(new AsyncHttpClientDownloader().download(server.getUrl("/single.bin"), file.getPath(), 5000, 5000, 4096));
+			Assert.assertArrayEquals(server.getContent(), Files.readAllBytes(file.toPath()));
+			Assert.assertFalse(Files.exists(StagingUtils.getPartFile(file.getPath())));
+		}
+	}
+
+	/**
+	 * Server supports byte ranges, all segments are in flight concurrently on HttpClient.
+	 * @throws IOException
+	 */
+	@Test
+	public void testSegmentedDownload() throws IOException {
+		try (LocalHttpServer server = new LocalHttpServer(500001, true)) {
+			File file = new File(Files.createTempDirectory("async").toFile(), "segmented.bin");
+			Assert.assertTrue(new AsyncHttpClientDownloader().download(server.getUrl("/segmented.bin"), file.getPath(), 5000, 5000, 4096, 3, 1024));
+			Assert.assertEquals(3, server.getGetRequestCount());
+			Assert.assertArrayEquals(server.getContent(), Files.readAllBytes(file.toPath()));
+		}
+	}
+
+	/**
+	 * Connection dropped in middle of a range fails download, staged data is kept and next attempt downloads only remaining bytes.
+	 * @throws IOException
+	 */
+	@Test
+	public void testFailedDownloadIsResumed() throws IOException {
+		try (LocalHttpServer server = new LocalHttpServer(400000, true)) {
+			File file = new File(Files.createTempDirectory("async").toFile(), "resumed.bin");
+			AsyncHttpClientDownloader downloader = new AsyncHttpClientDownloader();
+			server.setFailAfterBytes(100000);
+			try {
+				downloader.download(server.getUrl("/resumed.bin"), file.getPath(), 5000, 5000, 4096);
+				Assert.fail("Download of dropped connection must fail");
+			} catch (IOException e) {
+				Assert.assertTrue(Files.exists(StagingUtils.getJournalFile(file.getPath())));
+			}
+			Assert.assertTrue(downloader.download(server.getUrl("/resumed.bin"), file.getPath(), 5000, 5000, 4096));
+			Assert.assertNotEquals("bytes=0-399999", server.getLastRange());
+			Assert.assertArrayEquals(server.getContent(), Files.readAllBytes(file.toPath()));
+		}
+	}
+
+	/**
+	 * Ranges are checkpointed every resume.checkpoint.bytes with fsync.policy CHECKPOINT on publisher threads, while body keeps arriving in order.
+	 * Dropped connection resumes from last checkpoint of range.
+	 * @throws IOException
+	 */
+	@Test
+	public void testFrequentCheckpointsWithFsync() throws IOException {
+		DMCache.updateCacheMap("resume.checkpoint.bytes", "1024");
+		DMCache.updateCacheMap("fsync.policy", "CHECKPOINT");
+		try (LocalHttpServer server = new LocalHttpServer(300000, true)) {
+			File file = new File(Files.createTempDirectory("async").toFile(), "checkpointed.bin");
+			AsyncHttpClientDownloader downloader = new AsyncHttpClientDownloader();
+			server.setFailAfterBytes(150000);
+			try {
+				downloader.download(server.getUrl("/checkpointed.bin"), file.getPath(), 5000, 5000, 4096);
+				Assert.fail("Download of dropped connection must fail");
+			} catch (IOException e) {
+				Assert.assertTrue(Files.exists(StagingUtils.getJournalFile(file.getPath())));
+			}
+			Assert.assertTrue(downloader.download(server.getUrl("/checkpointed.bin"), file.getPath(), 5000, 5000, 4096, 3, 1024));
+			Assert.assertTrue(Long.parseLong(server.getLastRange().substring("bytes=".length()).split("-")[0]) > 0);
+			Assert.assertArrayEquals(server.getContent(), Files.readAllBytes(file.toPath()));
+		} finally {
+			DMCache.propertyCacheMap.remove("resume.checkpoint.bytes");
+			DMCache.propertyCacheMap.remove("fsync.policy");
+		}
+	}
+
+	/**
+	 * Many downloads are started without waiting, all complete without a thread per download.
+	 * @throws Exception
+	 */
+	@Test
+	public void testManyConcurrentDownloads() throws Exception {
+		try (LocalHttpServer server = new LocalHttpServer(10000, false)) {
+			File directory = Files.createTempDirectory("async").toFile();
+			AsyncHttpClientDownloader downloader = new AsyncHttpClientDownloader();
+			List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+			for (int i = 0; i < 200; i++) {
+				String filePath = new File(directory, "file" + i).getPath();
+				futures.add(downloader.downloadAsync(new DownloadMetadata(Protocols.HTTP, server.getUrl("/file" + i), filePath)));
+			}
+			for (int i = 0; i < futures.size(); i++) {
+				Assert.assertTrue(futures.get(i).get());
+				Assert.assertArrayEquals(server.getContent(), Files.readAllBytes(new File(directory, "file" + i).toPath()));
+			}
+		}
+	}
+
+}
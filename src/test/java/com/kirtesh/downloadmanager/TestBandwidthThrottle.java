@@ -0,0 +1,75 @@
+package com.kirtesh.downloadmanager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.kirtesh.downloadmanager.cache.BandwidthThrottle;
+import com.kirtesh.downloadmanager.service.impl.CommonDownloader;
+import com.kirtesh.downloadmanager.utils.TokenBucket;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ * This class tests com.kirtesh.downloadmanager.utils.TokenBucket and com.kirtesh.downloadmanager.cache.BandwidthThrottle
+ * 
+ */
+public class TestBandwidthThrottle {
+
+	@After
+	public void disableThrottle() {
+		BandwidthThrottle.disable();
+	}
+
+	/**
+	 * One second worth of bytes is allowed as burst, anything beyond waits for bucket to refill.
+	 * @throws IOException
+	 */
+	@Test
+	public void testTokenBucketRate() throws IOException {
+		TokenBucket tokenBucket = new TokenBucket(1024 * 1024);
+		long start = System.nanoTime();
+		tokenBucket.acquire(1024 * 1024);
+		Assert.assertTrue(System.nanoTime() - start < 200_000_000L);
+		tokenBucket.acquire(512 * 1024);
+		Assert.assertTrue(System.nanoTime() - start >= 400_000_000L);
+
+		tokenBucket.setBytesPerSecond(0);
+		start = System.nanoTime();
+		tokenBucket.acquire(100 * 1024 * 1024);
+		Assert.assertTrue(System.nanoTime() - start < 200_000_000L);
+	}
+
+	/**
+	 * Host limit from throttle config slows down download, and is lifted once removed from config file.
+	 * @throws IOException
+	 */
+	@Test
+	public void testHostLimitReloadedAtRuntime() throws IOException {
+		Path configFile = Files.createTempFile("throttle", ".properties");
+		Files.write(configFile, "host.127.0.0.1=262144\n".getBytes());
+		Assert.assertTrue(BandwidthThrottle.reloadIfModified(configFile));
+		try (LocalHttpServer server = new LocalHttpServer(512 * 1024, false)) {
+			File file = new File(Files.createTempDirectory("throttle").toFile(), "throttle.bin");
+			CommonDownloader commonDownloader = new CommonDownloader();
+			long start = System.nanoTime();
+			Assert.assertTrue(commonDownloader.download(server.getUrl("/throttle.bin"), file.getPath(), 5000, 5000, 4096));
+			Assert.assertTrue(System.nanoTime() - start >= 700_000_000L);
+			Assert.assertArrayEquals(server.getContent(), Files.readAllBytes(file.toPath()));
+
+			Files.write(configFile, "global=0\n".getBytes());
+			Files.setLastModifiedTime(configFile, FileTime.fromMillis(System.currentTimeMillis() + 10000));
+			Assert.assertTrue(BandwidthThrottle.reloadIfModified(configFile));
+			start = System.nanoTime();
+			Assert.assertTrue(commonDownloader.download(server.getUrl("/throttle.bin"), file.getPath(), 5000, 5000, 4096));
+			Assert.assertTrue(System.nanoTime() - start < 700_000_000L);
+		}
+	}
+
+}
@@ -1,13 +1,17 @@
 package com.kirtesh.downloadmanager;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
+import java.nio.file.Files;
 
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.kirtesh.downloadmanager.cache.DMCache;
 import com.kirtesh.downloadmanager.service.impl.CommonDownloader;
 import com.kirtesh.downloadmanager.service.validation.impl.ValidationServiceImpl;
+import com.kirtesh.downloadmanager.utils.StagingUtils;
 /**
  * 
  * @author kirteshdudawat
@@ -87,4 +91,147 @@ public class TestCommonDownloader {
 		Assert.assertFalse(success);
 	}
 
+	/**
+	 * Server supports byte ranges, hence file is downloaded in segments and every segment lands at its own position.
+	 * @throws IOException
+	 */
+	@Test
+	public void testSegmentedDownload() throws IOException {
+		try (LocalHttpServer server = new LocalHttpServer(1000003, true)) {
+			File file = File.createTempFile("segmented", ".bin");
+			CommonDownloader commonDownloader = new CommonDownloader();
+			boolean success = commonDownloader.download(server.getUrl("/segmented.bin"), file.getPath(), 5000, 5000, 4096, 4, 1024);
+			Assert.assertTrue(success);
+			Assert.assertEquals(4, server.getGetRequestCount());
+			Assert.assertArrayEquals(server.getContent(), Files.readAllBytes(file.toPath()));
+			file.delete();
+		}
+	}
+
+	/**
+	 * Server does not support byte ranges, hence segmented download falls back to a single stream.
+	 * @throws IOException
+	 */
+	@Test
+	public void testSegmentedDownloadFallbackToSingleStream() throws IOException {
+		try (LocalHttpServer server = new LocalHttpServer(100000, false)) {
+			File file = File.createTempFile("single", ".bin");
+			CommonDownloader commonDownloader = new CommonDownloader();
+			boolean success = commonDownloader.download(server.getUrl("/single.bin"), file.getPath(), 5000, 5000, 4096, 4, 1024);
+			Assert.assertTrue(success);
+			Assert.assertEquals(1, server.getGetRequestCount());
+			Assert.assertArrayEquals(server.getContent(), Files.readAllBytes(file.toPath()));
+			file.delete();
+		}
+	}
+
+	/**
+	 * First attempt breaks in between, hence no file at location but .part file & journal are kept in staging directory.
+	 * Second attempt resumes from last checkpoint with a Range request instead of starting from byte 0.
+	 * @throws IOException
+	 */
+	@Test
+	public void testResumeAfterInterruptedDownload() throws IOException {
+		DMCache.updateCacheMap("resume.checkpoint.bytes", "1024");
+		try (LocalHttpServer server = new LocalHttpServer(200000, true)) {
+			File file = new File(Files.createTempDirectory("resume").toFile(), "resume.bin");
+			CommonDownloader commonDownloader = new CommonDownloader();
+			server.setFailAfterBytes(150000);
+			try {
+				commonDownloader.download(server.getUrl("/resume.bin"), file.getPath(), 5000, 5000, 4096);
+				Assert.fail("Interrupted download should fail");
+			} catch (IOException e) {
+				Assert.assertFalse(file.exists());
+				Assert.assertTrue(Files.exists(StagingUtils.getPartFile(file.getPath())));
+				Assert.assertTrue(Files.exists(StagingUtils.getJournalFile(file.getPath())));
+			}
+
+			boolean success = commonDownloader.download(server.getUrl("/resume.bin"), file.getPath(), 5000, 5000, 4096);
+			Assert.assertTrue(success);
+			Assert.assertNotEquals("bytes=0-199999", server.getLastRange());
+			Assert.assertArrayEquals(server.getContent(), Files.readAllBytes(file.toPath()));
+			Assert.assertFalse(Files.exists(StagingUtils.getPartFile(file.getPath())));
+			Assert.assertFalse(Files.exists(StagingUtils.getJournalFile(file.getPath())));
+		} finally {
+			DMCache.propertyCacheMap.remove("resume.checkpoint.bytes");
+		}
+	}
+
+	/**
+	 * With preallocation.mode NONE .part file is still of full size, so interrupted download is resumed instead of being discarded.
+	 * @throws IOException
+	 */
+	@Test
+	public void testResumeWithoutPreallocation() throws IOException {
+		DMCache.updateCacheMap("resume.checkpoint.bytes", "1024");
+		DMCache.updateCacheMap("preallocation.mode", "NONE");
+		try (LocalHttpServer server = new LocalHttpServer(200000, true)) {
+			File file = new File(Files.createTempDirectory("none").toFile(), "none.bin");
+			CommonDownloader commonDownloader = new CommonDownloader();
+			server.setFailAfterBytes(150000);
+			try {
+				commonDownloader.download(server.getUrl("/none.bin"), file.getPath(), 5000, 5000, 4096);
+				Assert.fail("Interrupted download should fail");
+			} catch (IOException e) {
+				Assert.assertEquals(200000, Files.size(StagingUtils.getPartFile(file.getPath())));
+			}
+
+			Assert.assertTrue(commonDownloader.download(server.getUrl("/none.bin"), file.getPath(), 5000, 5000, 4096));
+			Assert.assertNotEquals("bytes=0-199999", server.getLastRange());
+			Assert.assertArrayEquals(server.getContent(), Files.readAllBytes(file.toPath()));
+		} finally {
+			DMCache.propertyCacheMap.remove("resume.checkpoint.bytes");
+			DMCache.propertyCacheMap.remove("preallocation.mode");
+		}
+	}
+
+	/**
+	 * Remote file changes between two attempts, hence staged data is discarded and download starts again from byte 0.
+	 * @throws IOException
+	 */
+	@Test
+	public void testResumeDiscardedWhenRemoteFileChanges() throws IOException {
+		DMCache.updateCacheMap("resume.checkpoint.bytes", "1024");
+		try (LocalHttpServer server = new LocalHttpServer(200000, true)) {
+			File file = new File(Files.createTempDirectory("changed").toFile(), "changed.bin");
+			CommonDownloader commonDownloader = new CommonDownloader();
+			server.setFailAfterBytes(150000);
+			try {
+				commonDownloader.download(server.getUrl("/changed.bin"), file.getPath(), 5000, 5000, 4096);
+				Assert.fail("Interrupted download should fail");
+			} catch (IOException e) {
+				Assert.assertTrue(Files.exists(StagingUtils.getJournalFile(file.getPath())));
+			}
+
+			server.setEtag("\"v2\"");
+			boolean success = commonDownloader.download(server.getUrl("/changed.bin"), file.getPath(), 5000, 5000, 4096);
+			Assert.assertTrue(success);
+			Assert.assertEquals("bytes=0-199999", server.getLastRange());
+			Assert.assertArrayEquals(server.getContent(), Files.readAllBytes(file.toPath()));
+		} finally {
+			DMCache.propertyCacheMap.remove("resume.checkpoint.bytes");
+		}
+	}
+
+	/**
+	 * Existing file at location is replaced by complete new file in a single atomic move, for every fsync.policy.
+	 * @throws IOException
+	 */
+	@Test
+	public void testPublishReplacesExistingFile() throws IOException {
+		try (LocalHttpServer server = new LocalHttpServer(100000, false)) {
+			File file = new File(Files.createTempDirectory("publish").toFile(), "publish.bin");
+			Files.write(file.toPath(), "old content".getBytes());
+			CommonDownloader commonDownloader = new CommonDownloader();
+			for (String fsyncPolicy : new String[] { "NONE", "PUBLISH", "CHECKPOINT" }) {
+				DMCache.updateCacheMap("fsync.policy", fsyncPolicy);
+				Assert.assertTrue(commonDownloader.download(server.getUrl("/publish.bin"), file.getPath(), 5000, 5000, 4096));
+				Assert.assertArrayEquals(server.getContent(), Files.readAllBytes(file.toPath()));
+				Assert.assertFalse(Files.exists(StagingUtils.getPartFile(file.getPath())));
+			}
+		} finally {
+			DMCache.propertyCacheMap.remove("fsync.policy");
+		}
+	}
+
 }
@@ -0,0 +1,159 @@
+package com.kirtesh.downloadmanager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.kirtesh.downloadmanager.cache.DMCache;
+import com.kirtesh.downloadmanager.cache.DigestManifest;
+import com.kirtesh.downloadmanager.enums.Protocols;
+import com.kirtesh.downloadmanager.metadata.DownloadMetadata;
+import com.kirtesh.downloadmanager.service.impl.CommonDownloader;
+import com.kirtesh.downloadmanager.utils.ContentStoreUtils;
+import com.kirtesh.downloadmanager.utils.StagingUtils;
+/**
+ *
+ * @author kirteshdudawat
+ *
+ * This class tests com.kirtesh.downloadmanager.utils.ContentStoreUtils
+ *
+ */
+public class TestContentStoreUtils {
+
+	@Before
+	public void enableContentStore() {
+		DMCache.propertyCacheMap.put("digest.algorithm", "SHA-256");
+		DMCache.propertyCacheMap.put("content.store.directory.name", ".store");
+	}
+
+	@After
+	public void disableContentStore() {
+		DMCache.propertyCacheMap.remove("digest.algorithm");
+		DMCache.propertyCacheMap.remove("content.store.directory.name");
+		DigestManifest.expectedDigestMap.clear();
+	}
+
+	/**
+	 * Same content downloaded from two URLs is stored once, both locations link to same object.
+	 * @throws IOException
+	 */
+	@Test
+	public void testSameContentStoredOnce() throws IOException {
+		try (LocalHttpServer server = new LocalHttpServer(200000, true)) {
+			Path directory = Files.createTempDirectory("store");
+			File first = new File(directory.toFile(), "first.bin");
+			File mirror = new File(directory.toFile(), "mirror.bin");
+			CommonDownloader commonDownloader = new CommonDownloader();
+
+			Assert.assertTrue(commonDownloader.download(server.getUrl("/v1/first.bin"), first.getPath(), 5000, 5000, 4096));
+			Assert.assertTrue(commonDownloader.download(server.getUrl("/latest/mirror.bin"), mirror.getPath(), 5000, 5000, 4096, 4, 1024));
+
+			Assert.assertTrue(Files.isSameFile(first.toPath(), mirror.toPath()));
+			Assert.assertArrayEquals(server.getContent(), Files.readAllBytes(mirror.toPath()));
+			try (Stream<Path> objects = Files.walk(directory.resolve(".store"))) {
+				Assert.assertEquals(1, objects.filter(Files::isRegularFile).count());
+			}
+			Assert.assertFalse(Files.exists(StagingUtils.getPartFile(mirror.getPath())));
+		}
+	}
+
+	/**
+	 * URL whose expected digest from manifest is already in store is linked without any request to server.
+	 * @throws IOException
+	 */
+	@Test
+	public void testStoredContentNotDownloadedAgain() throws IOException {
+		try (LocalHttpServer server = new LocalHttpServer(100000, false)) {
+			Path directory = Files.createTempDirectory("store");
+			File first = new File(directory.toFile(), "first.bin");
+			File alias = new File(directory.toFile(), "alias.bin");
+			CommonDownloader commonDownloader = new CommonDownloader();
+			Assert.assertTrue(commonDownloader.download(server.getUrl("/first.bin"), first.getPath(), 5000, 5000, 4096));
+			int getRequestCount = server.getGetRequestCount();
+
+			Path objectFile;
+			try (Stream<Path> objects = Files.walk(directory.resolve(".store"))) {
+				objectFile = objects.filter(Files::isRegularFile).findFirst().get();
+			}
+			DigestManifest.expectedDigestMap.put("alias.bin", objectFile.getFileName().toString());
+			Assert.assertEquals(objectFile, ContentStoreUtils.getObjectFile(server.getUrl("/alias.bin"), alias.getPath(), objectFile.getFileName().toString()));
+
+			Assert.assertTrue(commonDownloader.download(server.getUrl("/alias.bin"), alias.getPath(), 5000, 5000, 4096));
+			Assert.assertEquals(getRequestCount, server.getGetRequestCount());
+			Assert.assertTrue(Files.isSameFile(first.toPath(), alias.toPath()));
+		}
+	}
+
+	/**
+	 * Files downloaded to different sub directories of download directory share one store at root of download directory.
+	 * @throws IOException
+	 */
+	@Test
+	public void testNestedLocationsShareStore() throws IOException {
+		String downloadDirectoryPath = DMCache.propertyCacheMap.get("http.download.directory.path");
+		try (LocalHttpServer server = new LocalHttpServer(50000, true)) {
+			Path directory = Files.createTempDirectory("store");
+			DMCache.propertyCacheMap.put("http.download.directory.path", directory.toString());
+			File first = new File(Files.createDirectories(directory.resolve("a")).toFile(), "first.bin");
+			File second = new File(Files.createDirectories(directory.resolve("b/c")).toFile(), "second.bin");
+			CommonDownloader commonDownloader = new CommonDownloader();
+
+			Assert.assertTrue(commonDownloader.download(server.getUrl("/first.bin"), first.getPath(), 5000, 5000, 4096));
+			Assert.assertTrue(commonDownloader.download(server.getUrl("/second.bin"), second.getPath(), 5000, 5000, 4096));
+
+			Assert.assertTrue(Files.isSameFile(first.toPath(), second.toPath()));
+			Assert.assertFalse(Files.exists(directory.resolve("a/.store")));
+			Assert.assertFalse(Files.exists(directory.resolve("b/c/.store")));
+			try (Stream<Path> objects = Files.walk(directory.resolve(".store"))) {
+				Assert.assertEquals(1, objects.filter(Files::isRegularFile).count());
+			}
+		} finally {
+			if (downloadDirectoryPath == null) {
+				DMCache.propertyCacheMap.remove("http.download.directory.path");
+			} else {
+				DMCache.propertyCacheMap.put("http.download.directory.path", downloadDirectoryPath);
+			}
+		}
+	}
+
+	/**
+	 * Stored object is linked only if its size is same as probed size of remote file.
+	 * @throws IOException
+	 */
+	@Test
+	public void testStoredObjectOfDifferentSizeNotLinked() throws IOException {
+		Path directory = Files.createTempDirectory("store");
+		String digest = "ab" + "0".repeat(62);
+		DownloadMetadata downloadMetadata = new DownloadMetadata(Protocols.HTTP, "http://host/size.bin", directory.resolve("size.bin").toString());
+		Path objectFile = ContentStoreUtils.getObjectFile(downloadMetadata.getDownloadUrl(), downloadMetadata.getFilePath(), digest);
+		Files.createDirectories(objectFile.getParent());
+		Files.write(objectFile, new byte[10]);
+		DigestManifest.expectedDigestMap.put("size.bin", digest);
+
+		Assert.assertFalse(ContentStoreUtils.linkIfStored(downloadMetadata, -1));
+		Assert.assertFalse(ContentStoreUtils.linkIfStored(downloadMetadata, 11));
+		Assert.assertFalse(Files.exists(directory.resolve("size.bin")));
+		Assert.assertTrue(ContentStoreUtils.linkIfStored(downloadMetadata, 10));
+		Assert.assertTrue(Files.isSameFile(objectFile, directory.resolve("size.bin")));
+	}
+
+	/**
+	 * Store is enabled only with SHA-256, CRC32C & MD5 could map different content to same object.
+	 */
+	@Test
+	public void testStoreNeedsSha256() {
+		Assert.assertTrue(ContentStoreUtils.isEnabled());
+		DMCache.propertyCacheMap.put("digest.algorithm", "CRC32C");
+		Assert.assertFalse(ContentStoreUtils.isEnabled());
+		DMCache.propertyCacheMap.put("digest.algorithm", "MD5");
+		Assert.assertFalse(ContentStoreUtils.isEnabled());
+	}
+
+}
@@ -0,0 +1,101 @@
+package com.kirtesh.downloadmanager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.kirtesh.downloadmanager.cache.DMCache;
+import com.kirtesh.downloadmanager.cache.DigestManifest;
+import com.kirtesh.downloadmanager.cache.DigestManifest.DigestMismatchException;
+import com.kirtesh.downloadmanager.service.impl.CommonDownloader;
+import com.kirtesh.downloadmanager.utils.StagingUtils;
+/**
+ *
+ * @author kirteshdudawat
+ *
+ * This class tests com.kirtesh.downloadmanager.utils.StreamingDigest and com.kirtesh.downloadmanager.cache.DigestManifest
+ *
+ */
+public class TestDigestManifest {
+
+	private Path resultsFile;
+
+	@Before
+	public void enableDigest() throws IOException {
+		resultsFile = Files.createTempFile("digest", ".sha256");
+		DMCache.propertyCacheMap.put("digest.algorithm", "SHA-256");
+		DMCache.propertyCacheMap.put("digest.results.filepath", resultsFile.toString());
+	}
+
+	@After
+	public void disableDigest() {
+		DMCache.propertyCacheMap.remove("digest.algorithm");
+		DMCache.propertyCacheMap.remove("digest.results.filepath");
+		DigestManifest.expectedDigestMap.clear();
+	}
+
+	/**
+	 * Digest of a single stream download and of a segmented download is same as digest of content served.
+	 * @throws IOException
+	 * @throws NoSuchAlgorithmException
+	 */
+	@Test
+	public void testDigestComputedWhileDownloading() throws IOException, NoSuchAlgorithmException {
+		try (LocalHttpServer server = new LocalHttpServer(300000, true)) {
+			String expectedDigest = sha256(server.getContent());
+			Path directory = Files.createTempDirectory("digest");
+			File single = new File(directory.toFile(), "single.bin");
+			File segmented = new File(directory.toFile(), "segmented.bin");
+			CommonDownloader commonDownloader = new CommonDownloader();
+
+			Assert.assertTrue(commonDownloader.download(server.getUrl("/single.bin"), single.getPath(), 5000, 5000, 4096));
+			Assert.assertTrue(commonDownloader.download(server.getUrl("/segmented.bin"), segmented.getPath(), 5000, 5000, 4096, 4, 1024));
+
+			List<String> results = Files.readAllLines(resultsFile);
+			Assert.assertEquals(2, results.size());
+			Assert.assertEquals(expectedDigest + "  " + single.getPath(), results.get(0));
+			Assert.assertEquals(expectedDigest + "  " + segmented.getPath(), results.get(1));
+		}
+	}
+
+	/**
+	 * File not matching manifest fails with DigestMismatchException, staged data is discarded and nothing is published at location.
+	 * @throws IOException
+	 */
+	@Test
+	public void testDigestMismatchIsNotPublished() throws IOException {
+		Path manifestFile = Files.createTempFile("manifest", ".sha256");
+		Files.write(manifestFile, ("# expected digests\n" + "00000000000000000000000000000000000000000000000000000000deadbeef *mismatch.bin\n").getBytes());
+		Assert.assertTrue(DigestManifest.initialize(manifestFile));
+		try (LocalHttpServer server = new LocalHttpServer(100000, false)) {
+			File file = new File(Files.createTempDirectory("digest").toFile(), "mismatch.bin");
+			try {
+				new CommonDownloader().download(server.getUrl("/mismatch.bin"), file.getPath(), 5000, 5000, 4096);
+				Assert.fail("Download with mismatching digest must fail");
+			} catch (DigestMismatchException e) {
+				Assert.assertTrue(e.getMessage().contains("deadbeef"));
+			}
+			Assert.assertFalse(file.exists());
+			Assert.assertFalse(Files.exists(StagingUtils.getPartFile(file.getPath())));
+			Assert.assertEquals(0, Files.size(resultsFile));
+		}
+	}
+
+	private static String sha256(byte[] content) throws NoSuchAlgorithmException {
+		StringBuilder hex = new StringBuilder();
+		for (byte b : MessageDigest.getInstance("SHA-256").digest(content)) {
+			hex.append(String.format("%02x", b));
+		}
+		return hex.toString();
+	}
+
+}
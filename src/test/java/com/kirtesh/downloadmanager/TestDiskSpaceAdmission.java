@@ -0,0 +1,143 @@
+package com.kirtesh.downloadmanager;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.kirtesh.downloadmanager.cache.DMCache;
+import com.kirtesh.downloadmanager.cache.DiskSpaceAdmission;
+import com.kirtesh.downloadmanager.cache.DiskSpaceAdmission.InsufficientDiskSpaceException;
+import com.kirtesh.downloadmanager.cache.DiskSpaceAdmission.Reservation;
+import com.kirtesh.downloadmanager.metadata.ByteRange;
+import com.kirtesh.downloadmanager.metadata.DownloadJournal;
+import com.kirtesh.downloadmanager.metadata.ProbeMetadata;
+import com.kirtesh.downloadmanager.service.impl.CommonDownloader;
+import com.kirtesh.downloadmanager.utils.SegmentUtils;
+import com.kirtesh.downloadmanager.utils.StagingUtils;
+/**
+ *
+ * @author kirteshdudawat
+ *
+ * This class tests com.kirtesh.downloadmanager.cache.DiskSpaceAdmission and StagingUtils.preallocate
+ *
+ */
+public class TestDiskSpaceAdmission {
+
+	@Before
+	public void enableAdmission() {
+		DMCache.propertyCacheMap.put("disk.admission.enabled", "true");
+	}
+
+	@After
+	public void disableAdmission() {
+		DMCache.propertyCacheMap.remove("disk.admission.enabled");
+		DMCache.propertyCacheMap.remove("disk.min.free.bytes");
+		DMCache.propertyCacheMap.remove("preallocation.mode");
+	}
+
+	/**
+	 * Reserved bytes are counted against usable space till reservation is released, a download which can not fit is rejected.
+	 * @throws IOException
+	 */
+	@Test
+	public void testReservation() throws IOException {
+		String location = Files.createTempDirectory("admission").resolve("file.bin").toString();
+		long usableSpace = Files.getFileStore(Files.createTempDirectory("admission")).getUsableSpace();
+		long reservedBytes = DiskSpaceAdmission.getReservedBytes(location);
+
+		Reservation reservation = DiskSpaceAdmission.reserve(location, usableSpace / 2);
+		Assert.assertEquals(reservedBytes + usableSpace / 2, DiskSpaceAdmission.getReservedBytes(location));
+		try {
+			DiskSpaceAdmission.reserve(location, usableSpace / 2 + usableSpace / 4);
+			Assert.fail("Reservation beyond usable space must be rejected");
+		} catch (InsufficientDiskSpaceException e) {
+			Assert.assertTrue(e.getMessage().contains(location));
+		}
+		reservation.close();
+		reservation.close();
+		Assert.assertEquals(reservedBytes, DiskSpaceAdmission.getReservedBytes(location));
+		DiskSpaceAdmission.reserve(location, usableSpace / 2 + usableSpace / 4).close();
+	}
+
+	/**
+	 * Download which can not fit fails after HEAD request, before any data is requested from server.
+	 * @throws IOException
+	 */
+	@Test
+	public void testDownloadRejectedBeforeStart() throws IOException {
+		DMCache.propertyCacheMap.put("disk.min.free.bytes", String.valueOf(Long.MAX_VALUE / 2));
+		try (LocalHttpServer server = new LocalHttpServer(100000, true)) {
+			File file = new File(Files.createTempDirectory("admission").toFile(), "rejected.bin");
+			try {
+				new CommonDownloader().download(server.getUrl("/rejected.bin"), file.getPath(), 5000, 5000, 4096);
+				Assert.fail("Download must be rejected");
+			} catch (InsufficientDiskSpaceException e) {
+				Assert.assertEquals(0, server.getGetRequestCount());
+			}
+			Assert.assertFalse(file.exists());
+			Assert.assertFalse(Files.exists(StagingUtils.getPartFile(file.getPath())));
+		}
+	}
+
+	/**
+	 * FULL preallocation extends file to its final size and keeps data already written.
+	 * @throws IOException
+	 */
+	@Test
+	public void testFullPreallocation() throws IOException {
+		DMCache.propertyCacheMap.put("preallocation.mode", "FULL");
+		Path file = Files.createTempFile("preallocate", ".part");
+		Files.write(file, new byte[] { 1, 2, 3 });
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file.toFile(), "rw")) {
+			StagingUtils.preallocate(randomAccessFile, 10000);
+		}
+		byte[] content = Files.readAllBytes(file);
+		Assert.assertEquals(10000, content.length);
+		Assert.assertEquals(3, content[2]);
+		Assert.assertEquals(0, content[9999]);
+	}
+
+	/**
+	 * Reservation attached to journal shrinks to bytes still to be written at every checkpoint, so written bytes are not counted twice.
+	 * With FULL preallocation .part file is already allocated and nothing stays reserved.
+	 * @throws IOException
+	 */
+	@Test
+	public void testReservationShrinksAsFileIsWritten() throws IOException {
+		String location = Files.createTempDirectory("admission").resolve("shrink.bin").toString();
+		long reservedBytes = DiskSpaceAdmission.getReservedBytes(location);
+		List<ByteRange> ranges = SegmentUtils.split(10000, 2);
+		DownloadJournal journal = StagingUtils.createJournal(location, "http://host/shrink.bin", new ProbeMetadata(10000, true, null, null), ranges);
+		Reservation reservation = DiskSpaceAdmission.reserve(location, 10000);
+		StagingUtils.setReservation(journal, reservation);
+		Assert.assertEquals(reservedBytes + 10000, DiskSpaceAdmission.getReservedBytes(location));
+
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(StagingUtils.getPartFile(location).toFile(), "rw")) {
+			StagingUtils.checkpoint(location, journal, randomAccessFile.getChannel(), ranges.get(0), 3000);
+			Assert.assertEquals(7000, reservation.getBytes());
+			Assert.assertEquals(reservedBytes + 7000, DiskSpaceAdmission.getReservedBytes(location));
+			StagingUtils.checkpoint(location, journal, randomAccessFile.getChannel(), ranges.get(1), 10000);
+			Assert.assertEquals(2000, reservation.getBytes());
+		}
+		reservation.close();
+		Assert.assertEquals(reservedBytes, DiskSpaceAdmission.getReservedBytes(location));
+
+		DMCache.propertyCacheMap.put("preallocation.mode", "FULL");
+		String preallocated = Files.createTempDirectory("admission").resolve("full.bin").toString();
+		journal = StagingUtils.createJournal(preallocated, "http://host/full.bin", new ProbeMetadata(10000, true, null, null), SegmentUtils.split(10000, 1));
+		reservation = DiskSpaceAdmission.reserve(preallocated, 10000);
+		StagingUtils.setReservation(journal, reservation);
+		Assert.assertEquals(0, reservation.getBytes());
+		Assert.assertEquals(reservedBytes, DiskSpaceAdmission.getReservedBytes(preallocated));
+		reservation.close();
+	}
+
+}
@@ -0,0 +1,213 @@
+package com.kirtesh.downloadmanager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.kirtesh.downloadmanager.enums.Priority;
+import com.kirtesh.downloadmanager.metadata.DownloadMetadata;
+import com.kirtesh.downloadmanager.service.impl.DownloadScheduler;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ * This class tests com.kirtesh.downloadmanager.service.impl.DownloadScheduler
+ * 
+ */
+public class TestDownloadScheduler {
+
+	/**
+	 * Host holding most of the URLs gets only its permits, other hosts are dispatched in same round.
+	 */
+	@Test
+	public void testPerHostPermitsAndRoundRobin() {
+		List<String> started = new ArrayList<>();
+		Map<String, CompletableFuture<Boolean>> futures = new HashMap<>();
+		Map<String, Integer> overrides = new HashMap<>();
+		overrides.put("c.com", 1);
+		DownloadScheduler downloadScheduler = new DownloadScheduler(10, 2, overrides, downloadMetadata -> {
+			CompletableFuture<Boolean> future = new CompletableFuture<>();
+			started.add(downloadMetadata.getDownloadUrl());
+			futures.put(downloadMetadata.getDownloadUrl(), future);
+			return future;
+		});
+
+		List<DownloadMetadata> downloads = new ArrayList<>();
+		for (int i = 0; i < 6; i++) {
+			downloads.add(new DownloadMetadata(null, "http://a.com/" + i, null));
+		}
+		downloads.add(new DownloadMetadata(null, "http://b.com/0", null));
+		downloads.add(new DownloadMetadata(null, "https://C.com/0", null));
+		downloads.add(new DownloadMetadata(null, "https://c.com/1", null));
+		CompletableFuture<Void> completion = downloadScheduler.schedule(downloads);
+
+		Assert.assertEquals(4, started.size());
+		Assert.assertTrue(started.contains("http://b.com/0"));
+		Assert.assertTrue(started.contains("https://C.com/0"));
+		Assert.assertEquals(2, downloadScheduler.getInFlight("a.com"));
+		Assert.assertEquals(1, downloadScheduler.getInFlight("c.com"));
+
+		futures.get("http://b.com/0").complete(true);
+		Assert.assertEquals(4, started.size());
+
+		futures.get("http://a.com/0").complete(false);
+		Assert.assertEquals(5, started.size());
+		Assert.assertEquals(2, downloadScheduler.getInFlight("a.com"));
+
+		while (!completion.isDone()) {
+			List<String> inFlight = new ArrayList<>(futures.keySet());
+			Collections.sort(inFlight);
+			for (String url : inFlight) {
+				futures.remove(url).completeExceptionally(new RuntimeException("failed"));
+			}
+		}
+		Assert.assertEquals(9, started.size());
+	}
+
+	/**
+	 * Global limit caps downloads in flight even if hosts have free permits.
+	 */
+	@Test
+	public void testGlobalLimit() {
+		List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+		DownloadScheduler downloadScheduler = new DownloadScheduler(2, 0, new HashMap<>(), downloadMetadata -> {
+			CompletableFuture<Boolean> future = new CompletableFuture<>();
+			futures.add(future);
+			return future;
+		});
+		List<DownloadMetadata> downloads = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			downloads.add(new DownloadMetadata(null, "http://host" + i + ".com/file", null));
+		}
+		downloadScheduler.schedule(downloads);
+		Assert.assertEquals(2, futures.size());
+		futures.get(0).complete(true);
+		Assert.assertEquals(3, futures.size());
+	}
+
+	/**
+	 * Reserved permit is kept for HIGH job while LOW backlog is queued, HIGH downloads then get their share before LOW ones.
+	 */
+	@Test
+	public void testReservedPermitsForHighPriority() {
+		List<DownloadMetadata> started = new ArrayList<>();
+		List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+		DownloadScheduler downloadScheduler = new DownloadScheduler(4, 0, new HashMap<>(), new HashMap<>(), 1, downloadMetadata -> {
+			CompletableFuture<Boolean> future = new CompletableFuture<>();
+			started.add(downloadMetadata);
+			futures.add(future);
+			return future;
+		});
+		downloadScheduler.schedule(createDownloads("backfill", Priority.LOW, 20));
+		Assert.assertEquals(3, started.size());
+
+		downloadScheduler.schedule(createDownloads("urgent", Priority.HIGH, 3));
+		Assert.assertEquals(4, started.size());
+		Assert.assertEquals(Priority.HIGH, started.get(3).getPriority());
+
+		futures.get(0).complete(true);
+		futures.get(1).complete(true);
+		Assert.assertEquals(6, started.size());
+		Assert.assertEquals(Priority.HIGH, started.get(4).getPriority());
+		Assert.assertEquals(Priority.HIGH, started.get(5).getPriority());
+		Assert.assertEquals("urgent", started.get(5).getJobId());
+	}
+
+	/**
+	 * LOW class gets its weighted share while HIGH class is backlogged.
+	 */
+	@Test
+	public void testWeightedShareWithoutStarvation() {
+		List<DownloadMetadata> started = new ArrayList<>();
+		Map<String, Integer> weights = new HashMap<>();
+		weights.put("high", 8);
+		weights.put("LOW", 1);
+		DownloadScheduler downloadScheduler = new DownloadScheduler(1, 0, new HashMap<>(), weights, 5, downloadMetadata -> {
+			started.add(downloadMetadata);
+			return CompletableFuture.completedFuture(true);
+		});
+		List<DownloadMetadata> downloads = createDownloads("bulk", Priority.HIGH, 18);
+		downloads.addAll(createDownloads("backfill", Priority.LOW, 2));
+		Assert.assertTrue(downloadScheduler.schedule(downloads).isDone());
+
+		Assert.assertEquals(20, started.size());
+		List<Integer> lowPositions = new ArrayList<>();
+		for (int i = 0; i < started.size(); i++) {
+			if (started.get(i).getPriority() == Priority.LOW) {
+				lowPositions.add(i);
+			}
+		}
+		Assert.assertEquals(2, lowPositions.size());
+		Assert.assertEquals(9, lowPositions.get(1) - lowPositions.get(0));
+	}
+
+	/**
+	 * Jobs of same priority class take turns, a small job queued behind a large one is not delayed till large job finishes.
+	 */
+	@Test
+	public void testJobsShareEqually() {
+		List<String> started = new ArrayList<>();
+		List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+		DownloadScheduler downloadScheduler = new DownloadScheduler(1, 0, new HashMap<>(), downloadMetadata -> {
+			CompletableFuture<Boolean> future = new CompletableFuture<>();
+			started.add(downloadMetadata.getJobId());
+			futures.add(future);
+			return future;
+		});
+		downloadScheduler.schedule(createDownloads("large", Priority.NORMAL, 10));
+		downloadScheduler.schedule(createDownloads("small", Priority.NORMAL, 2));
+		for (int i = 0; i < 5; i++) {
+			futures.get(i).complete(true);
+		}
+		Assert.assertEquals(6, started.size());
+		Assert.assertEquals(Arrays.asList("large", "large", "small", "large", "small", "large"), started);
+	}
+
+	/**
+	 * Downloads of a gated host stay parked while other hosts are served, and are dispatched on resume once gate opens.
+	 */
+	@Test
+	public void testHostGateParksTillResume() {
+		List<String> started = new ArrayList<>();
+		Set<String> closedHosts = new HashSet<>();
+		closedHosts.add("down.com");
+		DownloadScheduler downloadScheduler = new DownloadScheduler(4, 0, new HashMap<>(), new HashMap<>(), 0,
+				host -> !closedHosts.contains(host), downloadMetadata -> {
+					started.add(downloadMetadata.getDownloadUrl());
+					return CompletableFuture.completedFuture(true);
+				});
+		List<DownloadMetadata> downloads = new ArrayList<>();
+		downloads.add(new DownloadMetadata(null, "http://down.com/0", null));
+		downloads.add(new DownloadMetadata(null, "http://down.com/1", null));
+		downloads.add(new DownloadMetadata(null, "http://up.com/0", null));
+		CompletableFuture<Void> completion = downloadScheduler.schedule(downloads);
+		Assert.assertEquals(Arrays.asList("http://up.com/0"), started);
+		Assert.assertFalse(completion.isDone());
+
+		closedHosts.clear();
+		downloadScheduler.resume();
+		Assert.assertEquals(3, started.size());
+		Assert.assertTrue(completion.isDone());
+	}
+
+	private List<DownloadMetadata> createDownloads(String jobId, Priority priority, int count) {
+		List<DownloadMetadata> downloads = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			DownloadMetadata downloadMetadata = new DownloadMetadata(null, "http://" + jobId + i + ".com/file", null);
+			downloadMetadata.setJobId(jobId);
+			downloadMetadata.setPriority(priority);
+			downloads.add(downloadMetadata);
+		}
+		return downloads;
+	}
+
+}
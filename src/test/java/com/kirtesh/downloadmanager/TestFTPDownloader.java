@@ -0,0 +1,103 @@
+package com.kirtesh.downloadmanager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.kirtesh.downloadmanager.cache.DMCache;
+import com.kirtesh.downloadmanager.cache.FTPConnectionPool;
+import com.kirtesh.downloadmanager.enums.Protocols;
+import com.kirtesh.downloadmanager.metadata.DownloadMetadata;
+import com.kirtesh.downloadmanager.metadata.ProbeMetadata;
+import com.kirtesh.downloadmanager.service.impl.FTPDownloader;
+import com.kirtesh.downloadmanager.utils.StagingUtils;
+/**
+ *
+ * @author kirteshdudawat
+ *
+ *
+ * This class tests Downloader Implementation for FTP against LocalFtpServer.
+ * Test cases for class com.kirtesh.downloadmanager.service.impl.FTPDownloader and com.kirtesh.downloadmanager.cache.FTPConnectionPool
+ *
+ */
+public class TestFTPDownloader {
+
+	@After
+	public void cleanUp() {
+		DMCache.propertyCacheMap.remove("resume.checkpoint.bytes");
+		DMCache.propertyCacheMap.remove("ftp.pool.max.connections.per.host");
+		FTPConnectionPool.closeIdleConnections();
+	}
+
+	/**
+	 * Many files from same server are downloaded over a single pooled login.
+	 * @throws IOException
+	 */
+	@Test
+	public void testFilesShareLogin() throws IOException {
+		DMCache.updateCacheMap("ftp.pool.max.connections.per.host", "1");
+		try (LocalFtpServer server = new LocalFtpServer(50000)) {
+			File directory = Files.createTempDirectory("ftp").toFile();
+			FTPDownloader ftpDownloader = new FTPDownloader();
+			for (int i = 0; i < 5; i++) {
+				File file = new File(directory, "file" + i + ".bin");
+				Assert.assertTrue(ftpDownloader.download(server.getUrl("/file" + i + ".bin"), file.getPath(), 5000, 5000, 4096));
+				Assert.assertArrayEquals(server.getContent(), Files.readAllBytes(file.toPath()));
+			}
+			Assert.assertEquals(1, server.getLoginCount());
+			Assert.assertEquals(5, server.getRetrieveCount());
+		}
+	}
+
+	/**
+	 * First attempt breaks in between, hence .part file & journal are kept in staging directory.
+	 * Second attempt resumes from last checkpoint with REST instead of starting from byte 0.
+	 * @throws IOException
+	 */
+	@Test
+	public void testResumeAfterInterruptedDownload() throws IOException {
+		DMCache.updateCacheMap("resume.checkpoint.bytes", "1024");
+		try (LocalFtpServer server = new LocalFtpServer(200000)) {
+			File file = new File(Files.createTempDirectory("ftp-resume").toFile(), "resume.bin");
+			FTPDownloader ftpDownloader = new FTPDownloader();
+			server.setFailAfterBytes(150000);
+			try {
+				ftpDownloader.download(server.getUrl("/resume.bin"), file.getPath(), 5000, 5000, 4096);
+				Assert.fail("Interrupted download should fail");
+			} catch (IOException e) {
+				Assert.assertFalse(file.exists());
+				Assert.assertTrue(Files.exists(StagingUtils.getJournalFile(file.getPath())));
+			}
+
+			Assert.assertTrue(ftpDownloader.download(server.getUrl("/resume.bin"), file.getPath(), 5000, 5000, 4096));
+			Assert.assertTrue(server.getLastRestartOffset() > 0);
+			Assert.assertArrayEquals(server.getContent(), Files.readAllBytes(file.toPath()));
+			Assert.assertFalse(Files.exists(StagingUtils.getJournalFile(file.getPath())));
+		}
+	}
+
+	/**
+	 * Server without REST support is downloaded as a single stream from byte 0.
+	 * @throws IOException
+	 */
+	@Test
+	public void testDownloadWithoutRestSupport() throws IOException {
+		try (LocalFtpServer server = new LocalFtpServer(30000)) {
+			server.setRestSupported(false);
+			File file = new File(Files.createTempDirectory("ftp-stream").toFile(), "stream.bin");
+			FTPDownloader ftpDownloader = new FTPDownloader();
+			ProbeMetadata probeMetadata = ftpDownloader.probe(new DownloadMetadata(Protocols.FTP, server.getUrl("/stream.bin"), file.getPath()));
+			Assert.assertEquals(30000, probeMetadata.getContentLength());
+			Assert.assertFalse(probeMetadata.isResumable());
+			Assert.assertEquals("20260101000000", probeMetadata.getLastModified());
+
+			Assert.assertTrue(ftpDownloader.download(server.getUrl("/stream.bin"), file.getPath(), 5000, 5000, 4096));
+			Assert.assertArrayEquals(server.getContent(), Files.readAllBytes(file.toPath()));
+		}
+	}
+
+}
@@ -0,0 +1,139 @@
+package com.kirtesh.downloadmanager;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.kirtesh.downloadmanager.cache.DigestManifest.DigestMismatchException;
+import com.kirtesh.downloadmanager.cache.DiskSpaceAdmission.InsufficientDiskSpaceException;
+import com.kirtesh.downloadmanager.enums.CircuitState;
+import com.kirtesh.downloadmanager.service.impl.CommonDownloader.HttpStatusException;
+import com.kirtesh.downloadmanager.service.impl.HostCircuitBreaker;
+import com.kirtesh.downloadmanager.service.impl.HostCircuitBreaker.CircuitOpenException;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ * This class tests com.kirtesh.downloadmanager.service.impl.HostCircuitBreaker
+ * 
+ */
+public class TestHostCircuitBreaker {
+
+	private ScheduledExecutorService timer;
+
+	private Semaphore probeDue;
+
+	@Before
+	public void setUp() {
+		timer = Executors.newSingleThreadScheduledExecutor();
+		probeDue = new Semaphore(0);
+	}
+
+	@After
+	public void tearDown() {
+		timer.shutdownNow();
+	}
+
+	/**
+	 * Circuit opens after threshold failures in a row, lets a single probe through once open time has passed and closes when probe succeeds.
+	 */
+	@Test
+	public void testOpenHalfOpenClose() throws Exception {
+		HostCircuitBreaker hostCircuitBreaker = new HostCircuitBreaker(3, 200, timer, probeDue::release);
+		hostCircuitBreaker.record("a.com", null, new ConnectException("Connection refused"));
+		hostCircuitBreaker.record("a.com", null, new ConnectException("Connection refused"));
+		hostCircuitBreaker.record("a.com", true, null);
+		hostCircuitBreaker.record("a.com", null, new ConnectException("Connection refused"));
+		hostCircuitBreaker.record("a.com", null, new InsufficientDiskSpaceException("disk full"));
+		hostCircuitBreaker.record("a.com", null, new ConnectException("Connection refused"));
+		Assert.assertEquals(CircuitState.CLOSED, hostCircuitBreaker.getState("a.com"));
+
+		hostCircuitBreaker.record("a.com", null, new ConnectException("Connection refused"));
+		Assert.assertEquals(CircuitState.OPEN, hostCircuitBreaker.getState("a.com"));
+		Assert.assertFalse(hostCircuitBreaker.isDispatchable("a.com"));
+		Assert.assertTrue(hostCircuitBreaker.isDispatchable("b.com"));
+		assertParked(hostCircuitBreaker, "a.com");
+
+		Assert.assertTrue(probeDue.tryAcquire(5, TimeUnit.SECONDS));
+		Assert.assertTrue(hostCircuitBreaker.isDispatchable("a.com"));
+		hostCircuitBreaker.acquire("a.com");
+		Assert.assertEquals(CircuitState.HALF_OPEN, hostCircuitBreaker.getState("a.com"));
+		Assert.assertFalse(hostCircuitBreaker.isDispatchable("a.com"));
+		assertParked(hostCircuitBreaker, "a.com");
+
+		hostCircuitBreaker.record("a.com", true, null);
+		Assert.assertEquals(CircuitState.CLOSED, hostCircuitBreaker.getState("a.com"));
+		hostCircuitBreaker.acquire("a.com");
+	}
+
+	/**
+	 * Failed probe opens circuit again for another open time.
+	 */
+	@Test
+	public void testFailedProbeReopens() throws Exception {
+		HostCircuitBreaker hostCircuitBreaker = new HostCircuitBreaker(1, 100, timer, probeDue::release);
+		hostCircuitBreaker.record("a.com", null, new SocketTimeoutException("Read timed out"));
+		Assert.assertTrue(probeDue.tryAcquire(5, TimeUnit.SECONDS));
+		hostCircuitBreaker.acquire("a.com");
+		hostCircuitBreaker.record("a.com", null, new SocketTimeoutException("Read timed out"));
+		Assert.assertEquals(CircuitState.OPEN, hostCircuitBreaker.getState("a.com"));
+		assertParked(hostCircuitBreaker, "a.com");
+		Assert.assertTrue(probeDue.tryAcquire(5, TimeUnit.SECONDS));
+		Assert.assertTrue(hostCircuitBreaker.isDispatchable("a.com"));
+	}
+
+	/**
+	 * Only unreachable or failing host counts as failure: 404, digest mismatch and local errors do not open circuit, 5xx, reset and unsuccessful result do.
+	 */
+	@Test
+	public void testOnlyHostFailuresCount() throws Exception {
+		HostCircuitBreaker hostCircuitBreaker = new HostCircuitBreaker(1, 60000, timer, probeDue::release);
+		hostCircuitBreaker.record("a.com", null, new HttpStatusException(404, "Server returned HTTP status 404"));
+		hostCircuitBreaker.record("a.com", null, new DigestMismatchException("Digest mismatch"));
+		hostCircuitBreaker.record("a.com", null, new IOException("No such file or directory"));
+		hostCircuitBreaker.record("a.com", null, new HttpStatusException(429, "Server returned HTTP status 429"));
+		Assert.assertEquals(CircuitState.CLOSED, hostCircuitBreaker.getState("a.com"));
+
+		hostCircuitBreaker.record("a.com", null, new HttpStatusException(503, "Server returned HTTP status 503"));
+		Assert.assertEquals(CircuitState.OPEN, hostCircuitBreaker.getState("a.com"));
+		hostCircuitBreaker.record("b.com", null, new CompletionException(new IOException("Connection reset")));
+		Assert.assertEquals(CircuitState.OPEN, hostCircuitBreaker.getState("b.com"));
+		hostCircuitBreaker.record("c.com", false, null);
+		Assert.assertEquals(CircuitState.OPEN, hostCircuitBreaker.getState("c.com"));
+	}
+
+	/**
+	 * Probe given back without outcome leaves circuit open with a new probe due right away.
+	 */
+	@Test
+	public void testReleasedProbeDueAgain() throws Exception {
+		HostCircuitBreaker hostCircuitBreaker = new HostCircuitBreaker(1, 100, timer, probeDue::release);
+		hostCircuitBreaker.record("a.com", null, new ConnectException("Connection refused"));
+		Assert.assertTrue(probeDue.tryAcquire(5, TimeUnit.SECONDS));
+		hostCircuitBreaker.acquire("a.com");
+		hostCircuitBreaker.release("a.com");
+		Assert.assertEquals(CircuitState.OPEN, hostCircuitBreaker.getState("a.com"));
+		Assert.assertTrue(probeDue.tryAcquire(5, TimeUnit.SECONDS));
+		Assert.assertTrue(hostCircuitBreaker.isDispatchable("a.com"));
+	}
+
+	private void assertParked(HostCircuitBreaker hostCircuitBreaker, String host) {
+		try {
+			hostCircuitBreaker.acquire(host);
+			Assert.fail("Attempt on open circuit was let through");
+		} catch (CircuitOpenException e) {
+			// expected
+		}
+	}
+
+}
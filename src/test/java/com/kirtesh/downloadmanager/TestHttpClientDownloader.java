@@ -0,0 +1,102 @@
+package com.kirtesh.downloadmanager;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.kirtesh.downloadmanager.service.impl.HttpClientDownloader;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ *
+ * Test cases for class com.kirtesh.downloadmanager.service.impl.HttpClientDownloader. 
+ * Downloads are done from LocalHttpServer, hence no external host is required.
+ * 
+ */
+public class TestHttpClientDownloader {
+
+	/**
+	 * Many small files from same host are downloaded through shared pooled HttpClient.
+	 * @throws IOException
+	 */
+	@Test
+	public void testDownloadManyFilesFromSameHost() throws IOException {
+		try (LocalHttpServer server = new LocalHttpServer(20000, false)) {
+			File directory = Files.createTempDirectory("httpclient").toFile();
+			HttpClientDownloader httpClientDownloader = new HttpClientDownloader();
+			for (int i = 0; i < 20; i++) {
+				File file = new File(directory, "file" + i);
+				boolean success = httpClientDownloader.download(server.getUrl("/file" + i), file.getPath(), 5000, 5000, 4096);
+				Assert.assertTrue(success);
+				Assert.assertArrayEquals(server.getContent(), Files.readAllBytes(file.toPath()));
+			}
+		}
+	}
+
+	/**
+	 * Server supports byte ranges, hence file is downloaded in segments through HttpClient.
+	 * @throws IOException
+	 */
+	@Test
+	public void testSegmentedDownload() throws IOException {
+		try (LocalHttpServer server = new LocalHttpServer(500001, true)) {
+			File file = new File(Files.createTempDirectory("httpclient").toFile(), "segmented.bin");
+			HttpClientDownloader httpClientDownloader = new HttpClientDownloader();
+			boolean success = httpClientDownloader.download(server.getUrl("/segmented.bin"), file.getPath(), 5000, 5000, 4096, 3, 1024);
+			Assert.assertTrue(success);
+			Assert.assertEquals(3, server.getGetRequestCount());
+			Assert.assertArrayEquals(server.getContent(), Files.readAllBytes(file.toPath()));
+		}
+	}
+
+	/**
+	 * Response body stalls mid way for longer than read timeout, hence watchdog closes it and blocked read fails with SocketTimeoutException.
+	 * @throws IOException
+	 */
+	@Test
+	public void testStalledBodyTimesOut() throws IOException {
+		ExecutorService executor = Executors.newCachedThreadPool();
+		try (LocalHttpServer server = new LocalHttpServer(100000, false, executor)) {
+			server.setStallAfterBytes(10000);
+			File file = new File(Files.createTempDirectory("httpclient").toFile(), "stalled.bin");
+			HttpClientDownloader httpClientDownloader = new HttpClientDownloader();
+			long startedAt = System.currentTimeMillis();
+			try {
+				httpClientDownloader.download(server.getUrl("/stalled.bin"), file.getPath(), 5000, 300, 4096);
+				Assert.fail("Stalled body should time out");
+			} catch (IOException e) {
+				Throwable cause = e;
+				while (cause != null && !(cause instanceof SocketTimeoutException)) {
+					cause = cause.getCause();
+				}
+				Assert.assertNotNull(cause);
+			}
+			Assert.assertTrue(System.currentTimeMillis() - startedAt < 2500);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Unknown host should fail download without breaking flow.
+	 * @throws IOException
+	 */
+	@Test
+	public void testForUnknownHostURL() throws IOException {
+		HttpClientDownloader httpClientDownloader = new HttpClientDownloader();
+		File file = new File(Files.createTempDirectory("httpclient").toFile(), "test");
+		try {
+			Assert.assertFalse(httpClientDownloader.download("http://malformedURL/test", file.getPath(), 5000, 5000, 1024));
+		} catch (IOException e) {
+			Assert.assertFalse(file.exists());
+		}
+	}
+
+}
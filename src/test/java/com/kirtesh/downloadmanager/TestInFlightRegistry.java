@@ -0,0 +1,142 @@
+package com.kirtesh.downloadmanager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.kirtesh.downloadmanager.cache.DMCache;
+import com.kirtesh.downloadmanager.cache.RevalidationIndex;
+import com.kirtesh.downloadmanager.enums.Protocols;
+import com.kirtesh.downloadmanager.metadata.DownloadMetadata;
+import com.kirtesh.downloadmanager.service.impl.CommonDownloader;
+import com.kirtesh.downloadmanager.service.impl.DownloadExecutorServiceImpl;
+import com.kirtesh.downloadmanager.service.impl.InFlightRegistry;
+import com.kirtesh.downloadmanager.service.startup.impl.StartUpServiceImpl;
+import com.kirtesh.downloadmanager.utils.CommonUtils;
+import com.kirtesh.downloadmanager.utils.DownloadUtils;
+/**
+ *
+ * @author kirteshdudawat
+ *
+ * This class tests com.kirtesh.downloadmanager.service.impl.InFlightRegistry and CommonUtils.normalizeUrl, along with URLs listed more than once in download file.
+ *
+ */
+public class TestInFlightRegistry {
+
+	/**
+	 * URLs pointing to same resource are normalized to same String.
+	 */
+	@Test
+	public void testNormalizeUrl() {
+		Assert.assertEquals("http://host/a", CommonUtils.normalizeUrl("http://Host:80/a"));
+		Assert.assertEquals("http://host/a", CommonUtils.normalizeUrl("  HTTP://host/./a#section \t"));
+		Assert.assertEquals("https://host:8443/", CommonUtils.normalizeUrl("https://HOST:8443"));
+		Assert.assertEquals("sftp://user:pw@host/dir/File.txt?x=1", CommonUtils.normalizeUrl("sftp://user:pw@Host:22/dir/File.txt?x=1"));
+		Assert.assertEquals("maliformedUrl", CommonUtils.normalizeUrl(" maliformedUrl "));
+	}
+
+	/**
+	 * Second download of same resource waits for first one and gets its file, without being transferred again.
+	 * @throws IOException
+	 * @throws ExecutionException
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testDuplicateDownloadCoalesced() throws IOException, InterruptedException, ExecutionException {
+		try (LocalHttpServer server = new LocalHttpServer(50000, false)) {
+			Path directory = Files.createTempDirectory("coalesce");
+			File leaderFile = new File(directory.toFile(), "leader.bin");
+			File followerFile = new File(directory.toFile(), "follower.bin");
+			String url = server.getUrl("/coalesce.bin");
+			DownloadMetadata leader = new DownloadMetadata(Protocols.HTTP, url, leaderFile.getPath());
+			DownloadMetadata follower = new DownloadMetadata(Protocols.HTTP, " " + url.replace("http://", "HTTP://") + " ", followerFile.getPath());
+
+			InFlightRegistry inFlightRegistry = new InFlightRegistry();
+			Assert.assertNull(inFlightRegistry.join(leader));
+			CompletableFuture<Boolean> followerFuture = inFlightRegistry.join(follower);
+			Assert.assertNotNull(followerFuture);
+			Assert.assertFalse(followerFuture.isDone());
+
+			Assert.assertTrue(new CommonDownloader().download(url, leaderFile.getPath(), 5000, 5000, 4096));
+			inFlightRegistry.complete(leader, true);
+
+			Assert.assertTrue(followerFuture.get());
+			Assert.assertEquals(1, server.getGetRequestCount());
+			Assert.assertEquals(0, inFlightRegistry.size());
+			Assert.assertArrayEquals(server.getContent(), Files.readAllBytes(followerFile.toPath()));
+			Assert.assertNull(inFlightRegistry.join(follower));
+		}
+	}
+
+	/**
+	 * URL listed twice in download file, along with a variant with upper case scheme, gets one file per distinct URL, both served by a single fetch through downloadUrls.
+	 * Published variant is recorded in RevalidationIndex, so next run reuses both files instead of creating new names.
+	 * @throws Exception
+	 */
+	@Test
+	public void testDuplicateListingsServedByOneFetch() throws Exception {
+		String[] properties = { "download.url.filepath", "http.download.directory.path", "create.download.filepath", "override.existing.file",
+				"scheduled.threadpool.core.size", "retry.exponential.backoff.millis", "retry.exponential.backoff.multiplier", "retry.max.delay.millis",
+				"http.buffer.size", "http.connection.timeout.millis", "http.read.timeout.millis" };
+		try (LocalHttpServer server = new LocalHttpServer(50000, false)) {
+			server.setEtag("\"v1\"");
+			Path directory = Files.createTempDirectory("listings");
+			Assert.assertTrue(RevalidationIndex.initialize(directory.resolve("revalidation.index")));
+			String url = server.getUrl("/listed.bin");
+			String variant = url.replace("http://", "HTTP://");
+			Path urlFile = Files.write(directory.resolve("urls.txt"), Arrays.asList(url, url, variant));
+			DMCache.updateCacheMap("download.url.filepath", urlFile.toString());
+			DMCache.updateCacheMap("http.download.directory.path", directory.toString() + File.separator);
+			DMCache.updateCacheMap("create.download.filepath", "true");
+			DMCache.updateCacheMap("override.existing.file", "false");
+			DMCache.updateCacheMap("scheduled.threadpool.core.size", "2");
+			DMCache.updateCacheMap("retry.exponential.backoff.millis", "100");
+			DMCache.updateCacheMap("retry.exponential.backoff.multiplier", "2");
+			DMCache.updateCacheMap("retry.max.delay.millis", "100");
+			DMCache.updateCacheMap("http.buffer.size", "4096");
+			DMCache.updateCacheMap("http.connection.timeout.millis", "5000");
+			DMCache.updateCacheMap("http.read.timeout.millis", "5000");
+
+			Assert.assertTrue(new StartUpServiceImpl().initializeDownloadUrlsList());
+			Map<String, DownloadMetadata> urlToMetadataMapping = new DownloadUtils().downloadPreprocessing();
+			Assert.assertEquals(2, urlToMetadataMapping.size());
+			new DownloadExecutorServiceImpl().downloadUrls(urlToMetadataMapping);
+
+			Path first = directory.resolve("listed.bin");
+			Path second = directory.resolve("listed(1).bin");
+			long deadline = System.currentTimeMillis() + 10000;
+			while (RevalidationIndex.get(variant) == null && System.currentTimeMillis() < deadline) {
+				Thread.sleep(20);
+			}
+			Assert.assertArrayEquals(server.getContent(), Files.readAllBytes(first));
+			Assert.assertArrayEquals(server.getContent(), Files.readAllBytes(second));
+			Assert.assertFalse(Files.exists(directory.resolve("listed(2).bin")));
+			Assert.assertEquals(1, server.getGetRequestCount());
+
+			Set<String> filePaths = new HashSet<>();
+			for (DownloadMetadata downloadMetadata : new DownloadUtils().downloadPreprocessing().values()) {
+				filePaths.add(downloadMetadata.getFilePath());
+			}
+			Assert.assertEquals(new HashSet<>(Arrays.asList(first.toString(), second.toString())), filePaths);
+		} finally {
+			for (String property : properties) {
+				DMCache.propertyCacheMap.remove(property);
+			}
+			DMCache.downloadUrl.clear();
+			DMCache.downloadUrlOptions.clear();
+			DMCache.downloadUrlVariants.clear();
+			RevalidationIndex.close();
+		}
+	}
+
+}
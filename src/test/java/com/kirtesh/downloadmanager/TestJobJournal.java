@@ -0,0 +1,204 @@
+package com.kirtesh.downloadmanager;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.kirtesh.downloadmanager.cache.DMCache;
+import com.kirtesh.downloadmanager.cache.JobJournal;
+import com.kirtesh.downloadmanager.enums.JobState;
+import com.kirtesh.downloadmanager.service.startup.impl.StartUpServiceImpl;
+/**
+ *
+ * @author kirteshdudawat
+ *
+ * This class tests com.kirtesh.downloadmanager.cache.JobJournal and its replay at Startup in StartUpServiceImpl.
+ *
+ */
+public class TestJobJournal {
+
+	@After
+	public void closeJournal() {
+		JobJournal.close();
+		DMCache.propertyCacheMap.remove("job.journal.filepath");
+		DMCache.propertyCacheMap.remove("job.journal.retry.failed.only");
+		DMCache.downloadUrl.clear();
+	}
+
+	/**
+	 * Last record of every URL survives restart, a completed URL stays completed only while its file is on disk with recorded size.
+	 * @throws IOException
+	 */
+	@Test
+	public void testJournalReplayedAfterRestart() throws IOException {
+		Path directory = Files.createTempDirectory("journal");
+		Path journalFile = directory.resolve("job.journal");
+		Path file = Files.write(directory.resolve("a.bin"), new byte[100]);
+		Assert.assertTrue(JobJournal.initialize(journalFile, 0));
+		JobJournal.queued("http://host/a");
+		JobJournal.queued("http://host/b");
+		JobJournal.queued("http://host/c");
+		JobJournal.started("http://host/a");
+		JobJournal.started("http://host/b");
+		JobJournal.completed("http://host/a", file.toString());
+		JobJournal.failed("http://host/b", new IOException("Connection reset"));
+		JobJournal.sync();
+
+		Assert.assertTrue(JobJournal.initialize(journalFile, 0));
+		Assert.assertEquals(JobState.COMPLETED, JobJournal.get("http://host/a").getJobState());
+		Assert.assertEquals(100, JobJournal.get("http://host/a").getContentLength());
+		Assert.assertTrue(JobJournal.isCompleted("http://host/a"));
+		Assert.assertEquals(JobState.FAILED, JobJournal.get("http://host/b").getJobState());
+		Assert.assertEquals("java.io.IOException: Connection reset", JobJournal.get("http://host/b").getError());
+		Assert.assertEquals(JobState.QUEUED, JobJournal.get("http://host/c").getJobState());
+		Assert.assertEquals(Collections.singletonList("http://host/b"), JobJournal.getDeadLetteredUrls());
+
+		Files.write(file, new byte[50]);
+		Assert.assertFalse(JobJournal.isCompleted("http://host/a"));
+	}
+
+	/**
+	 * Records appended concurrently are committed in batches, every record is on disk once sync returns. Partially written tail is truncated on load.
+	 * @throws Exception
+	 */
+	@Test
+	public void testGroupCommitAndTruncatedTail() throws Exception {
+		Path journalFile = Files.createTempDirectory("journal").resolve("job.journal");
+		Assert.assertTrue(JobJournal.initialize(journalFile, 20));
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			int thread = t;
+			threads.add(new Thread(() -> {
+				for (int i = 0; i < 250; i++) {
+					JobJournal.queued("http://host/" + thread + "/" + i);
+				}
+			}));
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		JobJournal.sync();
+		long journalSize = Files.size(journalFile);
+		Assert.assertTrue(journalSize > 0);
+		JobJournal.close();
+
+		Files.write(journalFile, new byte[] { 0, 0, 0, 40, 1 }, StandardOpenOption.APPEND);
+		Assert.assertTrue(JobJournal.initialize(journalFile, 20));
+		Assert.assertEquals(1000, JobJournal.jobEntryMap.size());
+		Assert.assertEquals(journalSize, Files.size(journalFile));
+	}
+
+	/**
+	 * Zero filled tail, length beyond end of file, negative length and unknown job state are treated as end of journal and truncated, earlier records are kept.
+	 * @throws Exception
+	 */
+	@Test
+	public void testCorruptTailTruncated() throws Exception {
+		byte[][] tails = { new byte[4096], { 0x7f, -1, -1, -1, 1, 2 }, { -1, -1, -1, -2, 1 }, { 0, 0, 0, 3, 99, 0, 0 } };
+		for (byte[] tail : tails) {
+			Path journalFile = Files.createTempDirectory("journal").resolve("job.journal");
+			Assert.assertTrue(JobJournal.initialize(journalFile, 0));
+			JobJournal.queued("http://host/a");
+			JobJournal.sync();
+			JobJournal.close();
+			long journalSize = Files.size(journalFile);
+
+			Files.write(journalFile, tail, StandardOpenOption.APPEND);
+			Assert.assertTrue(JobJournal.initialize(journalFile, 0));
+			Assert.assertEquals(JobState.QUEUED, JobJournal.get("http://host/a").getJobState());
+			Assert.assertEquals(journalSize, Files.size(journalFile));
+			JobJournal.close();
+		}
+	}
+
+	/**
+	 * URLs completed in an unfinished run are skipped at Startup, with job.journal.retry.failed.only only dead-lettered URLs are downloaded.
+	 * @throws IOException
+	 */
+	@Test
+	public void testStartUpReplay() throws IOException {
+		Path directory = Files.createTempDirectory("journal");
+		Path journalFile = directory.resolve("job.journal");
+		Path file = Files.write(directory.resolve("a.bin"), new byte[10]);
+		Assert.assertTrue(JobJournal.initialize(journalFile, 0));
+		JobJournal.completed("http://host/a", file.toString());
+		JobJournal.failed("http://host/b", null);
+		JobJournal.queued("http://host/d");
+		JobJournal.close();
+		DMCache.updateCacheMap("job.journal.filepath", journalFile.toString());
+		DMCache.downloadUrl.addAll(Arrays.asList("http://host/a", "http://host/c"));
+
+		Assert.assertTrue(new StartUpServiceImpl().initializeJobJournal());
+		Assert.assertEquals(Collections.singleton("http://host/c"), DMCache.downloadUrl);
+
+		DMCache.updateCacheMap("job.journal.retry.failed.only", "true");
+		Assert.assertTrue(new StartUpServiceImpl().initializeJobJournal());
+		Assert.assertEquals(Collections.singleton("http://host/b"), DMCache.downloadUrl);
+	}
+
+	/**
+	 * Run which completed or dead-lettered every URL leaves only dead-lettered URLs in journal, so its completed URLs are not skipped by next run.
+	 * @throws IOException
+	 */
+	@Test
+	public void testFinishedRunKeepsOnlyDeadLettered() throws IOException {
+		Path directory = Files.createTempDirectory("journal");
+		Path journalFile = directory.resolve("job.journal");
+		Path file = Files.write(directory.resolve("a.bin"), new byte[10]);
+		Assert.assertTrue(JobJournal.initialize(journalFile, 0));
+		JobJournal.queued("http://host/a");
+		JobJournal.queued("http://host/b");
+		JobJournal.completed("http://host/a", file.toString());
+		JobJournal.failed("http://host/b", null);
+		JobJournal.close();
+
+		Assert.assertTrue(JobJournal.initialize(journalFile, 0));
+		Assert.assertNull(JobJournal.get("http://host/a"));
+		Assert.assertFalse(JobJournal.isCompleted("http://host/a"));
+		Assert.assertEquals(Collections.singletonList("http://host/b"), JobJournal.getDeadLetteredUrls());
+	}
+
+	/**
+	 * Batch which can not be written is not acknowledged, sync fails and no more records are taken.
+	 * @throws Exception
+	 */
+	@Test
+	public void testCommitFailureStopsJournal() throws Exception {
+		Path journalFile = Files.createTempDirectory("journal").resolve("job.journal");
+		Assert.assertTrue(JobJournal.initialize(journalFile, 0));
+		JobJournal.queued("http://host/a");
+		JobJournal.sync();
+		Field fileChannel = JobJournal.class.getDeclaredField("fileChannel");
+		fileChannel.setAccessible(true);
+		((FileChannel) fileChannel.get(null)).close();
+
+		JobJournal.completed("http://host/a", journalFile.toString());
+		try {
+			JobJournal.sync();
+			Assert.fail("Failed commit was acknowledged");
+		} catch (IOException e) {
+			// expected
+		}
+		JobJournal.failed("http://host/b", null);
+		Assert.assertNull(JobJournal.get("http://host/b"));
+		JobJournal.close();
+
+		Assert.assertTrue(JobJournal.initialize(journalFile, 0));
+		Assert.assertEquals(JobState.QUEUED, JobJournal.get("http://host/a").getJobState());
+	}
+
+}
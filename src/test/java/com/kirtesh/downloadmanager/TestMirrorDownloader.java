@@ -0,0 +1,130 @@
+package com.kirtesh.downloadmanager;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.kirtesh.downloadmanager.cache.DMCache;
+import com.kirtesh.downloadmanager.enums.Protocols;
+import com.kirtesh.downloadmanager.factory.RequestRoutingFactory;
+import com.kirtesh.downloadmanager.metadata.DownloadMetadata;
+import com.kirtesh.downloadmanager.service.impl.MirrorDownloader;
+import com.kirtesh.downloadmanager.utils.StagingUtils;
+/**
+ *
+ * @author kirteshdudawat
+ *
+ *
+ * Test cases for class com.kirtesh.downloadmanager.service.impl.MirrorDownloader.
+ * Mirrors are LocalHttpServer of same content length, hence serve same content.
+ *
+ */
+public class TestMirrorDownloader {
+
+	private static final int CONTENT_LENGTH = 200000;
+
+	@Before
+	public void setUp() {
+		DMCache.updateCacheMap("http.buffer.size", "4096");
+		DMCache.updateCacheMap("http.connection.timeout.millis", "5000");
+		DMCache.updateCacheMap("http.read.timeout.millis", "5000");
+		DMCache.updateCacheMap("mirror.chunk.size.bytes", "10000");
+		DMCache.updateCacheMap("mirror.connections.per.source", "2");
+		DMCache.updateCacheMap("mirror.max.failures", "2");
+	}
+
+	@After
+	public void tearDown() {
+		DMCache.propertyCacheMap.remove("http.buffer.size");
+		DMCache.propertyCacheMap.remove("http.connection.timeout.millis");
+		DMCache.propertyCacheMap.remove("http.read.timeout.millis");
+		DMCache.propertyCacheMap.remove("mirror.chunk.size.bytes");
+		DMCache.propertyCacheMap.remove("mirror.connections.per.source");
+		DMCache.propertyCacheMap.remove("mirror.max.failures");
+	}
+
+	/**
+	 * File with mirrors is routed to MirrorDownloader, chunks are pulled from both sources.
+	 */
+	@Test
+	public void testChunksSpreadAcrossMirrors() throws Exception {
+		try (LocalHttpServer origin = new LocalHttpServer(CONTENT_LENGTH, true);
+				LocalHttpServer mirror = new LocalHttpServer(CONTENT_LENGTH, true)) {
+			origin.setResponseDelayMillis(5);
+			mirror.setResponseDelayMillis(5);
+			File file = new File(Files.createTempDirectory("mirror").toFile(), "spread.bin");
+			DownloadMetadata downloadMetadata = newDownloadMetadata(origin.getUrl("/spread.bin"), file, mirror.getUrl("/spread.bin"));
+			Assert.assertTrue(RequestRoutingFactory.getDownloaderImpl(downloadMetadata) instanceof MirrorDownloader);
+
+			Assert.assertTrue(RequestRoutingFactory.getDownloaderImpl(downloadMetadata).download(downloadMetadata));
+			Assert.assertArrayEquals(origin.getContent(), Files.readAllBytes(file.toPath()));
+			Assert.assertTrue(origin.getGetRequestCount() > 0);
+			Assert.assertTrue(mirror.getGetRequestCount() > 0);
+			Assert.assertEquals(CONTENT_LENGTH / 10000, origin.getGetRequestCount() + mirror.getGetRequestCount());
+			Assert.assertFalse(Files.exists(StagingUtils.getJournalFile(file.getPath())));
+		}
+	}
+
+	/**
+	 * Response of mirror breaks midway, chunk is finished by origin from its last checkpoint.
+	 */
+	@Test
+	public void testFailedChunkMovedToHealthyMirror() throws Exception {
+		DMCache.updateCacheMap("resume.checkpoint.bytes", "1024");
+		try (LocalHttpServer origin = new LocalHttpServer(CONTENT_LENGTH, true);
+				LocalHttpServer mirror = new LocalHttpServer(CONTENT_LENGTH, true)) {
+			mirror.setFailAfterBytes(5000);
+			File file = new File(Files.createTempDirectory("mirror").toFile(), "failed.bin");
+			DownloadMetadata downloadMetadata = newDownloadMetadata(origin.getUrl("/failed.bin"), file, mirror.getUrl("/failed.bin"));
+
+			Assert.assertTrue(new MirrorDownloader().download(downloadMetadata));
+			Assert.assertArrayEquals(origin.getContent(), Files.readAllBytes(file.toPath()));
+		} finally {
+			DMCache.propertyCacheMap.remove("resume.checkpoint.bytes");
+		}
+	}
+
+	/**
+	 * Mirror of different size is not used, file is downloaded from origin alone.
+	 */
+	@Test
+	public void testMirrorOfDifferentSizeNotUsed() throws Exception {
+		try (LocalHttpServer origin = new LocalHttpServer(CONTENT_LENGTH, true);
+				LocalHttpServer mirror = new LocalHttpServer(CONTENT_LENGTH + 1, true)) {
+			File file = new File(Files.createTempDirectory("mirror").toFile(), "size.bin");
+			DownloadMetadata downloadMetadata = newDownloadMetadata(origin.getUrl("/size.bin"), file, mirror.getUrl("/size.bin"));
+
+			Assert.assertTrue(new MirrorDownloader().download(downloadMetadata));
+			Assert.assertArrayEquals(origin.getContent(), Files.readAllBytes(file.toPath()));
+			Assert.assertEquals(0, mirror.getGetRequestCount());
+		}
+	}
+
+	/**
+	 * No source supports byte ranges, file is downloaded from origin as a single stream.
+	 */
+	@Test
+	public void testFallbackWithoutByteRanges() throws Exception {
+		try (LocalHttpServer origin = new LocalHttpServer(CONTENT_LENGTH, false);
+				LocalHttpServer mirror = new LocalHttpServer(CONTENT_LENGTH, false)) {
+			File file = new File(Files.createTempDirectory("mirror").toFile(), "stream.bin");
+			DownloadMetadata downloadMetadata = newDownloadMetadata(origin.getUrl("/stream.bin"), file, mirror.getUrl("/stream.bin"));
+
+			Assert.assertTrue(new MirrorDownloader().download(downloadMetadata));
+			Assert.assertArrayEquals(origin.getContent(), Files.readAllBytes(file.toPath()));
+			Assert.assertEquals(0, mirror.getGetRequestCount());
+		}
+	}
+
+	private static DownloadMetadata newDownloadMetadata(String url, File file, String... mirrorUrls) {
+		DownloadMetadata downloadMetadata = new DownloadMetadata(Protocols.HTTP, url, file.getPath());
+		downloadMetadata.setMirrorUrls(Arrays.asList(mirrorUrls));
+		return downloadMetadata;
+	}
+
+}
@@ -0,0 +1,57 @@
+package com.kirtesh.downloadmanager;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.kirtesh.downloadmanager.cache.DMCache;
+import com.kirtesh.downloadmanager.enums.Protocols;
+import com.kirtesh.downloadmanager.enums.SchedulingPolicy;
+import com.kirtesh.downloadmanager.metadata.DownloadMetadata;
+import com.kirtesh.downloadmanager.service.preflight.impl.PreflightServiceImpl;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ * This class tests com.kirtesh.downloadmanager.service.preflight.impl.PreflightServiceImpl and com.kirtesh.downloadmanager.enums.SchedulingPolicy
+ * 
+ */
+public class TestPreflightService {
+
+	/**
+	 * Every reachable file is probed for its size, unreachable file is left unknown. Downloads are then ordered by size with unknown sizes last.
+	 * @throws IOException
+	 */
+	@Test
+	public void testProbeAndSizeOrder() throws IOException {
+		DMCache.propertyCacheMap.put("download.preflight.enabled", "true");
+		try (LocalHttpServer small = new LocalHttpServer(1000, true);
+				LocalHttpServer medium = new LocalHttpServer(5000, false);
+				LocalHttpServer large = new LocalHttpServer(20000, true)) {
+			DownloadMetadata unknown = new DownloadMetadata(Protocols.HTTP, "http://127.0.0.1:1/unknown.bin", null);
+			DownloadMetadata smallFile = new DownloadMetadata(Protocols.HTTP, small.getUrl("/small.bin"), null);
+			DownloadMetadata mediumFile = new DownloadMetadata(Protocols.HTTP, medium.getUrl("/medium.bin"), null);
+			DownloadMetadata largeFile = new DownloadMetadata(Protocols.HTTP, large.getUrl("/large.bin"), null);
+			List<DownloadMetadata> downloads = new ArrayList<>(Arrays.asList(unknown, smallFile, largeFile, mediumFile));
+
+			Assert.assertEquals(26000, new PreflightServiceImpl().probe(downloads));
+			Assert.assertNull(unknown.getProbeMetadata());
+			Assert.assertEquals(-1, unknown.getContentLength());
+			Assert.assertTrue(largeFile.getProbeMetadata().isAcceptRanges());
+			Assert.assertFalse(mediumFile.getProbeMetadata().isAcceptRanges());
+
+			downloads.sort(SchedulingPolicy.LONGEST_FIRST.getComparator());
+			Assert.assertEquals(Arrays.asList(largeFile, mediumFile, smallFile, unknown), downloads);
+			downloads.sort(SchedulingPolicy.SHORTEST_FIRST.getComparator());
+			Assert.assertEquals(Arrays.asList(smallFile, mediumFile, largeFile, unknown), downloads);
+			Assert.assertNull(SchedulingPolicy.fromProperty("invalid").getComparator());
+		} finally {
+			DMCache.propertyCacheMap.remove("download.preflight.enabled");
+		}
+	}
+
+}
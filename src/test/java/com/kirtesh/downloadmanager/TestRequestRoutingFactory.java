@@ -3,10 +3,13 @@ package com.kirtesh.downloadmanager;
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.kirtesh.downloadmanager.cache.DMCache;
 import com.kirtesh.downloadmanager.enums.Protocols;
 import com.kirtesh.downloadmanager.factory.RequestRoutingFactory;
 import com.kirtesh.downloadmanager.service.Downloader;
 import com.kirtesh.downloadmanager.service.impl.CommonDownloader;
+import com.kirtesh.downloadmanager.service.impl.FTPDownloader;
+import com.kirtesh.downloadmanager.service.impl.HttpClientDownloader;
 import com.kirtesh.downloadmanager.service.impl.SFTPDownloader;
 
 /**
@@ -23,7 +26,7 @@ public class TestRequestRoutingFactory {
 	@Test
 	public void getDownloadHandlerTest(){
 		Downloader downloader = RequestRoutingFactory.getDownloaderImpl(Protocols.FTP);
-		Assert.assertTrue(downloader instanceof CommonDownloader);
+		Assert.assertTrue(downloader instanceof FTPDownloader);
 		downloader = RequestRoutingFactory.getDownloaderImpl(Protocols.SFTP);
 		Assert.assertTrue(downloader instanceof SFTPDownloader);
 		downloader = RequestRoutingFactory.getDownloaderImpl(Protocols.HTTP);
@@ -32,4 +35,19 @@ public class TestRequestRoutingFactory {
 		Assert.assertTrue(downloader instanceof CommonDownloader);
 	}
 
+	/**
+	 * HTTP, HTTPS should be routed to HttpClientDownloader when http.engine is HTTP_CLIENT. FTP is not affected.
+	 */
+	@Test
+	public void getHttpClientDownloaderTest(){
+		DMCache.updateCacheMap("http.engine", "HTTP_CLIENT");
+		try {
+			Assert.assertTrue(RequestRoutingFactory.getDownloaderImpl(Protocols.HTTP) instanceof HttpClientDownloader);
+			Assert.assertTrue(RequestRoutingFactory.getDownloaderImpl(Protocols.HTTPS) instanceof HttpClientDownloader);
+			Assert.assertFalse(RequestRoutingFactory.getDownloaderImpl(Protocols.FTP) instanceof HttpClientDownloader);
+		} finally {
+			DMCache.propertyCacheMap.remove("http.engine");
+		}
+	}
+
 }
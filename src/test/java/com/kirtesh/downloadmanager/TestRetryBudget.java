@@ -0,0 +1,48 @@
+package com.kirtesh.downloadmanager;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.kirtesh.downloadmanager.utils.RetryBudget;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ * This class tests com.kirtesh.downloadmanager.utils.RetryBudget
+ * 
+ */
+public class TestRetryBudget {
+
+	/**
+	 * Burst is spent first, after which retries are limited to ratio of first attempts.
+	 */
+	@Test
+	public void testBudgetCapsRetries() {
+		RetryBudget retryBudget = new RetryBudget(0.25, 2);
+		Assert.assertTrue(retryBudget.tryRetry());
+		Assert.assertTrue(retryBudget.tryRetry());
+		Assert.assertFalse(retryBudget.tryRetry());
+
+		int retries = 0;
+		for (int i = 0; i < 100; i++) {
+			retryBudget.onFirstAttempt();
+			while (retryBudget.tryRetry()) {
+				retries++;
+			}
+		}
+		Assert.assertEquals(25, retries);
+	}
+
+	/**
+	 * Budget with ratio 0 is disabled and never refuses a retry.
+	 */
+	@Test
+	public void testDisabledBudget() {
+		RetryBudget retryBudget = new RetryBudget(0, 0);
+		Assert.assertFalse(retryBudget.isEnabled());
+		for (int i = 0; i < 10; i++) {
+			Assert.assertTrue(retryBudget.tryRetry());
+		}
+	}
+
+}
@@ -0,0 +1,134 @@
+package com.kirtesh.downloadmanager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.kirtesh.downloadmanager.cache.DMCache;
+import com.kirtesh.downloadmanager.cache.RevalidationIndex;
+import com.kirtesh.downloadmanager.enums.Protocols;
+import com.kirtesh.downloadmanager.metadata.DownloadMetadata;
+import com.kirtesh.downloadmanager.metadata.ProbeMetadata;
+import com.kirtesh.downloadmanager.service.impl.CommonDownloader;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ * This class tests com.kirtesh.downloadmanager.cache.RevalidationIndex and conditional downloads in CommonDownloader.
+ * 
+ */
+public class TestRevalidationIndex {
+
+	@After
+	public void closeIndex() {
+		RevalidationIndex.close();
+		DMCache.propertyCacheMap.remove("http.buffer.size");
+		DMCache.propertyCacheMap.remove("http.connection.timeout.millis");
+		DMCache.propertyCacheMap.remove("http.read.timeout.millis");
+	}
+
+	/**
+	 * Entries survive restart, later entry of same URL overrides earlier one and removed entries stay removed.
+	 * @throws IOException
+	 */
+	@Test
+	public void testIndexReloadedAfterRestart() throws IOException {
+		Path indexFile = Files.createTempDirectory("index").resolve("revalidation.index");
+		Assert.assertTrue(RevalidationIndex.initialize(indexFile));
+		RevalidationIndex.update("http://host/a", new ProbeMetadata(10, true, "\"a1\"", null), "/tmp/a");
+		RevalidationIndex.update("http://host/a", new ProbeMetadata(20, true, "\"a2\"", null), "/tmp/a");
+		RevalidationIndex.update("http://host/b", new ProbeMetadata(30, false, null, "Mon, 01 Jan 2018 00:00:00 GMT"), "/tmp/b");
+		RevalidationIndex.update("http://host/c", new ProbeMetadata(40, false, "\"c1\"", null), "/tmp/c");
+		RevalidationIndex.update("http://host/c", new ProbeMetadata(40, false, null, null), "/tmp/c");
+
+		Assert.assertTrue(RevalidationIndex.initialize(indexFile));
+		Assert.assertEquals("\"a2\"", RevalidationIndex.get("http://host/a").getEtag());
+		Assert.assertEquals(20, RevalidationIndex.get("http://host/a").getContentLength());
+		Assert.assertEquals("Mon, 01 Jan 2018 00:00:00 GMT", RevalidationIndex.get("http://host/b").getLastModified());
+		Assert.assertNull(RevalidationIndex.get("http://host/b").getEtag());
+		Assert.assertNull(RevalidationIndex.get("http://host/c"));
+	}
+
+	/**
+	 * Record partially written by a crashed run is truncated, dead records are compacted away on load.
+	 * @throws IOException
+	 */
+	@Test
+	public void testTruncatedTailAndCompaction() throws IOException {
+		Path indexFile = Files.createTempDirectory("index").resolve("revalidation.index");
+		RevalidationIndex.initialize(indexFile);
+		for (int i = 0; i < 10; i++) {
+			RevalidationIndex.update("http://host/a", new ProbeMetadata(i, true, "\"a" + i + "\"", null), "/tmp/a");
+		}
+		RevalidationIndex.close();
+		long fullSize = Files.size(indexFile);
+		try (FileChannel fileChannel = FileChannel.open(indexFile, StandardOpenOption.WRITE)) {
+			fileChannel.truncate(fullSize - 3);
+		}
+
+		Assert.assertTrue(RevalidationIndex.initialize(indexFile));
+		Assert.assertEquals("\"a8\"", RevalidationIndex.get("http://host/a").getEtag());
+		Assert.assertTrue(Files.size(indexFile) < fullSize / 5);
+	}
+
+	/**
+	 * Zero filled tail, length beyond end of file, negative length and unknown record type are treated as end of index and truncated, earlier records are kept.
+	 * @throws IOException
+	 */
+	@Test
+	public void testCorruptTailTruncated() throws IOException {
+		byte[][] tails = { new byte[4096], { 0x7f, -1, -1, -1, 1, 2 }, { -1, -1, -1, -2, 1 }, { 0, 0, 0, 3, 99, 0, 0 } };
+		for (byte[] tail : tails) {
+			Path indexFile = Files.createTempDirectory("index").resolve("revalidation.index");
+			Assert.assertTrue(RevalidationIndex.initialize(indexFile));
+			RevalidationIndex.update("http://host/a", new ProbeMetadata(10, true, "\"a1\"", null), "/tmp/a");
+			RevalidationIndex.close();
+			long indexSize = Files.size(indexFile);
+
+			Files.write(indexFile, tail, StandardOpenOption.APPEND);
+			Assert.assertTrue(RevalidationIndex.initialize(indexFile));
+			Assert.assertEquals("\"a1\"", RevalidationIndex.get("http://host/a").getEtag());
+			Assert.assertEquals(indexSize, Files.size(indexFile));
+			RevalidationIndex.close();
+		}
+	}
+
+	/**
+	 * Second download of unchanged file is answered 304 by server, and no GET request is made.
+	 * @throws IOException
+	 */
+	@Test
+	public void testUnchangedFileNotDownloadedAgain() throws IOException {
+		Path indexFile = Files.createTempDirectory("index").resolve("revalidation.index");
+		RevalidationIndex.initialize(indexFile);
+		DMCache.updateCacheMap("http.buffer.size", "4096");
+		DMCache.updateCacheMap("http.connection.timeout.millis", "5000");
+		DMCache.updateCacheMap("http.read.timeout.millis", "5000");
+		try (LocalHttpServer server = new LocalHttpServer(50000, true)) {
+			File file = new File(Files.createTempDirectory("revalidate").toFile(), "revalidate.bin");
+			String url = server.getUrl("/revalidate.bin");
+			CommonDownloader commonDownloader = new CommonDownloader();
+			Assert.assertTrue(commonDownloader.download(url, file.getPath(), 5000, 5000, 4096));
+			Assert.assertEquals(1, server.getGetRequestCount());
+
+			DownloadMetadata downloadMetadata = new DownloadMetadata(Protocols.HTTP, url, file.getPath());
+			downloadMetadata.setRevalidationEntry(RevalidationIndex.get(url));
+			Assert.assertTrue(commonDownloader.download(downloadMetadata));
+			Assert.assertEquals(1, server.getGetRequestCount());
+			Assert.assertArrayEquals(server.getContent(), Files.readAllBytes(file.toPath()));
+
+			server.setEtag("\"v2\"");
+			Assert.assertTrue(commonDownloader.download(downloadMetadata));
+			Assert.assertEquals(2, server.getGetRequestCount());
+			Assert.assertEquals("\"v2\"", RevalidationIndex.get(url).getEtag());
+		}
+	}
+
+}
@@ -0,0 +1,155 @@
+package com.kirtesh.downloadmanager;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.JSchException;
+import com.kirtesh.downloadmanager.cache.DMCache;
+import com.kirtesh.downloadmanager.cache.SFTPSessionPool;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ * This class tests com.kirtesh.downloadmanager.cache.SFTPSessionPool
+ * 
+ */
+public class TestSFTPSessionPool {
+
+	/**
+	 * Failed handshakes must free their session slot, else pool for host would be exhausted and later callers would wait till timeout.
+	 * @throws IOException
+	 */
+	@Test
+	public void testFailedConnectDoesNotLeakSessionSlot() throws IOException {
+		int port;
+		try (ServerSocket serverSocket = new ServerSocket(0)) {
+			port = serverSocket.getLocalPort();
+		}
+		DMCache.updateCacheMap("sftp.pool.max.sessions.per.host", "1");
+		try {
+			for (int i = 0; i < 3; i++) {
+				long start = System.currentTimeMillis();
+				try {
+					SFTPSessionPool.acquire("user", "password", "127.0.0.1", port, 5000, 5000);
+					Assert.fail("Connect to closed port should fail");
+				} catch (JSchException e) {
+					Assert.assertFalse(e.getMessage().startsWith("Timed out"));
+				}
+				Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+			}
+			Assert.assertEquals(0, SFTPSessionPool.getSessionCount("user", "127.0.0.1", port));
+		} finally {
+			DMCache.propertyCacheMap.remove("sftp.pool.max.sessions.per.host");
+		}
+	}
+
+	@Test
+	public void testPoolKey() {
+		Assert.assertEquals("demo-user@demo.wftpserver.com:2222", SFTPSessionPool.getKey("demo-user", "demo.wftpserver.com", 2222));
+	}
+
+	/**
+	 * Released channel and its session are handed to next caller, no new session or channel is connected.
+	 * @throws JSchException
+	 */
+	@Test
+	public void testSessionReusedAcrossAcquires() throws JSchException {
+		try (StubSftpConnector connector = new StubSftpConnector(10)) {
+			ChannelSftp channel = SFTPSessionPool.acquire("user", "password", "reuse.host", 22, 1000, 1000);
+			SFTPSessionPool.release(channel, true);
+			for (int i = 0; i < 5; i++) {
+				ChannelSftp reused = SFTPSessionPool.acquire("user", "password", "reuse.host", 22, 1000, 1000);
+				Assert.assertSame(channel, reused);
+				SFTPSessionPool.release(reused, true);
+			}
+			Assert.assertEquals(1, connector.getSessionsConnected());
+			Assert.assertEquals(1, connector.getChannelsOpened());
+			Assert.assertEquals(1, SFTPSessionPool.getSessionCount("user", "reuse.host", 22));
+		}
+	}
+
+	/**
+	 * Channels beyond sftp.pool.max.channels.per.session open a new session, and callers wait once every session of host is at its cap.
+	 * @throws JSchException
+	 */
+	@Test
+	public void testChannelCapPerSession() throws JSchException {
+		DMCache.updateCacheMap("sftp.pool.max.sessions.per.host", "2");
+		DMCache.updateCacheMap("sftp.pool.max.channels.per.session", "2");
+		try (StubSftpConnector connector = new StubSftpConnector(10)) {
+			ChannelSftp[] channels = new ChannelSftp[4];
+			for (int i = 0; i < channels.length; i++) {
+				channels[i] = SFTPSessionPool.acquire("user", "password", "cap.host", 22, 200, 200);
+			}
+			Assert.assertEquals(2, connector.getSessionsConnected());
+			Assert.assertEquals(4, connector.getChannelsOpened());
+			long start = System.currentTimeMillis();
+			try {
+				SFTPSessionPool.acquire("user", "password", "cap.host", 22, 200, 200);
+				Assert.fail("Pool of host is exhausted, acquire should time out");
+			} catch (JSchException e) {
+				Assert.assertTrue(e.getMessage().startsWith("Timed out"));
+				Assert.assertTrue(System.currentTimeMillis() - start >= 200);
+			}
+			SFTPSessionPool.release(channels[0], true);
+			Assert.assertSame(channels[0], SFTPSessionPool.acquire("user", "password", "cap.host", 22, 200, 200));
+			for (ChannelSftp channel : channels) {
+				SFTPSessionPool.release(channel, true);
+			}
+		} finally {
+			DMCache.propertyCacheMap.remove("sftp.pool.max.sessions.per.host");
+			DMCache.propertyCacheMap.remove("sftp.pool.max.channels.per.session");
+		}
+	}
+
+	/**
+	 * Session without leased channel is disconnected once idle for sftp.pool.idle.timeout.millis, a session in use is kept.
+	 * @throws Exception
+	 */
+	@Test
+	public void testIdleSessionEvicted() throws Exception {
+		DMCache.updateCacheMap("sftp.pool.idle.timeout.millis", "100");
+		try (StubSftpConnector connector = new StubSftpConnector(10)) {
+			ChannelSftp idle = SFTPSessionPool.acquire("user", "password", "idle.host", 22, 1000, 1000);
+			ChannelSftp busy = SFTPSessionPool.acquire("user", "password", "busy.host", 22, 1000, 1000);
+			SFTPSessionPool.release(idle, true);
+			SFTPSessionPool.evictIdleSessions();
+			Assert.assertEquals(1, SFTPSessionPool.getSessionCount("user", "idle.host", 22));
+
+			Thread.sleep(150);
+			SFTPSessionPool.evictIdleSessions();
+			Assert.assertEquals(0, SFTPSessionPool.getSessionCount("user", "idle.host", 22));
+			Assert.assertEquals(1, SFTPSessionPool.getSessionCount("user", "busy.host", 22));
+			Assert.assertEquals(1, connector.getSessionsDisconnected());
+			Assert.assertFalse(idle.isConnected());
+			SFTPSessionPool.release(busy, true);
+		} finally {
+			DMCache.propertyCacheMap.remove("sftp.pool.idle.timeout.millis");
+		}
+	}
+
+	/**
+	 * Channel released as not reusable is disconnected, next caller gets a new channel on same session.
+	 * @throws JSchException
+	 */
+	@Test
+	public void testReleaseNotReusableDisconnectsChannel() throws JSchException {
+		try (StubSftpConnector connector = new StubSftpConnector(10)) {
+			ChannelSftp channel = SFTPSessionPool.acquire("user", "password", "broken.host", 22, 1000, 1000);
+			SFTPSessionPool.release(channel, false);
+			Assert.assertFalse(channel.isConnected());
+			Assert.assertEquals(1, connector.getChannelsDisconnected());
+
+			ChannelSftp next = SFTPSessionPool.acquire("user", "password", "broken.host", 22, 1000, 1000);
+			Assert.assertNotSame(channel, next);
+			Assert.assertEquals(1, connector.getSessionsConnected());
+			Assert.assertEquals(2, connector.getChannelsOpened());
+			SFTPSessionPool.release(next, true);
+		}
+	}
+
+}
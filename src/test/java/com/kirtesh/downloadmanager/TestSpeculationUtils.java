@@ -0,0 +1,217 @@
+package com.kirtesh.downloadmanager;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.kirtesh.downloadmanager.cache.DMCache;
+import com.kirtesh.downloadmanager.cache.TransferMonitor;
+import com.kirtesh.downloadmanager.cache.TransferMonitor.Transfer;
+import com.kirtesh.downloadmanager.cache.TransferMonitor.TransferCancelledException;
+import com.kirtesh.downloadmanager.service.impl.CommonDownloader;
+import com.kirtesh.downloadmanager.utils.SpeculationUtils;
+import com.kirtesh.downloadmanager.utils.StagingUtils;
+/**
+ *
+ * @author kirteshdudawat
+ *
+ * This class tests com.kirtesh.downloadmanager.cache.TransferMonitor and com.kirtesh.downloadmanager.utils.SpeculationUtils
+ *
+ */
+public class TestSpeculationUtils {
+
+	private static final long FAST_PEER_BYTES = 1000000000L;
+
+	private final List<Transfer> peers = new ArrayList<>();
+
+	@Before
+	public void setUp() {
+		DMCache.updateCacheMap("straggler.slowness.ratio", "0.25");
+		DMCache.updateCacheMap("straggler.min.age.millis", "100");
+		DMCache.updateCacheMap("straggler.min.transfers", "3");
+		TransferMonitor.reset();
+	}
+
+	@After
+	public void tearDown() {
+		for (Transfer peer : peers) {
+			peer.close();
+		}
+		TransferMonitor.reset();
+		DMCache.propertyCacheMap.remove("straggler.slowness.ratio");
+		DMCache.propertyCacheMap.remove("straggler.min.age.millis");
+		DMCache.propertyCacheMap.remove("straggler.min.transfers");
+	}
+
+	/**
+	 * Slow transfer is a straggler only once batch has enough samples for a median, and its callback is run only once.
+	 */
+	@Test
+	public void testStragglerFoundAgainstBatchMedian() throws Exception {
+		AtomicInteger stragglerCount = new AtomicInteger();
+		try (Transfer slow = TransferMonitor.start("http://a.com/slow", stragglerCount::incrementAndGet)) {
+			slow.addBytes(1000);
+			Transfer fast = addFastPeer(stragglerCount::incrementAndGet);
+			Thread.sleep(150);
+			Assert.assertTrue(TransferMonitor.checkStragglers().isEmpty());
+			Assert.assertFalse(slow.isStraggler());
+
+			addFastPeer(stragglerCount::incrementAndGet);
+			Thread.sleep(150);
+			TransferMonitor.checkStragglers();
+			TransferMonitor.checkStragglers();
+			Assert.assertTrue(slow.isStraggler());
+			Assert.assertFalse(fast.isStraggler());
+			Assert.assertEquals(1, stragglerCount.get());
+		}
+	}
+
+	/**
+	 * Bytes of every transfer of a URL are summed up, including transfers already closed, till URL is forgotten.
+	 */
+	@Test
+	public void testTransferredBytesSummedPerUrl() throws Exception {
+		try (Transfer first = TransferMonitor.start("http://a.com/sum", null)) {
+			first.addBytes(100);
+		}
+		try (Transfer second = TransferMonitor.start("http://a.com/sum", null);
+				InputStream inputStream = second.track(new ByteArrayInputStream(new byte[50]))) {
+			Assert.assertEquals(50, inputStream.read(new byte[64]));
+		}
+		Assert.assertEquals(150, TransferMonitor.getTransferredBytes("http://a.com/sum"));
+		Assert.assertEquals(0, TransferMonitor.getTransferredBytes("http://a.com/other"));
+
+		TransferMonitor.forget("http://a.com/sum");
+		Assert.assertEquals(0, TransferMonitor.getTransferredBytes("http://a.com/sum"));
+	}
+
+	/**
+	 * Straggling attempt finishes before speculative attempt, hence speculative attempt is cancelled at its next read and primary result is kept.
+	 */
+	@Test
+	public void testPrimaryFinishingFirstCancelsSpeculative() throws Exception {
+		addFastPeer(null);
+		addFastPeer(null);
+		CountDownLatch speculativeStarted = new CountDownLatch(1);
+		AtomicBoolean speculativeCancelled = new AtomicBoolean();
+		boolean speculativeWon = SpeculationUtils.race("http://a.com/file", transfer -> {
+			sleep(150);
+			TransferMonitor.checkStragglers();
+			try {
+				Assert.assertTrue(speculativeStarted.await(5, TimeUnit.SECONDS));
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			}
+		}, () -> transfer -> {
+			speculativeStarted.countDown();
+			try (InputStream inputStream = transfer.track(new TricklingInputStream())) {
+				while (inputStream.read() >= 0) {
+				}
+			} catch (TransferCancelledException e) {
+				speculativeCancelled.set(true);
+				throw e;
+			}
+		});
+		Assert.assertFalse(speculativeWon);
+		Assert.assertTrue(speculativeCancelled.get());
+	}
+
+	/**
+	 * First connection of a range download straggles, rest of range is taken over by a speculative Range request which finishes first.
+	 */
+	@Test
+	public void testStragglingRangeTakenOver() throws Exception {
+		ExecutorService executor = Executors.newCachedThreadPool();
+		try (LocalHttpServer server = new LocalHttpServer(100000, true, executor)) {
+			server.setSlowResponses(1);
+			File file = File.createTempFile("straggling-range", ".bin");
+			Assert.assertTrue(downloadWithStragglerChecks(server.getUrl("/straggling-range.bin"), file));
+			Assert.assertEquals(2, server.getGetRequestCount());
+			Assert.assertArrayEquals(server.getContent(), Files.readAllBytes(file.toPath()));
+			Assert.assertFalse(Files.exists(StagingUtils.getJournalFile(file.getPath())));
+			file.delete();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Server does not support byte ranges, hence a straggling stream is raced by a second stream of complete file, which finishes first.
+	 */
+	@Test
+	public void testStragglingStreamRacedBySpeculativeStream() throws Exception {
+		ExecutorService executor = Executors.newCachedThreadPool();
+		try (LocalHttpServer server = new LocalHttpServer(100000, false, executor)) {
+			server.setSlowResponses(1);
+			File file = File.createTempFile("straggling-stream", ".bin");
+			Assert.assertTrue(downloadWithStragglerChecks(server.getUrl("/straggling-stream.bin"), file));
+			Assert.assertEquals(2, server.getGetRequestCount());
+			Assert.assertArrayEquals(server.getContent(), Files.readAllBytes(file.toPath()));
+			Assert.assertFalse(Files.exists(StagingUtils.getSpeculativeFile(file.getPath())));
+			file.delete();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private boolean downloadWithStragglerChecks(String url, File file) throws Exception {
+		addFastPeer(null);
+		addFastPeer(null);
+		CompletableFuture<Boolean> download = CompletableFuture.supplyAsync(() -> {
+			try {
+				return new CommonDownloader().download(url, file.getPath(), 5000, 5000, 4096, 1, 1024);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		while (!download.isDone()) {
+			TransferMonitor.checkStragglers();
+			Thread.sleep(50);
+		}
+		return download.get();
+	}
+
+	private Transfer addFastPeer(Runnable onStraggler) {
+		Transfer peer = TransferMonitor.start("http://b.com/peer" + peers.size(), onStraggler);
+		peer.addBytes(FAST_PEER_BYTES);
+		peers.add(peer);
+		return peer;
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Endless stream returning a byte every 10 millis.
+	 */
+	private static class TricklingInputStream extends InputStream {
+
+		@Override
+		public int read() {
+			sleep(10);
+			return 0;
+		}
+	}
+
+}
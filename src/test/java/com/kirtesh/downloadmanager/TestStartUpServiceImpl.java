@@ -1,9 +1,14 @@
 package com.kirtesh.downloadmanager;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
 import org.junit.Assert;
 import org.junit.Test;
 
 import com.kirtesh.downloadmanager.cache.DMCache;
+import com.kirtesh.downloadmanager.enums.Priority;
 import com.kirtesh.downloadmanager.service.startup.impl.StartUpServiceImpl;
 
 /**
@@ -28,4 +33,50 @@ public class TestStartUpServiceImpl {
 		}
 	}
 
+	/**
+	 * Priority & job options after URLs are loaded to DMCache.downloadUrlOptions, invalid options are ignored.
+	 */
+	@Test
+	public void initializeDownloadUrlsListWithOptionsTest() throws Exception {
+		Path file = Files.createTempFile("urls", ".txt");
+		Files.write(file, Arrays.asList("HTTP://Example.com/a.csv  priority=high\tjob=nightly", "http://example.com/b.csv",
+				"http://example.com/c.csv priority=urgent job=backfill"));
+		DMCache.updateCacheMap("download.url.filepath", file.toString());
+		try {
+			Assert.assertTrue(new StartUpServiceImpl().initializeDownloadUrlsList());
+			Assert.assertTrue(DMCache.downloadUrl.contains("http://example.com/a.csv"));
+			Assert.assertEquals(Priority.HIGH, DMCache.downloadUrlOptions.get("http://example.com/a.csv").getPriority());
+			Assert.assertEquals("nightly", DMCache.downloadUrlOptions.get("http://example.com/a.csv").getJobId());
+			Assert.assertTrue(DMCache.downloadUrl.contains("http://example.com/b.csv"));
+			Assert.assertNull(DMCache.downloadUrlOptions.get("http://example.com/b.csv"));
+			Assert.assertEquals(Priority.NORMAL, DMCache.downloadUrlOptions.get("http://example.com/c.csv").getPriority());
+			Assert.assertEquals("backfill", DMCache.downloadUrlOptions.get("http://example.com/c.csv").getJobId());
+		} finally {
+			DMCache.propertyCacheMap.remove("download.url.filepath");
+			DMCache.downloadUrl.clear();
+			DMCache.downloadUrlOptions.clear();
+			Files.deleteIfExists(file);
+		}
+	}
+
+	/**
+	 * Mirrors option is split in mirrorUrls of URL, invalid mirrors and duplicates are ignored.
+	 */
+	@Test
+	public void initializeDownloadUrlsListWithMirrorsTest() throws Exception {
+		Path file = Files.createTempFile("urls", ".txt");
+		Files.write(file, Arrays.asList("http://example.com/d.iso mirrors=https://mirror.com/d.iso,sftp://origin.com/d.iso,gopher://x.com/d.iso,http://example.com/d.iso,https://mirror.com/d.iso"));
+		DMCache.updateCacheMap("download.url.filepath", file.toString());
+		try {
+			Assert.assertTrue(new StartUpServiceImpl().initializeDownloadUrlsList());
+			Assert.assertEquals(Arrays.asList("https://mirror.com/d.iso", "sftp://origin.com/d.iso"),
+					DMCache.downloadUrlOptions.get("http://example.com/d.iso").getMirrorUrls());
+		} finally {
+			DMCache.propertyCacheMap.remove("download.url.filepath");
+			DMCache.downloadUrl.clear();
+			DMCache.downloadUrlOptions.clear();
+			Files.deleteIfExists(file);
+		}
+	}
+
 }
@@ -0,0 +1,89 @@
+package com.kirtesh.downloadmanager;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.kirtesh.downloadmanager.cache.DMCache;
+import com.kirtesh.downloadmanager.enums.Protocols;
+import com.kirtesh.downloadmanager.factory.RequestRoutingFactory;
+import com.kirtesh.downloadmanager.service.TransferEngine;
+import com.kirtesh.downloadmanager.service.impl.ChannelTransferEngine;
+import com.kirtesh.downloadmanager.service.impl.DirectBufferTransferEngine;
+import com.kirtesh.downloadmanager.service.impl.StreamTransferEngine;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ *	This class tests all implementations of com.kirtesh.downloadmanager.service.TransferEngine.
+ */
+public class TestTransferEngine {
+
+	/**
+	 * Every engine should write exactly maxBytes at requested position and leave rest of file untouched.
+	 * @throws IOException
+	 */
+	@Test
+	public void testTransferAtPosition() throws IOException {
+		byte[] content = new byte[100000];
+		new Random(7).nextBytes(content);
+		for (TransferEngine transferEngine : new TransferEngine[] { new StreamTransferEngine(),
+				new ChannelTransferEngine(), new DirectBufferTransferEngine() }) {
+			File file = File.createTempFile("transfer", ".bin");
+			try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+				randomAccessFile.setLength(content.length + 1000);
+				long transferred = transferEngine.transfer(new ByteArrayInputStream(content), randomAccessFile.getChannel(),
+						1000, 60000, 4096);
+				Assert.assertEquals(60000, transferred);
+			}
+			byte[] written = Files.readAllBytes(file.toPath());
+			Assert.assertArrayEquals(new byte[1000], Arrays.copyOfRange(written, 0, 1000));
+			Assert.assertArrayEquals(Arrays.copyOfRange(content, 0, 60000), Arrays.copyOfRange(written, 1000, 61000));
+			file.delete();
+		}
+	}
+
+	/**
+	 * Every engine should stop at end of stream and report bytes actually transferred.
+	 * @throws IOException
+	 */
+	@Test
+	public void testTransferStopsAtEndOfStream() throws IOException {
+		byte[] content = new byte[10000];
+		new Random(11).nextBytes(content);
+		for (TransferEngine transferEngine : new TransferEngine[] { new StreamTransferEngine(),
+				new ChannelTransferEngine(), new DirectBufferTransferEngine() }) {
+			File file = File.createTempFile("transfer", ".bin");
+			try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+				long transferred = transferEngine.transfer(new ByteArrayInputStream(content), randomAccessFile.getChannel(),
+						0, Long.MAX_VALUE, 4096);
+				Assert.assertEquals(content.length, transferred);
+			}
+			Assert.assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+			file.delete();
+		}
+	}
+
+	/**
+	 * Factory should return engine configured for protocol, StreamTransferEngine if nothing is configured.
+	 */
+	@Test
+	public void testTransferEngineSelectedPerProtocol() {
+		DMCache.updateCacheMap("sftp.transfer.mode", "DIRECT_BUFFER");
+		DMCache.updateCacheMap("ftp.transfer.mode", "TRANSFER_FROM");
+		DMCache.propertyCacheMap.remove("http.transfer.mode");
+		Assert.assertTrue(RequestRoutingFactory.getTransferEngine(Protocols.SFTP) instanceof DirectBufferTransferEngine);
+		Assert.assertTrue(RequestRoutingFactory.getTransferEngine(Protocols.FTP) instanceof ChannelTransferEngine);
+		Assert.assertTrue(RequestRoutingFactory.getTransferEngine(Protocols.HTTP) instanceof StreamTransferEngine);
+		DMCache.updateCacheMap("sftp.transfer.mode", "STREAM");
+		DMCache.updateCacheMap("ftp.transfer.mode", "STREAM");
+	}
+
+}
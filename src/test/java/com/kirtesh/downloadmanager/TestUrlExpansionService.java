@@ -0,0 +1,100 @@
+package com.kirtesh.downloadmanager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.kirtesh.downloadmanager.cache.DMCache;
+import com.kirtesh.downloadmanager.cache.FTPConnectionPool;
+import com.kirtesh.downloadmanager.metadata.DownloadMetadata;
+import com.kirtesh.downloadmanager.service.expansion.impl.UrlExpansionServiceImpl;
+import com.kirtesh.downloadmanager.service.impl.FTPDownloader;
+/**
+ * 
+ * @author kirteshdudawat
+ *
+ *	This class tests com.kirtesh.downloadmanager.service.expansion.impl.UrlExpansionServiceImpl against LocalFtpServer.
+ */
+public class TestUrlExpansionService {
+
+	private File directory;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("mirror").toFile();
+		DMCache.updateCacheMap("ftp.download.directory.path", directory.getPath() + File.separator);
+		DMCache.updateCacheMap("ftp.buffer.size", "4096");
+	}
+
+	@After
+	public void cleanUp() {
+		DMCache.propertyCacheMap.remove("ftp.download.directory.path");
+		DMCache.propertyCacheMap.remove("ftp.buffer.size");
+		FTPConnectionPool.closeIdleConnections();
+	}
+
+	/**
+	 * Only files matching glob are handed over, mirrored at their path relative to base directory. Directories which can not match are not listed.
+	 * Once downloaded, local copies are up to date and a second expansion hands over nothing.
+	 * @throws IOException
+	 */
+	@Test
+	public void testGlobExpansionAndMirroring() throws IOException {
+		try (LocalFtpServer server = new LocalFtpServer(20000)) {
+			for (String file : Arrays.asList("data/2026-01/a.csv", "data/2026-01/b.txt", "data/2026-02/sub/c.csv",
+					"data/2025-12/d.csv", "data/top.csv")) {
+				server.addFile(file);
+			}
+			Queue<DownloadMetadata> downloads = new ConcurrentLinkedQueue<>();
+			String url = server.getUrl("/data/2026-*/**.csv");
+			int files = new UrlExpansionServiceImpl().expand(Collections.singletonList(url), downloads::add);
+
+			Assert.assertEquals(2, files);
+			List<String> urls = downloads.stream().map(DownloadMetadata::getDownloadUrl).sorted().collect(Collectors.toList());
+			Assert.assertEquals(Arrays.asList(server.getUrl("/data/2026-01/a.csv"), server.getUrl("/data/2026-02/sub/c.csv")), urls);
+			Assert.assertFalse(server.getListedDirectories().contains("data/2025-12"));
+
+			FTPDownloader ftpDownloader = new FTPDownloader();
+			for (DownloadMetadata downloadMetadata : downloads) {
+				Assert.assertTrue(ftpDownloader.download(downloadMetadata));
+			}
+			Assert.assertArrayEquals(server.getContent(), Files.readAllBytes(new File(directory, "2026-02/sub/c.csv").toPath()));
+
+			Assert.assertEquals(0, new UrlExpansionServiceImpl().expand(Collections.singletonList(url), downloads::add));
+		}
+	}
+
+	/**
+	 * Directory URL mirrors complete tree below directory, remote file newer than local copy is fetched again.
+	 * @throws IOException
+	 */
+	@Test
+	public void testDirectoryExpansionFetchesChangedFiles() throws IOException {
+		try (LocalFtpServer server = new LocalFtpServer(1000)) {
+			server.addFile("pub/x.bin");
+			server.addFile("pub/nested/y.bin");
+			Queue<DownloadMetadata> downloads = new ConcurrentLinkedQueue<>();
+			String url = server.getUrl("/pub/");
+			Assert.assertEquals(2, new UrlExpansionServiceImpl().expand(Collections.singletonList(url), downloads::add));
+			for (DownloadMetadata downloadMetadata : downloads) {
+				Assert.assertTrue(new FTPDownloader().download(downloadMetadata));
+			}
+			Assert.assertTrue(new File(directory, "nested/y.bin").isFile());
+
+			server.setModificationTime("29990101000000");
+			Assert.assertEquals(2, new UrlExpansionServiceImpl().expand(Collections.singletonList(url), downloads::add));
+		}
+	}
+
+}
@@ -0,0 +1,66 @@
+package com.kirtesh.downloadmanager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.kirtesh.downloadmanager.cache.DMCache;
+import com.kirtesh.downloadmanager.service.impl.CommonDownloader;
+import com.kirtesh.downloadmanager.utils.SegmentUtils;
+import com.kirtesh.downloadmanager.utils.VirtualThreadUtils;
+/**
+ *
+ * @author kirteshdudawat
+ *
+ * This class tests com.kirtesh.downloadmanager.utils.VirtualThreadUtils. Virtual threads are only asserted on JDK 21 or newer, older JDKs must fall back to platform threads.
+ *
+ */
+public class TestVirtualThreadUtils {
+
+	@Before
+	public void enableVirtualMode() {
+		DMCache.propertyCacheMap.put("download.execution.mode", "VIRTUAL");
+	}
+
+	@After
+	public void disableVirtualMode() {
+		DMCache.propertyCacheMap.remove("download.execution.mode");
+	}
+
+	/**
+	 * Segments run on virtual threads if JDK supports them, otherwise on segment pool as in PLATFORM mode.
+	 * @throws Exception
+	 */
+	@Test
+	public void testSegmentExecutorFollowsExecutionMode() throws Exception {
+		ExecutorService executorService = VirtualThreadUtils.getVirtualThreadExecutor();
+		Assert.assertEquals(executorService != null, VirtualThreadUtils.isEnabled());
+		if (executorService != null) {
+			Assert.assertSame(executorService, SegmentUtils.getSegmentExecutorService());
+			Assert.assertTrue(executorService.submit(() -> Thread.currentThread().toString().contains("Virtual")).get());
+		}
+		DMCache.propertyCacheMap.put("download.execution.mode", "PLATFORM");
+		Assert.assertFalse(VirtualThreadUtils.isEnabled());
+		Assert.assertNotSame(executorService, SegmentUtils.getSegmentExecutorService());
+	}
+
+	/**
+	 * Segmented download completes in VIRTUAL mode, whether or not JDK supports virtual threads.
+	 * @throws IOException
+	 */
+	@Test
+	public void testSegmentedDownloadInVirtualMode() throws IOException {
+		try (LocalHttpServer server = new LocalHttpServer(300000, true)) {
+			File file = new File(Files.createTempDirectory("virtual").toFile(), "segmented.bin");
+			Assert.assertTrue(new CommonDownloader().download(server.getUrl("/segmented.bin"), file.getPath(), 5000, 5000, 4096, 4, 1024));
+			Assert.assertArrayEquals(server.getContent(), Files.readAllBytes(file.toPath()));
+		}
+	}
+
+}